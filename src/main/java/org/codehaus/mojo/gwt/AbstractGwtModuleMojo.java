@@ -20,29 +20,26 @@ package org.codehaus.mojo.gwt;
  */
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.io.IOException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.mojo.gwt.utils.ClasspathIndex;
 import org.codehaus.mojo.gwt.utils.DefaultGwtModuleReader;
+import org.codehaus.mojo.gwt.utils.GwtModuleCache;
 import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
 import org.codehaus.plexus.util.DirectoryScanner;
-import org.codehaus.plexus.util.ReaderFactory;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
 
 /**
  * Add support for GWT Modules.
@@ -76,6 +73,14 @@ public abstract class AbstractGwtModuleMojo
      */
     private String module;
 
+    private ClasspathIndex classpathIndex;
+
+    /** modules read by this mojo */
+    private final GwtModuleCache moduleCache = new GwtModuleCache( this );
+
+    /** module graphs built by this mojo, by root module */
+    private final Map<String, GwtModuleGraph> moduleGraphs = new HashMap<String, GwtModuleGraph>();
+
     public List<String> getGwtModules()
     {
         String[] modules = getModules();
@@ -155,6 +160,11 @@ public abstract class AbstractGwtModuleMojo
     public GwtModule readModule( String name )
         throws GwtModuleReaderException
     {
+        GwtModule read = moduleCache.getModule( name );
+        if ( read != null )
+        {
+            return read;
+        }
         String modulePath = name.replace( '.', '/' ) + GWT_MODULE_EXTENSION;
         Collection<String> sourceRoots = getProject().getCompileSourceRoots();
         for ( String sourceRoot : sourceRoots )
@@ -164,7 +174,7 @@ public abstract class AbstractGwtModuleMojo
             if ( xml.exists() )
             {
                 getLog().debug( "GWT module " + name + " found in " + root );
-                return readModule( name, xml );
+                return moduleCache.read( name, xml );
             }
         }
         Collection<Resource> resources = (Collection<Resource>) getProject().getResources();
@@ -175,70 +185,72 @@ public abstract class AbstractGwtModuleMojo
             if ( xml.exists() )
             {
                 getLog().debug( "GWT module " + name + " found in " + root );
-                return readModule( name, xml );
+                return moduleCache.read( name, xml );
             }
         }
 
         try
         {
-            Collection<File> classpath = getClasspath( Artifact.SCOPE_COMPILE );
-            URL[] urls = new URL[classpath.size()];
-            int i = 0;
-            for ( File file : classpath )
+            URL url = getClasspathIndex().getResource( modulePath );
+            if ( url != null )
             {
-                urls[i++] = file.toURI().toURL();
-            }
-            InputStream stream = new URLClassLoader( urls ).getResourceAsStream( modulePath );
-            if ( stream != null )
-            {
-                return readModule( name, stream );
+                getLog().debug( "GWT module " + name + " found in " + url );
+                return moduleCache.read( name, url );
             }
         }
-        catch ( MalformedURLException e )
+        catch ( IOException e )
         {
-            // ignored;
-        } catch (MojoExecutionException e)
+            throw new GwtModuleReaderException( "Failed to index the compile classpath", e );
+        }
+        catch ( MojoExecutionException e )
         {
-            throw new GwtModuleReaderException(e.getMessage(), e);
+            throw new GwtModuleReaderException( e.getMessage(), e );
         }
 
         throw new GwtModuleReaderException( "GWT Module " + name + " not found in project sources or resources." );
     }
 
-    private GwtModule readModule( String name, File file )
-        throws GwtModuleReaderException
-
+    /**
+     * Forget the modules read so far, so that a long running mojo reads modified module descriptors again.
+     */
+    protected void clearModuleCache()
     {
-        try
-        {
-            GwtModule module = readModule( name, new FileInputStream( file ) );
-            module.setSourceFile(file);
-            return module;
-        }
-        catch ( FileNotFoundException e )
-        {
-            throw new GwtModuleReaderException( "Failed to read module file " + file );
-        }
+        moduleCache.clear();
+        moduleGraphs.clear();
     }
 
     /**
-     * @param module2
-     * @return
+     * @param name a GWT module
+     * @return the module and all the modules it inherits, built once for this mojo
      */
-    private GwtModule readModule( String name, InputStream xml )
+    public GwtModuleGraph getModuleGraph( String name )
         throws GwtModuleReaderException
     {
-        try
+        GwtModuleGraph graph = moduleGraphs.get( name );
+        if ( graph == null )
         {
-            Xpp3Dom dom = Xpp3DomBuilder.build( ReaderFactory.newXmlReader( xml ) );
-            return new GwtModule( name, dom, this );
+            graph = GwtModuleGraph.build( name, this );
+            moduleGraphs.put( name, graph );
+            if ( !graph.getUnresolved().isEmpty() )
+            {
+                getLog().debug( "GWT modules inherited by " + name + " not found: " + graph.getUnresolved() );
+            }
         }
-        catch ( Exception e )
+        return graph;
+    }
+
+    /**
+     * @return index of the compile classpath resources, to look up modules and resources in dependencies
+     */
+    protected ClasspathIndex getClasspathIndex()
+        throws MojoExecutionException
+    {
+        if ( classpathIndex == null )
         {
-            String error = "Failed to read module XML file " + xml;
-            getLog().error( error );
-            throw new GwtModuleReaderException( error, e );
+            File directory = new File( getProject().getBuild().getDirectory(), "gwt-classpath-index" );
+            classpathIndex = new ClasspathIndex( getClasspath( Artifact.SCOPE_COMPILE ), directory );
         }
+        return classpathIndex;
     }
 
     /**
@@ -37,20 +37,28 @@ import org.codehaus.plexus.util.xml.Xpp3Dom;
 
 
 /**
+ * A GWT module descriptor. Modules are shared by all the users of the reader that read them, possibly concurrently,
+ * and must not be modified once read.
+ *
  * @author <a href="mailto:nicolas@apache.org">Nicolas De Loof</a>
  */
 public class GwtModule
 {
-    private Xpp3Dom xml;
+    private final Xpp3Dom xml;
+
+    private final String name;
 
-    private String name;
+    /** computed once, concurrent threads would compute the same set as modules are read once by the reader */
+    private volatile Set<GwtModule> inherits;
 
-    private Set<GwtModule> inherits;
+    private volatile Set<GwtModule> localInherits;
 
-    private GwtModuleReader reader;
+    private final GwtModuleReader reader;
     
     private File sourceFile;
 
+    private File sourceJar;
+
     public GwtModule( String name, Xpp3Dom xml, GwtModuleReader reader )
     {
         this.name = name;
@@ -58,6 +66,14 @@ public class GwtModule
         this.reader = reader;
     }
 
+    /**
+     * @return the module descriptor, shared with other readers, must not be modified
+     */
+    Xpp3Dom getXml()
+    {
+        return xml;
+    }
+
     private String getRenameTo()
     {
         return xml.getAttribute( "rename-to" );
@@ -140,15 +156,18 @@ public class GwtModule
     public Set<GwtModule> getInherits()
 		throws GwtModuleReaderException
     {
-        if ( inherits != null )
+        Set<GwtModule> closure = inherits;
+        if ( closure != null )
         {
-            return inherits;
+            return closure;
         }
 
-        inherits = new HashSet<GwtModule>();
-        addInheritedModules( inherits, getLocalInherits() );
+        Set<GwtModule> modules = new HashSet<GwtModule>();
+        addInheritedModules( modules, getLocalInherits() );
+        closure = Collections.unmodifiableSet( modules );
+        inherits = closure;
 
-        return inherits;
+        return closure;
     }
 
     /**
@@ -174,10 +193,17 @@ public class GwtModule
     private Set<GwtModule> getLocalInherits()
         throws GwtModuleReaderException
     {
+        Set<GwtModule> local = localInherits;
+        if ( local != null )
+        {
+            return local;
+        }
         Xpp3Dom nodes[] = xml.getChildren( "inherits" );
         if ( nodes == null )
         {
-            return Collections.emptySet();
+            local = Collections.emptySet();
+            localInherits = local;
+            return local;
         }
         Set<GwtModule> modules = new HashSet<GwtModule>();
         for ( Xpp3Dom node : nodes )
@@ -189,7 +215,9 @@ public class GwtModule
                 modules.add( reader.readModule( moduleName ) );
             }
         }
-        return modules;
+        local = Collections.unmodifiableSet( modules );
+        localInherits = local;
+        return local;
     }
 
     public Map<String, String> getServlets()
@@ -251,6 +279,19 @@ public class GwtModule
     public void setSourceFile(File file) {
 		this.sourceFile = file;
 	}
+
+    /**
+     * @return the archive this module descriptor has been read from, or <code>null</code> if not read from a jar
+     */
+    public File getSourceJar()
+    {
+        return sourceJar;
+    }
+
+    public void setSourceJar( File sourceJar )
+    {
+        this.sourceJar = sourceJar;
+    }
 	
     @Override
     public boolean equals( Object obj )
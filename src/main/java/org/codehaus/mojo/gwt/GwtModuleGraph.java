@@ -0,0 +1,1065 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.mojo.gwt.utils.DefaultGwtModuleReader;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.mojo.gwt.utils.JsonWriter;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * The resolved inheritance graph of a GWT module: every module in the transitive closure of its
+ * <code>&lt;inherits&gt;</code>, including the GWT SDK modules, with the source, super-source and public paths,
+ * properties and deferred binding rules each one declares. Unlike {@link GwtModule}, the graph is fully resolved when
+ * built and never changes afterwards.
+ * <p>
+ * Inherited modules that cannot be found are kept as unresolved nodes, as the GWT compiler would fail on them but
+ * the rest of the graph is still meaningful.
+ *
+ * @since 2.5.0
+ */
+public class GwtModuleGraph
+{
+    private final Node root;
+
+    /** nodes in breadth-first order from the root */
+    private final Map<String, Node> nodes;
+
+    private GwtModuleGraph( Node root, Map<String, Node> nodes )
+    {
+        this.root = root;
+        this.nodes = Collections.unmodifiableMap( nodes );
+    }
+
+    /**
+     * Read a module and all the modules it inherits.
+     *
+     * @param module the root module
+     * @param reader resolves module names
+     * @throws GwtModuleReaderException if the root module can't be read
+     */
+    public static GwtModuleGraph build( String module, GwtModuleReader reader )
+        throws GwtModuleReaderException
+    {
+        Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+        Node root = new Node( reader.readModule( module ) );
+        nodes.put( module, root );
+        LinkedList<Node> queue = new LinkedList<Node>();
+        queue.add( root );
+        while ( !queue.isEmpty() )
+        {
+            for ( String name : queue.removeFirst().getInherits() )
+            {
+                if ( nodes.containsKey( name ) )
+                {
+                    continue;
+                }
+                Node node;
+                try
+                {
+                    node = new Node( reader.readModule( name ) );
+                }
+                catch ( GwtModuleReaderException e )
+                {
+                    node = new Node( name );
+                }
+                nodes.put( name, node );
+                queue.add( node );
+            }
+        }
+        return new GwtModuleGraph( root, nodes );
+    }
+
+    public Node getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * @return all the modules of the graph, root first, in breadth-first order
+     */
+    public Collection<Node> getNodes()
+    {
+        return Collections.unmodifiableCollection( nodes.values() );
+    }
+
+    /**
+     * @return the named module, <code>null</code> if not part of this graph
+     */
+    public Node getNode( String name )
+    {
+        return nodes.get( name );
+    }
+
+    /**
+     * @return names of the inherited modules that could not be found
+     */
+    public List<String> getUnresolved()
+    {
+        List<String> unresolved = new ArrayList<String>();
+        for ( Node node : nodes.values() )
+        {
+            if ( !node.isResolved() )
+            {
+                unresolved.add( node.getName() );
+            }
+        }
+        return unresolved;
+    }
+
+    /**
+     * @return names of the modules a module of the graph transitively inherits, not including itself
+     */
+    public Set<String> getInherits( String name )
+    {
+        Set<String> closure = new LinkedHashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        queue.add( name );
+        while ( !queue.isEmpty() )
+        {
+            Node node = nodes.get( queue.removeFirst() );
+            if ( node == null )
+            {
+                continue;
+            }
+            for ( String inherited : node.getInherits() )
+            {
+                if ( !inherited.equals( name ) && closure.add( inherited ) )
+                {
+                    queue.add( inherited );
+                }
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * Property declarations in the order the GWT compiler processes them: module elements in document order, each
+     * inherited module being processed in place the first time it is inherited.
+     */
+    public List<Property> getDeclarations()
+    {
+        List<Property> declarations = new ArrayList<Property>();
+        addDeclarations( root, declarations, new HashSet<String>() );
+        return declarations;
+    }
+
+    private void addDeclarations( Node node, List<Property> declarations, Set<String> visited )
+    {
+        if ( node == null || !visited.add( node.getName() ) )
+        {
+            return;
+        }
+        for ( Object element : node.content )
+        {
+            if ( element instanceof Property )
+            {
+                declarations.add( (Property) element );
+            }
+            else
+            {
+                addDeclarations( nodes.get( element ), declarations, visited );
+            }
+        }
+    }
+
+    /**
+     * Values of the deferred binding properties once all declarations are processed: values of
+     * <code>define-property</code>, added to by <code>extend-property</code> and restricted by unconditional
+     * <code>set-property</code>.
+     *
+     * @return possible values by property name
+     */
+    public Map<String, List<String>> getPropertyValues()
+    {
+        Map<String, List<String>> properties = new LinkedHashMap<String, List<String>>();
+        for ( Property property : getDeclarations() )
+        {
+            String kind = property.getKind();
+            if ( Property.DEFINE.equals( kind ) )
+            {
+                properties.put( property.getName(), new ArrayList<String>( property.getValues() ) );
+            }
+            else if ( Property.EXTEND.equals( kind ) )
+            {
+                List<String> values = properties.get( property.getName() );
+                if ( values == null )
+                {
+                    values = new ArrayList<String>();
+                    properties.put( property.getName(), values );
+                }
+                for ( String value : property.getValues() )
+                {
+                    if ( !values.contains( value ) )
+                    {
+                        values.add( value );
+                    }
+                }
+            }
+            else if ( Property.SET.equals( kind ) && !property.isConditional() )
+            {
+                properties.put( property.getName(), new ArrayList<String>( property.getValues() ) );
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Values of the configuration properties once all declarations are processed.
+     *
+     * @return values by property name
+     */
+    public Map<String, List<String>> getConfigurationProperties()
+    {
+        Map<String, List<String>> properties = new LinkedHashMap<String, List<String>>();
+        for ( Property property : getDeclarations() )
+        {
+            String kind = property.getKind();
+            if ( Property.DEFINE_CONFIGURATION.equals( kind ) )
+            {
+                properties.put( property.getName(), new ArrayList<String>() );
+            }
+            else if ( Property.SET_CONFIGURATION.equals( kind ) )
+            {
+                properties.put( property.getName(), new ArrayList<String>( property.getValues() ) );
+            }
+            else if ( Property.EXTEND_CONFIGURATION.equals( kind ) )
+            {
+                List<String> values = properties.get( property.getName() );
+                if ( values == null )
+                {
+                    values = new ArrayList<String>();
+                    properties.put( property.getName(), values );
+                }
+                values.addAll( property.getValues() );
+            }
+        }
+        return properties;
+    }
+
+    public void write( File file )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        Writer writer = WriterFactory.newWriter( file, "UTF-8" );
+        try
+        {
+            JsonWriter json = new JsonWriter( writer );
+            write( json );
+            json.flush();
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    public void write( JsonWriter json )
+        throws IOException
+    {
+        json.beginObject().name( "module" ).value( root.getName() );
+        json.name( "nodes" ).beginArray();
+        for ( Node node : nodes.values() )
+        {
+            node.write( json );
+        }
+        json.endArray();
+        json.name( "unresolved" );
+        writeStrings( json, getUnresolved() );
+        json.name( "propertyValues" );
+        writeValues( json, getPropertyValues() );
+        json.name( "configurationProperties" );
+        writeValues( json, getConfigurationProperties() );
+        json.endObject();
+    }
+
+    private static void writeValues( JsonWriter json, Map<String, List<String>> properties )
+        throws IOException
+    {
+        json.beginObject();
+        for ( Map.Entry<String, List<String>> property : properties.entrySet() )
+        {
+            json.name( property.getKey() );
+            writeStrings( json, property.getValue() );
+        }
+        json.endObject();
+    }
+
+    private static void writeStrings( JsonWriter json, List<String> strings )
+        throws IOException
+    {
+        json.beginArray();
+        for ( String string : strings )
+        {
+            json.value( string );
+        }
+        json.endArray();
+    }
+
+    private static List<String> split( String value )
+    {
+        if ( value == null || value.trim().length() == 0 )
+        {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList( Arrays.asList( value.trim().split( "\\s*[,\\s]\\s*" ) ) );
+    }
+
+    private static List<Xpp3Dom> getChildren( Xpp3Dom xml )
+    {
+        return xml == null ? Collections.<Xpp3Dom> emptyList() : Arrays.asList( xml.getChildren() );
+    }
+
+    /**
+     * A module of the graph, as declared by its descriptor
+     */
+    public static class Node
+    {
+        private final String name;
+
+        private final boolean resolved;
+
+        private final String origin;
+
+        private final File sourceFile;
+
+        private final File sourceJar;
+
+        private final String renameTo;
+
+        private final List<String> inherits = new ArrayList<String>();
+
+        private final List<PathFilter> sources = new ArrayList<PathFilter>();
+
+        private final List<PathFilter> superSources = new ArrayList<PathFilter>();
+
+        private final List<PathFilter> publicPaths = new ArrayList<PathFilter>();
+
+        private final List<String> entryPoints = new ArrayList<String>();
+
+        private final Map<String, String> servlets = new LinkedHashMap<String, String>();
+
+        private final List<Property> properties = new ArrayList<Property>();
+
+        private final List<Rule> rules = new ArrayList<Rule>();
+
+        private final List<String> linkers = new ArrayList<String>();
+
+        private final List<String> scripts = new ArrayList<String>();
+
+        private final List<String> stylesheets = new ArrayList<String>();
+
+        /** inherited module names and properties, in document order */
+        private final List<Object> content = new ArrayList<Object>();
+
+        /**
+         * An unresolved module
+         */
+        Node( String name )
+        {
+            this.name = name;
+            this.resolved = false;
+            this.origin = null;
+            this.sourceFile = null;
+            this.sourceJar = null;
+            this.renameTo = null;
+        }
+
+        Node( GwtModule module )
+        {
+            this.name = module.getName();
+            this.resolved = true;
+            this.origin = getOrigin( module );
+            this.sourceFile = module.getSourceFile();
+            this.sourceJar = module.getSourceJar();
+            Xpp3Dom xml = module.getXml();
+            this.renameTo = xml.getAttribute( "rename-to" );
+            for ( Xpp3Dom element : getChildren( xml ) )
+            {
+                String tag = element.getName();
+                if ( "inherits".equals( tag ) )
+                {
+                    String inherited = element.getAttribute( "name" );
+                    if ( inherited == null )
+                    {
+                        continue;
+                    }
+                    if ( !inherits.contains( inherited ) )
+                    {
+                        inherits.add( inherited );
+                    }
+                    content.add( inherited );
+                }
+                else if ( "source".equals( tag ) )
+                {
+                    sources.add( new PathFilter( element, "" ) );
+                }
+                else if ( "super-source".equals( tag ) )
+                {
+                    superSources.add( new PathFilter( element, "" ) );
+                }
+                else if ( "public".equals( tag ) )
+                {
+                    publicPaths.add( new PathFilter( element, "" ) );
+                }
+                else if ( "entry-point".equals( tag ) )
+                {
+                    entryPoints.add( element.getAttribute( "class" ) );
+                }
+                else if ( "servlet".equals( tag ) )
+                {
+                    servlets.put( element.getAttribute( "path" ), element.getAttribute( "class" ) );
+                }
+                else if ( Property.isProperty( tag ) )
+                {
+                    Property property = new Property( element, name );
+                    properties.add( property );
+                    content.add( property );
+                }
+                else if ( Rule.REPLACE_WITH.equals( tag ) || Rule.GENERATE_WITH.equals( tag ) )
+                {
+                    rules.add( new Rule( element ) );
+                }
+                else if ( "add-linker".equals( tag ) || "define-linker".equals( tag ) )
+                {
+                    linkers.add( element.getAttribute( "name" ) );
+                }
+                else if ( "script".equals( tag ) )
+                {
+                    scripts.add( element.getAttribute( "src" ) );
+                }
+                else if ( "stylesheet".equals( tag ) )
+                {
+                    stylesheets.add( element.getAttribute( "src" ) );
+                }
+            }
+            // GWT defaults, see com.google.gwt.dev.cfg.ModuleDefSchema
+            if ( sources.isEmpty() && superSources.isEmpty() )
+            {
+                sources.add( new PathFilter( null, "client" ) );
+            }
+            if ( publicPaths.isEmpty() )
+            {
+                publicPaths.add( new PathFilter( null, "public" ) );
+            }
+        }
+
+        private static String getOrigin( GwtModule module )
+        {
+            if ( module.getSourceFile() != null )
+            {
+                return module.getSourceFile().getAbsolutePath();
+            }
+            if ( module.getSourceJar() != null )
+            {
+                return module.getSourceJar().getAbsolutePath() + "!/" + module.getName().replace( '.', '/' )
+                    + DefaultGwtModuleReader.GWT_MODULE_EXTENSION;
+            }
+            return null;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return <code>false</code> if the module descriptor could not be found
+         */
+        public boolean isResolved()
+        {
+            return resolved;
+        }
+
+        /**
+         * @return the descriptor file, or jar and entry as <code>jar!/entry</code>, <code>null</code> if unknown
+         */
+        public String getOrigin()
+        {
+            return origin;
+        }
+
+        /**
+         * @return the descriptor file, <code>null</code> if not read from a file
+         */
+        public File getSourceFile()
+        {
+            return sourceFile;
+        }
+
+        /**
+         * @return the archive the descriptor has been read from, <code>null</code> if not read from a jar
+         */
+        public File getSourceJar()
+        {
+            return sourceJar;
+        }
+
+        public String getRenameTo()
+        {
+            return renameTo;
+        }
+
+        /**
+         * @return the package of the module, the base of its source and public paths
+         */
+        public String getPackage()
+        {
+            int index = name.lastIndexOf( '.' );
+            return ( index < 0 ) ? "" : name.substring( 0, index );
+        }
+
+        /**
+         * @return names of the modules directly inherited, in document order
+         */
+        public List<String> getInherits()
+        {
+            return Collections.unmodifiableList( inherits );
+        }
+
+        public List<PathFilter> getSources()
+        {
+            return Collections.unmodifiableList( sources );
+        }
+
+        public List<PathFilter> getSuperSources()
+        {
+            return Collections.unmodifiableList( superSources );
+        }
+
+        public List<PathFilter> getPublicPaths()
+        {
+            return Collections.unmodifiableList( publicPaths );
+        }
+
+        public List<String> getEntryPoints()
+        {
+            return Collections.unmodifiableList( entryPoints );
+        }
+
+        /**
+         * @return servlet classes by path
+         */
+        public Map<String, String> getServlets()
+        {
+            return Collections.unmodifiableMap( servlets );
+        }
+
+        public List<Property> getProperties()
+        {
+            return Collections.unmodifiableList( properties );
+        }
+
+        public List<Rule> getRules()
+        {
+            return Collections.unmodifiableList( rules );
+        }
+
+        /**
+         * @return names of the linkers the module defines or adds
+         */
+        public List<String> getLinkers()
+        {
+            return Collections.unmodifiableList( linkers );
+        }
+
+        /**
+         * @return the scripts the module injects in the host page
+         */
+        public List<String> getScripts()
+        {
+            return Collections.unmodifiableList( scripts );
+        }
+
+        /**
+         * @return the stylesheets the module injects in the host page
+         */
+        public List<String> getStylesheets()
+        {
+            return Collections.unmodifiableList( stylesheets );
+        }
+
+        void write( JsonWriter json )
+            throws IOException
+        {
+            json.beginObject().name( "name" ).value( name ).name( "resolved" ).value( resolved );
+            if ( !resolved )
+            {
+                json.endObject();
+                return;
+            }
+            json.name( "origin" ).value( origin ).name( "renameTo" ).value( renameTo );
+            json.name( "inherits" );
+            writeStrings( json, inherits );
+            writeFilters( json, "sources", sources );
+            writeFilters( json, "superSources", superSources );
+            writeFilters( json, "publicPaths", publicPaths );
+            json.name( "entryPoints" );
+            writeStrings( json, entryPoints );
+            json.name( "servlets" ).beginArray();
+            for ( Map.Entry<String, String> servlet : servlets.entrySet() )
+            {
+                json.beginObject().name( "path" ).value( servlet.getKey() );
+                json.name( "class" ).value( servlet.getValue() ).endObject();
+            }
+            json.endArray().name( "properties" ).beginArray();
+            for ( Property property : properties )
+            {
+                property.write( json );
+            }
+            json.endArray().name( "rules" ).beginArray();
+            for ( Rule rule : rules )
+            {
+                rule.write( json );
+            }
+            json.endArray().name( "linkers" );
+            writeStrings( json, linkers );
+            json.name( "scripts" );
+            writeStrings( json, scripts );
+            json.name( "stylesheets" );
+            writeStrings( json, stylesheets );
+            json.endObject();
+        }
+
+        private static void writeFilters( JsonWriter json, String name, List<PathFilter> filters )
+            throws IOException
+        {
+            json.name( name ).beginArray();
+            for ( PathFilter filter : filters )
+            {
+                filter.write( json );
+            }
+            json.endArray();
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * A source, super-source or public path, relative to the module package, with its Ant-style filters
+     */
+    public static class PathFilter
+    {
+        private final String path;
+
+        private final List<String> includes = new ArrayList<String>();
+
+        private final List<String> excludes = new ArrayList<String>();
+
+        private final List<String> skips = new ArrayList<String>();
+
+        private final boolean defaultExcludes;
+
+        private final boolean declared;
+
+        /**
+         * @param xml the path element, <code>null</code> for a default path
+         * @param path path if not set by the element
+         */
+        PathFilter( Xpp3Dom xml, String path )
+        {
+            String declared = xml != null ? xml.getAttribute( "path" ) : null;
+            this.path = declared != null ? declared : path;
+            this.defaultExcludes = xml == null || !"no".equals( xml.getAttribute( "defaultexcludes" ) );
+            this.declared = xml != null;
+            if ( xml == null )
+            {
+                return;
+            }
+            includes.addAll( split( xml.getAttribute( "includes" ) ) );
+            excludes.addAll( split( xml.getAttribute( "excludes" ) ) );
+            skips.addAll( split( xml.getAttribute( "skips" ) ) );
+            for ( Xpp3Dom child : getChildren( xml ) )
+            {
+                String pattern = child.getAttribute( "name" );
+                if ( "include".equals( child.getName() ) )
+                {
+                    includes.add( pattern );
+                }
+                else if ( "exclude".equals( child.getName() ) )
+                {
+                    excludes.add( pattern );
+                }
+                else if ( "skip".equals( child.getName() ) )
+                {
+                    skips.add( pattern );
+                }
+            }
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        /**
+         * @return include patterns, all files if empty
+         */
+        public List<String> getIncludes()
+        {
+            return Collections.unmodifiableList( includes );
+        }
+
+        public List<String> getExcludes()
+        {
+            return Collections.unmodifiableList( excludes );
+        }
+
+        /**
+         * @return patterns of files excluded from this path but still visible to other paths
+         */
+        public List<String> getSkips()
+        {
+            return Collections.unmodifiableList( skips );
+        }
+
+        public boolean isDefaultExcludes()
+        {
+            return defaultExcludes;
+        }
+
+        /**
+         * @return <code>false</code> for the default path of a module that doesn't declare any
+         */
+        public boolean isDeclared()
+        {
+            return declared;
+        }
+
+        void write( JsonWriter json )
+            throws IOException
+        {
+            json.beginObject().name( "path" ).value( path );
+            if ( !includes.isEmpty() )
+            {
+                json.name( "includes" );
+                writeStrings( json, includes );
+            }
+            if ( !excludes.isEmpty() )
+            {
+                json.name( "excludes" );
+                writeStrings( json, excludes );
+            }
+            if ( !skips.isEmpty() )
+            {
+                json.name( "skips" );
+                writeStrings( json, skips );
+            }
+            if ( !defaultExcludes )
+            {
+                json.name( "defaultExcludes" ).value( false );
+            }
+            json.endObject();
+        }
+
+        @Override
+        public String toString()
+        {
+            return path;
+        }
+    }
+
+    /**
+     * A property declaration: deferred binding or configuration property definition, extension or value, or
+     * property collapsing
+     */
+    public static class Property
+    {
+        public static final String DEFINE = "define-property";
+
+        public static final String EXTEND = "extend-property";
+
+        public static final String SET = "set-property";
+
+        public static final String SET_FALLBACK = "set-property-fallback";
+
+        public static final String DEFINE_CONFIGURATION = "define-configuration-property";
+
+        public static final String EXTEND_CONFIGURATION = "extend-configuration-property";
+
+        public static final String SET_CONFIGURATION = "set-configuration-property";
+
+        public static final String COLLAPSE = "collapse-property";
+
+        public static final String COLLAPSE_ALL = "collapse-all-properties";
+
+        private static final List<String> KINDS =
+            Arrays.asList( DEFINE, EXTEND, SET, SET_FALLBACK, DEFINE_CONFIGURATION, EXTEND_CONFIGURATION,
+                           SET_CONFIGURATION, COLLAPSE, COLLAPSE_ALL );
+
+        private final String kind;
+
+        private final String name;
+
+        private final String module;
+
+        private final List<String> values;
+
+        private final boolean conditional;
+
+        private String conditionProperty;
+
+        private final List<String> conditionValues = new ArrayList<String>();
+
+        Property( Xpp3Dom xml, String module )
+        {
+            this.kind = xml.getName();
+            this.name = xml.getAttribute( "name" );
+            this.module = module;
+            String values = xml.getAttribute( "values" );
+            this.values = split( values != null ? values : xml.getAttribute( "value" ) );
+            this.conditional = xml.getChildCount() > 0;
+            if ( xml.getChildCount() == 1 )
+            {
+                Xpp3Dom condition = xml.getChild( 0 );
+                if ( "any".equals( condition.getName() ) )
+                {
+                    for ( Xpp3Dom any : condition.getChildren() )
+                    {
+                        addCondition( any );
+                    }
+                }
+                else
+                {
+                    addCondition( condition );
+                }
+            }
+            if ( conditionProperty == null || conditionProperty.length() == 0 )
+            {
+                conditionProperty = null;
+                conditionValues.clear();
+            }
+        }
+
+        /**
+         * Keep track of a <code>when-property-is</code> condition, or forget all conditions when they are not all
+         * about the same property
+         */
+        private void addCondition( Xpp3Dom condition )
+        {
+            String property = condition.getAttribute( "name" );
+            if ( !"when-property-is".equals( condition.getName() ) || property == null
+                || ( conditionProperty != null && !conditionProperty.equals( property ) ) )
+            {
+                conditionProperty = "";
+                return;
+            }
+            conditionProperty = property;
+            conditionValues.add( condition.getAttribute( "value" ) );
+        }
+
+        static boolean isProperty( String tag )
+        {
+            return KINDS.contains( tag );
+        }
+
+        /**
+         * @return the declaring element name, for example {@link #DEFINE}
+         */
+        public String getKind()
+        {
+            return kind;
+        }
+
+        /**
+         * @return the property name, <code>null</code> for {@link #COLLAPSE_ALL}
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the declaring module
+         */
+        public String getModule()
+        {
+            return module;
+        }
+
+        /**
+         * @return declared values, or value patterns for {@link #COLLAPSE}
+         */
+        public List<String> getValues()
+        {
+            return values;
+        }
+
+        /**
+         * @return <code>true</code> if the declaration only applies under conditions, as a <code>set-property</code>
+         * with <code>when-property-is</code> children
+         */
+        public boolean isConditional()
+        {
+            return conditional;
+        }
+
+        /**
+         * @return the property a conditional declaration depends on, when its condition is a
+         * <code>when-property-is</code>, or an <code>any</code> of them, on a single property; <code>null</code> when
+         * the declaration is not conditional or has other conditions
+         */
+        public String getConditionProperty()
+        {
+            return conditionProperty;
+        }
+
+        /**
+         * @return the values of the {@link #getConditionProperty() condition property} the declaration applies to
+         */
+        public List<String> getConditionValues()
+        {
+            return conditionValues;
+        }
+
+        void write( JsonWriter json )
+            throws IOException
+        {
+            json.beginObject().name( "kind" ).value( kind ).name( "name" ).value( name );
+            json.name( "values" );
+            writeStrings( json, values );
+            if ( conditional )
+            {
+                json.name( "conditional" ).value( true );
+            }
+            json.endObject();
+        }
+
+        @Override
+        public String toString()
+        {
+            return kind + " " + name + "=" + values;
+        }
+    }
+
+    /**
+     * A deferred binding rule, with its conditions rendered as text, for example
+     * <code>when-type-is com.acme.Foo</code> or <code>any(when-property-is user.agent=ie8, ...)</code>
+     */
+    public static class Rule
+    {
+        public static final String REPLACE_WITH = "replace-with";
+
+        public static final String GENERATE_WITH = "generate-with";
+
+        private final String kind;
+
+        private final String className;
+
+        private final List<String> conditions = new ArrayList<String>();
+
+        Rule( Xpp3Dom xml )
+        {
+            this.kind = xml.getName();
+            this.className = xml.getAttribute( "class" );
+            for ( Xpp3Dom condition : getChildren( xml ) )
+            {
+                conditions.add( getCondition( condition ) );
+            }
+        }
+
+        private static String getCondition( Xpp3Dom xml )
+        {
+            StringBuilder condition = new StringBuilder( xml.getName() );
+            if ( xml.getChildCount() > 0 )
+            {
+                condition.append( '(' );
+                for ( int i = 0; i < xml.getChildCount(); i++ )
+                {
+                    condition.append( i > 0 ? ", " : "" ).append( getCondition( xml.getChild( i ) ) );
+                }
+                return condition.append( ')' ).toString();
+            }
+            if ( xml.getAttribute( "class" ) != null )
+            {
+                condition.append( ' ' ).append( xml.getAttribute( "class" ) );
+            }
+            else if ( xml.getAttribute( "name" ) != null )
+            {
+                condition.append( ' ' ).append( xml.getAttribute( "name" ) );
+                if ( xml.getAttribute( "value" ) != null )
+                {
+                    condition.append( '=' ).append( xml.getAttribute( "value" ) );
+                }
+            }
+            return condition.toString();
+        }
+
+        /**
+         * @return {@link #REPLACE_WITH} or {@link #GENERATE_WITH}
+         */
+        public String getKind()
+        {
+            return kind;
+        }
+
+        /**
+         * @return the replacement or generator class
+         */
+        public String getClassName()
+        {
+            return className;
+        }
+
+        /**
+         * @return conditions that must all match for the rule to apply
+         */
+        public List<String> getConditions()
+        {
+            return Collections.unmodifiableList( conditions );
+        }
+
+        void write( JsonWriter json )
+            throws IOException
+        {
+            json.beginObject().name( "kind" ).value( kind ).name( "class" ).value( className );
+            json.name( "conditions" );
+            writeStrings( json, conditions );
+            json.endObject();
+        }
+
+        @Override
+        public String toString()
+        {
+            return kind + " " + className + " " + conditions;
+        }
+    }
+}
@@ -20,13 +20,17 @@ package org.codehaus.mojo.gwt;
  */
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.mojo.gwt.GwtModuleGraph.Node;
+import org.codehaus.mojo.gwt.GwtModuleGraph.PathFilter;
 import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
 import org.codehaus.plexus.util.DirectoryScanner;
 
@@ -59,7 +63,8 @@ abstract class GwtResourcesBaseMojo
     }
 
     /**
-     * Collect GWT java source code and module descriptor to be added as resources.
+     * Collect GWT java source code and module descriptor to be added as resources, for the configured modules and
+     * the modules they inherit from the project sources and resources.
      */
     protected Collection<ResourceFile> getAllResourceFiles()
         throws MojoExecutionException, MojoFailureException
@@ -74,38 +79,44 @@ abstract class GwtResourcesBaseMojo
                 sourcesAndResourcesPath.add( resource.getDirectory() );
             }
 
+            Set<String> collected = new HashSet<String>();
             for ( String name : getModules() )
             {
-                GwtModule module = readModule( name );
-
-                sourcesAndResources.add( getDescriptor( module, sourcesAndResourcesPath ) );
-                int count = 1;
-
-                for ( String source : module.getSources() )
-                {
-                    getLog().debug( "GWT sources from " + name + '.' + source );
-                    Collection<ResourceFile> files = getAsResources( module, source, sourcesAndResourcesPath,
-                                                                     "**/*.java" );
-                    sourcesAndResources.addAll( files );
-                    count += files.size();
-
-                    Collection<ResourceFile> uifiles = getAsResources( module, source, sourcesAndResourcesPath,
-                            "**/*.ui.xml" );
-                    sourcesAndResources.addAll( uifiles );
-                    count += uifiles.size();
-                }
-                for ( String source : module.getSuperSources() )
+                GwtModuleGraph graph = getModuleGraph( name );
+                int count = 0;
+                for ( Node module : graph.getNodes() )
                 {
-                    getLog().debug( "GWT super-sources from " + name + '.' + source );
-                    Collection<ResourceFile> files = getAsResources( module, source, sourcesAndResourcesPath,
-                                                                     "**/*.java" );
-                    sourcesAndResources.addAll( files );
-                    count += files.size();
-
-                    Collection<ResourceFile> uifiles = getAsResources( module, source, sourcesAndResourcesPath,
-                            "**/*.ui.xml" );
-                    sourcesAndResources.addAll( uifiles );
-                    count += uifiles.size();
+                    ResourceFile descriptor = getDescriptor( module.getName(), sourcesAndResourcesPath );
+                    if ( descriptor == null && module == graph.getRoot() )
+                    {
+                        throw new MojoExecutionException( "Failed to retrieve GWT descriptor in project sources "
+                            + name.replace( '.', '/' ) + GWT_MODULE_EXTENSION );
+                    }
+                    // inherited modules from dependencies or the GWT SDK are not part of the project sources
+                    if ( descriptor == null || !collected.add( module.getName() ) )
+                    {
+                        continue;
+                    }
+                    sourcesAndResources.add( descriptor );
+                    count++;
+
+                    List<PathFilter> sources = new ArrayList<PathFilter>( module.getSources() );
+                    sources.addAll( module.getSuperSources() );
+                    for ( PathFilter source : sources )
+                    {
+                        getLog().debug( "GWT sources from " + module.getName() + '.' + source );
+                        Collection<ResourceFile> files =
+                            getAsResources( module.getPackage(), source.getPath(), sourcesAndResourcesPath,
+                                            "**/*.java" );
+                        sourcesAndResources.addAll( files );
+                        count += files.size();
+
+                        Collection<ResourceFile> uifiles =
+                            getAsResources( module.getPackage(), source.getPath(), sourcesAndResourcesPath,
+                                            "**/*.ui.xml" );
+                        sourcesAndResources.addAll( uifiles );
+                        count += uifiles.size();
+                    }
                 }
                 getLog().info( count + " source files from GWT module " + name );
             }
@@ -122,10 +133,11 @@ abstract class GwtResourcesBaseMojo
      * @param include TODO
      * @param name
      */
-    private Collection<ResourceFile> getAsResources( GwtModule module, String source, Set<String> paths, String include )
+    private Collection<ResourceFile> getAsResources( String modulePackage, String source, Set<String> paths,
+                                                     String include )
         throws MojoExecutionException
     {
-        String pattern = module.getPackage().replace( '.', '/' );
+        String pattern = modulePackage.replace( '.', '/' );
 
         Set<ResourceFile> sourcesAndResources = new HashSet<ResourceFile>();
 
@@ -151,10 +163,12 @@ abstract class GwtResourcesBaseMojo
         return sourcesAndResources;
     }
 
-    private ResourceFile getDescriptor( GwtModule module, Set<String> paths )
-        throws MojoExecutionException
+    /**
+     * @return the module descriptor from the project sources and resources, <code>null</code> if not found there
+     */
+    private ResourceFile getDescriptor( String module, Set<String> paths )
     {
-        String moduleFilePath = module.getName().replace( '.', '/' ) + GWT_MODULE_EXTENSION;
+        String moduleFilePath = module.replace( '.', '/' ) + GWT_MODULE_EXTENSION;
         for ( String path : paths )
         {
             File basedir = new File( path );
@@ -164,7 +178,7 @@ abstract class GwtResourcesBaseMojo
                 return new ResourceFile( basedir, moduleFilePath );
             }
         }
-        throw new MojoExecutionException( "Failed to retrieve GWT descriptor in project sources " + moduleFilePath );
+        return null;
     }
 
 }
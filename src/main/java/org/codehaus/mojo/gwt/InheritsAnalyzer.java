@@ -0,0 +1,337 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.codehaus.mojo.gwt.GwtModuleGraph.Node;
+import org.codehaus.mojo.gwt.GwtModuleGraph.PathFilter;
+import org.codehaus.mojo.gwt.GwtModuleGraph.Property;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.mojo.gwt.utils.TypeDependencies;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Find the <code>&lt;inherits&gt;</code> of the project modules that bring no type used by the application into the
+ * compilation. An inherits is unused when none of the modules only reachable through it has a source or super-source
+ * path containing a type referenced from the entry points, and none of them configures the compilation otherwise:
+ * entry points, servlets, declared public paths, properties set, extended or collapsed, deferred binding rules,
+ * linkers, scripts or stylesheets. Removing such a module would change the compiled output even if none of its
+ * types is referenced.
+ * <p>
+ * Types are referenced at class level, as compiled by javac, so types only referenced from JSNI methods or created
+ * by generators are not seen and their modules may be reported as unused.
+ *
+ * @since 2.5.0
+ */
+public class InheritsAnalyzer
+{
+    /** property declarations that configure the compilation rather than declare what a module provides */
+    private static final List<String> CONFIGURATION =
+        Arrays.asList( Property.SET, Property.SET_FALLBACK, Property.EXTEND, Property.SET_CONFIGURATION,
+                       Property.EXTEND_CONFIGURATION, Property.COLLAPSE, Property.COLLAPSE_ALL );
+
+    private final GwtModuleGraph graph;
+
+    private final GwtModuleReader reader;
+
+    /**
+     * @param graph the graph of the module to analyze
+     * @param reader the reader the graph has been built with
+     */
+    public InheritsAnalyzer( GwtModuleGraph graph, GwtModuleReader reader )
+    {
+        this.graph = graph;
+        this.reader = reader;
+    }
+
+    /**
+     * @return the entry points of all the modules of the graph, where the referenced types closure starts
+     */
+    public List<String> getEntryPoints()
+    {
+        List<String> entryPoints = new ArrayList<String>();
+        for ( Node node : graph.getNodes() )
+        {
+            entryPoints.addAll( node.getEntryPoints() );
+        }
+        return entryPoints;
+    }
+
+    /**
+     * @param types dependencies of the compiled classes
+     * @return the unused inherits of the modules read from the project, as opposed to modules read from archives
+     */
+    public List<UnusedInherits> analyze( TypeDependencies types )
+        throws IOException, GwtModuleReaderException
+    {
+        Set<String> referenced = types.getReferencedTypes( getEntryPoints() );
+        List<UnusedInherits> unused = new ArrayList<UnusedInherits>();
+        for ( Node node : graph.getNodes() )
+        {
+            if ( !isProjectModule( node ) )
+            {
+                continue;
+            }
+            for ( String inherited : node.getInherits() )
+            {
+                List<String> removed = getRemovedModules( node.getName(), inherited );
+                if ( removed.isEmpty() || isUsed( removed, referenced, types ) )
+                {
+                    continue;
+                }
+                PermutationEstimate estimate = new PermutationEstimate( without( node.getName(), inherited ) );
+                unused.add( new UnusedInherits( node.getName(), inherited, removed, estimate ) );
+            }
+        }
+        return unused;
+    }
+
+    private static boolean isProjectModule( Node node )
+    {
+        return node.isResolved() && node.getOrigin() != null && node.getOrigin().indexOf( "!/" ) < 0;
+    }
+
+    /**
+     * @return the modules that are only part of the graph through an inherits
+     */
+    private List<String> getRemovedModules( String module, String inherited )
+    {
+        Set<String> reachable = new HashSet<String>();
+        LinkedList<Node> queue = new LinkedList<Node>();
+        reachable.add( graph.getRoot().getName() );
+        queue.add( graph.getRoot() );
+        while ( !queue.isEmpty() )
+        {
+            Node node = queue.removeFirst();
+            for ( String name : node.getInherits() )
+            {
+                if ( node.getName().equals( module ) && name.equals( inherited ) )
+                {
+                    continue;
+                }
+                if ( reachable.add( name ) )
+                {
+                    queue.add( graph.getNode( name ) );
+                }
+            }
+        }
+        List<String> removed = new ArrayList<String>();
+        for ( Node node : graph.getNodes() )
+        {
+            if ( !reachable.contains( node.getName() ) )
+            {
+                removed.add( node.getName() );
+            }
+        }
+        return removed;
+    }
+
+    private boolean isUsed( List<String> modules, Set<String> referenced, TypeDependencies types )
+    {
+        for ( String module : modules )
+        {
+            if ( isUsed( graph.getNode( module ), referenced, types ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isUsed( Node node, Set<String> referenced, TypeDependencies types )
+    {
+        if ( !node.isResolved() || !node.getEntryPoints().isEmpty() || !node.getServlets().isEmpty() )
+        {
+            // unknown modules are assumed to be used
+            return true;
+        }
+        if ( !node.getRules().isEmpty() || !node.getLinkers().isEmpty() || !node.getScripts().isEmpty()
+            || !node.getStylesheets().isEmpty() )
+        {
+            return true;
+        }
+        for ( PathFilter path : node.getPublicPaths() )
+        {
+            if ( path.isDeclared() )
+            {
+                return true;
+            }
+        }
+        for ( Property property : node.getProperties() )
+        {
+            if ( CONFIGURATION.contains( property.getKind() ) )
+            {
+                return true;
+            }
+        }
+        for ( PathFilter source : node.getSources() )
+        {
+            String prefix = getPackage( node, source );
+            for ( String type : referenced )
+            {
+                if ( isInPackage( type, prefix ) )
+                {
+                    return true;
+                }
+            }
+        }
+        for ( PathFilter superSource : node.getSuperSources() )
+        {
+            String root = getPackage( node, superSource );
+            for ( String type : referenced )
+            {
+                int nested = type.indexOf( '$' );
+                String source = nested > 0 ? type.substring( 0, nested ) : type;
+                if ( types.hasFile( root.length() > 0 ? root + '.' + source : source, ".java" ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the package a source path of a module maps to
+     */
+    private static String getPackage( Node node, PathFilter path )
+    {
+        String relative = path.getPath().replace( '/', '.' );
+        while ( relative.endsWith( "." ) )
+        {
+            relative = relative.substring( 0, relative.length() - 1 );
+        }
+        if ( relative.length() == 0 )
+        {
+            return node.getPackage();
+        }
+        return node.getPackage().length() == 0 ? relative : node.getPackage() + '.' + relative;
+    }
+
+    private static boolean isInPackage( String type, String prefix )
+    {
+        if ( prefix.length() == 0 )
+        {
+            return true;
+        }
+        return type.startsWith( prefix ) && type.length() > prefix.length() && type.charAt( prefix.length() ) == '.';
+    }
+
+    /**
+     * @return the graph of the root module if a module didn't declare an inherits
+     */
+    private GwtModuleGraph without( final String module, String inherited )
+        throws GwtModuleReaderException
+    {
+        GwtModule original = reader.readModule( module );
+        Xpp3Dom xml = new Xpp3Dom( original.getXml() );
+        for ( int i = xml.getChildCount() - 1; i >= 0; i-- )
+        {
+            Xpp3Dom child = xml.getChild( i );
+            if ( "inherits".equals( child.getName() ) && inherited.equals( child.getAttribute( "name" ) ) )
+            {
+                xml.removeChild( i );
+            }
+        }
+        final GwtModule pruned = new GwtModule( module, xml, reader );
+        pruned.setSourceFile( original.getSourceFile() );
+        return GwtModuleGraph.build( graph.getRoot().getName(), new GwtModuleReader()
+        {
+            public GwtModule readModule( String name )
+                throws GwtModuleReaderException
+            {
+                return name.equals( module ) ? pruned : reader.readModule( name );
+            }
+
+            public List<String> getGwtModules()
+            {
+                return reader.getGwtModules();
+            }
+        } );
+    }
+
+    /**
+     * An inherits that could be removed
+     */
+    public static class UnusedInherits
+    {
+        private final String module;
+
+        private final String inherited;
+
+        private final List<String> removedModules;
+
+        private final PermutationEstimate estimate;
+
+        UnusedInherits( String module, String inherited, List<String> removedModules, PermutationEstimate estimate )
+        {
+            this.module = module;
+            this.inherited = inherited;
+            this.removedModules = Collections.unmodifiableList( removedModules );
+            this.estimate = estimate;
+        }
+
+        /**
+         * @return the module declaring the inherits
+         */
+        public String getModule()
+        {
+            return module;
+        }
+
+        /**
+         * @return the inherited module
+         */
+        public String getInherited()
+        {
+            return inherited;
+        }
+
+        /**
+         * @return the modules that would no longer be part of the compilation without the inherits
+         */
+        public List<String> getRemovedModules()
+        {
+            return removedModules;
+        }
+
+        /**
+         * @return the permutations of the analyzed module without the inherits
+         */
+        public PermutationEstimate getEstimate()
+        {
+            return estimate;
+        }
+
+        @Override
+        public String toString()
+        {
+            return module + " inherits " + inherited + " (" + removedModules.size() + " modules)";
+        }
+    }
+}
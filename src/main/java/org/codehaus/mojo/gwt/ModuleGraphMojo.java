@@ -0,0 +1,79 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+
+/**
+ * Export the resolved inheritance graph of the project GWT modules as JSON: inherited modules, source and public
+ * paths, properties and deferred binding rules, with the file or jar each module is read from.
+ *
+ * @goal module-graph
+ * @requiresDependencyResolution compile
+ * @since 2.5.0
+ */
+public class ModuleGraphMojo
+    extends AbstractGwtModuleMojo
+{
+    /**
+     * Directory where to write a <code>&lt;module&gt;.json</code> file per GWT module.
+     *
+     * @parameter expression="${gwt.moduleGraphDirectory}" default-value="${project.build.directory}/gwt-module-graph"
+     * @since 2.5.0
+     */
+    private File moduleGraphDirectory;
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    public void execute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        for ( String name : getModules() )
+        {
+            File file = new File( moduleGraphDirectory, name + ".json" );
+            try
+            {
+                GwtModuleGraph graph = getModuleGraph( name );
+                graph.write( file );
+                getLog().info( name + ": " + graph.getNodes().size() + " modules, graph written to " + file );
+                if ( !graph.getUnresolved().isEmpty() )
+                {
+                    getLog().warn( name + " inherits modules that were not found: " + graph.getUnresolved() );
+                }
+            }
+            catch ( GwtModuleReaderException e )
+            {
+                throw new MojoExecutionException( e.getMessage(), e );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Failed to write module graph " + file, e );
+            }
+        }
+    }
+}
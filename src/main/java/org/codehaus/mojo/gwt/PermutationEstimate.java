@@ -0,0 +1,366 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.codehaus.mojo.gwt.GwtModuleGraph.Property;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Number of permutations the GWT compiler will compile for a module, computed from the deferred binding property
+ * space of its {@link GwtModuleGraph}: the values of each binding property once extended and restricted, grouped by
+ * <code>collapse-property</code> rules, or a single permutation with <code>collapse-all-properties</code>.
+ * <p>
+ * Properties with conditional values, as set by <code>set-property</code> with <code>when-property-is</code>
+ * conditions on another property, are counted together with that property: each of its values brings as many
+ * permutations as the dependent properties have values under it, so a property pinned to a single value by every
+ * condition doesn't multiply permutations. Properties with other conditions are counted with their largest set of
+ * values. The estimate is a lower bound when some inherited modules could not be found.
+ *
+ * @since 2.5.0
+ */
+public class PermutationEstimate
+{
+    private final String module;
+
+    /** values count by property, for properties with more than one value */
+    private final Map<String, Integer> values = new LinkedHashMap<String, Integer>();
+
+    /** permutations count by property, once values are collapsed */
+    private final Map<String, Integer> permutations = new LinkedHashMap<String, Integer>();
+
+    private final boolean collapseAll;
+
+    private final boolean complete;
+
+    public PermutationEstimate( GwtModuleGraph graph )
+    {
+        this.module = graph.getRoot().getName();
+        this.complete = graph.getUnresolved().isEmpty();
+
+        Map<String, List<Property>> conditionals = new LinkedHashMap<String, List<Property>>();
+        Map<String, List<List<String>>> collapsed = new LinkedHashMap<String, List<List<String>>>();
+        boolean all = false;
+        for ( Property property : graph.getDeclarations() )
+        {
+            String kind = property.getKind();
+            if ( Property.SET.equals( kind ) && property.isConditional() )
+            {
+                add( conditionals, property.getName(), property );
+            }
+            else if ( Property.COLLAPSE.equals( kind ) )
+            {
+                add( collapsed, property.getName(), property.getValues() );
+            }
+            else if ( Property.COLLAPSE_ALL.equals( kind ) )
+            {
+                all = true;
+            }
+        }
+        this.collapseAll = all;
+
+        // properties with conditional values, by the property their values depend on
+        Map<String, List<String>> dependents = new LinkedHashMap<String, List<String>>();
+        Map<String, List<String>> space = new LinkedHashMap<String, List<String>>( graph.getPropertyValues() );
+        for ( Map.Entry<String, List<Property>> conditional : conditionals.entrySet() )
+        {
+            String name = conditional.getKey();
+            String condition = getCondition( conditional.getValue() );
+            if ( condition != null && !condition.equals( name ) && space.containsKey( name )
+                && space.containsKey( condition ) && !conditionals.containsKey( condition ) )
+            {
+                add( dependents, condition, name );
+                continue;
+            }
+            // conditions we can't follow: count the largest set of values as if the property was independent
+            List<String> largest = space.get( name );
+            for ( Property property : conditional.getValue() )
+            {
+                if ( largest == null || property.getValues().size() > largest.size() )
+                {
+                    largest = property.getValues();
+                }
+            }
+            space.put( name, largest );
+        }
+
+        for ( Map.Entry<String, List<String>> property : space.entrySet() )
+        {
+            String name = property.getKey();
+            List<String> propertyValues = property.getValue();
+            List<String> names = dependents.get( name );
+            if ( names == null )
+            {
+                if ( isDependent( name, dependents ) || propertyValues.size() < 2 )
+                {
+                    continue;
+                }
+                values.put( name, Integer.valueOf( propertyValues.size() ) );
+                permutations.put( name, Integer.valueOf( collapse( propertyValues, collapsed.get( name ) ) ) );
+                continue;
+            }
+
+            // count the values of the dependent properties for each value of the property they depend on; values of
+            // the property in the same collapse group compile together, as many times as the largest of them needs
+            long soft = 0;
+            Map<Object, Long> groups = new LinkedHashMap<Object, Long>();
+            for ( String value : propertyValues )
+            {
+                long valueSoft = 1;
+                long valueHard = 1;
+                for ( String dependent : names )
+                {
+                    List<String> dependentValues = getValues( dependent, value, space, conditionals );
+                    valueSoft *= dependentValues.size();
+                    valueHard *= collapse( dependentValues, collapsed.get( dependent ) );
+                }
+                soft += valueSoft;
+                int group = collapsed.containsKey( name ) ? getGroup( value, collapsed.get( name ) ) : -1;
+                Object key = group < 0 ? value : Integer.valueOf( group );
+                Long hard = groups.get( key );
+                groups.put( key, Long.valueOf( hard == null ? valueHard : Math.max( hard.longValue(), valueHard ) ) );
+            }
+            long hard = 0;
+            for ( Long count : groups.values() )
+            {
+                hard += count.longValue();
+            }
+            if ( soft < 2 )
+            {
+                continue;
+            }
+            String key = name + ", " + StringUtils.join( names.iterator(), ", " );
+            values.put( key, Integer.valueOf( (int) Math.min( Integer.MAX_VALUE, soft ) ) );
+            permutations.put( key, Integer.valueOf( (int) Math.min( Integer.MAX_VALUE, hard ) ) );
+        }
+    }
+
+    private static <T> void add( Map<String, List<T>> map, String key, T value )
+    {
+        List<T> list = map.get( key );
+        if ( list == null )
+        {
+            list = new ArrayList<T>();
+            map.put( key, list );
+        }
+        list.add( value );
+    }
+
+    /**
+     * @return the single property all the conditional declarations depend on, <code>null</code> if they depend on
+     * several properties or have other conditions
+     */
+    private static String getCondition( List<Property> declarations )
+    {
+        String condition = null;
+        for ( Property property : declarations )
+        {
+            String current = property.getConditionProperty();
+            if ( current == null || ( condition != null && !condition.equals( current ) ) )
+            {
+                return null;
+            }
+            condition = current;
+        }
+        return condition;
+    }
+
+    private static boolean isDependent( String name, Map<String, List<String>> dependents )
+    {
+        for ( List<String> names : dependents.values() )
+        {
+            if ( names.contains( name ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the values of a dependent property when the property it depends on has the given value: the values of
+     * the last matching conditional <code>set-property</code>, or its unconditional values
+     */
+    private static List<String> getValues( String dependent, String value, Map<String, List<String>> space,
+                                           Map<String, List<Property>> conditionals )
+    {
+        List<String> result = space.get( dependent );
+        for ( Property property : conditionals.get( dependent ) )
+        {
+            if ( property.getConditionValues().contains( value ) )
+            {
+                result = property.getValues();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return number of values once values matching the same collapse group are counted as one
+     */
+    private static int collapse( List<String> values, List<List<String>> groups )
+    {
+        if ( groups == null )
+        {
+            return values.size();
+        }
+        Set<Integer> matched = new HashSet<Integer>();
+        int count = 0;
+        for ( String value : values )
+        {
+            int group = getGroup( value, groups );
+            if ( group < 0 )
+            {
+                count++;
+            }
+            else if ( matched.add( Integer.valueOf( group ) ) )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int getGroup( String value, List<List<String>> groups )
+    {
+        for ( int i = 0; i < groups.size(); i++ )
+        {
+            for ( String pattern : groups.get( i ) )
+            {
+                if ( matches( pattern, value ) )
+                {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param pattern a value, possibly with <code>*</code> wildcards
+     */
+    static boolean matches( String pattern, String value )
+    {
+        if ( pattern.indexOf( '*' ) < 0 )
+        {
+            return pattern.equals( value );
+        }
+        StringBuilder regex = new StringBuilder();
+        for ( String part : pattern.split( "\\*", -1 ) )
+        {
+            if ( regex.length() > 0 )
+            {
+                regex.append( ".*" );
+            }
+            regex.append( Pattern.quote( part ) );
+        }
+        return value.matches( regex.toString() );
+    }
+
+    public String getModule()
+    {
+        return module;
+    }
+
+    /**
+     * @return the number of permutations the compiler will compile
+     */
+    public int getPermutations()
+    {
+        if ( collapseAll )
+        {
+            return 1;
+        }
+        return product( permutations );
+    }
+
+    /**
+     * @return the number of property combinations, compiled as soft permutations when properties are collapsed
+     */
+    public int getSoftPermutations()
+    {
+        return product( values );
+    }
+
+    private static int product( Map<String, Integer> counts )
+    {
+        long product = 1;
+        for ( Integer count : counts.values() )
+        {
+            product = Math.min( Integer.MAX_VALUE, product * count.intValue() );
+        }
+        return (int) product;
+    }
+
+    /**
+     * @return permutations count by property, for the properties that multiply permutations
+     */
+    public Map<String, Integer> getProperties()
+    {
+        return Collections.unmodifiableMap( permutations );
+    }
+
+    /**
+     * @return <code>false</code> if some inherited modules were not found, so that some properties may be missing
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder description = new StringBuilder();
+        description.append( getPermutations() ).append( getPermutations() > 1 ? " permutations" : " permutation" );
+        if ( collapseAll )
+        {
+            description.append( ", all properties collapsed" );
+        }
+        String separator = " (";
+        for ( Map.Entry<String, Integer> property : permutations.entrySet() )
+        {
+            description.append( separator ).append( property.getKey() ).append( ": " ).append( property.getValue() );
+            int count = values.get( property.getKey() ).intValue();
+            if ( count != property.getValue().intValue() )
+            {
+                description.append( " of " ).append( count );
+            }
+            separator = ", ";
+        }
+        if ( !permutations.isEmpty() )
+        {
+            description.append( ')' );
+        }
+        if ( !complete )
+        {
+            description.append( ", at least as some inherited modules were not found" );
+        }
+        return description.toString();
+    }
+}
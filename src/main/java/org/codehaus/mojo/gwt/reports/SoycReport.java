@@ -35,6 +35,8 @@ import org.codehaus.mojo.gwt.AbstractGwtMojo;
 import org.codehaus.mojo.gwt.ClasspathBuilder;
 import org.codehaus.mojo.gwt.GwtModule;
 import org.codehaus.mojo.gwt.GwtModuleReader;
+import org.codehaus.mojo.gwt.shell.ClassDataSharing;
+import org.codehaus.mojo.gwt.shell.ForkClasspath;
 import org.codehaus.mojo.gwt.shell.JavaCommand;
 import org.codehaus.mojo.gwt.shell.JavaCommandRequest;
 import org.codehaus.mojo.gwt.utils.DefaultGwtModuleReader;
@@ -117,6 +119,23 @@ public class SoycReport
      * @since 2.1.0-1
      */
     private boolean skip;
+
+    /**
+     * Whether the SOYC dashboard JVM shares the GWT SDK classes through an Application Class-Data Sharing archive.
+     *
+     * @parameter expression="${gwt.classDataSharing}" default-value="false"
+     * @since 2.5.0
+     */
+    private boolean classDataSharing;
+
+    /**
+     * Directory where class data sharing archives are stored, shared by all builds using the same JVM and GWT SDK.
+     *
+     * @parameter expression="${gwt.classDataSharingDirectory}"
+     *            default-value="${user.home}/.cache/gwt-maven-plugin/cds"
+     * @since 2.5.0
+     */
+    private File classDataSharingDirectory;
     
     /**
      * Internationalization component.
@@ -255,7 +274,11 @@ public class SoycReport
                 String module = path.substring( 0, path.indexOf( File.separatorChar ) );
                 JavaCommandRequest javaCommandRequest = new JavaCommandRequest()
                     .setClassName( "com.google.gwt.soyc.SoycDashboard" )
-                    .setLog( getLog() );
+                    .setLog( getLog() )
+                    .setForkClasspath( new ForkClasspath( new File( project.getBuild().getDirectory(),
+                                                                    "gwt-classpath" ), ForkClasspath.AUTO, getLog() ) )
+                    .setClassDataSharing( classDataSharing ? new ClassDataSharing( classDataSharingDirectory,
+                                                                                   getLog() ) : null );
                 JavaCommand cmd = new JavaCommand( javaCommandRequest ).withinClasspath( gwtDevHelper.getGwtDevJar() )
                     .arg( "-out" ).arg( reportingOutputDirectory.getAbsolutePath() + File.separatorChar + module );
 
@@ -20,6 +20,8 @@ package org.codehaus.mojo.gwt.shell;
  */
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -32,11 +34,12 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.codehaus.mojo.gwt.AbstractGwtModuleMojo;
+import org.codehaus.mojo.gwt.GwtModule;
+import org.codehaus.mojo.gwt.utils.FingerprintManifest;
 import org.codehaus.plexus.util.Os;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineTimeOutException;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
@@ -159,6 +162,203 @@ public abstract class AbstractGwtShellMojo
      */
     private File persistentunitcachedir;
 
+    /**
+     * Comma-separated user agents to compile, for fast development builds. The modules are then compiled through a
+     * generated module restricting the <code>user.agent</code> property and collapsing all permutations into one.
+     * <p>
+     * Can be set from command line using '-Dgwt.userAgents=...', for example '-Dgwt.userAgents=gecko1_8'
+     * </p>
+     *
+     * @parameter expression="${gwt.userAgents}"
+     * @since 2.5.0
+     */
+    private String userAgents;
+
+    /**
+     * Comma-separated locales to compile, for fast development builds. The modules are then compiled through a
+     * generated module restricting the <code>locale</code> property and collapsing all permutations into one.
+     * <p>
+     * Can be set from command line using '-Dgwt.locales=...', for example '-Dgwt.locales=en'
+     * </p>
+     *
+     * @parameter expression="${gwt.locales}"
+     * @since 2.5.0
+     */
+    private String locales;
+
+    /**
+     * How to pass the classpath to forked JVMs, as large classpaths may exceed the command line length limit:
+     * <ul>
+     * <li><code>auto</code>: a Java 9+ argument file when the forked JVM supports it, otherwise a manifest-only jar
+     * for tools that don't scan the classpath, otherwise on the command line</li>
+     * <li><code>argfile</code>: a Java 9+ argument file</li>
+     * <li><code>jar</code>: a manifest-only jar, only for tools that don't scan the classpath</li>
+     * <li><code>inline</code>: on the command line</li>
+     * </ul>
+     * Files are written under <code>target/gwt-classpath</code> and reused by forks with the same classpath.
+     * <p>
+     * Can be set from command line using '-Dgwt.forkClasspath=...'
+     * </p>
+     *
+     * @parameter expression="${gwt.forkClasspath}" default-value="auto"
+     * @since 2.5.0
+     */
+    private String forkClasspath;
+
+    /**
+     * Whether to run short-lived GWT tools (I18N and CSS interfaces generators) in the Maven JVM rather than in a
+     * forked JVM, in a classloader reused for all executions of the build. This temporarily replaces the Maven JVM
+     * security manager and standard output, so it is disabled by default. Tools are forked anyway when the JVM
+     * doesn't allow to trap <code>System.exit</code> (Java 18+), in a parallel build (as the standard output is
+     * shared by all threads), and when a <code>jvm</code>, a <code>timeOut</code> or JVM arguments other than the
+     * heap size are set.
+     * <p>
+     * Can be set from command line using '-Dgwt.inProcess=true'
+     * </p>
+     *
+     * @parameter expression="${gwt.inProcess}" default-value="false"
+     * @since 2.5.0
+     */
+    private boolean inProcess;
+
+    /**
+     * Whether Maven builds projects in parallel (<code>-T</code>).
+     *
+     * @parameter expression="${session.parallel}" default-value="false"
+     * @readonly
+     * @since 2.5.0
+     */
+    private boolean parallelBuild;
+
+    /**
+     * Directory where the full output of forked JVMs is written, one file per command.
+     *
+     * @parameter expression="${gwt.forkLogDirectory}" default-value="${project.build.directory}/gwt-logs"
+     * @since 2.5.0
+     */
+    private File forkLogDirectory;
+
+    /**
+     * Max number of informational lines per second written to the console from forked JVMs, 0 (default) for no
+     * limit. Other lines are only written to the log files in <code>forkLogDirectory</code>, warnings and errors are
+     * always written to the console. Forked JVMs output is written to the console from a dedicated thread, so that
+     * verbose log levels don't slow down the forked JVMs.
+     * <p>
+     * Can be set from command line using '-Dgwt.consoleLinesPerSecond=...'
+     * </p>
+     *
+     * @parameter expression="${gwt.consoleLinesPerSecond}" default-value="0"
+     * @since 2.5.0
+     */
+    private int consoleLinesPerSecond;
+
+    /**
+     * Whether forked JVMs share the GWT SDK classes through an Application Class-Data Sharing archive, created on
+     * first use. Requires a Java 11+ forked JVM. Only the jars before the first directory of the fork classpath are
+     * archived: as the project source and output directories come first otherwise, the GWT compiler only shares the
+     * SDK classes with <code>gwtSdkFirstInClasspath</code> also enabled.
+     * <p>
+     * Can be set from command line using '-Dgwt.classDataSharing=true'
+     * </p>
+     *
+     * @parameter expression="${gwt.classDataSharing}" default-value="false"
+     * @since 2.5.0
+     */
+    private boolean classDataSharing;
+
+    /**
+     * Directory where class data sharing archives are stored, shared by all builds using the same JVM and GWT SDK.
+     *
+     * @parameter expression="${gwt.classDataSharingDirectory}"
+     *            default-value="${user.home}/.cache/gwt-maven-plugin/cds"
+     * @since 2.5.0
+     */
+    private File classDataSharingDirectory;
+
+    /**
+     * Directory where the resources used by forked JVMs (wall-clock and CPU time, peak memory, GC pauses) are
+     * reported, as one JSON file per goal.
+     *
+     * @parameter expression="${gwt.telemetryDirectory}" default-value="${project.build.directory}/gwt-telemetry"
+     * @since 2.5.0
+     */
+    private File telemetryDirectory;
+
+    /**
+     * Whether forked JVMs log their GC pauses, to report the GC pause count and time of each fork.
+     * <p>
+     * Can be set from command line using '-Dgwt.telemetryGcLog=true'
+     * </p>
+     *
+     * @parameter expression="${gwt.telemetryGcLog}" default-value="false"
+     * @since 2.5.0
+     */
+    private boolean telemetryGcLog;
+
+    /**
+     * Time in seconds after which a forked JVM that neither writes output nor uses CPU, or that spends most of its
+     * time in garbage collection, is considered hung: its threads and heap are captured in the diagnostics directory
+     * and it is killed. Disabled by default, as dev mode and test servers legitimately idle.
+     * <p>
+     * Can be set from command line using '-Dgwt.hangTimeout=...'
+     * </p>
+     *
+     * @parameter expression="${gwt.hangTimeout}" default-value="0"
+     * @since 2.5.0
+     */
+    private int hangTimeout;
+
+    /**
+     * Percentage of time spent in garbage collection above which a forked JVM is considered thrashing, when
+     * <code>hangTimeout</code> is set. 0 disables the GC overhead detection.
+     *
+     * @parameter expression="${gwt.gcOverheadLimit}" default-value="90"
+     * @since 2.5.0
+     */
+    private int gcOverheadLimit;
+
+    /**
+     * Heap diagnostics captured with the thread dump before a hung or timed-out JVM is killed: <code>none</code>,
+     * <code>histogram</code> for a class histogram, or <code>dump</code> for a full heap dump.
+     *
+     * @parameter expression="${gwt.heapDiagnostics}" default-value="histogram"
+     * @since 2.5.0
+     */
+    private String heapDiagnostics;
+
+    /**
+     * Directory where thread dumps, heap histograms and heap dumps of forked JVMs are written.
+     *
+     * @parameter expression="${gwt.diagnosticsDirectory}" default-value="${project.build.directory}/gwt-diagnostics"
+     * @since 2.5.0
+     */
+    private File diagnosticsDirectory;
+
+    /**
+     * Whether forked JVMs dump their heap to the diagnostics directory on <code>OutOfMemoryError</code>, the
+     * largest classes of the dump being then reported in the build log. Only the last dump of each module is kept.
+     * <p>
+     * Can be set from command line using '-Dgwt.heapDumpOnOutOfMemory=true'
+     * </p>
+     *
+     * @parameter expression="${gwt.heapDumpOnOutOfMemory}" default-value="false"
+     * @since 2.5.0
+     */
+    private boolean heapDumpOnOutOfMemory;
+
+    /**
+     * Size in megabytes above which a heap dump is not read to report its largest classes, as reading it would take
+     * too long.
+     *
+     * @parameter expression="${gwt.heapDumpHistogramMaxSize}" default-value="512"
+     * @since 2.5.0
+     */
+    private long heapDumpHistogramMaxSize;
+
+    private ForkedProcessConsole console;
+
+    private ForkTelemetryReport telemetry;
+
     // methods
 
     /**
@@ -169,7 +369,14 @@ public abstract class AbstractGwtShellMojo
     public final void execute()
         throws MojoExecutionException, MojoFailureException
     {
-        doExecute();
+        try
+        {
+            doExecute();
+        }
+        finally
+        {
+            reportTelemetry();
+        }
     }
 
     public abstract void doExecute()
@@ -196,6 +403,14 @@ public abstract class AbstractGwtShellMojo
         return jvm;
     }
 
+    /**
+     * @return the configured deploy directory, <code>null</code> for GWT default
+     */
+    protected File getDeploy()
+    {
+        return deploy;
+    }
+
     /**
      * hook to post-process the dependency-based classpath
      */
@@ -219,7 +434,7 @@ public abstract class AbstractGwtShellMojo
         return extra;
     }
 
-    private String getJavaCommand()
+    protected String getJavaCommand()
         throws MojoExecutionException
     {
         if ( StringUtils.isEmpty( jvm ) )
@@ -245,6 +460,150 @@ public abstract class AbstractGwtShellMojo
     }
 
 
+    /**
+     * @return helper to pass the classpath of forked JVMs by file
+     */
+    protected ForkClasspath getForkClasspath()
+    {
+        return new ForkClasspath( new File( getProject().getBuild().getDirectory(), "gwt-classpath" ), forkClasspath,
+                                  getLog() );
+    }
+
+    /**
+     * @param command a JVM command line
+     * @param manifestAllowed the main class doesn't scan the classpath, so a manifest-only jar can be used
+     * @return the command with the classpath passed according to <code>forkClasspath</code>
+     */
+    protected List<String> compactClasspath( List<String> command, boolean manifestAllowed )
+        throws MojoExecutionException
+    {
+        try
+        {
+            return getForkClasspath().compact( command, manifestAllowed );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to write the forked JVM classpath", e );
+        }
+    }
+
+    /**
+     * @return the goal name, used to report the forked JVMs telemetry
+     */
+    protected String getGoal()
+    {
+        String name = getClass().getSimpleName();
+        if ( name.endsWith( "Mojo" ) )
+        {
+            name = name.substring( 0, name.length() - 4 );
+        }
+        if ( name.equals( name.toUpperCase() ) )
+        {
+            // I18N, CSS
+            return name.toLowerCase();
+        }
+        return Character.toLowerCase( name.charAt( 0 ) ) + name.substring( 1 );
+    }
+
+    /**
+     * @return the telemetry of the JVMs forked by this goal
+     */
+    protected synchronized ForkTelemetryReport getTelemetry()
+    {
+        if ( telemetry == null )
+        {
+            telemetry = new ForkTelemetryReport( getGoal() );
+        }
+        return telemetry;
+    }
+
+    /**
+     * @return where to write the forked JVMs telemetry
+     */
+    protected File getTelemetryDirectory()
+    {
+        return telemetryDirectory;
+    }
+
+    private void reportTelemetry()
+    {
+        if ( telemetry == null || telemetry.isEmpty() )
+        {
+            return;
+        }
+        telemetry.summarize( getLog() );
+        File file = new File( telemetryDirectory, getGoal() + ".json" );
+        try
+        {
+            telemetry.write( file );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to write forked JVMs telemetry to " + file + ": " + e.getMessage() );
+        }
+        telemetry = null;
+    }
+
+    /**
+     * @return helper to share classes between forked JVMs, <code>null</code> if disabled
+     */
+    protected ClassDataSharing getClassDataSharing()
+    {
+        // a manifest-only jar hides the archived jars to the JVM
+        if ( !classDataSharing || ForkClasspath.JAR.equals( forkClasspath ) )
+        {
+            return null;
+        }
+        return new ClassDataSharing( classDataSharingDirectory, getLog() );
+    }
+
+    /**
+     * @param command a JVM command line with inline classpath
+     * @param record the fork may create the archive, and {@link ClassDataSharing#processExited(List, int)} will be
+     * called when it terminates
+     * @return the command with class data sharing options
+     */
+    protected List<String> applyClassDataSharing( List<String> command, boolean record )
+    {
+        ClassDataSharing cds = getClassDataSharing();
+        return cds != null ? cds.apply( command, record ) : command;
+    }
+
+    /**
+     * @param clazz class to check for classpath resolution
+     * @return The classpath element this class was loaded from
+     */
+    protected File getClassPathElementFor( Class<?> clazz )
+    {
+        String classFile = clazz.getName().replace( '.', '/' ) + ".class";
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        if ( cl == null )
+        {
+            cl = getClass().getClassLoader();
+        }
+        URL url = cl.getResource( classFile );
+        getLog().debug( "getClassPathElementFor " + clazz.getName() + " file " + url.toString() );
+        String path = url.toString();
+    
+        if ( path.startsWith( "jar:" ) )
+        {
+            path = path.substring( 4, path.indexOf( "!" ) );
+        }
+        else
+        {
+            path = path.substring( 0, path.length() - classFile.length() );
+        }
+        if ( path.startsWith( "file:" ) )
+        {
+            path = path.substring( 5 );
+            // windauze hack with maven 3 we get those !
+            path = path.replace( "%20", " " );
+        }
+        File file = new File( path );
+        getLog().debug( "getClassPathElementFor " + clazz.getName() + " file " + file.getPath() );
+        return file;
+    }
+
     /**
      * @param timeOut the timeOut to set
      */
@@ -301,6 +660,36 @@ public abstract class AbstractGwtShellMojo
         }
     }
 
+    /**
+     * @return a derived module restricting user agents and locales as configured, <code>null</code> if none is
+     * configured
+     */
+    protected DerivedModule getDevProfileModule( GwtModule module )
+    {
+        if ( StringUtils.isEmpty( userAgents ) && StringUtils.isEmpty( locales ) )
+        {
+            return null;
+        }
+        DerivedModule derived = new DerivedModule( module.getName(), module.getPath(), "Dev" );
+        if ( !StringUtils.isEmpty( userAgents ) )
+        {
+            derived.setProperty( "user.agent", StringUtils.deleteWhitespace( userAgents ) );
+        }
+        if ( !StringUtils.isEmpty( locales ) )
+        {
+            derived.setProperty( "locale", StringUtils.deleteWhitespace( locales ) );
+        }
+        return derived.collapseAllProperties();
+    }
+
+    /**
+     * @return the directory where derived modules are generated, to be added to the forked JVM classpath
+     */
+    protected File getDerivedModulesDirectory()
+    {
+        return new File( getProject().getBuild().getDirectory(), "gwt-derived-modules" );
+    }
+
     protected void addArgumentDeploy(JavaCommand cmd) {
         if ( deploy != null )
         {
@@ -338,7 +727,7 @@ public abstract class AbstractGwtShellMojo
     {
         public void consumeLine( String line )
         {
-            getLog().info( line );
+            getConsole().getOut().consumeLine( line );
         }
     };
 
@@ -349,10 +738,54 @@ public abstract class AbstractGwtShellMojo
     {
         public void consumeLine( String line )
         {
-            getLog().error( line );
+            getConsole().getErr().consumeLine( line );
         }
     };
 
+    /**
+     * @return the console forked JVMs output is written to
+     */
+    protected synchronized ForkedProcessConsole getConsole()
+    {
+        if ( console == null )
+        {
+            console = new ForkedProcessConsole( getLog(), consoleLinesPerSecond, 10000 );
+            if ( forkLogDirectory != null )
+            {
+                console.setHint( forkLogDirectory.getPath() );
+            }
+        }
+        return console;
+    }
+
+    /**
+     * @return the file to write the full output of a forked JVM to, <code>null</code> if disabled
+     */
+    protected File getForkLogFile( String className, List<String> args )
+    {
+        if ( forkLogDirectory == null )
+        {
+            return null;
+        }
+        // one file per main class and arguments, so that concurrent forks don't share a file
+        String name = className.substring( className.lastIndexOf( '.' ) + 1 );
+        String hash = FingerprintManifest.hash( args.iterator() ).substring( 0, 8 );
+        return new File( forkLogDirectory, name + "-" + hash + ".log" );
+    }
+
+    /**
+     * @param className the forked main class
+     * @param java the forked java executable
+     * @return the watchdog of a forked JVM
+     */
+    protected ForkWatchdog getWatchdog( String className, String java )
+    {
+        String name = className.substring( className.lastIndexOf( '.' ) + 1 );
+        return new ForkWatchdog( diagnosticsDirectory, name, java, getLog() ).setHangTimeout( hangTimeout )
+            .setGcOverheadLimit( gcOverheadLimit ).setHeapDiagnostics( heapDiagnostics )
+            .setHistogramMaxSize( heapDumpHistogramMaxSize );
+    }
+
     /**
      * @deprecated use the new {@link JavaCommand}
      * Create a command to execute using builder pattern
@@ -371,6 +804,18 @@ public abstract class AbstractGwtShellMojo
 
         private Properties env = new Properties();
 
+        private StreamConsumer output;
+
+        private List<String> jvmArgs = new ArrayList<String>();
+
+        private List<ForkedProcessListener> listeners = new ArrayList<ForkedProcessListener>();
+
+        private boolean manifestClasspath;
+
+        private boolean inProcessExecution;
+
+        private String module;
+
         public JavaCommand( String className )
         {
             this.className = className;
@@ -379,7 +824,14 @@ public abstract class AbstractGwtShellMojo
         public JavaCommand withinScope( String scope )
             throws MojoExecutionException
         {
-            classpath.addAll( getClasspath( scope ) );
+            for ( File file : getClasspath( scope ) )
+            {
+                // SDK jars may have been put first in classpath
+                if ( !classpath.contains( file ) )
+                {
+                    classpath.add( file );
+                }
+            }
             postProcessClassPath( classpath );
             return this;
         }
@@ -406,6 +858,12 @@ public abstract class AbstractGwtShellMojo
             return this;
         }
 
+        public JavaCommand args( List<String> args )
+        {
+            this.args.addAll( args );
+            return this;
+        }
+
         public JavaCommand arg( boolean condition, String arg )
         {
             if ( condition )
@@ -427,11 +885,67 @@ public abstract class AbstractGwtShellMojo
             return this;
         }
 
-        public void execute()
+        /**
+         * Add a JVM argument, after the ones set as <code>extraJvmArgs</code> so that it takes precedence
+         */
+        public JavaCommand jvmArg( String arg )
+        {
+            jvmArgs.add( arg );
+            return this;
+        }
+
+        public JavaCommand withListener( ForkedProcessListener listener )
+        {
+            listeners.add( listener );
+            return this;
+        }
+
+        /**
+         * Redirect the command standard output to a dedicated consumer rather than the plugin log
+         */
+        public JavaCommand withOutput( StreamConsumer output )
+        {
+            this.output = output;
+            return this;
+        }
+
+        /**
+         * Allow the classpath to be passed as a manifest-only jar, for main classes that don't scan the classpath
+         */
+        public JavaCommand withManifestClasspath()
+        {
+            this.manifestClasspath = true;
+            return this;
+        }
+
+        /**
+         * Allow the command to run in the Maven JVM, for tools that don't need the forked JVM settings
+         */
+        public JavaCommand withInProcessExecution()
+        {
+            this.inProcessExecution = true;
+            return this;
+        }
+
+        /**
+         * Set the GWT module(s) the command works on, to report the forked JVM telemetry by module
+         */
+        public JavaCommand forModule( String module )
+        {
+            this.module = module;
+            return this;
+        }
+
+        /**
+         * @return the java executable followed by JVM arguments, classpath and system properties
+         */
+        public List<String> getJvmCommand()
             throws MojoExecutionException
         {
             List<String> command = new ArrayList<String>();
+            command.add( getJavaCommand() );
             command.addAll( getJvmArgs() );
+            command.addAll( jvmArgs );
             command.add( "-classpath" );
             List<String> path = new ArrayList<String>( classpath.size() );
             for ( File file : classpath )
@@ -446,9 +960,106 @@ public abstract class AbstractGwtShellMojo
                     command.add( "-D" + entry.getKey() + "=" + entry.getValue() );
                 }
             }
+            return command;
+        }
+
+        /**
+         * @return why this command has to run in a forked JVM, <code>null</code> if it can run in-process
+         */
+        private String getForkReason()
+        {
+            if ( !inProcess || !inProcessExecution )
+            {
+                return "in-process execution disabled";
+            }
+            if ( !systemProperties.isEmpty() || !env.isEmpty() )
+            {
+                return "system properties or environment variables set";
+            }
+            if ( parallelBuild )
+            {
+                return "parallel build, the tool output would be mixed with other projects";
+            }
+            // jvm is set to the Maven JVM once a JVM has been forked
+            if ( StringUtils.isNotEmpty( jvm )
+                && !new File( jvm ).getAbsoluteFile().equals( new File( System.getProperty( "java.home" ) ) ) )
+            {
+                return "JVM set to " + jvm;
+            }
+            if ( timeOut > 0 )
+            {
+                return "time-out set, only forked JVMs can be killed";
+            }
+            List<String> arguments = new ArrayList<String>( getJvmArgs() );
+            arguments.addAll( jvmArgs );
+            for ( String arg : arguments )
+            {
+                // in-process, the Maven JVM heap is used, but any other JVM argument would be dropped
+                if ( arg.length() > 0 && !arg.startsWith( "-Xmx" ) && !arg.startsWith( "-Xms" ) )
+                {
+                    return "JVM argument " + arg;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the arguments passed to the main class
+         */
+        public List<String> getArgs()
+        {
+            return args;
+        }
+
+        public void execute()
+            throws MojoExecutionException
+        {
+            String forkReason = getForkReason();
+            if ( forkReason == null )
+            {
+                try
+                {
+                    getLog().debug( "Execute " + className + " in-process with arguments " + args );
+                    int status = new InProcessRunner().run( classpath, className, args, output != null ? output : out,
+                                                            err );
+                    getConsole().flush();
+                    if ( status != 0 )
+                    {
+                        throw new ForkedProcessExecutionException( className + " " + args + " failed with status "
+                            + status );
+                    }
+                    return;
+                }
+                catch ( InProcessUnsupportedException e )
+                {
+                    getLog().debug( "Cannot run " + className + " in-process, forking a JVM: " + e.getMessage() );
+                }
+            }
+            else if ( inProcess && inProcessExecution )
+            {
+                getLog().debug( "Forking " + className + " rather than running it in-process: " + forkReason );
+            }
+            List<String> jvmCommand = applyClassDataSharing( getJvmCommand(), true );
+            ForkTelemetry telemetry = new ForkTelemetry( className, module );
+            if ( telemetryGcLog )
+            {
+                try
+                {
+                    jvmCommand = telemetry.enableGcLog( jvmCommand, telemetryDirectory );
+                }
+                catch ( IOException e )
+                {
+                    getLog().debug( "Cannot log GC pauses of " + className + ": " + e.getMessage() );
+                }
+            }
+            ForkWatchdog watchdog = getWatchdog( className, jvmCommand.get( 0 ) ).forModule( module );
+            List<String> forkCommand = heapDumpOnOutOfMemory ? watchdog.addJvmArgs( jvmCommand ) : jvmCommand;
+            List<String> command = compactClasspath( forkCommand, manifestClasspath );
+            String executable = command.remove( 0 );
             command.add( className );
             command.addAll( args );
 
+            int status = -1;
             try
             {
                 String[] arguments = (String[]) command.toArray( new String[command.size()] );
@@ -459,7 +1070,7 @@ public abstract class AbstractGwtShellMojo
                 Commandline cmd =
                     Os.isFamily( Os.FAMILY_WINDOWS ) ? new Commandline( new JavaShell() ) : new Commandline();
 
-                cmd.setExecutable( getJavaCommand() );
+                cmd.setExecutable( executable );
                 cmd.addArguments( arguments );
                 if ( env != null )
                 {
@@ -470,16 +1081,21 @@ public abstract class AbstractGwtShellMojo
                     }
                 }
                 getLog().debug( "Execute command :\n" + cmd.toString() );
-                int status;
-                if ( timeOut > 0 )
+                ForkedProcessRunner runner = new ForkedProcessRunner( cmd, output != null ? output : out, err );
+                runner.setLogFile( getForkLogFile( className, args ) );
+                runner.addListener( telemetry );
+                runner.setWatchdog( watchdog );
+                for ( ForkedProcessListener listener : listeners )
                 {
-                    status = CommandLineUtils.executeCommandLine( cmd, out, err, timeOut );
+                    runner.addListener( listener );
                 }
-                else
+                status = runner.run( timeOut );
+
+                if ( status != 0 && watchdog.isOutOfMemory() )
                 {
-                    status = CommandLineUtils.executeCommandLine( cmd, out, err );
+                    throw new OutOfMemoryExecutionException( className + " ran out of memory, failed with status "
+                        + status );
                 }
-
                 if ( status != 0 )
                 {
                     throw new ForkedProcessExecutionException( "Command [[\n" + cmd.toString()
@@ -488,6 +1104,11 @@ public abstract class AbstractGwtShellMojo
             }
             catch ( CommandLineTimeOutException e )
             {
+                if ( watchdog.getReason() != null )
+                {
+                    throw new ForkedProcessExecutionException( "Forked JVM has been killed: " + watchdog.getReason()
+                        + ", see diagnostics in " + watchdog.getDirectory() );
+                }
                 if ( timeOut > 0 )
                 {
                     getLog().warn( "Forked JVM has been killed on time-out after " + timeOut + " seconds" );
@@ -499,6 +1120,19 @@ public abstract class AbstractGwtShellMojo
             {
                 throw new MojoExecutionException( "Failed to execute command line :\n" + command, e );
             }
+            finally
+            {
+                getConsole().flush();
+                if ( telemetry.getWallTime() > 0 )
+                {
+                    getTelemetry().add( telemetry );
+                }
+                ClassDataSharing cds = getClassDataSharing();
+                if ( cds != null )
+                {
+                    cds.processExited( jvmCommand, status );
+                }
+            }
         }
 
         public void withinClasspathFirst( File oophmJar )
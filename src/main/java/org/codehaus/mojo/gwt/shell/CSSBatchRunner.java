@@ -0,0 +1,214 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.dev.About;
+import com.google.gwt.dev.util.log.PrintWriterTreeLogger;
+import com.google.gwt.resources.css.InterfaceGenerator;
+import com.google.gwt.util.tools.ToolBase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Generate a set of CSS interfaces with the GWT {@link InterfaceGenerator} in a single JVM. The generator
+ * <code>main</code> method prints the interface to the standard output and always exits, so it is driven by
+ * reflection, and each interface is written to its own file.
+ * <p>
+ * The reflection relies on private members of the generator, checked against GWT 2.x. With another GWT version, or
+ * if a member is missing, the runner prints a line starting with {@link #UNSUPPORTED} and exits with status
+ * {@link #UNSUPPORTED_STATUS}, so that files are generated one at a time with the generator <code>main</code>.
+ * <p>
+ * Usage: <code>CSSBatchRunner -out dir typeName=cssFile...</code>. One result line is printed per CSS file, and the
+ * process exits with a non-zero status if any file failed.
+ *
+ * @since 2.5.0
+ */
+public class CSSBatchRunner
+{
+    /** prefix of the line printed when the GWT SDK is not supported */
+    public static final String UNSUPPORTED = "CSS batch generation not supported: ";
+
+    public static final int UNSUPPORTED_STATUS = 2;
+
+    /** major GWT version the generator private members have been checked against */
+    private static final String CHECKED_VERSION = "2.";
+
+    private final File out;
+
+    public CSSBatchRunner( File out )
+    {
+        this.out = out;
+    }
+
+    public static void main( String[] args )
+    {
+        File out = null;
+        List<String> files = new ArrayList<String>();
+        for ( int i = 0; i < args.length; i++ )
+        {
+            if ( "-out".equals( args[i] ) && i + 1 < args.length )
+            {
+                out = new File( args[++i] );
+            }
+            else
+            {
+                files.add( args[i] );
+            }
+        }
+        if ( out == null )
+        {
+            System.err.println( "Usage: CSSBatchRunner -out dir typeName=cssFile..." );
+            System.exit( 1 );
+        }
+        String unsupported = getUnsupportedReason( getGwtVersion() );
+        if ( unsupported != null )
+        {
+            System.out.println( UNSUPPORTED + unsupported );
+            System.exit( UNSUPPORTED_STATUS );
+        }
+        if ( new CSSBatchRunner( out ).run( files ) > 0 )
+        {
+            System.exit( 1 );
+        }
+    }
+
+    /**
+     * @return the GWT SDK version, <code>null</code> if unknown
+     */
+    private static String getGwtVersion()
+    {
+        try
+        {
+            return About.getGwtVersionNum();
+        }
+        catch ( LinkageError e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @param version the GWT SDK version
+     * @return why the generator can't be driven by reflection, <code>null</code> if it can
+     */
+    static String getUnsupportedReason( String version )
+    {
+        if ( version == null || !version.startsWith( CHECKED_VERSION ) )
+        {
+            return "GWT " + ( version != null ? version : "version unknown" ) + ", only GWT " + CHECKED_VERSION
+                + "x is supported";
+        }
+        try
+        {
+            InterfaceGenerator.class.getDeclaredConstructor();
+            InterfaceGenerator.class.getDeclaredField( "logger" );
+            InterfaceGenerator.class.getDeclaredMethod( "process" );
+            ToolBase.class.getDeclaredMethod( "processArgs", String[].class );
+            return null;
+        }
+        catch ( NoSuchMethodException e )
+        {
+            return "GWT " + version + " InterfaceGenerator has no " + e.getMessage();
+        }
+        catch ( NoSuchFieldException e )
+        {
+            return "GWT " + version + " InterfaceGenerator has no " + e.getMessage() + " field";
+        }
+    }
+
+    /**
+     * @param files the interfaces to generate, as <code>typeName=cssFile</code>
+     * @return the number of failed files
+     */
+    public int run( List<String> files )
+    {
+        int failures = 0;
+        for ( String file : files )
+        {
+            int equals = file.indexOf( '=' );
+            String typeName = file.substring( 0, equals );
+            File css = new File( file.substring( equals + 1 ) );
+            try
+            {
+                File java = new File( out, typeName.replace( '.', File.separatorChar ) + ".java" );
+                java.getParentFile().mkdirs();
+                FileUtils.fileWrite( java.getPath(), "UTF-8", generate( typeName, css ) );
+                System.out.println( "Generated " + typeName + " from " + css );
+            }
+            catch ( Exception e )
+            {
+                failures++;
+                System.out.println( "Failed to generate " + typeName + " from " + css + ": " + e );
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return the java source of the interface
+     */
+    public String generate( String typeName, File css )
+        throws Exception
+    {
+        PrintWriter log = new PrintWriter( System.err );
+        try
+        {
+            Constructor<InterfaceGenerator> constructor = InterfaceGenerator.class.getDeclaredConstructor();
+            constructor.setAccessible( true );
+            InterfaceGenerator generator = constructor.newInstance();
+
+            PrintWriterTreeLogger logger = new PrintWriterTreeLogger( log );
+            logger.setMaxDetail( TreeLogger.WARN );
+            Field field = InterfaceGenerator.class.getDeclaredField( "logger" );
+            field.setAccessible( true );
+            field.set( generator, logger );
+
+            Method processArgs = ToolBase.class.getDeclaredMethod( "processArgs", String[].class );
+            processArgs.setAccessible( true );
+            String[] args = { "-standalone", "-typeName", typeName, "-css", css.getAbsolutePath() };
+            if ( !( (Boolean) processArgs.invoke( generator, new Object[] { args } ) ).booleanValue() )
+            {
+                throw new IOException( "Invalid arguments" );
+            }
+
+            Method process = InterfaceGenerator.class.getDeclaredMethod( "process" );
+            process.setAccessible( true );
+            return (String) process.invoke( generator );
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        finally
+        {
+            log.flush();
+        }
+    }
+}
@@ -20,9 +20,13 @@ package org.codehaus.mojo.gwt.shell;
  */
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.SystemUtils;
@@ -30,6 +34,9 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.mojo.gwt.utils.FingerprintManifest;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
 /**
@@ -59,6 +66,14 @@ public class CSSMojo
      */
     private String cssFile;
 
+    /**
+     * Directory where the CSS files fingerprints are stored, to skip generation of up to date interfaces.
+     *
+     * @parameter default-value="${project.build.directory}/gwt-css-fingerprints"
+     * @since 2.5.0
+     */
+    private File cssFingerprintDirectory;
+
     public void doExecute()
         throws MojoExecutionException, MojoFailureException
     {
@@ -70,67 +85,197 @@ public class CSSMojo
         // input.css
         if ( cssFiles != null )
         {
+            Map<String, File> stale = new LinkedHashMap<String, File>();
+            Map<String, FingerprintManifest> fingerprints = new HashMap<String, FingerprintManifest>();
             for ( String file : cssFiles )
             {
                 final String typeName = FilenameUtils.separatorsToSystem( file ).
                     substring( 0, file.lastIndexOf( '.' ) ).replace( File.separatorChar, '.' );
-                final File javaOutput =
-                    new File( getGenerateDirectory(), typeName.replace( '.', File.separatorChar ) + ".java" );
-                final StringBuilder content = new StringBuilder();
-                out = new StreamConsumer()
+                File candidate = getCssFile( file );
+                if ( candidate == null )
                 {
-                    public void consumeLine( String line )
-                    {
-                        content.append( line ).append( SystemUtils.LINE_SEPARATOR );
-                    }
-                };
-                for ( Resource resource : (List<Resource>) getProject().getResources() )
+                    throw new MojoExecutionException( "cannot generate java source from file " + file + "." );
+                }
+                generated = true;
+                FingerprintManifest fingerprint = computeFingerprint( typeName, candidate );
+                if ( fingerprint.isUpToDate() && getJavaOutput( typeName ).exists() )
                 {
-                    final File candidate = new File( resource.getDirectory(), file );
-                    if ( candidate.exists() )
-                    {
-                        getLog().info( "Generating " + javaOutput + " with typeName " + typeName );
-                        ensureTargetPackageExists( getGenerateDirectory(), typeName );
+                    getLog().debug( typeName + " is up to date" );
+                    continue;
+                }
+                stale.put( typeName, candidate );
+                fingerprints.put( typeName, fingerprint );
+            }
 
-                        
-                        try
+            if ( !stale.isEmpty() )
+            {
+                generate( stale );
+            }
+            getLog().info( stale.size() + " CSS interfaces generated, " + ( cssFiles.length - stale.size() )
+                + " up to date" );
+
+            try
+            {
+                for ( FingerprintManifest fingerprint : fingerprints.values() )
+                {
+                    fingerprint.save();
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Failed to save CSS fingerprints", e );
+            }
+        }
+
+        if ( generated )
+        {
+            getLog().debug( "add compile source root " + getGenerateDirectory() );
+            addCompileSourceRoot( getGenerateDirectory() );
+        }
+
+    }
+
+    /**
+     * Generate the interfaces in a single run of {@link CSSBatchRunner}. If it fails, files are generated one at a
+     * time with the GWT tool, to report errors as the GWT SDK does.
+     *
+     * @param files the CSS files by interface type name
+     */
+    private void generate( Map<String, File> files )
+        throws MojoExecutionException
+    {
+        List<String> args = new ArrayList<String>();
+        for ( Map.Entry<String, File> file : files.entrySet() )
+        {
+            getLog().info( "Generating " + getJavaOutput( file.getKey() ) + " with typeName " + file.getKey() );
+            args.add( file.getKey() + '=' + file.getValue().getAbsolutePath() );
+        }
+        try
+        {
+            new JavaCommand( CSSBatchRunner.class.getName() )
+                .withInProcessExecution()
+                .withManifestClasspath()
+                .withinScope( Artifact.SCOPE_COMPILE )
+                .withinClasspath( getGwtDevJar() )
+                .withinClasspath( getGwtUserJar() )
+                .withinClasspath( getClassPathElementFor( CSSBatchRunner.class ) )
+                .arg( "-out", getGenerateDirectory().getAbsolutePath() )
+                .args( args )
+                .withOutput( new StreamConsumer()
+                {
+                    public void consumeLine( String line )
+                    {
+                        if ( line.startsWith( CSSBatchRunner.UNSUPPORTED ) )
                         {
-                            new JavaCommand( "com.google.gwt.resources.css.InterfaceGenerator" )
-                            .withinScope( Artifact.SCOPE_COMPILE )
-                            .arg( "-standalone" )
-                            .arg( "-typeName" )
-                            .arg( typeName )
-                            .arg( "-css" )
-                            .arg( candidate.getAbsolutePath() )
-                            .withinClasspath( getGwtDevJar() )
-                            .withinClasspath( getGwtUserJar() )
-                            .execute();                            
-                            final FileWriter outputWriter = new FileWriter( javaOutput );
-                            outputWriter.write( content.toString() );
-                            outputWriter.close();
+                            getLog().warn( line + ", generating CSS interfaces one at a time" );
                         }
-                        catch ( IOException e )
+                        else
                         {
-                            throw new MojoExecutionException( "Failed to write to file: " + javaOutput );
+                            out.consumeLine( line );
                         }
-                        generated = true;
-                        break;
                     }
-                }
-                
-                if ( content.length() == 0 )
+                } )
+                .execute();
+            return;
+        }
+        catch ( ForkedProcessExecutionException e )
+        {
+            getLog().debug( "CSS batch generation failed, generating files one at a time", e );
+        }
+
+        for ( Map.Entry<String, File> file : files.entrySet() )
+        {
+            generate( file.getKey(), file.getValue() );
+        }
+    }
+
+    private void generate( String typeName, File candidate )
+        throws MojoExecutionException
+    {
+        File javaOutput = getJavaOutput( typeName );
+        ensureTargetPackageExists( getGenerateDirectory(), typeName );
+        final StringBuilder content = new StringBuilder();
+        new JavaCommand( "com.google.gwt.resources.css.InterfaceGenerator" )
+            .withInProcessExecution()
+            .withManifestClasspath()
+            .withinScope( Artifact.SCOPE_COMPILE )
+            .arg( "-standalone" )
+            .arg( "-typeName" )
+            .arg( typeName )
+            .arg( "-css" )
+            .arg( candidate.getAbsolutePath() )
+            .withinClasspath( getGwtDevJar() )
+            .withinClasspath( getGwtUserJar() )
+            .withOutput( new StreamConsumer()
+            {
+                public void consumeLine( String line )
                 {
-                    throw new MojoExecutionException( "cannot generate java source from file " + file + "." );
+                    content.append( line ).append( SystemUtils.LINE_SEPARATOR );
                 }
-            }
+            } )
+            .execute();
+        if ( content.length() == 0 )
+        {
+            throw new MojoExecutionException( "cannot generate java source from file " + candidate + "." );
+        }
+        // same encoding as CSSBatchRunner
+        Writer writer = null;
+        try
+        {
+            writer = WriterFactory.newWriter( javaOutput, "UTF-8" );
+            writer.write( content.toString() );
         }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to write to file: " + javaOutput, e );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
 
-        if ( generated )
+    /**
+     * @return the CSS file in project resources, <code>null</code> if not found
+     */
+    private File getCssFile( String file )
+    {
+        for ( Resource resource : (List<Resource>) getProject().getResources() )
         {
-            getLog().debug( "add compile source root " + getGenerateDirectory() );
-            addCompileSourceRoot( getGenerateDirectory() );
+            File candidate = new File( resource.getDirectory(), file );
+            if ( candidate.exists() )
+            {
+                return candidate;
+            }
         }
+        return null;
+    }
+
+    private File getJavaOutput( String typeName )
+    {
+        return new File( getGenerateDirectory(), typeName.replace( '.', File.separatorChar ) + ".java" );
+    }
 
+    /**
+     * The interface depends on the CSS file and on the GWT SDK generator
+     */
+    private FingerprintManifest computeFingerprint( String typeName, File css )
+        throws MojoExecutionException
+    {
+        try
+        {
+            FingerprintManifest fingerprint =
+                FingerprintManifest.load( new File( cssFingerprintDirectory, typeName + ".properties" ) );
+            fingerprint.addFile( css );
+            fingerprint.addArchive( getGwtDevJar() );
+            fingerprint.addArchive( getArtifact( "com.google.gwt", "gwt-user" ).getFile() );
+            fingerprint.compute( 1 );
+            return fingerprint;
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to compute fingerprint of " + css, e );
+        }
     }
 
     private void setup()
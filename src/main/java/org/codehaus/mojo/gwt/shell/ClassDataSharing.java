@@ -0,0 +1,306 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.gwt.utils.FingerprintManifest;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Application Class-Data Sharing (AppCDS) archives for forked JVMs, so that forks map the GWT SDK classes from a
+ * shared archive rather than loading and verifying them from the jars on each startup.
+ * <p>
+ * An archive covers the jars at the beginning of the fork classpath, typically the GWT SDK jars, and is keyed by the
+ * java runtime and the size and date of those jars. On first use, a fork records the classes it loads; once it
+ * succeeded, the archive is dumped from this class list by a dedicated JVM. Next forks with a classpath starting with
+ * the same jars start with <code>-XX:SharedArchiveFile</code>, and silently ignore the archive if the JVM finds it
+ * unusable. Archives are stored in a directory shared by all builds.
+ * <p>
+ * Requires a Java 11+ HotSpot JVM. Classpaths starting with a directory are not supported by the JVM, forks with
+ * such a classpath are left unchanged.
+ *
+ * @since 2.5.0
+ */
+public class ClassDataSharing
+{
+    private static final String CLASS_LIST = "-XX:DumpLoadedClassList=";
+
+    /** archives being recorded, by key */
+    private static final Set<String> recording = new HashSet<String>();
+
+    private final File directory;
+
+    private final Log log;
+
+    /**
+     * @param directory where to store the archives, may be shared by builds
+     */
+    public ClassDataSharing( File directory, Log log )
+    {
+        this.directory = directory;
+        this.log = log;
+    }
+
+    /**
+     * @param command a command line, starting with the java executable, with an inline <code>-classpath</code>
+     * @param record the fork may record its loaded classes to create the archive, which requires a call to
+     * {@link #processExited(List, int)} when it terminates
+     * @return the command with the JVM arguments to use the archive, or to record the classes to archive
+     */
+    public List<String> apply( List<String> command, boolean record )
+    {
+        String java = command.get( 0 );
+        List<File> jars = getArchivedJars( command );
+        if ( jars.isEmpty() || !isSupported( java ) )
+        {
+            return command;
+        }
+        String key = getKey( java, jars );
+        List<String> args = new ArrayList<String>();
+        File archive = new File( directory, key + ".jsa" );
+        if ( archive.isFile() )
+        {
+            args.add( "-XX:SharedArchiveFile=" + archive.getAbsolutePath() );
+            args.add( "-Xshare:auto" );
+        }
+        else if ( record && !new File( directory, key + ".failed" ).exists() )
+        {
+            File classList = startRecording( key );
+            if ( classList != null )
+            {
+                log.debug( "Recording loaded classes to create class data sharing archive " + archive );
+                args.add( CLASS_LIST + classList.getAbsolutePath() );
+            }
+        }
+        if ( args.isEmpty() )
+        {
+            return command;
+        }
+        args.add( "-Xlog:cds=off" );
+        List<String> cds = new ArrayList<String>( command );
+        cds.addAll( 1, args );
+        return cds;
+    }
+
+    /**
+     * Create the archive from the classes recorded by a successful fork.
+     *
+     * @param command the command, as returned by {@link #apply(List, boolean)}
+     * @param status the fork exit status
+     */
+    public void processExited( List<String> command, int status )
+    {
+        File classList = null;
+        for ( String arg : command )
+        {
+            if ( arg.startsWith( CLASS_LIST ) )
+            {
+                classList = new File( arg.substring( CLASS_LIST.length() ) );
+            }
+        }
+        if ( classList == null )
+        {
+            return;
+        }
+        String java = command.get( 0 );
+        String key = getKey( java, getArchivedJars( command ) );
+        try
+        {
+            if ( status == 0 && classList.isFile() )
+            {
+                createArchive( java, getArchivedJars( command ), classList, key );
+            }
+        }
+        finally
+        {
+            classList.delete();
+            stopRecording( key );
+        }
+    }
+
+    private void createArchive( String java, List<File> jars, File classList, String key )
+    {
+        long start = System.currentTimeMillis();
+        File archive = new File( directory, key + ".jsa" );
+        File failed = new File( directory, key + ".failed" );
+        try
+        {
+            File tmp = File.createTempFile( archive.getName(), ".tmp", directory );
+            Commandline cmd = new Commandline();
+            cmd.setExecutable( java );
+            cmd.addArguments( new String[] { "-Xshare:dump", "-XX:SharedClassListFile=" + classList.getAbsolutePath(),
+                "-XX:SharedArchiveFile=" + tmp.getAbsolutePath(), "-Xlog:cds=off", "-classpath", toPath( jars ) } );
+            StreamConsumer debug = new StreamConsumer()
+            {
+                public void consumeLine( String line )
+                {
+                    log.debug( line );
+                }
+            };
+            int status = CommandLineUtils.executeCommandLine( cmd, debug, debug );
+            if ( status != 0 || tmp.length() == 0 )
+            {
+                tmp.delete();
+                FileUtils.fileWrite( failed.getPath(), "UTF-8", cmd.toString() + " failed with status " + status );
+                log.info( "Failed to create class data sharing archive for " + jars + ", see " + failed );
+                return;
+            }
+            // concurrent builds may create the same archive, the first one wins
+            if ( !tmp.renameTo( archive ) )
+            {
+                tmp.delete();
+            }
+            log.info( "Created class data sharing archive for forked JVMs in "
+                + ( System.currentTimeMillis() - start ) + "ms" );
+        }
+        catch ( IOException e )
+        {
+            log.info( "Failed to create class data sharing archive " + archive + ": " + e.getMessage() );
+        }
+        catch ( CommandLineException e )
+        {
+            log.info( "Failed to create class data sharing archive " + archive + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * @return the file where a fork records its loaded classes, <code>null</code> if another fork of this build
+     * already records them
+     */
+    private File startRecording( String key )
+    {
+        synchronized ( recording )
+        {
+            if ( !recording.add( key ) )
+            {
+                return null;
+            }
+        }
+        try
+        {
+            directory.mkdirs();
+            // other builds may record the same classes concurrently
+            return File.createTempFile( key, ".classlist", directory );
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Cannot record loaded classes in " + directory + ": " + e.getMessage() );
+            stopRecording( key );
+            return null;
+        }
+    }
+
+    private void stopRecording( String key )
+    {
+        synchronized ( recording )
+        {
+            recording.remove( key );
+        }
+    }
+
+    /**
+     * The JVM can only archive classes from the jars before the first classpath directory
+     *
+     * @return the jars at the beginning of the command classpath
+     */
+    protected static List<File> getArchivedJars( List<String> command )
+    {
+        List<File> jars = new ArrayList<File>();
+        int index = command.indexOf( "-classpath" );
+        if ( index < 0 || index + 1 >= command.size() )
+        {
+            return jars;
+        }
+        for ( String entry : command.get( index + 1 ).split( File.pathSeparator ) )
+        {
+            File file = new File( entry );
+            if ( !file.isFile() )
+            {
+                break;
+            }
+            jars.add( file.getAbsoluteFile() );
+        }
+        return jars;
+    }
+
+    /**
+     * @return a key identifying the java runtime and the archived jars content
+     */
+    protected static String getKey( String java, List<File> jars )
+    {
+        List<String> values = new ArrayList<String>();
+        File home = ForkClasspath.getJavaHome( java );
+        values.add( home != null ? home.getPath() : java );
+        // the JVM rejects archives created by another build of the runtime
+        File modules = home != null ? new File( home, "lib/modules" ) : null;
+        if ( modules != null && modules.isFile() )
+        {
+            values.add( modules.length() + ";" + modules.lastModified() );
+        }
+        for ( File jar : jars )
+        {
+            values.add( jar.getPath() + ";" + jar.length() + ";" + jar.lastModified() );
+        }
+        return "gwt-" + ForkClasspath.getJavaVersion( java ) + "-" + FingerprintManifest.hash( values.iterator() );
+    }
+
+    /**
+     * AppCDS for application classes is available since Java 10, and its options are stable since Java 11. Other
+     * JVM implementations use distinct options.
+     */
+    private static boolean isSupported( String java )
+    {
+        if ( ForkClasspath.getJavaVersion( java ) < 11 )
+        {
+            return false;
+        }
+        File home = ForkClasspath.getJavaHome( java );
+        File release = home != null ? ForkClasspath.getReleaseFile( home ) : null;
+        try
+        {
+            return release == null || FileUtils.fileRead( release ).toLowerCase().indexOf( "openj9" ) < 0;
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+    }
+
+    private static String toPath( List<File> files )
+    {
+        StringBuilder path = new StringBuilder();
+        for ( File file : files )
+        {
+            path.append( path.length() > 0 ? File.pathSeparator : "" ).append( file.getPath() );
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,186 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Facts learned from previous compilations of the project modules (permutation count, memory...), persisted under the build
+ * directory to tune next compilations.
+ *
+ * @since 2.5.0
+ */
+public class CompilationHistory
+{
+    /** history file name, under the build directory */
+    public static final String FILE_NAME = "gwt-compilation-history.properties";
+
+    private final File file;
+
+    private final Properties properties = new Properties();
+
+    public CompilationHistory( File file )
+        throws IOException
+    {
+        this.file = file;
+        if ( file.exists() )
+        {
+            InputStream in = new FileInputStream( file );
+            try
+            {
+                properties.load( in );
+            }
+            finally
+            {
+                IOUtils.closeQuietly( in );
+            }
+        }
+    }
+
+    /**
+     * @return permutation count of the module on last compilation, or {@link CompilationScheduler#UNKNOWN}
+     */
+    public synchronized int getPermutations( String module )
+    {
+        return getInt( module + ".permutations", CompilationScheduler.UNKNOWN );
+    }
+
+    public synchronized void setPermutations( String module, int permutations )
+    {
+        properties.setProperty( module + ".permutations", String.valueOf( permutations ) );
+    }
+
+    /**
+     * @return permutation count estimated from the module descriptors when the module was last compiled, 0 if unknown
+     */
+    public synchronized int getEstimatedPermutations( String module )
+    {
+        return getInt( module + ".estimatedPermutations", 0 );
+    }
+
+    public synchronized void setEstimatedPermutations( String module, int permutations )
+    {
+        properties.setProperty( module + ".estimatedPermutations", String.valueOf( permutations ) );
+    }
+
+    /**
+     * @return wall-clock time (ms) of the last successful compilation of the module, 0 if unknown
+     */
+    public synchronized long getCompileTime( String module )
+    {
+        return getInt( module + ".compileTime", 0 );
+    }
+
+    public synchronized void setCompileTime( String module, long time )
+    {
+        properties.setProperty( module + ".compileTime", String.valueOf( time ) );
+    }
+
+    /**
+     * @return memory (MB) required by a single compiler worker on last compilation, 0 if unknown
+     */
+    public synchronized long getWorkerMemory( String module )
+    {
+        return getInt( module + ".workerMemory", 0 );
+    }
+
+    public synchronized void setWorkerMemory( String module, long memory )
+    {
+        properties.setProperty( module + ".workerMemory", String.valueOf( memory ) );
+    }
+
+    /**
+     * @return peak memory (MB) of the compiler process on last compilation, 0 if unknown
+     */
+    public synchronized long getPeakMemory( String module )
+    {
+        return getInt( module + ".peakMemory", 0 );
+    }
+
+    public synchronized void setPeakMemory( String module, long memory )
+    {
+        properties.setProperty( module + ".peakMemory", String.valueOf( memory ) );
+    }
+
+    /**
+     * @return local workers that compiled the module after the compiler ran out of memory, 0 if none
+     */
+    public synchronized int getRecoveredWorkers( String module )
+    {
+        return getInt( module + ".recoveredWorkers", 0 );
+    }
+
+    /**
+     * @return heap (MB) that compiled the module after the compiler ran out of memory, 0 if none
+     */
+    public synchronized long getRecoveredHeap( String module )
+    {
+        return getInt( module + ".recoveredHeap", 0 );
+    }
+
+    /**
+     * Remember the settings a compiler needed to compile the module without running out of memory.
+     */
+    public synchronized void setRecovery( String module, int workers, long heap )
+    {
+        properties.setProperty( module + ".recoveredWorkers", String.valueOf( workers ) );
+        properties.setProperty( module + ".recoveredHeap", String.valueOf( heap ) );
+    }
+
+    private int getInt( String key, int defaultValue )
+    {
+        String value = properties.getProperty( key );
+        if ( value != null )
+        {
+            try
+            {
+                return Integer.parseInt( value );
+            }
+            catch ( NumberFormatException e )
+            {
+                // ignored, corrupted history is just useless
+            }
+        }
+        return defaultValue;
+    }
+
+    public synchronized void save()
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            properties.store( out, "GWT compilation history" );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( out );
+        }
+    }
+}
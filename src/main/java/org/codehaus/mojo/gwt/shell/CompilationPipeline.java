@@ -0,0 +1,188 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * The <code>CompilePerms</code> stage of a <code>Precompile</code> / <code>CompilePerms</code> / <code>Link</code>
+ * compilation : permutations of a module are split in contiguous ranges, compiled concurrently by workers through a
+ * {@link PermutationTransport}.
+ *
+ * @since 2.5.0
+ */
+public class CompilationPipeline
+{
+    private final PermutationTransport transport;
+
+    private final int workers;
+
+    private final CompilerPhases phases;
+
+    private final Log log;
+
+    private StreamConsumer console;
+
+    /**
+     * @param transport how to run the permutation workers
+     * @param workers max number of concurrent workers
+     * @param phases where to record the workers phase timings
+     */
+    public CompilationPipeline( PermutationTransport transport, int workers, CompilerPhases phases, Log log )
+    {
+        this.transport = transport;
+        this.workers = Math.max( 1, workers );
+        this.phases = phases;
+        this.log = log;
+    }
+
+    /**
+     * @param console where to write the workers output, <code>null</code> for the log
+     */
+    public void setConsole( StreamConsumer console )
+    {
+        this.console = console;
+    }
+
+    /**
+     * @return the permutations split in (at most) <code>workers</code> contiguous ranges of even size
+     */
+    public static List<List<Integer>> split( int permutations, int workers )
+    {
+        int count = Math.max( 1, Math.min( workers, permutations ) );
+        List<List<Integer>> ranges = new ArrayList<List<Integer>>( count );
+        int next = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            // first ranges get the remainder
+            int size = permutations / count + ( i < permutations % count ? 1 : 0 );
+            List<Integer> range = new ArrayList<Integer>( size );
+            for ( int j = 0; j < size; j++ )
+            {
+                range.add( next++ );
+            }
+            ranges.add( range );
+        }
+        return ranges;
+    }
+
+    /**
+     * Compile all the permutations of a module, once precompiled.
+     *
+     * @param module the module name
+     * @param permutations number of permutations, as computed by <code>Precompile</code>
+     * @param command the <code>CompilePerms</code> command line, without <code>-perms</code> and module
+     */
+    public void compilePermutations( final String module, int permutations, final List<String> command )
+        throws MojoExecutionException
+    {
+        List<List<Integer>> ranges = split( permutations, workers );
+        log.info( "Compiling " + permutations + " permutations of " + module + " with " + ranges.size()
+            + " workers" );
+        ExecutorService executor = Executors.newFixedThreadPool( ranges.size() );
+        Map<String, Future<Integer>> results = new LinkedHashMap<String, Future<Integer>>();
+        for ( List<Integer> range : ranges )
+        {
+            final String perms = StringUtils.join( range.iterator(), "," );
+            final String prefix = "[" + module + " " + range.get( 0 ) + "-" + range.get( range.size() - 1 ) + "] ";
+            results.put( perms, executor.submit( new Callable<Integer>()
+            {
+                public Integer call()
+                    throws Exception
+                {
+                    List<String> cmd = new ArrayList<String>( command );
+                    cmd.add( "-perms" );
+                    cmd.add( perms );
+                    cmd.add( module );
+                    log.debug( prefix + "Execute command :\n" + cmd );
+                    CompilerOutputParser output = new CompilerOutputParser( module, phases, new StreamConsumer()
+                    {
+                        public void consumeLine( String line )
+                        {
+                            if ( console != null )
+                            {
+                                console.consumeLine( prefix + line );
+                            }
+                            else
+                            {
+                                log.info( prefix + line );
+                            }
+                        }
+                    }, log );
+                    try
+                    {
+                        return transport.compilePermutations( cmd, output );
+                    }
+                    finally
+                    {
+                        output.finish();
+                    }
+                }
+            } ) );
+        }
+        executor.shutdown();
+
+        List<String> failed = new ArrayList<String>();
+        Throwable cause = null;
+        try
+        {
+            for ( Map.Entry<String, Future<Integer>> result : results.entrySet() )
+            {
+                try
+                {
+                    int status = result.getValue().get().intValue();
+                    if ( status != 0 )
+                    {
+                        failed.add( result.getKey() );
+                    }
+                }
+                catch ( ExecutionException e )
+                {
+                    failed.add( result.getKey() );
+                    cause = e.getCause();
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while compiling permutations of " + module );
+        }
+        if ( !failed.isEmpty() )
+        {
+            throw new ForkedProcessExecutionException( "Failed to compile permutations " + failed + " of " + module,
+                                                       cause );
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Plan the concurrent compilation of GWT modules as one forked compiler per module, within a CPU and heap budget.
+ * Modules with the most permutations are compiled first, so that the longest compilations don't end up running
+ * alone at the end of the build.
+ *
+ * @since 2.5.0
+ */
+public class CompilationScheduler
+{
+    /** unknown permutation count */
+    public static final int UNKNOWN = -1;
+
+    private static final Pattern MEMORY = Pattern.compile( "(\\d+)([kKmMgGtT]?)" );
+
+    private static final Pattern XMX = Pattern.compile( "-Xmx(\\d+[kKmMgGtT]?)" );
+
+    private final int cpuBudget;
+
+    private final long heapBudget;
+
+    private final long forkHeap;
+
+    /**
+     * @param cpuBudget number of processors the forks may use in total
+     * @param heapBudget total heap (in MB) the forks may use, 0 for no limit
+     * @param forkHeap max heap (in MB) of a single fork, 0 if unknown
+     */
+    public CompilationScheduler( int cpuBudget, long heapBudget, long forkHeap )
+    {
+        this.cpuBudget = Math.max( 1, cpuBudget );
+        this.heapBudget = heapBudget;
+        this.forkHeap = forkHeap;
+    }
+
+    /**
+     * @param modules number of modules to compile
+     * @return the number of forks that can run concurrently
+     */
+    public int getMaxForks( int modules )
+    {
+        int forks = Math.min( modules, cpuBudget );
+        if ( heapBudget > 0 && forkHeap > 0 )
+        {
+            forks = (int) Math.min( forks, heapBudget / forkHeap );
+        }
+        return Math.max( 1, forks );
+    }
+
+    /**
+     * @param permutations estimated permutation count of each module to compile, or {@link #UNKNOWN}
+     * @return the forks to run, in order
+     */
+    public List<Fork> plan( Map<String, Integer> permutations )
+    {
+        int share = Math.max( 1, cpuBudget / getMaxForks( permutations.size() ) );
+        List<Fork> forks = new ArrayList<Fork>();
+        for ( Map.Entry<String, Integer> module : permutations.entrySet() )
+        {
+            int count = module.getValue() == null ? UNKNOWN : module.getValue().intValue();
+            // no need for more workers than permutations
+            int workers = count > 0 ? Math.min( share, count ) : share;
+            forks.add( new Fork( module.getKey(), count, workers ) );
+        }
+        Collections.sort( forks, new Comparator<Fork>()
+        {
+            public int compare( Fork f1, Fork f2 )
+            {
+                // unknown modules may be the biggest ones
+                int p1 = f1.getPermutations() == UNKNOWN ? Integer.MAX_VALUE : f1.getPermutations();
+                int p2 = f2.getPermutations() == UNKNOWN ? Integer.MAX_VALUE : f2.getPermutations();
+                if ( p1 != p2 )
+                {
+                    return p1 > p2 ? -1 : 1;
+                }
+                return f1.getModule().compareTo( f2.getModule() );
+            }
+        } );
+        return forks;
+    }
+
+    /**
+     * @param value memory size using JVM syntax, for example "512m" or "4g". No unit means bytes.
+     * @return size in MB, 0 if not set or invalid
+     */
+    public static long parseMemory( String value )
+    {
+        if ( value == null )
+        {
+            return 0;
+        }
+        Matcher matcher = MEMORY.matcher( value.trim() );
+        if ( !matcher.matches() )
+        {
+            return 0;
+        }
+        long size = Long.parseLong( matcher.group( 1 ) );
+        switch ( Character.toLowerCase( matcher.group( 2 ).length() > 0 ? matcher.group( 2 ).charAt( 0 ) : 'b' ) )
+        {
+            case 't':
+                return size * 1024 * 1024;
+            case 'g':
+                return size * 1024;
+            case 'm':
+                return size;
+            case 'k':
+                return size / 1024;
+            default:
+                return size / ( 1024 * 1024 );
+        }
+    }
+
+    /**
+     * @param jvmArgs some JVM arguments
+     * @return the max heap (in MB) set by last <code>-Xmx</code> option, 0 if not set
+     */
+    public static long getMaxHeap( String jvmArgs )
+    {
+        long heap = 0;
+        if ( jvmArgs != null )
+        {
+            Matcher matcher = XMX.matcher( jvmArgs );
+            while ( matcher.find() )
+            {
+                heap = parseMemory( matcher.group( 1 ) );
+            }
+        }
+        return heap;
+    }
+
+    /**
+     * A planned compiler fork.
+     */
+    public static class Fork
+    {
+        private final String module;
+
+        private final int permutations;
+
+        private final int localWorkers;
+
+        public Fork( String module, int permutations, int localWorkers )
+        {
+            this.module = module;
+            this.permutations = permutations;
+            this.localWorkers = localWorkers;
+        }
+
+        public String getModule()
+        {
+            return module;
+        }
+
+        /**
+         * @return estimated permutation count, or {@link CompilationScheduler#UNKNOWN}
+         */
+        public int getPermutations()
+        {
+            return permutations;
+        }
+
+        public int getLocalWorkers()
+        {
+            return localWorkers;
+        }
+
+        @Override
+        public String toString()
+        {
+            return module + " (" + ( permutations == UNKNOWN ? "?" : String.valueOf( permutations ) )
+                + " permutations, " + localWorkers + " workers)";
+        }
+    }
+}
@@ -26,21 +26,42 @@ package org.codehaus.mojo.gwt.shell;
 import static org.apache.maven.artifact.Artifact.SCOPE_COMPILE;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.SystemUtils;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.codehaus.mojo.gwt.GwtModule;
-import org.codehaus.mojo.gwt.utils.DefaultGwtModuleReader;
+import org.codehaus.mojo.gwt.GwtModuleGraph;
+import org.codehaus.mojo.gwt.GwtModuleReader;
+import org.codehaus.mojo.gwt.PermutationEstimate;
+import org.codehaus.mojo.gwt.utils.BuildCache;
+import org.codehaus.mojo.gwt.utils.FingerprintManifest;
 import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
-import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
-import org.codehaus.plexus.compiler.util.scan.StaleSourceScanner;
-import org.codehaus.plexus.compiler.util.scan.mapping.SingleTargetSourceMapping;
+import org.codehaus.mojo.gwt.utils.JsonWriter;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.plexus.util.cli.StreamConsumer;
 
 /**
  * Invokes the GWTCompiler for the project source.
@@ -59,6 +80,7 @@ import org.codehaus.plexus.util.StringUtils;
 public class CompileMojo
     extends AbstractGwtShellMojo
 {
+    private static final String COMPILE_PERMS = "com.google.gwt.dev.CompilePerms";
 
     /**
      * @parameter expression="${gwt.compiler.skip}" default-value="false"
@@ -244,7 +266,9 @@ public class CompileMojo
     private boolean disableAggressiveOptimization;
 
     /**
-     * EXPERIMENTAL: add -XcompilerMetrics parameter to the compiler command line
+     * EXPERIMENTAL: add -XcompilerMetrics parameter to the compiler command line. The metrics are collected after
+     * compilation in <code>metricsFile</code> and <code>metricsHistoryFile</code>. Implies the <code>extra</code>
+     * directory is created.
      * <p>
      * Can be set from the command line using '-Dgwt.compiler.compilerMetrics=true'
      * </p>
@@ -263,50 +287,1085 @@ public class CompileMojo
      */
     private int fragmentCount;
 
+    /**
+     * Directory where the fingerprint of the compiler inputs of each module is recorded after a successful
+     * compilation. Used to detect that a module is up-to-date based on file contents rather than timestamps.
+     *
+     * @parameter default-value="${project.build.directory}/gwt-fingerprints"
+     * @since 2.5.0
+     */
+    private File fingerprintDirectory;
+
+    /**
+     * Compile each stale module in a dedicated forked compiler, running concurrently, rather than passing all the
+     * modules to a single compiler that compiles them one after the other. Each fork gets its own work directory and
+     * a share of the CPU budget as <code>-localWorkers</code>.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.forkPerModule=true'.
+     * </p>
+     *
+     * @parameter default-value="false" expression="${gwt.compiler.forkPerModule}"
+     * @since 2.5.0
+     */
+    private boolean forkPerModule;
+
+    /**
+     * Number of processors the concurrent compilers may use in total when <code>forkPerModule</code> is set. Defaults
+     * to platform available processors number.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.cpuBudget=n'.
+     * </p>
+     *
+     * @parameter expression="${gwt.compiler.cpuBudget}"
+     * @since 2.5.0
+     */
+    private int cpuBudget;
+
+    /**
+     * Total heap the concurrent compilers may use when <code>forkPerModule</code> is set, for example "8g". The
+     * number of forks is limited so that their cumulated <code>-Xmx</code> (from <code>extraJvmArgs</code>) fits in
+     * this budget. No limit by default.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.heapBudget=...'.
+     * </p>
+     *
+     * @parameter expression="${gwt.compiler.heapBudget}"
+     * @since 2.5.0
+     */
+    private String heapBudget;
+
+    /**
+     * Automatically size the forked compiler from the processors and memory available to the build (taking container
+     * limits into account), the estimated permutations of the modules and the memory used by previous compilations.
+     * This overrides <code>localWorkers</code> and the <code>-Xmx</code> set by <code>extraJvmArgs</code>.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.autoTune=true'.
+     * </p>
+     *
+     * @parameter default-value="false" expression="${gwt.compiler.autoTune}"
+     * @since 2.5.0
+     */
+    private boolean autoTune;
+
+    /**
+     * Number of times a forked compiler that ran out of memory is retried for the modules it failed to compile, with
+     * half the <code>localWorkers</code> or, once a single worker is left, a larger heap up to
+     * <code>oomMaxHeap</code>. The settings that worked are remembered for next builds. 0 disables the retries.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.oomRetries=n'.
+     * </p>
+     *
+     * @parameter default-value="2" expression="${gwt.compiler.oomRetries}"
+     * @since 2.5.0
+     */
+    private int oomRetries;
+
+    /**
+     * Largest heap a compiler retried after running out of memory may get, for example "4g". By default the heap is
+     * not raised, only the workers are reduced.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.oomMaxHeap=...'.
+     * </p>
+     *
+     * @parameter expression="${gwt.compiler.oomMaxHeap}"
+     * @since 2.5.0
+     */
+    private String oomMaxHeap;
+
+    /**
+     * Run the compiler in a long-lived daemon JVM, reused by next builds with the same JDK, JVM arguments and
+     * classpath, to save JVM startup and warm-up and benefit from in-memory compilation caches. Not used when
+     * modules are compiled by concurrent forks.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.daemon=true'.
+     * </p>
+     *
+     * @parameter default-value="false" expression="${gwt.compiler.daemon}"
+     * @since 2.5.0
+     */
+    private boolean daemon;
+
+    /**
+     * Directory where compiler daemons publish their state and logs.
+     *
+     * @parameter default-value="${user.home}/.gwt-maven-plugin/daemons" expression="${gwt.compiler.daemonDirectory}"
+     * @since 2.5.0
+     */
+    private File daemonDirectory;
+
+    /**
+     * Time in seconds a compiler daemon stays alive without any build.
+     *
+     * @parameter default-value="3600" expression="${gwt.compiler.daemonIdleTimeout}"
+     * @since 2.5.0
+     */
+    private int daemonIdleTimeout;
+
+    /**
+     * Number of builds after which a compiler daemon is recycled, to bound its heap growth.
+     *
+     * @parameter default-value="50" expression="${gwt.compiler.daemonMaxBuilds}"
+     * @since 2.5.0
+     */
+    private int daemonMaxBuilds;
+
+    /**
+     * Directory of a local build cache, where compiled modules output is stored by a key computed from all the
+     * compiler inputs and options. When set, a module found in cache is restored rather than compiled.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.cacheDirectory=...'.
+     * </p>
+     *
+     * @parameter expression="${gwt.compiler.cacheDirectory}"
+     * @since 2.5.0
+     */
+    private File cacheDirectory;
+
+    /**
+     * Max size (in MB) of the local build cache. Least recently used entries are evicted.
+     *
+     * @parameter default-value="2048" expression="${gwt.compiler.cacheMaxSize}"
+     * @since 2.5.0
+     */
+    private long cacheMaxSize;
+
+    /**
+     * Base URL of a remote build cache shared between build machines, used in addition to the local
+     * <code>cacheDirectory</code>. Entries are downloaded using HTTP GET and uploaded using HTTP PUT.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.cacheUrl=...'.
+     * </p>
+     *
+     * @parameter expression="${gwt.compiler.cacheUrl}"
+     * @since 2.5.0
+     */
+    private String cacheUrl;
+
+    /**
+     * Run the compilation as a <code>Precompile</code> / <code>CompilePerms</code> / <code>Link</code> pipeline rather
+     * than a single <code>Compiler</code>: modules are precompiled once, then their permutations are split in ranges
+     * compiled concurrently by <code>permutationWorkers</code> worker processes, and finally linked. This scales
+     * modules with many permutations beyond what <code>localWorkers</code> in a single JVM allows.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.pipeline=true'.
+     * </p>
+     *
+     * @parameter default-value="false" expression="${gwt.compiler.pipeline}"
+     * @since 2.5.0
+     */
+    private boolean pipeline;
+
+    /**
+     * Number of worker processes compiling permutations concurrently in <code>pipeline</code> mode. Defaults to
+     * platform available processors number. Each worker runs with <code>localWorkers</code> threads (1 by default).
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.permutationWorkers=n'.
+     * </p>
+     *
+     * @parameter expression="${gwt.compiler.permutationWorkers}"
+     * @since 2.5.0
+     */
+    private int permutationWorkers;
+
+    /**
+     * Class name of the {@link PermutationTransport} used to run permutation workers in <code>pipeline</code> mode.
+     * Defaults to local forked JVMs, forked as the other compiler JVMs with <code>timeOut</code>, watchdog, telemetry
+     * and fork log.
+     *
+     * @parameter default-value="org.codehaus.mojo.gwt.shell.ForkedPermutationTransport"
+     *            expression="${gwt.compiler.permutationTransport}"
+     * @since 2.5.0
+     */
+    private String permutationTransport;
+
+    /**
+     * File where the metrics of the modules compiled by the build are written as JSON, when
+     * <code>compilerMetrics</code> is set : compile time, AST and generated types, JavaScript fragment sizes and
+     * initial download size of each permutation.
+     *
+     * @parameter default-value="${project.build.directory}/gwt-metrics.json"
+     *            expression="${gwt.compiler.metricsFile}"
+     * @since 2.5.0
+     */
+    private File metricsFile;
+
+    /**
+     * File where a summary of the compiler metrics of each compilation is appended, one JSON object per line, when
+     * <code>compilerMetrics</code> is set. Set it outside of the build directory to keep trends across clean builds.
+     *
+     * @parameter default-value="${project.build.directory}/gwt-metrics-history.json"
+     *            expression="${gwt.compiler.metricsHistoryFile}"
+     * @since 2.5.0
+     */
+    private File metricsHistoryFile;
+
+    /**
+     * Fail the build when the compile time or initial download size of a module increases by more than this
+     * percentage compared to the median of its last compilations recorded in <code>metricsHistoryFile</code>.
+     * Compilations with regressions are not recorded. Disabled by default. Requires <code>compilerMetrics</code>.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.metricsRegressionThreshold=n'.
+     * </p>
+     *
+     * @parameter default-value="0" expression="${gwt.compiler.metricsRegressionThreshold}"
+     * @since 2.5.0
+     */
+    private int metricsRegressionThreshold;
+
+    /**
+     * Estimate the permutations of the modules to compile from their module descriptors before compiling them, and
+     * forecast the compile time and memory from previous compilations. Estimates are used to schedule concurrent
+     * compilations, before the compiler reports the actual permutations.
+     *
+     * @parameter default-value="true" expression="${gwt.compiler.estimatePermutations}"
+     * @since 2.5.0
+     */
+    private boolean estimatePermutations;
+
+    /**
+     * Fail the build before compiling when a module is estimated to compile more permutations than this limit, for
+     * example when a locale or user agent is added by mistake. Disabled by default.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.maxPermutations=n'.
+     * </p>
+     *
+     * @parameter default-value="0" expression="${gwt.compiler.maxPermutations}"
+     * @since 2.5.0
+     */
+    private int maxPermutations;
+
+    /** fingerprints of the modules to be compiled, to be saved after successful compilation */
+    private Map<String, FingerprintManifest> fingerprints = new HashMap<String, FingerprintManifest>();
+
+    /** metrics regressions detected during compilation, reported once all modules are compiled */
+    private List<String> regressions = new ArrayList<String>();
+
+    /** timings of the compiler phases, reported once all modules are compiled */
+    private CompilerPhases phases = new CompilerPhases();
+
+    /** name of the module passed to the compiler, by module */
+    private Map<String, String> compilerModules = new HashMap<String, String>();
+
+    /** permutations forecast for the modules to compile, by module */
+    private Map<String, PermutationForecast> forecasts = new HashMap<String, PermutationForecast>();
+
+    /** compiler classpath, computed once */
+    private List<File> compilerClasspath;
+
     public void doExecute( )
         throws MojoExecutionException, MojoFailureException
     {
         if ( skip || "pom".equals( getProject().getPackaging() ) )
         {
-            getLog().info( "GWT compilation is skipped" );
-            return;
+            getLog().info( "GWT compilation is skipped" );
+            return;
+        }
+
+        if ( !this.getOutputDirectory().exists() )
+        {
+            this.getOutputDirectory().mkdirs();
+        }
+
+        compileModules( getModules() );
+    }
+
+    /**
+     * Compile the modules that are not up-to-date, and report the compilation phases and metrics
+     */
+    protected void compileModules( String[] modules )
+        throws MojoExecutionException, MojoFailureException
+    {
+        phases = new CompilerPhases();
+        regressions.clear();
+        forecasts.clear();
+        try
+        {
+            compile( modules );
+        }
+        finally
+        {
+            if ( !phases.isEmpty() )
+            {
+                getLog().info( "GWT compiler phases :" );
+                for ( String line : phases.format() )
+                {
+                    getLog().info( "  " + line );
+                }
+            }
+        }
+
+        if ( !regressions.isEmpty() )
+        {
+            throw new MojoFailureException( "GWT compiler metrics regressed by more than "
+                + metricsRegressionThreshold + "% : " + regressions );
+        }
+    }
+
+    private void compile( String[] modules )
+        throws MojoExecutionException, MojoFailureException
+    {
+        List<String> stale = new ArrayList<String>();
+        for ( String target : modules )
+        {
+            if ( compilationRequired( target, getOutputDirectory() ) )
+            {
+                stale.add( target );
+            }
+        }
+        BuildCache cache = getBuildCache();
+        if ( cache != null && !force )
+        {
+            restoreFromCache( cache, stale );
+        }
+        if ( stale.isEmpty() )
+        {
+            return;
+        }
+
+        CompilationHistory history = getCompilationHistory();
+        if ( estimatePermutations || maxPermutations > 0 )
+        {
+            forecast( stale, history );
+        }
+        ResourceLimits limits = null;
+        if ( autoTune )
+        {
+            limits = ResourceLimits.detect();
+            getLog().info( "Auto-tuning GWT compiler for " + limits );
+        }
+
+        if ( pipeline )
+        {
+            compileInPipeline( stale, history );
+            return;
+        }
+
+        if ( forkPerModule && stale.size() > 1 )
+        {
+            compileInParallel( stale, history, limits );
+            return;
+        }
+
+        int workers = getLocalWorkers();
+        CompilerSizing sizing = null;
+        if ( autoTune )
+        {
+            sizing = getSizing( stale, history, limits.getProcessors(), getAvailableMemory( limits ) );
+            workers = sizing.getLocalWorkers();
+        }
+        compileForked( stale, workDir, sizing, workers, history, "", isDaemon() );
+        saveFingerprints( stale );
+        collectMetrics( stale );
+    }
+
+    /**
+     * Run a compiler for some modules. If it runs out of memory, the modules it didn't compile are compiled again
+     * with less workers or more heap.
+     *
+     * @param work the compiler work directory, <code>null</code> to use a temporary directory
+     * @param prefix prefix for the compiler output lines
+     * @param inDaemon whether to compile in the compiler daemon
+     */
+    private void compileForked( List<String> modules, File work, CompilerSizing sizing, int workers,
+                                CompilationHistory history, final String prefix, boolean inDaemon )
+        throws MojoExecutionException
+    {
+        long heap = sizing != null ? sizing.getMaxHeap() : CompilationScheduler.getMaxHeap( getExtraJvmArgs() );
+        OutOfMemoryRecovery recovery = getRecovery( modules, history, workers, heap );
+        List<String> remaining = modules;
+        while ( true )
+        {
+            JavaCommand cmd = createCommand( recovery.getLocalWorkers(), work );
+            for ( String target : remaining )
+            {
+                cmd.arg( getCompilerModule( target ) );
+            }
+            cmd.forModule( StringUtils.join( remaining.iterator(), "," ) );
+            StreamConsumer prefixed = new StreamConsumer()
+            {
+                public void consumeLine( String line )
+                {
+                    out.consumeLine( prefix + line );
+                }
+            };
+            CompilerOutputParser output =
+                new CompilerOutputParser( getCompilerModule( remaining.get( 0 ) ), phases, prefixed, getLog() );
+            ProcessSampler sampler = prepare( cmd, sizing, output );
+            GcHeapLog heapLog = inDaemon ? null : logHeap( cmd );
+            if ( recovery.isHeapRaised() )
+            {
+                cmd.jvmArg( "-Xmx" + recovery.getMaxHeap() + "m" );
+            }
+            List<String> attempt = remaining;
+            int attemptWorkers = recovery.getLocalWorkers();
+            long start = System.currentTimeMillis();
+            try
+            {
+                if ( inDaemon )
+                {
+                    compileInDaemon( cmd, output );
+                    output.finish();
+                }
+                else
+                {
+                    cmd.execute();
+                }
+                long time = ( System.currentTimeMillis() - start ) / attempt.size();
+                for ( String module : attempt )
+                {
+                    history.setCompileTime( module, time );
+                    if ( recovery.isAdjusted() )
+                    {
+                        history.setRecovery( module, recovery.getLocalWorkers(), recovery.getMaxHeap() );
+                    }
+                }
+                return;
+            }
+            catch ( OutOfMemoryExecutionException e )
+            {
+                if ( !recovery.next() )
+                {
+                    throw e;
+                }
+                remaining = new ArrayList<String>();
+                List<String> completed = output.getCompletedModules();
+                for ( String module : attempt )
+                {
+                    if ( !completed.contains( getCompilerModule( module ) ) )
+                    {
+                        remaining.add( module );
+                    }
+                }
+                if ( remaining.isEmpty() )
+                {
+                    remaining = attempt;
+                }
+                getLog().warn( prefix + "GWT compiler ran out of memory, compiling " + remaining + " again with "
+                    + recovery );
+            }
+            finally
+            {
+                recordPermutations( history, attempt, output );
+                learn( history, attempt, sampler, heapLog, output, attemptWorkers );
+            }
+        }
+    }
+
+    /**
+     * @return the compiler settings to start with, taking into account the settings previous builds needed to not
+     * run out of memory
+     */
+    private OutOfMemoryRecovery getRecovery( Collection<String> modules, CompilationHistory history, int workers,
+                                             long heap )
+    {
+        OutOfMemoryRecovery recovery =
+            new OutOfMemoryRecovery( workers, heap, CompilationScheduler.parseMemory( oomMaxHeap ), oomRetries );
+        for ( String module : modules )
+        {
+            recovery.restore( history.getRecoveredWorkers( module ), history.getRecoveredHeap( module ) );
+        }
+        if ( recovery.isAdjusted() )
+        {
+            getLog().info( "Compiling " + modules + " with " + recovery
+                + " as previous builds ran out of memory" );
+        }
+        return recovery;
+    }
+
+    /**
+     * Run the compilation in a warm compiler daemon rather than a fresh forked JVM. Falls back to a forked JVM when
+     * no daemon can be started.
+     */
+    private void compileInDaemon( JavaCommand cmd, StreamConsumer output )
+        throws MojoExecutionException
+    {
+        cmd.withinClasspath( getClassPathElementFor( CompilerDaemon.class ) );
+        CompilerDaemonClient client =
+            new CompilerDaemonClient( getLog(), daemonDirectory, daemonIdleTimeout, daemonMaxBuilds );
+        client.setForkClasspath( getForkClasspath() );
+        int status;
+        try
+        {
+            status = client.compile( cmd.getJvmCommand(), cmd.getArgs(), output );
+        }
+        catch ( CompilerDaemonUnavailableException e )
+        {
+            getLog().warn( e.getMessage() );
+            getLog().warn( "Compiling in a forked JVM" );
+            cmd.execute();
+            return;
+        }
+        getConsole().flush();
+        if ( status != 0 )
+        {
+            throw new ForkedProcessExecutionException( "GWT compilation in compiler daemon failed with status "
+                + status );
+        }
+    }
+
+    /**
+     * Estimate the permutations of the modules to compile, forecast their compilation cost, and fail if a module
+     * exceeds <code>maxPermutations</code>. Modules which descriptors can't be read are not estimated, the compiler
+     * will report the error.
+     */
+    private void forecast( Collection<String> modules, CompilationHistory history )
+        throws MojoExecutionException, MojoFailureException
+    {
+        List<String> exceeded = new ArrayList<String>();
+        for ( String module : modules )
+        {
+            PermutationEstimate estimate;
+            try
+            {
+                estimate = new PermutationEstimate( getCompilerModuleGraph( module ) );
+            }
+            catch ( GwtModuleReaderException e )
+            {
+                getLog().debug( "Failed to estimate permutations of " + module, e );
+                continue;
+            }
+            PermutationForecast forecast = new PermutationForecast( module, estimate, history );
+            forecasts.put( module, forecast );
+            history.setEstimatedPermutations( module, estimate.getPermutations() );
+            getLog().info( forecast.toString() );
+            if ( maxPermutations > 0 && estimate.getPermutations() > maxPermutations )
+            {
+                exceeded.add( module + " (" + estimate.getPermutations() + ")" );
+            }
+        }
+        if ( !exceeded.isEmpty() )
+        {
+            throw new MojoFailureException( "GWT modules exceed " + maxPermutations + " permutations : " + exceeded );
+        }
+    }
+
+    /**
+     * @return the graph of the module the compiler compiles for a module, i.e. its derived module if any
+     */
+    private GwtModuleGraph getCompilerModuleGraph( String module )
+        throws GwtModuleReaderException, MojoExecutionException
+    {
+        String compilerModule = getCompilerModule( module );
+        if ( compilerModule.equals( module ) )
+        {
+            return getModuleGraph( module );
+        }
+        final GwtModule derived = deriveModule( readModule( module ) ).toModule( this );
+        return GwtModuleGraph.build( compilerModule, new GwtModuleReader()
+        {
+            public GwtModule readModule( String name )
+                throws GwtModuleReaderException
+            {
+                return name.equals( derived.getName() ) ? derived : CompileMojo.this.readModule( name );
+            }
+
+            public List<String> getGwtModules()
+            {
+                return CompileMojo.this.getGwtModules();
+            }
+        } );
+    }
+
+    /**
+     * @return the permutations forecast for a module, or the permutations of its previous compilation
+     */
+    private int getPermutations( String module, CompilationHistory history )
+    {
+        PermutationForecast forecast = forecasts.get( module );
+        return forecast != null ? forecast.getPermutations() : history.getPermutations( module );
+    }
+
+    /**
+     * Compute the sizing of a compiler for some modules, based on previous compilations.
+     */
+    private CompilerSizing getSizing( Collection<String> modules, CompilationHistory history, int processors,
+                                      long memory )
+    {
+        int permutations = 0;
+        long workerMemory = 0;
+        for ( String module : modules )
+        {
+            int count = getPermutations( module, history );
+            permutations = count == CompilationScheduler.UNKNOWN || permutations == CompilationScheduler.UNKNOWN
+                            ? CompilationScheduler.UNKNOWN : Math.max( permutations, count );
+            workerMemory = Math.max( workerMemory, history.getWorkerMemory( module ) );
+        }
+        CompilerSizing sizing = new CompilerSizing( processors, memory, permutations, workerMemory );
+        getLog().info( "Compiler for " + modules + " sized as " + sizing );
+        return sizing;
+    }
+
+    /**
+     * @return memory (MB) available for forked compilers, once the Maven JVM itself is taken into account
+     */
+    private long getAvailableMemory( ResourceLimits limits )
+    {
+        if ( limits.getMemory() <= 0 )
+        {
+            return 0;
+        }
+        long maven = Runtime.getRuntime().totalMemory() / ( 1024 * 1024 );
+        return Math.max( CompilerSizing.BASE_MEMORY, limits.getMemory() - maven );
+    }
+
+    /**
+     * Setup the command for monitoring and sizing.
+     *
+     * @param output parser for the compiler output
+     * @return a memory sampler for the forked compiler
+     */
+    private ProcessSampler prepare( JavaCommand cmd, CompilerSizing sizing, CompilerOutputParser output )
+    {
+        if ( sizing != null )
+        {
+            cmd.jvmArg( "-Xmx" + sizing.getMaxHeap() + "m" )
+               .jvmArg( "-XX:+IgnoreUnrecognizedVMOptions" )
+               .jvmArg( "-XX:ActiveProcessorCount=" + sizing.getProcessors() );
+        }
+        cmd.withOutput( output ).withListener( output );
+        ProcessSampler sampler = new ProcessSampler( 1000 );
+        cmd.withListener( sampler );
+        return sampler;
+    }
+
+    /**
+     * Record the permutation counts the compiler reported, under the project module names.
+     */
+    private void recordPermutations( CompilationHistory history, Collection<String> modules,
+                                     CompilerOutputParser output )
+    {
+        for ( String module : modules )
+        {
+            Integer permutations = output.getPermutationCount( compilerModules.get( module ) );
+            if ( permutations != null )
+            {
+                history.setPermutations( module, permutations.intValue() );
+            }
+        }
+    }
+
+    /**
+     * Make the compiler log its heap after garbage collections, to learn the memory it needs. The GC log is written
+     * to a temporary file, so it is not set on a compiler daemon, which would be restarted for each build.
+     *
+     * @return the heap log, <code>null</code> if it can't be written
+     */
+    private GcHeapLog logHeap( JavaCommand cmd )
+    {
+        GcHeapLog heap = new GcHeapLog();
+        try
+        {
+            cmd.jvmArg( heap.getJvmArg( getJavaCommand(), getTelemetryDirectory() ) ).withListener( heap );
+            return heap;
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Cannot log the compiler heap: " + e.getMessage() );
+        }
+        catch ( MojoExecutionException e )
+        {
+            getLog().debug( "Cannot log the compiler heap: " + e.getMessage() );
+        }
+        return null;
+    }
+
+    /**
+     * Record the memory used by the compiler, and save the history for next builds. The memory per worker is learned
+     * from the heap retained after garbage collections while the compiler worked on each module, as the resident
+     * memory of a JVM grows up to its max heap.
+     *
+     * @param heap the compiler heap log, <code>null</code> if not available
+     * @param output the compiler output, that tells when each module has been compiled
+     */
+    private void learn( CompilationHistory history, List<String> modules, ProcessSampler sampler, GcHeapLog heap,
+                        CompilerOutputParser output, int workers )
+    {
+        long peak = sampler.getPeakMemory();
+        if ( peak > 0 && modules.size() == 1 )
+        {
+            // the resident memory of a compiler working on several modules can't be split by module
+            getLog().debug( "Compiler for " + modules + " peak memory " + peak + "MB" );
+            history.setPeakMemory( modules.get( 0 ), peak );
+        }
+        if ( heap != null && !heap.isEmpty() )
+        {
+            List<String> started = new ArrayList<String>( output.getModuleStarts().keySet() );
+            List<Long> starts = new ArrayList<Long>( output.getModuleStarts().values() );
+            for ( String module : modules )
+            {
+                long from = 0;
+                long to = Long.MAX_VALUE;
+                if ( modules.size() > 1 )
+                {
+                    int index = started.indexOf( compilerModules.get( module ) );
+                    if ( index < 0 )
+                    {
+                        continue;
+                    }
+                    from = index > 0 ? starts.get( index ).longValue() : 0;
+                    to = index + 1 < starts.size() ? starts.get( index + 1 ).longValue() : Long.MAX_VALUE;
+                }
+                long live = heap.getLiveHeap( from, to );
+                if ( live > 0 )
+                {
+                    getLog().debug( "Compiler for " + module + " retained " + live + "MB heap with " + workers
+                        + " workers" );
+                    history.setWorkerMemory( module, CompilerSizing.learnWorkerMemory( live, workers ) );
+                }
+            }
+        }
+        try
+        {
+            history.save();
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save GWT compilation history", e );
+        }
+    }
+
+    /**
+     * Compile each module in a dedicated forked compiler. Forks run concurrently within the configured CPU and heap
+     * budget, modules with the most permutations being started first.
+     */
+    private void compileInParallel( List<String> modules, final CompilationHistory history, ResourceLimits limits )
+        throws MojoExecutionException
+    {
+        Map<String, Integer> permutations = new LinkedHashMap<String, Integer>();
+        for ( String module : modules )
+        {
+            permutations.put( module, getPermutations( module, history ) );
+        }
+
+        int cpus = cpuBudget > 0 ? cpuBudget : Runtime.getRuntime().availableProcessors();
+        long memory = CompilationScheduler.parseMemory( heapBudget );
+        long heap = CompilationScheduler.getMaxHeap( getExtraJvmArgs() );
+        if ( limits != null )
+        {
+            // forks are sized to share the available memory, so only limited by CPU
+            cpus = cpuBudget > 0 ? cpuBudget : limits.getProcessors();
+            memory = memory > 0 ? memory : getAvailableMemory( limits );
+            heap = 0;
+        }
+        CompilationScheduler scheduler = new CompilationScheduler( cpus, limits != null ? 0 : memory, heap );
+        int forks = scheduler.getMaxForks( modules.size() );
+        List<CompilationScheduler.Fork> plan = scheduler.plan( permutations );
+        getLog().info( "Compiling " + modules.size() + " GWT modules with up to " + forks + " concurrent forks, using "
+                           + cpus + " processors" + ( heap > 0 ? " and " + heap + "MB heap per fork" : "" ) );
+
+        // classpath is resolved and derived modules are generated before the forks, which may be retried, run
+        getCompilerClasspath();
+        ExecutorService executor = Executors.newFixedThreadPool( forks );
+        Map<String, Future<?>> results = new LinkedHashMap<String, Future<?>>();
+        for ( final CompilationScheduler.Fork fork : plan )
+        {
+            getLog().debug( "Scheduling compilation of " + fork );
+            final String module = fork.getModule();
+            int workers = localWorkers > 0 ? localWorkers : fork.getLocalWorkers();
+            CompilerSizing sizing = null;
+            if ( limits != null )
+            {
+                sizing = getSizing( Collections.singleton( module ), history, fork.getLocalWorkers(),
+                                    memory / forks );
+                workers = sizing.getLocalWorkers();
+            }
+            final int effectiveWorkers = workers;
+            final CompilerSizing effectiveSizing = sizing;
+            getCompilerModule( module );
+            results.put( module, executor.submit( new Callable<Object>()
+            {
+                public Object call()
+                    throws MojoExecutionException
+                {
+                    long start = System.currentTimeMillis();
+                    compileForked( Collections.singletonList( module ), getForkWorkDir( module ), effectiveSizing,
+                                   effectiveWorkers, history, "[" + module + "] ", false );
+                    getLog().info( "[" + module + "] compiled in " + ( System.currentTimeMillis() - start ) + "ms" );
+                    return null;
+                }
+            } ) );
+        }
+        executor.shutdown();
+
+        List<String> compiled = new ArrayList<String>();
+        Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+        try
+        {
+            for ( Map.Entry<String, Future<?>> result : results.entrySet() )
+            {
+                try
+                {
+                    result.getValue().get();
+                    compiled.add( result.getKey() );
+                }
+                catch ( ExecutionException e )
+                {
+                    getLog().error( "[" + result.getKey() + "] " + e.getCause().getMessage() );
+                    failures.put( result.getKey(), e.getCause() );
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for GWT compilation" );
+        }
+        finally
+        {
+            saveFingerprints( compiled );
+            collectMetrics( compiled );
+        }
+
+        if ( !failures.isEmpty() )
+        {
+            Throwable cause = failures.values().iterator().next();
+            throw new MojoExecutionException( "GWT compilation failed for modules " + failures.keySet(), cause );
+        }
+    }
+
+    /**
+     * Compile the modules as a pipeline : precompile all modules in a single JVM, fan out the permutations of each
+     * module to concurrent workers, then link all modules.
+     */
+    private void compileInPipeline( List<String> modules, CompilationHistory history )
+        throws MojoExecutionException
+    {
+        File work = workDir != null ? workDir : new File( getProject().getBuild().getDirectory(), "gwt-work/pipeline" );
+        work.mkdirs();
+
+        JavaCommand precompile = newCommand( "com.google.gwt.dev.Precompile" );
+        addCompilerOptions( precompile );
+        precompile.arg( "-workDir", work.getAbsolutePath() );
+        CompilerOutputParser output = new CompilerOutputParser( modules.get( 0 ), phases, out, getLog() );
+        precompile.withOutput( output ).withListener( output );
+        for ( String module : modules )
+        {
+            precompile.arg( getCompilerModule( module ) );
+        }
+        precompile.forModule( StringUtils.join( modules.iterator(), "," ) ).execute();
+        if ( validateOnly )
+        {
+            return;
+        }
+
+        int workers = permutationWorkers > 0 ? permutationWorkers : Runtime.getRuntime().availableProcessors();
+        CompilationPipeline compilation =
+            new CompilationPipeline( getPermutationTransport(), workers, phases, getLog() );
+        compilation.setConsole( out );
+        JavaCommand compilePerms = newCommand( COMPILE_PERMS );
+        addCompilerOptions( compilePerms );
+        compilePerms.arg( "-workDir", work.getAbsolutePath() )
+            .arg( "-localWorkers", String.valueOf( localWorkers > 0 ? localWorkers : 1 ) );
+        // a remote transport runs the command elsewhere, so it can't record the classes to archive
+        List<String> jvmCommand = applyClassDataSharing( compilePerms.getJvmCommand(), false );
+        List<String> command = new ArrayList<String>( compactClasspath( jvmCommand, false ) );
+        command.add( COMPILE_PERMS );
+        command.addAll( compilePerms.getArgs() );
+        for ( String module : modules )
+        {
+            String compilerModule = getCompilerModule( module );
+            int permutations = readPermutationCount( work, compilerModule );
+            history.setPermutations( module, permutations );
+            compilation.compilePermutations( compilerModule, permutations, command );
+        }
+        getConsole().flush();
+        try
+        {
+            history.save();
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save GWT compilation history", e );
+        }
+
+        JavaCommand link = newCommand( "com.google.gwt.dev.Link" );
+        link.arg( "-logLevel", getLogLevel() )
+            .arg( "-workDir", work.getAbsolutePath() )
+            .arg( "-war", getOutputDirectory().getAbsolutePath() );
+        addArgumentExtra( link );
+        addArgumentDeploy( link );
+        for ( String module : modules )
+        {
+            link.arg( getCompilerModule( module ) );
+        }
+        output = new CompilerOutputParser( modules.get( 0 ), phases, out, getLog() );
+        link.withOutput( output ).withListener( output );
+        link.forModule( StringUtils.join( modules.iterator(), "," ) ).execute();
+        saveFingerprints( modules );
+        collectMetrics( modules );
+    }
+
+    /**
+     * @return the permutation count computed by <code>Precompile</code> for a module
+     */
+    private int readPermutationCount( File work, String module )
+        throws MojoExecutionException
+    {
+        File file = new File( work, module + "/compiler/permCount.txt" );
+        try
+        {
+            return Integer.parseInt( FileUtils.fileRead( file ).trim() );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to read permutation count of " + module + " from " + file, e );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new MojoExecutionException( "Invalid permutation count of " + module + " in " + file, e );
+        }
+    }
+
+    private PermutationTransport getPermutationTransport()
+        throws MojoExecutionException
+    {
+        if ( ForkedPermutationTransport.class.getName().equals( permutationTransport ) )
+        {
+            return new JavaCommandTransport();
+        }
+        try
+        {
+            return (PermutationTransport) Class.forName( permutationTransport ).newInstance();
+        }
+        catch ( Exception e )
+        {
+            throw new MojoExecutionException( "Failed to create permutation transport " + permutationTransport, e );
         }
+    }
 
-        if ( !this.getOutputDirectory().exists() )
+    /**
+     * Local permutation workers, forked as {@link JavaCommand}s so that they get the time-out, watchdog, telemetry,
+     * fork log and class data sharing of the other compiler JVMs.
+     */
+    private class JavaCommandTransport
+        implements PermutationTransport
+    {
+        public int compilePermutations( List<String> command, StreamConsumer output )
+            throws IOException
         {
-            this.getOutputDirectory().mkdirs();
+            List<String> args = command.subList( command.indexOf( COMPILE_PERMS ) + 1, command.size() );
+            try
+            {
+                newCommand( COMPILE_PERMS ).args( args ).withOutput( output )
+                    .forModule( args.get( args.size() - 1 ) ).execute();
+                return 0;
+            }
+            catch ( MojoExecutionException e )
+            {
+                IOException ioe = new IOException( e.getMessage() );
+                ioe.initCause( e );
+                throw ioe;
+            }
         }
+    }
 
-        compile( getModules() );
+    protected boolean isDraftCompile()
+    {
+        return draftCompile;
     }
 
-    private void compile( String[] modules )
-        throws MojoExecutionException
+    protected boolean isDaemon()
     {
-        boolean upToDate = true;
+        return daemon;
+    }
+
+    /**
+     * Hook to compile a module through a {@link DerivedModule} rather than directly. Modules are derived when user
+     * agents or locales to compile are restricted.
+     *
+     * @param module the module to compile
+     * @return the derived module to compile instead, <code>null</code> to compile the module itself
+     */
+    protected DerivedModule deriveModule( GwtModule module )
+    {
+        return getDevProfileModule( module );
+    }
 
-        JavaCommand cmd = new JavaCommand( "com.google.gwt.dev.Compiler" );
-        if ( gwtSdkFirstInClasspath )
+    /**
+     * @return the name of the module to pass to the compiler for a module, derived module being generated if needed
+     */
+    private String getCompilerModule( String module )
+        throws MojoExecutionException
+    {
+        String name = compilerModules.get( module );
+        if ( name != null )
         {
-            cmd.withinClasspath( getGwtUserJar() )
-               .withinClasspath( getGwtDevJar() );
+            return name;
         }
-        cmd.withinScope( Artifact.SCOPE_COMPILE );
-
-        if ( !gwtSdkFirstInClasspath )
+        name = module;
+        try
+        {
+            DerivedModule derived = deriveModule( readModule( module ) );
+            if ( derived != null )
+            {
+                derived.write( getDerivedModulesDirectory() );
+                getLog().info( "Compiling " + module + " as " + derived.getName() + " (" + derived.getDescription()
+                    + ")" );
+                name = derived.getName();
+            }
+        }
+        catch ( GwtModuleReaderException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( IOException e )
         {
-            cmd.withinClasspath( getGwtUserJar() )
-               .withinClasspath( getGwtDevJar() );
+            throw new MojoExecutionException( "Failed to generate derived module for " + module, e );
         }
+        compilerModules.put( module, name );
+        return name;
+    }
+
+    /**
+     * Create the compiler command line, without the modules to compile.
+     *
+     * @param workers the number of local workers
+     * @param work the compiler work directory, <code>null</code> to use a temporary directory
+     */
+    private JavaCommand createCommand( int workers, File work )
+        throws MojoExecutionException
+    {
+        JavaCommand cmd = newCommand( "com.google.gwt.dev.Compiler" );
 
         cmd.arg( "-XdisableUpdateCheck" )
-            .arg( "-logLevel", getLogLevel() )
-            .arg( "-style", getStyle() )
             .arg( "-war", getOutputDirectory().getAbsolutePath() )
-            .arg( "-localWorkers", String.valueOf( getLocalWorkers() ) )
+            .arg( "-localWorkers", String.valueOf( workers ) )
+            .arg( treeLogger, "-treeLogger" );
+        addCompilerOptions( cmd );
+        addArgumentExtra( cmd );
+        addArgumentDeploy(cmd);
+
+        if ( work != null )
+        {
+            cmd.arg( "-workDir" ).arg( String.valueOf( work ) );
+        }
+        return cmd;
+    }
+
+    /**
+     * @param className the GWT compiler entry point
+     * @return a command to run the entry point with the compiler classpath
+     */
+    private JavaCommand newCommand( String className )
+        throws MojoExecutionException
+    {
+        Collection<File> classpath = getCompilerClasspath();
+        return new JavaCommand( className ).withinClasspath( classpath.toArray( new File[classpath.size()] ) );
+    }
+
+    /**
+     * Add the options that control the compilation itself, shared by <code>Compiler</code>, <code>Precompile</code>
+     * and <code>CompilePerms</code>.
+     */
+    private void addCompilerOptions( JavaCommand cmd )
+        throws MojoExecutionException
+    {
+        cmd.arg( "-logLevel", getLogLevel() )
+            .arg( "-style", getStyle() )
             // optional advanced arguments
-            .arg( enableAssertions, "-ea" ).arg( draftCompile, "-draftCompile" )
-            .arg( validateOnly, "-validateOnly" ).arg( treeLogger, "-treeLogger" )
+            .arg( enableAssertions, "-ea" ).arg( isDraftCompile(), "-draftCompile" )
+            .arg( validateOnly, "-validateOnly" )
             .arg( disableClassMetadata, "-XdisableClassMetadata" )
             .arg( disableCastChecking, "-XdisableCastChecking" )
             .arg( disableRunAsync, "-XdisableRunAsync" )
@@ -323,7 +1382,19 @@ public class CompileMojo
             cmd.arg( "-optimize" ).arg( Integer.toString( optimizationLevel ) );
         }
 
-        if ( extraParam || compileReport )
+        if ( compileReport )
+        {
+            cmd.arg( "-compileReport" );
+        }
+
+        addCompileSourceArtifacts( cmd );
+        addArgumentGen( cmd );
+        addPersistentUnitCache(cmd);
+    }
+
+    private void addArgumentExtra( JavaCommand cmd )
+    {
+        if ( isExtraEnabled() )
         {
             getLog().debug( "create extra directory " );
             if ( !extra.exists() )
@@ -336,35 +1407,256 @@ public class CompileMojo
         {
             getLog().debug( "NOT create extra directory " );
         }
+    }
 
-        if ( compileReport )
+    /**
+     * @return a dedicated work directory for the forked compiler of a module
+     */
+    private File getForkWorkDir( String module )
+    {
+        File dir = workDir != null ? new File( workDir, module )
+                        : new File( getProject().getBuild().getDirectory(), "gwt-work/" + module );
+        dir.mkdirs();
+        return dir;
+    }
+
+    private CompilationHistory getCompilationHistory()
+        throws MojoExecutionException
+    {
+        File file = new File( getProject().getBuild().getDirectory(), CompilationHistory.FILE_NAME );
+        try
         {
-            cmd.arg( "-compileReport" );
+            return new CompilationHistory( file );
         }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to read GWT compilation history " + file, e );
+        }
+    }
 
-        addCompileSourceArtifacts( cmd );
-        addArgumentDeploy(cmd);
-        addArgumentGen( cmd );
-        addPersistentUnitCache(cmd);
+    /**
+     * Record the fingerprint of the modules that have been successfully compiled, for next build to detect they are
+     * up-to-date, and publish their output to the build cache.
+     */
+    private void saveFingerprints( Collection<String> modules )
+        throws MojoExecutionException
+    {
+        BuildCache cache = getBuildCache();
+        for ( String module : modules )
+        {
+            FingerprintManifest fingerprint = fingerprints.remove( module );
+            if ( fingerprint == null )
+            {
+                continue;
+            }
+            try
+            {
+                fingerprint.save();
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Failed to save fingerprint of compiled GWT module " + module, e );
+            }
+            if ( cache != null )
+            {
+                try
+                {
+                    cache.store( getCacheKey( module, fingerprint ), getCachedOutputs( module ) );
+                }
+                catch ( IOException e )
+                {
+                    getLog().warn( "Failed to store " + module + " in build cache : " + e.getMessage() );
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect the compiler metrics of the modules that have been compiled in <code>metricsFile</code>, record them in
+     * <code>metricsHistoryFile</code>, and check them for regressions.
+     */
+    private void collectMetrics( Collection<String> modules )
+        throws MojoExecutionException
+    {
+        if ( !compilerMetrics || validateOnly || modules.isEmpty() )
+        {
+            return;
+        }
+        List<CompilerMetrics> metrics = new ArrayList<CompilerMetrics>();
+        for ( String module : modules )
+        {
+            File xml;
+            try
+            {
+                xml = new File( extra, readModule( module ).getPath() + "/soycReport/compilerMetrics.xml" );
+            }
+            catch ( GwtModuleReaderException e )
+            {
+                throw new MojoExecutionException( e.getMessage(), e );
+            }
+            if ( !xml.exists() )
+            {
+                getLog().warn( "No compiler metrics found for " + module + " in " + xml );
+                continue;
+            }
+            try
+            {
+                metrics.add( CompilerMetrics.read( module, xml ) );
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Failed to read compiler metrics of " + module + " : " + e.getMessage() );
+            }
+        }
+        if ( metrics.isEmpty() )
+        {
+            return;
+        }
+
+        long timestamp = System.currentTimeMillis();
+        try
+        {
+            metricsFile.getParentFile().mkdirs();
+            Writer writer = WriterFactory.newWriter( metricsFile, "UTF-8" );
+            try
+            {
+                JsonWriter json = new JsonWriter( writer );
+                json.beginObject().name( "timestamp" ).value( timestamp ).name( "modules" ).beginArray();
+                for ( CompilerMetrics module : metrics )
+                {
+                    module.write( json );
+                }
+                json.endArray().endObject();
+            }
+            finally
+            {
+                IOUtil.close( writer );
+            }
 
-        if ( workDir != null )
+            CompilerMetricsHistory history = new CompilerMetricsHistory( metricsHistoryFile );
+            for ( CompilerMetrics module : metrics )
+            {
+                getLog().info( module.getModule() + " compiled in " + module.getCompileTime()
+                    + "ms, initial download " + module.getInitialDownloadSize() + " bytes" );
+                List<String> moduleRegressions = metricsRegressionThreshold > 0
+                    ? history.getRegressions( module, metricsRegressionThreshold ) : Collections.<String> emptyList();
+                // a regression must not become the baseline, or the next build would pass
+                if ( moduleRegressions.isEmpty() )
+                {
+                    history.append( module, timestamp );
+                }
+                regressions.addAll( moduleRegressions );
+            }
+        }
+        catch ( IOException e )
         {
-            cmd.arg( "-workDir" ).arg( String.valueOf( workDir ) );
+            throw new MojoExecutionException( "Failed to write GWT compiler metrics", e );
         }
+    }
 
-        for ( String target : modules )
+    private boolean isExtraEnabled()
+    {
+        return extraParam || compileReport || compilerMetrics;
+    }
+
+    /**
+     * @return the build cache, <code>null</code> if not configured
+     */
+    private BuildCache getBuildCache()
+    {
+        if ( cacheDirectory == null || validateOnly )
+        {
+            return null;
+        }
+        return new BuildCache( cacheDirectory, cacheMaxSize, cacheUrl, getLog() );
+    }
+
+    /**
+     * Restore the output of the modules found in build cache, and remove them from modules to compile.
+     */
+    private void restoreFromCache( BuildCache cache, List<String> modules )
+        throws MojoExecutionException
+    {
+        for ( Iterator<String> iterator = modules.iterator(); iterator.hasNext(); )
         {
-            if ( !compilationRequired( target, getOutputDirectory() ) )
+            String module = iterator.next();
+            FingerprintManifest fingerprint = fingerprints.get( module );
+            if ( fingerprint == null )
             {
                 continue;
             }
-            cmd.arg( target );
-            upToDate = false;
+            String key = getCacheKey( module, fingerprint );
+            try
+            {
+                if ( cache.restore( key, getCachedOutputs( module ) ) )
+                {
+                    getLog().info( module + " restored from build cache (" + key + ")" );
+                    fingerprints.remove( module );
+                    fingerprint.save();
+                    iterator.remove();
+                }
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Failed to restore " + module + " from build cache : " + e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * The cache key identifies the module inputs (sources, libraries, GWT SDK), the compiler version and all the
+     * compiler options that have an impact on the generated output. Source paths are relative to the project base
+     * directory and libraries are identified by content, so that entries can be shared between workspaces.
+     */
+    private String getCacheKey( String module, FingerprintManifest fingerprint )
+    {
+        Artifact gwtDev = getArtifact( "com.google.gwt", "gwt-dev" );
+        List<String> key = new ArrayList<String>();
+        key.add( module );
+        key.add( fingerprint.getDigest( getProject().getBasedir() ) );
+        key.add( gwtDev != null ? gwtDev.getVersion() : "" );
+        key.add( "-style " + getStyle() );
+        key.add( "-optimize " + optimizationLevel );
+        key.add( "-XfragmentCount " + fragmentCount );
+        key.add( "-ea " + enableAssertions );
+        key.add( "-draftCompile " + isDraftCompile() );
+        key.add( "-strict " + strict );
+        key.add( "-XdisableClassMetadata " + disableClassMetadata );
+        key.add( "-XdisableCastChecking " + disableCastChecking );
+        key.add( "-XdisableRunAsync " + disableRunAsync );
+        key.add( "-XsoycDetailed " + soycDetailed );
+        key.add( "-XenableClosureCompiler " + enableClosureCompiler );
+        key.add( "-XcompilerMetrics " + compilerMetrics );
+        key.add( "-XdisableAggressiveOptimization " + disableAggressiveOptimization );
+        key.add( "-compileReport " + compileReport );
+        key.add( "-extra " + isExtraEnabled() );
+        return FingerprintManifest.hash( key.iterator() );
+    }
+
+    /**
+     * @return the output directories of a module that are stored in build cache
+     */
+    private Map<String, File> getCachedOutputs( String module )
+        throws MojoExecutionException
+    {
+        String path;
+        try
+        {
+            path = readModule( module ).getPath();
         }
-        if ( !upToDate )
+        catch ( GwtModuleReaderException e )
         {
-            cmd.execute();
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        Map<String, File> outputs = new LinkedHashMap<String, File>();
+        outputs.put( "war", new File( getOutputDirectory(), path ) );
+        if ( isExtraEnabled() )
+        {
+            outputs.put( "extra", new File( extra, path ) );
         }
+        File deployDir = getDeploy() != null ? getDeploy() : new File( getOutputDirectory(), "WEB-INF/deploy" );
+        outputs.put( "deploy", new File( deployDir, path ) );
+        return outputs;
     }
 
     private int getLocalWorkers()
@@ -389,9 +1681,10 @@ public class CompileMojo
     }
 
     /**
-     * Try to find out, if there are stale sources. If aren't some, we don't have to compile... ...this heuristic
-     * doesn't take into account, that there could be updated dependencies. But for this case, as 'clean compile' could
-     * be executed which would force a compilation.
+     * Try to find out, if there are stale sources. If aren't some, we don't have to compile... The content of all
+     * compiler inputs (module descriptors, sources and public resources of the module and all its inherited modules,
+     * GWT libraries and SDK) is compared with the fingerprint recorded by the last successful compilation, so that the
+     * check doesn't rely on file timestamps.
      *
      * @param module Name of the GWT module to compile
      * @param output Output path
@@ -416,6 +1709,9 @@ public class CompileMojo
             }
             getLog().debug( "Module has an entrypoint" );
 
+            FingerprintManifest fingerprint = computeFingerprint( gwtModule );
+            fingerprints.put( module, fingerprint );
+
             if ( force )
             {
                 return true;
@@ -438,55 +1734,11 @@ public class CompileMojo
             	return true; //the module was read from something like an InputStream; always recompile this because we can't make any other choice
             }
             getLog().debug( "There is a module source file (not an input stream");
-            
-            //If input is newer than target, recompile
-            if(moduleFile.lastModified() > outputTargetFile.lastModified()) 
-            {
-                getLog().debug( "Module file has been modified since the output file was created; recompiling" );
-            	return true;
-            }
-            getLog().debug( "The module XML hasn't been updated");
-
-            // js file already exists, but may not be up-to-date with project source files
-            SingleTargetSourceMapping singleTargetMapping = new SingleTargetSourceMapping( ".java", outputTarget );
-            StaleSourceScanner scanner = new StaleSourceScanner();
-            scanner.addSourceMapping( singleTargetMapping );
-
-            SingleTargetSourceMapping uiBinderMapping = new SingleTargetSourceMapping( ".ui.xml", outputTarget );
-            scanner.addSourceMapping( uiBinderMapping );
-
-            Collection<File> compileSourceRoots = new HashSet<File>();
-           	for (Iterator iterator = getProject().getCompileSourceRoots().iterator(); iterator.hasNext();) {	
-				String sourceRoot = (String) iterator.next();
-           		for (String sourcePackage : gwtModule.getSources()) {
-			        String packagePath = gwtModule.getPackage().replace( '.', File.separatorChar );
-		            File sourceDirectory = new File (sourceRoot + File.separatorChar + packagePath + File.separator + sourcePackage);
-		            if(sourceDirectory.exists()) {
-		            	getLog().debug(" Looking in a source directory "+sourceDirectory.getAbsolutePath() + " for possible changes");
-			            compileSourceRoots.add(sourceDirectory);					
-		            }
-				}
-			}
-
-            for ( File sourceRoot : compileSourceRoots )
-            {
-                if ( !sourceRoot.isDirectory() )
-                {
-                    continue;
-                }
-                try
-                {
-                    if ( !scanner.getIncludedSources( sourceRoot, output ).isEmpty() )
-                    {
-                        getLog().debug( "found stale source in " + sourceRoot + " compared with " + output );
-                        return true;
-                    }
-                }
-                catch ( InclusionScanException e )
-                {
-                    throw new MojoExecutionException( "Error scanning source root: \'" + sourceRoot + "\' "
-                        + "for stale files to recompile.", e );
-                }
+
+            if ( !fingerprint.isUpToDate() )
+            {
+                getLog().debug( "Compiler inputs have changed since last compilation; recompiling" );
+                return true;
             }
             getLog().info( module + " is up to date. GWT compilation skipped" );
             return false;
@@ -496,4 +1748,113 @@ public class CompileMojo
             throw new MojoExecutionException( e.getMessage(), e );
         }
     }
+
+    /**
+     * Compute the fingerprint of the module compiler inputs, as registered by {@link CompilerInputs} : module
+     * descriptor, files from the module source, super-source and public path, the same for all the modules of its
+     * {@link GwtModuleGraph} including the GWT SDK ones, and the archives of the compiler classpath.
+     *
+     * @param gwtModule the module to compile
+     * @return fingerprint of the module inputs
+     * @throws MojoExecutionException failed to read some input
+     */
+    private FingerprintManifest computeFingerprint( GwtModule gwtModule )
+        throws MojoExecutionException
+    {
+        long start = System.currentTimeMillis();
+        File manifest = new File( fingerprintDirectory, gwtModule.getName() + ".properties" );
+        try
+        {
+            FingerprintManifest fingerprint = FingerprintManifest.load( manifest );
+            new CompilerInputs( getProjectRoots(), getCompilerClasspath() )
+                .register( fingerprint, getModuleGraph( gwtModule.getName() ) );
+            fingerprint.addValue( "gwtSdkFirstInClasspath", String.valueOf( gwtSdkFirstInClasspath ) );
+            DerivedModule derived = deriveModule( gwtModule );
+            fingerprint.addValue( "derivedModule", derived != null ? derived.getDescription() : "" );
+
+            fingerprint.compute( Runtime.getRuntime().availableProcessors() );
+            getLog().debug( "Fingerprint of " + gwtModule.getName() + " computed in "
+                                + ( System.currentTimeMillis() - start ) + "ms (" + fingerprint.size() + " entries, "
+                                + fingerprint.getHashedCount() + " files read)" );
+            return fingerprint;
+        }
+        catch ( GwtModuleReaderException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to compute fingerprint of GWT module " + gwtModule.getName(), e );
+        }
+    }
+
+    /**
+     * @return the project source and resource directories
+     */
+    @SuppressWarnings( "unchecked" )
+    protected Collection<String> getProjectRoots()
+    {
+        Collection<String> roots = new LinkedHashSet<String>();
+        roots.addAll( getProject().getCompileSourceRoots() );
+        for ( Resource resource : (Collection<Resource>) getProject().getResources() )
+        {
+            roots.add( resource.getDirectory() );
+        }
+        return roots;
+    }
+
+    /**
+     * @return the existing source, super-source and public path directories of a module read from a file, as found
+     * in the module own root directory and in the project roots
+     */
+    protected Collection<File> getModuleDirectories( GwtModuleGraph.Node module, Collection<String> projectRoots )
+    {
+        return CompilerInputs.getModuleDirectories( module, projectRoots );
+    }
+
+    /**
+     * @return whether some modules are compiled through a derived module, generating the derived modules
+     */
+    private boolean hasDerivedModules()
+        throws MojoExecutionException
+    {
+        boolean derived = false;
+        for ( String module : getModules() )
+        {
+            derived |= !getCompilerModule( module ).equals( module );
+        }
+        return derived;
+    }
+
+    /**
+     * @return the effective classpath of the GWT compiler, in order
+     */
+    private Collection<File> getCompilerClasspath()
+        throws MojoExecutionException
+    {
+        if ( compilerClasspath == null )
+        {
+            compilerClasspath = new ArrayList<File>();
+            if ( gwtSdkFirstInClasspath )
+            {
+                compilerClasspath.addAll( Arrays.asList( getGwtUserJar() ) );
+                compilerClasspath.add( getGwtDevJar() );
+            }
+            // derived modules have unique names, they only need to come before the project modules. Forks can only
+            // share the classes of the jars before the first directory of the classpath, so the directory is only
+            // added when needed.
+            if ( hasDerivedModules() )
+            {
+                compilerClasspath.add( getDerivedModulesDirectory() );
+            }
+            compilerClasspath.addAll( getClasspath( Artifact.SCOPE_COMPILE ) );
+            postProcessClassPath( compilerClasspath );
+            if ( !gwtSdkFirstInClasspath )
+            {
+                compilerClasspath.addAll( Arrays.asList( getGwtUserJar() ) );
+                compilerClasspath.add( getGwtDevJar() );
+            }
+        }
+        return compilerClasspath;
+    }
 }
@@ -0,0 +1,375 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.reflect.Constructor;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.ArgProcessorBase;
+import com.google.gwt.dev.Compiler;
+import com.google.gwt.dev.CompilerOptions;
+import com.google.gwt.dev.util.log.PrintWriterTreeLogger;
+
+/**
+ * Long-lived GWT compiler JVM, that runs compilations requested over a local socket by {@link CompilerDaemonClient}.
+ * Keeping the JVM alive saves JVM startup, classloading and JIT warm-up, and lets GWT reuse its in-memory
+ * compilation units cache between builds.
+ * <p>
+ * The daemon listens on the loopback interface and publishes its port and a random token in a state file readable by
+ * the owner only. It stops after some idle time, and recycles itself after a number of builds or when the heap
+ * usage gets too high.
+ * <p>
+ * Protocol is line based : client sends the token, then a command (<code>PING</code> or <code>COMPILE</code>). For
+ * <code>COMPILE</code>, compiler arguments follow, one per line, terminated by an empty line. Daemon answers
+ * compiler output, then {@link #EXIT} and the compiler status.
+ * <p>
+ * The GWT compiler options are not public API : the daemon looks them up when it starts, and exits with
+ * {@link #UNSUPPORTED} status if the GWT SDK doesn't provide them, so that the client falls back to a forked compiler.
+ *
+ * @since 2.5.0
+ */
+public class CompilerDaemon
+{
+    public static final String PING = "PING";
+
+    public static final String PONG = "PONG";
+
+    public static final String COMPILE = "COMPILE";
+
+    /** marker for the compilation status, that can't be confused with compiler output */
+    public static final String EXIT = "\u0000EXIT ";
+
+    /** daemon exit status when the GWT SDK doesn't support running the compiler in a daemon */
+    public static final int UNSUPPORTED = 3;
+
+    /** recycle the daemon when heap usage after a build exceeds this ratio */
+    private static final double MAX_HEAP_USAGE = 0.75;
+
+    private final File stateFile;
+
+    private final int idleTimeout;
+
+    private final int maxBuilds;
+
+    private final CompilerTask compiler;
+
+    private int builds;
+
+    /**
+     * A compilation run by the daemon
+     */
+    public interface CompilerTask
+    {
+        /**
+         * @param args the compiler arguments
+         * @param out the client output
+         * @return the compiler status
+         */
+        int compile( String[] args, PrintStream out )
+            throws Exception;
+    }
+
+    /**
+     * @param stateFile file to publish daemon port and token
+     * @param idleTimeout time (in seconds) before an idle daemon stops
+     * @param maxBuilds number of builds before the daemon recycles
+     * @param compiler the compilation to run on client requests
+     */
+    public CompilerDaemon( File stateFile, int idleTimeout, int maxBuilds, CompilerTask compiler )
+    {
+        this.stateFile = stateFile;
+        this.idleTimeout = idleTimeout;
+        this.maxBuilds = maxBuilds;
+        this.compiler = compiler;
+    }
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        CompilerTask compiler;
+        try
+        {
+            compiler = new GwtCompilerTask();
+        }
+        catch ( Throwable t )
+        {
+            // still on the process output, for the client to report
+            System.out.println( "GWT SDK doesn't support the compiler daemon : " + t );
+            System.exit( UNSUPPORTED );
+            return;
+        }
+
+        File stateFile = new File( args[0] );
+        File log = new File( stateFile.getParentFile(), stateFile.getName().replace( ".properties", ".log" ) );
+        PrintStream stream = new PrintStream( new FileOutputStream( log, true ), true );
+        System.setOut( stream );
+        System.setErr( stream );
+
+        new CompilerDaemon( stateFile, Integer.parseInt( args[1] ), Integer.parseInt( args[2] ), compiler ).serve();
+        // compiler may have left non-daemon threads
+        System.exit( 0 );
+    }
+
+    public void serve()
+        throws IOException
+    {
+        ServerSocket server = new ServerSocket( 0, 5, InetAddress.getByName( "127.0.0.1" ) );
+        server.setSoTimeout( idleTimeout * 1000 );
+        String token = new BigInteger( 130, new SecureRandom() ).toString( 32 );
+        publish( server.getLocalPort(), token );
+        log( "Compiler daemon listening on port " + server.getLocalPort() );
+        try
+        {
+            while ( true )
+            {
+                Socket socket;
+                try
+                {
+                    socket = server.accept();
+                }
+                catch ( SocketTimeoutException e )
+                {
+                    log( "Compiler daemon idle for " + idleTimeout + "s, stopping" );
+                    return;
+                }
+                try
+                {
+                    if ( !handle( socket, token ) )
+                    {
+                        return;
+                    }
+                }
+                catch ( IOException e )
+                {
+                    log( "Failed to handle request : " + e );
+                }
+                finally
+                {
+                    socket.close();
+                }
+            }
+        }
+        finally
+        {
+            unpublish( token );
+            server.close();
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the daemon has to stop
+     */
+    private boolean handle( Socket socket, String token )
+        throws IOException
+    {
+        BufferedReader in = new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) );
+        OutputStream out = socket.getOutputStream();
+        if ( !token.equals( in.readLine() ) )
+        {
+            log( "Rejected request with invalid token" );
+            return true;
+        }
+        String command = in.readLine();
+        if ( PING.equals( command ) )
+        {
+            PrintWriter writer = new PrintWriter( new OutputStreamWriter( out, "UTF-8" ) );
+            writer.println( PONG );
+            writer.flush();
+            return true;
+        }
+        if ( !COMPILE.equals( command ) )
+        {
+            log( "Unknown command " + command );
+            return true;
+        }
+
+        List<String> args = new ArrayList<String>();
+        String arg;
+        while ( ( arg = in.readLine() ) != null && arg.length() > 0 )
+        {
+            args.add( arg );
+        }
+
+        builds++;
+        log( "Build #" + builds + " " + args );
+        PrintStream client = new PrintStream( out, true, "UTF-8" );
+        int status = compile( args.toArray( new String[args.size()] ), client );
+
+        boolean recycle = builds >= maxBuilds;
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        if ( used > runtime.maxMemory() * MAX_HEAP_USAGE )
+        {
+            log( "Heap usage " + ( used >> 20 ) + "MB after build, recycling" );
+            recycle = true;
+        }
+        if ( recycle )
+        {
+            // don't let next build connect to this daemon
+            unpublish( token );
+        }
+        client.print( EXIT + status + "\n" );
+        client.flush();
+        return !recycle;
+    }
+
+    /**
+     * Run a compilation in-process, redirecting all output to the client.
+     */
+    private int compile( String[] args, PrintStream client )
+    {
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        System.setOut( client );
+        System.setErr( client );
+        try
+        {
+            return compiler.compile( args, client );
+        }
+        catch ( Throwable t )
+        {
+            t.printStackTrace( client );
+            return 1;
+        }
+        finally
+        {
+            client.flush();
+            System.setOut( stdout );
+            System.setErr( stderr );
+        }
+    }
+
+    private void publish( int port, String token )
+        throws IOException
+    {
+        Properties state = new Properties();
+        state.setProperty( "port", String.valueOf( port ) );
+        state.setProperty( "token", token );
+        File tmp = new File( stateFile.getPath() + ".tmp" );
+        tmp.getParentFile().mkdirs();
+        tmp.delete();
+        tmp.createNewFile();
+        // token is a secret
+        tmp.setReadable( false, false );
+        tmp.setReadable( true, true );
+        OutputStream out = new FileOutputStream( tmp );
+        try
+        {
+            state.store( out, "GWT compiler daemon" );
+        }
+        finally
+        {
+            out.close();
+        }
+        stateFile.delete();
+        if ( !tmp.renameTo( stateFile ) )
+        {
+            throw new IOException( "Failed to publish daemon state " + stateFile );
+        }
+    }
+
+    /**
+     * Remove the state file, unless it has been replaced by another daemon.
+     */
+    private void unpublish( String token )
+    {
+        Properties state = CompilerDaemonClient.readState( stateFile );
+        if ( state != null && token.equals( state.getProperty( "token" ) ) )
+        {
+            stateFile.delete();
+        }
+    }
+
+    private static void log( String message )
+    {
+        System.out.println( new Date() + " " + message );
+    }
+
+    /**
+     * Run the GWT compiler as <code>com.google.gwt.dev.Compiler#main</code> does, but without exiting the JVM. The
+     * non-public compiler option classes are looked up once, when the daemon starts.
+     */
+    private static class GwtCompilerTask
+        implements CompilerTask
+    {
+        private final Constructor<?> optionsConstructor;
+
+        private final Constructor<?> processorConstructor;
+
+        GwtCompilerTask()
+            throws Exception
+        {
+            optionsConstructor =
+                Class.forName( "com.google.gwt.dev.Compiler$CompilerOptionsImpl" ).getDeclaredConstructor();
+            optionsConstructor.setAccessible( true );
+            processorConstructor = Class.forName( "com.google.gwt.dev.Compiler$ArgProcessor" )
+                .getDeclaredConstructor( CompilerOptions.class );
+            processorConstructor.setAccessible( true );
+            if ( !ArgProcessorBase.class.isAssignableFrom( processorConstructor.getDeclaringClass() ) )
+            {
+                throw new NoSuchMethodException( "Unexpected compiler argument processor "
+                    + processorConstructor.getDeclaringClass() );
+            }
+        }
+
+        public int compile( String[] args, PrintStream out )
+            throws Exception
+        {
+            CompilerOptions options = (CompilerOptions) optionsConstructor.newInstance();
+            ArgProcessorBase processor = (ArgProcessorBase) processorConstructor.newInstance( options );
+            if ( !processor.processArgs( args ) )
+            {
+                return 1;
+            }
+
+            PrintWriterTreeLogger logger = new PrintWriterTreeLogger( new PrintWriter( out, true ) );
+            logger.setMaxDetail( options.getLogLevel() );
+            try
+            {
+                return new Compiler( options ).run( logger ) ? 0 : 1;
+            }
+            catch ( UnableToCompleteException e )
+            {
+                // already logged
+                return 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.gwt.utils.DefaultGwtModuleReader;
+import org.codehaus.mojo.gwt.utils.FingerprintManifest;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.codehaus.plexus.util.cli.StreamPumper;
+
+/**
+ * Run GWT compilations in a {@link CompilerDaemon}, starting one if none is running for the same JVM command (JDK,
+ * JVM arguments, classpath and its content).
+ *
+ * @since 2.5.0
+ */
+public class CompilerDaemonClient
+{
+    /** max time to wait for a new daemon to start */
+    private static final long START_TIMEOUT = 60000;
+
+    private static final int CONNECT_TIMEOUT = 2000;
+
+    /** daemon output lines kept to report a startup failure */
+    private static final int MAX_STARTUP_LINES = 20;
+
+    private final Log log;
+
+    private final File directory;
+
+    private final int idleTimeout;
+
+    private final int maxBuilds;
+
+    private ForkClasspath forkClasspath;
+
+    /**
+     * @param directory where daemons state files and logs are stored
+     * @param idleTimeout time (in seconds) before an idle daemon stops
+     * @param maxBuilds number of builds before a daemon recycles
+     */
+    public CompilerDaemonClient( Log log, File directory, int idleTimeout, int maxBuilds )
+    {
+        this.log = log;
+        this.directory = directory;
+        this.idleTimeout = idleTimeout;
+        this.maxBuilds = maxBuilds;
+    }
+
+    /**
+     * @param forkClasspath how to pass the classpath when starting a daemon, <code>null</code> for command line
+     */
+    public void setForkClasspath( ForkClasspath forkClasspath )
+    {
+        this.forkClasspath = forkClasspath;
+    }
+
+    /**
+     * @param jvmCommand java executable, JVM arguments and classpath, that must include the {@link CompilerDaemon}
+     * @param args the GWT compiler arguments
+     * @param out consumer for the compiler output
+     * @return the compiler status
+     * @throws CompilerDaemonUnavailableException if no daemon can be started, the compilation has to be forked
+     */
+    public int compile( List<String> jvmCommand, List<String> args, StreamConsumer out )
+        throws MojoExecutionException, CompilerDaemonUnavailableException
+    {
+        File stateFile = getStateFile( jvmCommand );
+        Properties state = readState( stateFile );
+        if ( state == null || !ping( state ) )
+        {
+            state = start( jvmCommand, stateFile );
+        }
+        else
+        {
+            log.info( "Using GWT compiler daemon " + stateFile.getName() );
+        }
+
+        Socket socket = null;
+        try
+        {
+            socket = connect( state );
+            PrintWriter writer = new PrintWriter( new OutputStreamWriter( socket.getOutputStream(), "UTF-8" ) );
+            writer.println( state.getProperty( "token" ) );
+            writer.println( CompilerDaemon.COMPILE );
+            for ( String arg : args )
+            {
+                writer.println( arg );
+            }
+            writer.println();
+            writer.flush();
+
+            BufferedReader reader =
+                new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) );
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                if ( line.startsWith( CompilerDaemon.EXIT ) )
+                {
+                    return Integer.parseInt( line.substring( CompilerDaemon.EXIT.length() ) );
+                }
+                out.consumeLine( line );
+            }
+            throw new MojoExecutionException( "GWT compiler daemon terminated unexpectedly, see "
+                + getLogFile( stateFile ) );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to communicate with GWT compiler daemon, see "
+                + getLogFile( stateFile ), e );
+        }
+        finally
+        {
+            close( socket );
+        }
+    }
+
+    /**
+     * @return the file the daemon for a JVM command publishes its state to
+     */
+    File getStateFile( List<String> jvmCommand )
+    {
+        return new File( directory, getKey( jvmCommand ) + ".properties" );
+    }
+
+    /**
+     * A daemon can only be reused for the same JVM command and the same classpath content, as classes are cached.
+     * Classpath directories are stamped through their classes and module descriptors, so that a daemon doesn't run
+     * stale project generators or linkers.
+     */
+    private String getKey( List<String> jvmCommand )
+    {
+        List<String> key = new ArrayList<String>( jvmCommand );
+        int index = jvmCommand.indexOf( "-classpath" );
+        if ( index >= 0 && index + 1 < jvmCommand.size() )
+        {
+            for ( String path : jvmCommand.get( index + 1 ).split( File.pathSeparator ) )
+            {
+                File file = new File( path );
+                if ( file.isFile() )
+                {
+                    key.add( file.length() + ";" + file.lastModified() );
+                }
+                else if ( file.isDirectory() )
+                {
+                    DirectoryScanner scanner = new DirectoryScanner();
+                    scanner.setBasedir( file );
+                    scanner.setIncludes(
+                        new String[] { "**/*.class", "**/*" + DefaultGwtModuleReader.GWT_MODULE_EXTENSION } );
+                    scanner.scan();
+                    String[] names = scanner.getIncludedFiles();
+                    Arrays.sort( names );
+                    for ( String name : names )
+                    {
+                        File included = new File( file, name );
+                        key.add( name + ";" + included.length() + ";" + included.lastModified() );
+                    }
+                }
+            }
+        }
+        key.add( String.valueOf( idleTimeout ) );
+        key.add( String.valueOf( maxBuilds ) );
+        return FingerprintManifest.hash( key.iterator() );
+    }
+
+    private Properties start( List<String> jvmCommand, File stateFile )
+        throws CompilerDaemonUnavailableException
+    {
+        stateFile.delete();
+        directory.mkdirs();
+        List<String> command = new ArrayList<String>( jvmCommand );
+        if ( forkClasspath != null )
+        {
+            try
+            {
+                // the daemon runs the GWT compiler, that scans the classpath
+                command = new ArrayList<String>( forkClasspath.compact( command, false ) );
+            }
+            catch ( IOException e )
+            {
+                throw new CompilerDaemonUnavailableException( "Failed to write the GWT compiler daemon classpath",
+                                                              e );
+            }
+        }
+        command.add( CompilerDaemon.class.getName() );
+        command.add( stateFile.getAbsolutePath() );
+        command.add( String.valueOf( idleTimeout ) );
+        command.add( String.valueOf( maxBuilds ) );
+        log.info( "Starting GWT compiler daemon " + stateFile.getName() );
+        log.debug( "Daemon command : " + command );
+
+        Process process;
+        try
+        {
+            process = new ProcessBuilder( command ).directory( directory ).redirectErrorStream( true ).start();
+        }
+        catch ( IOException e )
+        {
+            throw new CompilerDaemonUnavailableException( "Failed to start GWT compiler daemon", e );
+        }
+        IOUtils.closeQuietly( process.getOutputStream() );
+        // daemon logs to its own file, but the JVM itself may still write to the process output : keep consuming it
+        // for the daemon lifetime so that it never blocks on a full pipe
+        final List<String> output = Collections.synchronizedList( new ArrayList<String>() );
+        StreamPumper pumper = new StreamPumper( process.getInputStream(), new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                if ( output.size() < MAX_STARTUP_LINES )
+                {
+                    output.add( line );
+                }
+            }
+        } );
+        pumper.setDaemon( true );
+        pumper.start();
+
+        long deadline = System.currentTimeMillis() + START_TIMEOUT;
+        while ( System.currentTimeMillis() < deadline )
+        {
+            Properties state = readState( stateFile );
+            if ( state != null && ping( state ) )
+            {
+                return state;
+            }
+            try
+            {
+                int status = process.exitValue();
+                pumper.join( CONNECT_TIMEOUT );
+                throw new CompilerDaemonUnavailableException( "GWT compiler daemon failed to start (status " + status
+                    + ") : " + StringUtils.join( output.iterator(), " " ) + ", see " + getLogFile( stateFile ) );
+            }
+            catch ( IllegalThreadStateException e )
+            {
+                // still running
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try
+            {
+                Thread.sleep( 200 );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        process.destroy();
+        throw new CompilerDaemonUnavailableException( "Time-out waiting for GWT compiler daemon to start" );
+    }
+
+    /**
+     * Health check
+     *
+     * @return <code>true</code> if the daemon is alive
+     */
+    private boolean ping( Properties state )
+    {
+        Socket socket = null;
+        try
+        {
+            socket = connect( state );
+            socket.setSoTimeout( CONNECT_TIMEOUT );
+            PrintWriter writer = new PrintWriter( new OutputStreamWriter( socket.getOutputStream(), "UTF-8" ) );
+            writer.println( state.getProperty( "token" ) );
+            writer.println( CompilerDaemon.PING );
+            writer.flush();
+            BufferedReader reader =
+                new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) );
+            return CompilerDaemon.PONG.equals( reader.readLine() );
+        }
+        catch ( IOException e )
+        {
+            log.debug( "GWT compiler daemon is not available : " + e.getMessage() );
+            return false;
+        }
+        finally
+        {
+            close( socket );
+        }
+    }
+
+    private Socket connect( Properties state )
+        throws IOException
+    {
+        Socket socket = new Socket();
+        try
+        {
+            int port = Integer.parseInt( state.getProperty( "port" ) );
+            socket.connect( new InetSocketAddress( InetAddress.getByName( "127.0.0.1" ), port ), CONNECT_TIMEOUT );
+            return socket;
+        }
+        catch ( IOException e )
+        {
+            close( socket );
+            throw e;
+        }
+        catch ( NumberFormatException e )
+        {
+            close( socket );
+            throw new IOException( "Invalid daemon state" );
+        }
+    }
+
+    /**
+     * commons-io repackaged in gwt-dev may hide the <code>IOUtils.closeQuietly(Socket)</code> variant
+     */
+    private static void close( Socket socket )
+    {
+        if ( socket != null )
+        {
+            try
+            {
+                socket.close();
+            }
+            catch ( IOException e )
+            {
+                // ignored
+            }
+        }
+    }
+
+    private File getLogFile( File stateFile )
+    {
+        return new File( stateFile.getParentFile(), stateFile.getName().replace( ".properties", ".log" ) );
+    }
+
+    /**
+     * @return daemon state, or <code>null</code> if not available
+     */
+    static Properties readState( File stateFile )
+    {
+        if ( !stateFile.isFile() )
+        {
+            return null;
+        }
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( stateFile );
+            Properties state = new Properties();
+            state.load( in );
+            return state.getProperty( "port" ) != null && state.getProperty( "token" ) != null ? state : null;
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+    }
+}
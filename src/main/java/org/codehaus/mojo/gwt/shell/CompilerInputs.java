@@ -0,0 +1,143 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import org.codehaus.mojo.gwt.GwtModuleGraph;
+import org.codehaus.mojo.gwt.GwtModuleGraph.Node;
+import org.codehaus.mojo.gwt.GwtModuleGraph.PathFilter;
+import org.codehaus.mojo.gwt.utils.FingerprintManifest;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * The inputs of the GWT compiler for a module, as registered in its {@link FingerprintManifest} : the descriptor and
+ * the source, super-source and public files of every module of its {@link GwtModuleGraph} read from files, including
+ * the GWT SDK modules, the archives modules are read from, and every archive of the compiler classpath. Archives are
+ * fingerprinted by their zip central directory, so that a new SNAPSHOT of a GWT library, or of a jar only providing
+ * generators or linkers, triggers a compilation. Classpath directories are only followed through the modules they
+ * host.
+ *
+ * @since 2.5.0
+ */
+public class CompilerInputs
+{
+    private final Collection<String> projectRoots;
+
+    private final Collection<File> classpath;
+
+    /**
+     * @param projectRoots the project source and resource directories
+     * @param classpath the compiler classpath
+     */
+    public CompilerInputs( Collection<String> projectRoots, Collection<File> classpath )
+    {
+        this.projectRoots = projectRoots;
+        this.classpath = classpath;
+    }
+
+    /**
+     * Register the compiler inputs of a module and all the modules it inherits
+     */
+    public void register( FingerprintManifest fingerprint, GwtModuleGraph graph )
+    {
+        for ( Node module : graph.getNodes() )
+        {
+            if ( module.getSourceJar() != null )
+            {
+                fingerprint.addArchive( module.getSourceJar() );
+            }
+            else if ( module.getSourceFile() != null )
+            {
+                addModuleFiles( fingerprint, module );
+            }
+        }
+        for ( File file : classpath )
+        {
+            if ( file.isFile() )
+            {
+                fingerprint.addArchive( file );
+            }
+        }
+    }
+
+    /**
+     * Register the descriptor of a module read from a file, and all files from its source, super-source and public
+     * path.
+     */
+    private void addModuleFiles( FingerprintManifest fingerprint, Node module )
+    {
+        fingerprint.addFile( module.getSourceFile() );
+        for ( File directory : getModuleDirectories( module, projectRoots ) )
+        {
+            DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir( directory );
+            scanner.addDefaultExcludes();
+            scanner.scan();
+            for ( String file : scanner.getIncludedFiles() )
+            {
+                fingerprint.addFile( new File( directory, file ) );
+            }
+        }
+    }
+
+    /**
+     * @return the existing source, super-source and public path directories of a module read from a file, as found
+     * in the module own root directory and in the project roots
+     */
+    public static Collection<File> getModuleDirectories( Node module, Collection<String> projectRoots )
+    {
+        File moduleFile = module.getSourceFile();
+        String packagePath = module.getPackage().replace( '.', File.separatorChar );
+        Collection<String> roots = new LinkedHashSet<String>( projectRoots );
+        File root = moduleFile.getParentFile();
+        for ( int i = StringUtils.countMatches( module.getName(), "." ); i > 0 && root != null; i-- )
+        {
+            root = root.getParentFile();
+        }
+        if ( root != null )
+        {
+            roots.add( root.getAbsolutePath() );
+        }
+
+        Collection<PathFilter> paths = new ArrayList<PathFilter>();
+        paths.addAll( module.getSources() );
+        paths.addAll( module.getSuperSources() );
+        paths.addAll( module.getPublicPaths() );
+        Collection<File> directories = new LinkedHashSet<File>();
+        for ( String path : roots )
+        {
+            for ( PathFilter sub : paths )
+            {
+                File directory =
+                    new File( path + File.separatorChar + packagePath + File.separatorChar + sub.getPath() );
+                if ( directory.isDirectory() )
+                {
+                    directories.add( directory );
+                }
+            }
+        }
+        return directories;
+    }
+}
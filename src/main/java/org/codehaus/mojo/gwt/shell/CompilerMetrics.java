@@ -0,0 +1,301 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.mojo.gwt.utils.JsonWriter;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Metrics of a module compilation, as reported by the GWT compiler in <code>compilerMetrics.xml</code> when run with
+ * <code>-XcompilerMetrics</code>.
+ *
+ * @since 2.5.0
+ */
+public class CompilerMetrics
+{
+    private final String module;
+
+    private long moduleElapsed;
+
+    private int sources;
+
+    private int initialTypes;
+
+    private long precompileElapsed;
+
+    private int astTypes;
+
+    private int generatedTypes;
+
+    private final List<Permutation> permutations = new ArrayList<Permutation>();
+
+    public CompilerMetrics( String module )
+    {
+        this.module = module;
+    }
+
+    /**
+     * @param module the compiled module
+     * @param xml the <code>compilerMetrics.xml</code> file written by the compiler
+     */
+    public static CompilerMetrics read( String module, File xml )
+        throws IOException
+    {
+        Reader reader = ReaderFactory.newXmlReader( xml );
+        Xpp3Dom dom;
+        try
+        {
+            dom = Xpp3DomBuilder.build( reader );
+        }
+        catch ( XmlPullParserException e )
+        {
+            IOException ioe = new IOException( "Invalid compiler metrics " + xml + " : " + e.getMessage() );
+            ioe.initCause( e );
+            throw ioe;
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+
+        CompilerMetrics metrics = new CompilerMetrics( module );
+        Xpp3Dom moduleNode = dom.getChild( "module" );
+        if ( moduleNode != null )
+        {
+            metrics.moduleElapsed = getLong( moduleNode, "elapsed" );
+            metrics.sources = (int) getLong( moduleNode.getChild( "sources" ), "count" );
+            metrics.initialTypes = (int) getTypeCount( moduleNode, "initial" );
+        }
+        Xpp3Dom precompilations = dom.getChild( "precompilations" );
+        if ( precompilations != null )
+        {
+            for ( Xpp3Dom precompilation : precompilations.getChildren( "precompilation" ) )
+            {
+                metrics.precompileElapsed = Math.max( metrics.precompileElapsed, getLong( precompilation, "elapsed" ) );
+                metrics.astTypes = Math.max( metrics.astTypes, (int) getTypeCount( precompilation, "ast" ) );
+                metrics.generatedTypes =
+                    Math.max( metrics.generatedTypes, (int) getTypeCount( precompilation, "generated" ) );
+            }
+        }
+        Xpp3Dom compilations = dom.getChild( "compilations" );
+        if ( compilations != null )
+        {
+            for ( Xpp3Dom compilation : compilations.getChildren( "compilation" ) )
+            {
+                Permutation permutation =
+                    new Permutation( (int) getLong( compilation, "id" ), getLong( compilation, "elapsed" ),
+                                     getLong( compilation, "totalElapsed" ),
+                                     compilation.getAttribute( "description" ) );
+                Xpp3Dom javascript = compilation.getChild( "javascript" );
+                if ( javascript != null )
+                {
+                    for ( Xpp3Dom fragment : javascript.getChildren( "fragment" ) )
+                    {
+                        permutation.fragments.add( Integer.valueOf( (int) getLong( fragment, "size" ) ) );
+                    }
+                }
+                metrics.permutations.add( permutation );
+            }
+        }
+        return metrics;
+    }
+
+    private static long getTypeCount( Xpp3Dom node, String kind )
+    {
+        for ( Xpp3Dom types : node.getChildren( "types" ) )
+        {
+            if ( kind.equals( types.getAttribute( "kind" ) ) )
+            {
+                return getLong( types, "count" );
+            }
+        }
+        return 0;
+    }
+
+    private static long getLong( Xpp3Dom node, String attribute )
+    {
+        String value = node != null ? node.getAttribute( attribute ) : null;
+        if ( value == null )
+        {
+            return 0;
+        }
+        try
+        {
+            return Long.parseLong( value.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    public String getModule()
+    {
+        return module;
+    }
+
+    public List<Permutation> getPermutations()
+    {
+        return Collections.unmodifiableList( permutations );
+    }
+
+    /**
+     * @return the compilation wall time (ms), from compiler start to the end of the last permutation. All elapsed
+     * times reported by the compiler are measured from its start.
+     */
+    public long getCompileTime()
+    {
+        long time = Math.max( moduleElapsed, precompileElapsed );
+        for ( Permutation permutation : permutations )
+        {
+            time = Math.max( time, permutation.getTotalElapsed() );
+        }
+        return time;
+    }
+
+    /**
+     * @return the largest initial download size (bytes) of all permutations
+     */
+    public long getInitialDownloadSize()
+    {
+        long size = 0;
+        for ( Permutation permutation : permutations )
+        {
+            size = Math.max( size, permutation.getInitialSize() );
+        }
+        return size;
+    }
+
+    public void write( JsonWriter json )
+        throws IOException
+    {
+        json.beginObject()
+            .name( "module" ).value( module )
+            .name( "compileTime" ).value( getCompileTime() )
+            .name( "initialDownloadSize" ).value( getInitialDownloadSize() )
+            .name( "moduleElapsed" ).value( moduleElapsed )
+            .name( "sources" ).value( sources )
+            .name( "initialTypes" ).value( initialTypes )
+            .name( "precompileElapsed" ).value( precompileElapsed )
+            .name( "astTypes" ).value( astTypes )
+            .name( "generatedTypes" ).value( generatedTypes )
+            .name( "permutations" ).beginArray();
+        for ( Permutation permutation : permutations )
+        {
+            json.beginObject()
+                .name( "id" ).value( permutation.getId() )
+                .name( "elapsed" ).value( permutation.getElapsed() )
+                .name( "totalElapsed" ).value( permutation.getTotalElapsed() )
+                .name( "size" ).value( permutation.getSize() )
+                .name( "initialSize" ).value( permutation.getInitialSize() )
+                .name( "description" ).value( permutation.getDescription() )
+                .name( "fragments" ).beginArray();
+            for ( Integer fragment : permutation.fragments )
+            {
+                json.value( fragment.longValue() );
+            }
+            json.endArray().endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    /**
+     * Metrics of a single permutation
+     */
+    public static class Permutation
+    {
+        private final int id;
+
+        private final long elapsed;
+
+        private final long totalElapsed;
+
+        private final String description;
+
+        /** JavaScript fragment sizes, initial fragment first */
+        private final List<Integer> fragments = new ArrayList<Integer>();
+
+        public Permutation( int id, long elapsed, long totalElapsed, String description )
+        {
+            this.id = id;
+            this.elapsed = elapsed;
+            this.totalElapsed = totalElapsed;
+            this.description = description;
+        }
+
+        public int getId()
+        {
+            return id;
+        }
+
+        /**
+         * @return time (ms) spent compiling this permutation
+         */
+        public long getElapsed()
+        {
+            return elapsed;
+        }
+
+        /**
+         * @return time (ms) from compiler start to the end of this permutation
+         */
+        public long getTotalElapsed()
+        {
+            return totalElapsed;
+        }
+
+        public String getDescription()
+        {
+            return description;
+        }
+
+        /**
+         * @return total JavaScript size (bytes)
+         */
+        public long getSize()
+        {
+            long size = 0;
+            for ( Integer fragment : fragments )
+            {
+                size += fragment.intValue();
+            }
+            return size;
+        }
+
+        /**
+         * @return size (bytes) of the initial download fragment
+         */
+        public long getInitialSize()
+        {
+            return fragments.isEmpty() ? 0 : fragments.get( 0 ).intValue();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.mojo.gwt.utils.JsonWriter;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+
+/**
+ * Trend history of the compiler metrics, as one JSON object per line and per compiled module, used to detect
+ * regressions. The baseline of a module is the median of its last {@link #BASELINE_RUNS} recorded compilations, so
+ * that a single slow or fast build doesn't move it.
+ *
+ * @since 2.5.0
+ */
+public class CompilerMetricsHistory
+{
+    private static final Pattern MODULE = Pattern.compile( "\"module\":\"([^\"]*)\"" );
+
+    private static final Pattern COMPILE_TIME = Pattern.compile( "\"compileTime\":(\\d+)" );
+
+    private static final Pattern INITIAL_DOWNLOAD_SIZE = Pattern.compile( "\"initialDownloadSize\":(\\d+)" );
+
+    /** number of recorded compilations the baseline is computed from */
+    static final int BASELINE_RUNS = 5;
+
+    private final File file;
+
+    /** last recorded compile times and initial download sizes, by module, oldest first */
+    private final Map<String, LinkedList<long[]>> last = new HashMap<String, LinkedList<long[]>>();
+
+    public CompilerMetricsHistory( File file )
+        throws IOException
+    {
+        this.file = file;
+        if ( file.exists() )
+        {
+            BufferedReader reader = new BufferedReader( ReaderFactory.newReader( file, "UTF-8" ) );
+            try
+            {
+                String line;
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    Matcher module = MODULE.matcher( line );
+                    if ( module.find() )
+                    {
+                        record( module.group( 1 ), find( COMPILE_TIME, line ), find( INITIAL_DOWNLOAD_SIZE, line ) );
+                    }
+                }
+            }
+            finally
+            {
+                IOUtil.close( reader );
+            }
+        }
+    }
+
+    private void record( String module, long compileTime, long initialDownloadSize )
+    {
+        LinkedList<long[]> runs = last.get( module );
+        if ( runs == null )
+        {
+            runs = new LinkedList<long[]>();
+            last.put( module, runs );
+        }
+        runs.add( new long[] { compileTime, initialDownloadSize } );
+        if ( runs.size() > BASELINE_RUNS )
+        {
+            runs.removeFirst();
+        }
+    }
+
+    /**
+     * @return the median of a metric over the recorded runs
+     */
+    private static long median( List<long[]> runs, int metric )
+    {
+        List<Long> values = new ArrayList<Long>();
+        for ( long[] run : runs )
+        {
+            values.add( Long.valueOf( run[metric] ) );
+        }
+        Collections.sort( values );
+        return values.get( values.size() / 2 ).longValue();
+    }
+
+    private static long find( Pattern pattern, String line )
+    {
+        Matcher matcher = pattern.matcher( line );
+        return matcher.find() ? Long.parseLong( matcher.group( 1 ) ) : 0;
+    }
+
+    /**
+     * @param metrics the metrics of a module compilation
+     * @param threshold max accepted increase (in percent) of compile time and initial download size
+     * @return the regressions compared to the baseline of the module, if any
+     */
+    public List<String> getRegressions( CompilerMetrics metrics, int threshold )
+    {
+        List<String> regressions = new ArrayList<String>();
+        List<long[]> runs = last.get( metrics.getModule() );
+        if ( runs != null )
+        {
+            check( regressions, metrics.getModule() + " compile time", median( runs, 0 ), metrics.getCompileTime(),
+                   "ms", threshold );
+            check( regressions, metrics.getModule() + " initial download size", median( runs, 1 ),
+                   metrics.getInitialDownloadSize(), " bytes", threshold );
+        }
+        return regressions;
+    }
+
+    private void check( List<String> regressions, String metric, long previous, long current, String unit,
+                        int threshold )
+    {
+        if ( previous > 0 && current * 100 > previous * ( 100 + threshold ) )
+        {
+            regressions.add( metric + " increased by " + ( ( current - previous ) * 100 / previous ) + "% ("
+                + previous + unit + " -> " + current + unit + ")" );
+        }
+    }
+
+    /**
+     * Record the metrics of a module compilation. Compilations with regressions must not be recorded, so that they
+     * don't become the baseline.
+     */
+    public void append( CompilerMetrics metrics, long timestamp )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter( new FileOutputStream( file, true ), "UTF-8" );
+        try
+        {
+            new JsonWriter( writer ).beginObject()
+                .name( "timestamp" ).value( timestamp )
+                .name( "module" ).value( metrics.getModule() )
+                .name( "compileTime" ).value( metrics.getCompileTime() )
+                .name( "initialDownloadSize" ).value( metrics.getInitialDownloadSize() )
+                .name( "permutations" ).value( metrics.getPermutations().size() )
+                .endObject();
+            writer.write( '\n' );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+        record( metrics.getModule(), metrics.getCompileTime(), metrics.getInitialDownloadSize() );
+    }
+}
@@ -0,0 +1,330 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Parse the output of a forked GWT compiler as it runs, to recognize the compiler phases (precompile, generators,
+ * permutations compilation, link) and record their timings in {@link CompilerPhases}. Each line is passed unchanged
+ * to a delegate consumer, and a compact progress line is logged when the compiler enters a new phase or completes a
+ * permutation.
+ * <p>
+ * Permutations compiled by concurrent workers are nested at distinct indentation levels in the compiler output, which
+ * is used to tell them apart.
+ *
+ * @since 2.5.0
+ */
+public class CompilerOutputParser
+    implements StreamConsumer, ForkedProcessListener
+{
+    private static final Pattern MODULE =
+        Pattern.compile( "^(?:Compiling|Precompiling(?: \\(minimal\\))?) module (\\S+)" );
+
+    private static final Pattern GENERATOR = Pattern.compile( "^Invoking generator (\\S+)" );
+
+    private static final Pattern PERMUTATIONS = Pattern.compile( "^Compiling (\\d+) permutations?$" );
+
+    private static final Pattern PERMUTATION = Pattern.compile( "^Compiling permutation (\\d+)\\.\\.\\." );
+
+    private static final Pattern PERMUTATION_TIME = Pattern.compile( "^Permutation took (\\d+) ms" );
+
+    private static final Pattern LINK = Pattern.compile( "^Linking (?:into|module) " );
+
+    private static final Pattern DONE = Pattern.compile( "^(?:Link succeeded|Compilation succeeded)" );
+
+    private final CompilerPhases phases;
+
+    private final StreamConsumer delegate;
+
+    private final Log log;
+
+    private String module;
+
+    private String phase;
+
+    private long phaseStart;
+
+    private int generatorIndent = -1;
+
+    private long generatorStart;
+
+    private int permutationCount;
+
+    private int permutationsDone;
+
+    /** modules the compiler has successfully compiled */
+    private final List<String> completed = new ArrayList<String>();
+
+    /** permutation count, by module as passed to the compiler */
+    private final Map<String, Integer> permutations = new HashMap<String, Integer>();
+
+    /** running permutation id and start time, by indentation level */
+    private final Map<Integer, long[]> running = new HashMap<Integer, long[]>();
+
+    private final long start;
+
+    private long processStart = -1;
+
+    /** when the compiler started each module, in milliseconds since the process start */
+    private final Map<String, Long> moduleStarts = new LinkedHashMap<String, Long>();
+
+    /**
+     * @param module the compiled module, if known before the compiler tells
+     * @param phases where to record phase timings
+     * @param delegate consumer for the compiler output
+     * @param log where to log progress
+     */
+    public CompilerOutputParser( String module, CompilerPhases phases, StreamConsumer delegate, Log log )
+    {
+        this.module = module;
+        this.phases = phases;
+        this.delegate = delegate;
+        this.log = log;
+        this.start = now();
+    }
+
+    public void consumeLine( String line )
+    {
+        delegate.consumeLine( line );
+        parse( line, now() );
+    }
+
+    /**
+     * @param time when the line was output
+     */
+    synchronized void parse( String line, long time )
+    {
+        int indent = 0;
+        while ( indent < line.length() && Character.isWhitespace( line.charAt( indent ) ) )
+        {
+            indent++;
+        }
+        String text = line.substring( indent );
+
+        if ( generatorIndent >= 0 && indent <= generatorIndent )
+        {
+            phases.record( module, CompilerPhases.GENERATORS, generatorStart, time );
+            generatorIndent = -1;
+        }
+
+        Matcher matcher = MODULE.matcher( text );
+        if ( matcher.find() )
+        {
+            endPermutations( time );
+            module = matcher.group( 1 );
+            if ( !moduleStarts.containsKey( module ) )
+            {
+                moduleStarts.put( module, Long.valueOf( time - ( processStart >= 0 ? processStart : start ) ) );
+            }
+            enter( CompilerPhases.PRECOMPILE, time );
+            return;
+        }
+        matcher = GENERATOR.matcher( text );
+        if ( matcher.find() )
+        {
+            generatorIndent = indent;
+            generatorStart = time;
+            return;
+        }
+        matcher = PERMUTATIONS.matcher( text );
+        if ( matcher.find() )
+        {
+            permutationCount = Integer.parseInt( matcher.group( 1 ) );
+            permutationsDone = 0;
+            if ( module != null )
+            {
+                permutations.put( module, Integer.valueOf( permutationCount ) );
+            }
+            enter( CompilerPhases.PERMUTATIONS, time );
+            return;
+        }
+        matcher = PERMUTATION.matcher( text );
+        if ( matcher.find() )
+        {
+            if ( !CompilerPhases.PERMUTATIONS.equals( phase ) )
+            {
+                // CompilePerms doesn't log the permutation count
+                enter( CompilerPhases.PERMUTATIONS, time );
+            }
+            // a worker starting a new permutation has completed the previous one
+            long[] permutation = new long[] { Integer.parseInt( matcher.group( 1 ) ), time };
+            long[] previous = running.put( Integer.valueOf( indent ), permutation );
+            if ( previous != null )
+            {
+                completed( (int) previous[0], time - previous[1] );
+            }
+            return;
+        }
+        matcher = PERMUTATION_TIME.matcher( text );
+        if ( matcher.find() )
+        {
+            long[] permutation = running.remove( Integer.valueOf( indent ) );
+            if ( permutation != null )
+            {
+                completed( (int) permutation[0], Long.parseLong( matcher.group( 1 ) ) );
+            }
+            return;
+        }
+        if ( text.startsWith( "Compile of permutations succeeded" ) )
+        {
+            endPermutations( time );
+            return;
+        }
+        if ( LINK.matcher( text ).find() )
+        {
+            endPermutations( time );
+            if ( !CompilerPhases.LINK.equals( phase ) )
+            {
+                enter( CompilerPhases.LINK, time );
+            }
+            return;
+        }
+        if ( DONE.matcher( text ).find() )
+        {
+            if ( module != null && !completed.contains( module ) )
+            {
+                completed.add( module );
+            }
+            finish( time );
+        }
+    }
+
+    /**
+     * Record timings of the phases still running when the compiler stops.
+     */
+    public synchronized void finish()
+    {
+        finish( now() );
+    }
+
+    private void finish( long time )
+    {
+        if ( generatorIndent >= 0 )
+        {
+            phases.record( module, CompilerPhases.GENERATORS, generatorStart, time );
+            generatorIndent = -1;
+        }
+        endPermutations( time );
+        enter( null, time );
+    }
+
+    private void enter( String next, long time )
+    {
+        if ( phase != null && module != null )
+        {
+            phases.record( module, phase, phaseStart, time );
+        }
+        phase = next;
+        phaseStart = time;
+        if ( next != null )
+        {
+            progress( time );
+        }
+    }
+
+    private void endPermutations( long time )
+    {
+        for ( Iterator<long[]> iterator = running.values().iterator(); iterator.hasNext(); )
+        {
+            long[] permutation = iterator.next();
+            iterator.remove();
+            completed( (int) permutation[0], time - permutation[1] );
+        }
+    }
+
+    private void completed( int permutation, long millis )
+    {
+        if ( module != null )
+        {
+            phases.recordPermutation( module, permutation, millis );
+        }
+        permutationsDone++;
+        progress( now() );
+    }
+
+    private void progress( long time )
+    {
+        StringBuilder progress = new StringBuilder( "GWT " ).append( module ).append( " | " ).append( phase );
+        if ( CompilerPhases.PERMUTATIONS.equals( phase ) )
+        {
+            progress.append( ' ' ).append( permutationsDone );
+            if ( permutationCount > 0 )
+            {
+                progress.append( '/' ).append( permutationCount );
+            }
+        }
+        progress.append( " | " ).append( CompilerPhases.formatTime( time - start ) );
+        log.info( progress.toString() );
+    }
+
+    /**
+     * @return the modules the compiler reported as successfully compiled, as passed to the compiler
+     */
+    public synchronized List<String> getCompletedModules()
+    {
+        return new ArrayList<String>( completed );
+    }
+
+    /**
+     * @return the permutation count of a module, as passed to the compiler, <code>null</code> if not reported
+     */
+    public synchronized Integer getPermutationCount( String module )
+    {
+        return permutations.get( module );
+    }
+
+    /**
+     * @return when the compiler started each module it reported, in milliseconds since the process start, in the
+     * order the modules were compiled
+     */
+    public synchronized Map<String, Long> getModuleStarts()
+    {
+        return new LinkedHashMap<String, Long>( moduleStarts );
+    }
+
+    public synchronized void started( Process process )
+    {
+        processStart = now();
+    }
+
+    public void terminated( Process process )
+    {
+        finish();
+    }
+
+    /**
+     * @return current time in milliseconds
+     */
+    protected long now()
+    {
+        return System.currentTimeMillis();
+    }
+}
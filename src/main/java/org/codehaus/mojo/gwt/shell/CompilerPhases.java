@@ -0,0 +1,178 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timings of the GWT compiler phases, collected from the compiler output of one or more forked processes. As a phase
+ * of a module may run in concurrent processes (permutation workers), its duration is the wall time during which at
+ * least one process was running it.
+ *
+ * @since 2.5.0
+ */
+public class CompilerPhases
+{
+    public static final String PRECOMPILE = "precompile";
+
+    public static final String GENERATORS = "generators";
+
+    public static final String PERMUTATIONS = "compile permutations";
+
+    public static final String LINK = "link";
+
+    /** time intervals, by module and phase */
+    private final Map<String, Map<String, List<long[]>>> phases =
+        new LinkedHashMap<String, Map<String, List<long[]>>>();
+
+    /** permutation compile times, by module */
+    private final Map<String, Map<Integer, Long>> permutations = new LinkedHashMap<String, Map<Integer, Long>>();
+
+    public synchronized void record( String module, String phase, long start, long end )
+    {
+        Map<String, List<long[]>> modulePhases = phases.get( module );
+        if ( modulePhases == null )
+        {
+            modulePhases = new LinkedHashMap<String, List<long[]>>();
+            phases.put( module, modulePhases );
+        }
+        List<long[]> intervals = modulePhases.get( phase );
+        if ( intervals == null )
+        {
+            intervals = new ArrayList<long[]>();
+            modulePhases.put( phase, intervals );
+        }
+        intervals.add( new long[] { start, Math.max( start, end ) } );
+    }
+
+    public synchronized void recordPermutation( String module, int id, long millis )
+    {
+        Map<Integer, Long> times = permutations.get( module );
+        if ( times == null )
+        {
+            times = new LinkedHashMap<Integer, Long>();
+            permutations.put( module, times );
+        }
+        times.put( Integer.valueOf( id ), Long.valueOf( millis ) );
+    }
+
+    /**
+     * @return wall time (ms) spent in a phase of a module
+     */
+    public synchronized long getDuration( String module, String phase )
+    {
+        Map<String, List<long[]>> modulePhases = phases.get( module );
+        if ( modulePhases == null || !modulePhases.containsKey( phase ) )
+        {
+            return 0;
+        }
+        List<long[]> intervals = new ArrayList<long[]>( modulePhases.get( phase ) );
+        Collections.sort( intervals, new Comparator<long[]>()
+        {
+            public int compare( long[] i1, long[] i2 )
+            {
+                return i1[0] < i2[0] ? -1 : ( i1[0] == i2[0] ? 0 : 1 );
+            }
+        } );
+        long duration = 0;
+        long end = Long.MIN_VALUE;
+        for ( long[] interval : intervals )
+        {
+            if ( interval[1] > end )
+            {
+                duration += interval[1] - Math.max( interval[0], end );
+                end = interval[1];
+            }
+        }
+        return duration;
+    }
+
+    /**
+     * @return compile time (ms) of each permutation of a module
+     */
+    public synchronized Map<Integer, Long> getPermutations( String module )
+    {
+        Map<Integer, Long> times = permutations.get( module );
+        return times != null ? new LinkedHashMap<Integer, Long>( times ) : Collections.<Integer, Long> emptyMap();
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return phases.isEmpty();
+    }
+
+    /**
+     * @return a timing table of all the phases
+     */
+    public synchronized List<String> format()
+    {
+        List<String> lines = new ArrayList<String>();
+        lines.add( String.format( "%-40s %-24s %10s", "module", "phase", "time" ) );
+        for ( Map.Entry<String, Map<String, List<long[]>>> module : phases.entrySet() )
+        {
+            for ( String phase : module.getValue().keySet() )
+            {
+                String details = "";
+                if ( PERMUTATIONS.equals( phase ) )
+                {
+                    details = formatPermutations( getPermutations( module.getKey() ) );
+                }
+                lines.add( String.format( "%-40s %-24s %10s%s", module.getKey(),
+                                          GENERATORS.equals( phase ) ? "  " + phase : phase,
+                                          formatTime( getDuration( module.getKey(), phase ) ), details ) );
+            }
+        }
+        return lines;
+    }
+
+    private String formatPermutations( Map<Integer, Long> times )
+    {
+        if ( times.isEmpty() )
+        {
+            return "";
+        }
+        Map.Entry<Integer, Long> slowest = null;
+        long total = 0;
+        for ( Map.Entry<Integer, Long> time : times.entrySet() )
+        {
+            total += time.getValue().longValue();
+            if ( slowest == null || time.getValue().longValue() > slowest.getValue().longValue() )
+            {
+                slowest = time;
+            }
+        }
+        return "  (" + times.size() + " permutations, average " + formatTime( total / times.size() ) + ", slowest #"
+            + slowest.getKey() + " " + formatTime( slowest.getValue().longValue() ) + ")";
+    }
+
+    public static String formatTime( long millis )
+    {
+        if ( millis < 60000 )
+        {
+            return String.format( "%.1fs", Double.valueOf( millis / 1000d ) );
+        }
+        return String.format( "%dm%02ds", Long.valueOf( millis / 60000 ), Long.valueOf( ( millis / 1000 ) % 60 ) );
+    }
+}
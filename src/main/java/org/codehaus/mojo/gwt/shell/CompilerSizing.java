@@ -0,0 +1,123 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Size a forked GWT compiler (<code>-localWorkers</code>, <code>-Xmx</code>, processors) to fit the available
+ * processors and memory. Compiler memory is modeled as a fixed base plus a per-worker amount, the later being learned
+ * from the heap retained by previous compilations when available.
+ *
+ * @since 2.5.0
+ */
+public class CompilerSizing
+{
+    /** memory used by the compiler JVM regardless of workers (MB) */
+    public static final long BASE_MEMORY = 256;
+
+    /** memory assumed per worker when nothing has been learned yet (MB) */
+    public static final long DEFAULT_WORKER_MEMORY = 512;
+
+    /** share of the process memory to be used as heap, the rest being JVM overhead */
+    private static final double HEAP_RATIO = 0.8;
+
+    /** heap to allow for the retained heap, so that the garbage collector doesn't run continuously */
+    private static final double HEAP_HEADROOM = 1.5;
+
+    private final int localWorkers;
+
+    private final long maxHeap;
+
+    private final int processors;
+
+    private final String reason;
+
+    /**
+     * @param processors processors available to the compiler
+     * @param memory memory (MB) available to the compiler, 0 if unknown
+     * @param permutations estimated permutations count, or {@link CompilationScheduler#UNKNOWN}
+     * @param workerMemory memory (MB) per worker learned from previous runs, 0 if unknown
+     */
+    public CompilerSizing( int processors, long memory, int permutations, long workerMemory )
+    {
+        StringBuilder sb = new StringBuilder();
+        int workers = Math.max( 1, processors );
+        sb.append( processors ).append( " processors" );
+        if ( permutations > 0 && permutations < workers )
+        {
+            workers = permutations;
+            sb.append( ", " ).append( permutations ).append( " permutations" );
+        }
+
+        long perWorker = workerMemory > 0 ? workerMemory : DEFAULT_WORKER_MEMORY;
+        sb.append( ", " ).append( perWorker ).append( "MB per worker" )
+          .append( workerMemory > 0 ? " (learned)" : " (default)" );
+        long needed = BASE_MEMORY + workers * perWorker;
+        if ( memory > 0 )
+        {
+            sb.append( ", " ).append( memory ).append( "MB memory" );
+            int fit = (int) Math.max( 1, ( memory - BASE_MEMORY ) / perWorker );
+            if ( fit < workers )
+            {
+                workers = fit;
+                sb.append( " fits " ).append( fit ).append( " workers" );
+            }
+            needed = Math.min( memory, BASE_MEMORY + workers * perWorker );
+        }
+        this.localWorkers = workers;
+        this.maxHeap = Math.max( 64, (long) ( needed * HEAP_RATIO ) );
+        this.processors = Math.max( 1, processors );
+        this.reason = sb.toString();
+    }
+
+    /**
+     * @param liveHeap heap (MB) retained by a compilation, as left after garbage collections
+     * @param workers number of workers used by the compilation
+     * @return the memory (MB) a single worker requires for the heap to have some room above the retained heap
+     */
+    public static long learnWorkerMemory( long liveHeap, int workers )
+    {
+        long needed = (long) ( liveHeap * HEAP_HEADROOM / HEAP_RATIO );
+        return Math.max( 64, ( needed - BASE_MEMORY ) / Math.max( 1, workers ) );
+    }
+
+    public int getLocalWorkers()
+    {
+        return localWorkers;
+    }
+
+    /**
+     * @return the heap size in MB
+     */
+    public long getMaxHeap()
+    {
+        return maxHeap;
+    }
+
+    public int getProcessors()
+    {
+        return processors;
+    }
+
+    public String toString()
+    {
+        return "-localWorkers " + localWorkers + " -Xmx" + maxHeap + "m -XX:ActiveProcessorCount=" + processors
+            + " (" + reason + ")";
+    }
+}
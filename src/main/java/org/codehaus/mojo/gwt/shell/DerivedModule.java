@@ -0,0 +1,175 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.mojo.gwt.GwtModule;
+import org.codehaus.mojo.gwt.GwtModuleReader;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.xml.PrettyPrintXMLWriter;
+import org.codehaus.plexus.util.xml.XMLWriter;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+
+/**
+ * A temporary module generated to compile an existing module with different settings (for example fewer
+ * permutations), without changing the project <code>.gwt.xml</code> files. The derived module inherits the original
+ * one and is renamed to the original module path, so that its output replaces the original module output.
+ *
+ * @since 2.5.0
+ */
+public class DerivedModule
+{
+    private final String module;
+
+    private final String path;
+
+    private final String suffix;
+
+    private final Map<String, String> properties = new LinkedHashMap<String, String>();
+
+    private boolean collapseAllProperties;
+
+    /**
+     * @param module the original module name
+     * @param path the original module path, i.e. its <code>rename-to</code> or name
+     * @param suffix appended to the original module name to build the derived module name
+     */
+    public DerivedModule( String module, String path, String suffix )
+    {
+        this.module = module;
+        this.path = path;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Restrict a deferred binding property to some values
+     *
+     * @param values comma-separated values
+     */
+    public DerivedModule setProperty( String name, String values )
+    {
+        properties.put( name, values );
+        return this;
+    }
+
+    /**
+     * Compile all permutations as a single one
+     */
+    public DerivedModule collapseAllProperties()
+    {
+        this.collapseAllProperties = true;
+        return this;
+    }
+
+    public String getName()
+    {
+        return module + suffix;
+    }
+
+    /**
+     * @return a short description of the derivation, to detect configuration changes
+     */
+    public String getDescription()
+    {
+        StringBuilder description = new StringBuilder( suffix );
+        for ( Map.Entry<String, String> property : properties.entrySet() )
+        {
+            description.append( ' ' ).append( property.getKey() ).append( '=' ).append( property.getValue() );
+        }
+        if ( collapseAllProperties )
+        {
+            description.append( " collapse-all-properties" );
+        }
+        return description.toString();
+    }
+
+    public String toXml()
+    {
+        StringWriter xml = new StringWriter();
+        // module names are java package and type names, which can't end a comment
+        xml.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+        xml.write( "<!-- generated by gwt-maven-plugin from " + module + " -->\n" );
+        XMLWriter writer = new PrettyPrintXMLWriter( new PrintWriter( xml ), "  ", "\n", null, null );
+        writer.startElement( "module" );
+        writer.addAttribute( "rename-to", path );
+        writer.startElement( "inherits" );
+        writer.addAttribute( "name", module );
+        writer.endElement();
+        for ( Map.Entry<String, String> property : properties.entrySet() )
+        {
+            writer.startElement( "set-property" );
+            writer.addAttribute( "name", property.getKey() );
+            writer.addAttribute( "value", property.getValue() );
+            writer.endElement();
+        }
+        if ( collapseAllProperties )
+        {
+            writer.startElement( "collapse-all-properties" );
+            writer.endElement();
+        }
+        writer.endElement();
+        return xml.toString() + "\n";
+    }
+
+    /**
+     * @param reader the reader of the original module and the modules it inherits
+     * @return the derived module, as the compiler will read it
+     */
+    public GwtModule toModule( GwtModuleReader reader )
+        throws GwtModuleReaderException
+    {
+        try
+        {
+            return new GwtModule( getName(), Xpp3DomBuilder.build( new StringReader( toXml() ) ), reader );
+        }
+        catch ( Exception e )
+        {
+            throw new GwtModuleReaderException( "Failed to read derived module " + getName(), e );
+        }
+    }
+
+    /**
+     * Write the module descriptor, unless unchanged
+     *
+     * @param directory root directory of the generated modules, to be added to the compiler classpath
+     * @return the module descriptor
+     */
+    public File write( File directory )
+        throws IOException
+    {
+        File file = new File( directory, getName().replace( '.', '/' ) + ".gwt.xml" );
+        String xml = toXml();
+        if ( file.exists() && xml.equals( FileUtils.fileRead( file, "UTF-8" ) ) )
+        {
+            return file;
+        }
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getPath(), "UTF-8", xml );
+        return file;
+    }
+}
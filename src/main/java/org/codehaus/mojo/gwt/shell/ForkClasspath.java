@@ -0,0 +1,294 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.gwt.utils.FingerprintManifest;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Pass the classpath of a forked JVM by file rather than on the command line, to keep command lines short with large
+ * classpaths. The classpath is written either as a Java 9+ <code>@argfile</code>, or as a manifest-only jar whose
+ * <code>Class-Path</code> references the classpath entries. Files are named by the classpath hash, so that forks with
+ * the same classpath share them.
+ * <p>
+ * A manifest-only jar hides the actual classpath entries to tools that scan the classpath URLs, as the GWT compiler
+ * and dev mode do, so it is only used for commands that allow it.
+ *
+ * @since 2.5.0
+ */
+public class ForkClasspath
+{
+    /** classpath on the command line */
+    public static final String INLINE = "inline";
+
+    /** classpath in a Java 9+ argument file */
+    public static final String ARGFILE = "argfile";
+
+    /** classpath in a manifest-only jar */
+    public static final String JAR = "jar";
+
+    /** argument file if the forked JVM supports it, otherwise manifest-only jar when allowed */
+    public static final String AUTO = "auto";
+
+    private static final Pattern RELEASE_VERSION = Pattern.compile( "JAVA_VERSION=\"?([0-9._]+)" );
+
+    /** major version of java executables */
+    private static final Map<String, Integer> versions = new HashMap<String, Integer>();
+
+    private final File directory;
+
+    private final String mode;
+
+    private final Log log;
+
+    /**
+     * @param directory where to write the classpath files
+     * @param mode one of {@link #AUTO}, {@link #ARGFILE}, {@link #JAR} or {@link #INLINE}
+     */
+    public ForkClasspath( File directory, String mode, Log log )
+    {
+        this.directory = directory;
+        this.mode = mode != null ? mode : AUTO;
+        this.log = log;
+    }
+
+    /**
+     * @param command a command line, starting with the java executable, that may contain a <code>-classpath</code>
+     * argument
+     * @param manifestAllowed the main class doesn't scan the classpath, so a manifest-only jar can be used
+     * @return the command with classpath passed by file
+     */
+    public List<String> compact( List<String> command, boolean manifestAllowed )
+        throws IOException
+    {
+        int index = command.indexOf( "-classpath" );
+        if ( index < 0 || index + 1 >= command.size() || INLINE.equals( mode ) )
+        {
+            return command;
+        }
+        String effective = mode;
+        if ( AUTO.equals( mode ) )
+        {
+            effective = getJavaVersion( command.get( 0 ) ) >= 9 ? ARGFILE : JAR;
+        }
+        if ( JAR.equals( effective ) && !manifestAllowed )
+        {
+            return command;
+        }
+
+        String classpath = command.get( index + 1 );
+        List<String> compact = new ArrayList<String>( command );
+        if ( ARGFILE.equals( effective ) )
+        {
+            compact.remove( index + 1 );
+            compact.set( index, "@" + getArgumentFile( classpath ).getAbsolutePath() );
+        }
+        else if ( JAR.equals( effective ) )
+        {
+            compact.set( index + 1, getManifestJar( classpath ).getAbsolutePath() );
+        }
+        return compact;
+    }
+
+    /**
+     * @return an argument file setting the classpath
+     */
+    public File getArgumentFile( String classpath )
+        throws IOException
+    {
+        File file = getFile( classpath, ".args" );
+        if ( !file.exists() )
+        {
+            // argument files use quotes and backslash escapes
+            String escaped = classpath.replace( "\\", "\\\\" ).replace( "\"", "\\\"" );
+            File tmp = File.createTempFile( file.getName(), ".tmp", directory );
+            FileUtils.fileWrite( tmp.getPath(), "UTF-8", "-classpath \"" + escaped + "\"\n" );
+            publish( tmp, file );
+        }
+        return file;
+    }
+
+    /**
+     * @return a manifest-only jar referencing the classpath entries
+     */
+    public File getManifestJar( String classpath )
+        throws IOException
+    {
+        File file = getFile( classpath, ".jar" );
+        if ( !file.exists() )
+        {
+            StringBuilder path = new StringBuilder();
+            for ( String entry : classpath.split( File.pathSeparator ) )
+            {
+                if ( entry.length() > 0 )
+                {
+                    // directories URLs must end with a slash, which toURI does only for existing directories
+                    String url = new File( entry ).toURI().toURL().toExternalForm();
+                    if ( !url.endsWith( "/" ) && !new File( entry ).isFile() && !entry.endsWith( ".jar" ) )
+                    {
+                        url += "/";
+                    }
+                    path.append( path.length() > 0 ? " " : "" ).append( url );
+                }
+            }
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+            manifest.getMainAttributes().put( Attributes.Name.CLASS_PATH, path.toString() );
+            File tmp = File.createTempFile( file.getName(), ".tmp", directory );
+            OutputStream out = new FileOutputStream( tmp );
+            try
+            {
+                new JarOutputStream( out, manifest ).finish();
+            }
+            finally
+            {
+                IOUtils.closeQuietly( out );
+            }
+            publish( tmp, file );
+        }
+        return file;
+    }
+
+    private File getFile( String classpath, String extension )
+    {
+        directory.mkdirs();
+        String hash = FingerprintManifest.hash( Arrays.asList( classpath ).iterator() );
+        return new File( directory, "classpath-" + hash + extension );
+    }
+
+    /**
+     * Concurrent forks may write the same file, the first one wins
+     */
+    private void publish( File tmp, File file )
+    {
+        if ( !tmp.renameTo( file ) )
+        {
+            tmp.delete();
+        }
+        log.debug( "Classpath written to " + file );
+    }
+
+    /**
+     * @param java path to a java executable
+     * @return the major version of the java executable, 0 if unknown
+     */
+    public static synchronized int getJavaVersion( String java )
+    {
+        Integer version = versions.get( java );
+        if ( version == null )
+        {
+            version = Integer.valueOf( detectJavaVersion( new File( java ) ) );
+            versions.put( java, version );
+        }
+        return version.intValue();
+    }
+
+    private static int detectJavaVersion( File java )
+    {
+        File home = getJavaHome( java.getPath() );
+        if ( home == null )
+        {
+            return 0;
+        }
+        File release = getReleaseFile( home );
+        if ( release != null )
+        {
+            try
+            {
+                Matcher matcher = RELEASE_VERSION.matcher( FileUtils.fileRead( release ) );
+                if ( matcher.find() )
+                {
+                    return parseVersion( matcher.group( 1 ) );
+                }
+            }
+            catch ( IOException e )
+            {
+                // unknown
+            }
+        }
+        if ( home.equals( new File( System.getProperty( "java.home" ) ).getAbsoluteFile() ) )
+        {
+            return parseVersion( System.getProperty( "java.specification.version" ) );
+        }
+        return 0;
+    }
+
+    /**
+     * @param java path to a java executable
+     * @return the home directory of the java executable, <code>null</code> if unknown
+     */
+    public static File getJavaHome( String java )
+    {
+        File bin = new File( java ).getAbsoluteFile().getParentFile();
+        return bin != null ? bin.getParentFile() : null;
+    }
+
+    /**
+     * @param home a java home directory
+     * @return the <code>release</code> file describing the java runtime, <code>null</code> if not found
+     */
+    public static File getReleaseFile( File home )
+    {
+        // JDK 8 runs from the jre sub-directory of the JDK home
+        for ( File release : new File[] { new File( home, "release" ), new File( home.getParentFile(), "release" ) } )
+        {
+            if ( release.isFile() )
+            {
+                return release;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param version a java version, for example "1.8.0_392" or "17.0.1"
+     * @return the major version
+     */
+    public static int parseVersion( String version )
+    {
+        String[] parts = version.split( "[._]" );
+        try
+        {
+            int major = Integer.parseInt( parts[0] );
+            return major == 1 && parts.length > 1 ? Integer.parseInt( parts[1] ) : major;
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+}
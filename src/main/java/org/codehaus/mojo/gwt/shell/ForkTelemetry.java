@@ -0,0 +1,294 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.mojo.gwt.utils.JsonWriter;
+
+/**
+ * Resources used by a forked JVM: wall-clock time, user and system CPU time and peak resident memory of the process
+ * tree sampled from the Linux <code>/proc</code> filesystem, and optionally GC pauses read from a GC log written by
+ * the JVM. CPU and memory are not available on other platforms.
+ *
+ * @since 2.5.0
+ */
+public class ForkTelemetry
+    extends ProcessSampler
+{
+    /** JDK 9+ unified logging, for example <code>GC(3) Pause Young (Normal) ... 24M->3M(256M) 3.456ms</code> */
+    private static final Pattern UNIFIED_PAUSE = Pattern.compile( "\\bPause\\b.* (\\d+[.,]\\d+)ms$" );
+
+    /** JDK 8 GC log, for example <code>[GC (Allocation Failure)  32768K->1234K(125952K), 0.0045678 secs]</code> */
+    private static final Pattern LEGACY_PAUSE = Pattern.compile( "\\[(?:Full )?GC.*, (\\d+[.,]\\d+) secs\\]" );
+
+    private final String command;
+
+    private final String module;
+
+    /** user and system CPU ticks, by process */
+    private final Map<Long, long[]> cpu = new HashMap<Long, long[]>();
+
+    private long start;
+
+    private long end;
+
+    private int status = -1;
+
+    private File gcLog;
+
+    private boolean sharedGcLog;
+
+    private int gcPauses;
+
+    private double gcPauseTime;
+
+    /**
+     * @param command the forked main class
+     * @param module the GWT module the fork works on, <code>null</code> if not relevant
+     */
+    public ForkTelemetry( String command, String module )
+    {
+        super( 500 );
+        this.command = command;
+        this.module = module;
+    }
+
+    /**
+     * Make the forked JVM log its GC pauses to a temporary file, read and deleted when the process terminates. With
+     * a JDK 8 JVM, a GC log already set on the command line is read instead.
+     *
+     * @param jvmCommand a command line, starting with the java executable
+     * @param directory where to write the GC log
+     * @return the command with GC logging enabled
+     */
+    public List<String> enableGcLog( List<String> jvmCommand, File directory )
+        throws IOException
+    {
+        List<String> command = new ArrayList<String>( jvmCommand );
+        boolean unified = ForkClasspath.getJavaVersion( command.get( 0 ) ) >= 9;
+        for ( String arg : command )
+        {
+            if ( !unified && arg.startsWith( "-Xloggc:" ) )
+            {
+                // a JDK 8 JVM only writes a single GC log, read the one already requested
+                gcLog = new File( arg.substring( "-Xloggc:".length() ) );
+                sharedGcLog = true;
+                return command;
+            }
+        }
+        directory.mkdirs();
+        gcLog = File.createTempFile( "gc-", ".log", directory );
+        String path = gcLog.getAbsolutePath();
+        if ( unified )
+        {
+            // unified logging uses ':' as separator, file names containing one must be quoted
+            command.add( 1, "-Xlog:gc:file=" + ( path.indexOf( ':' ) >= 0 ? "\"" + path + "\"" : path ) );
+        }
+        else
+        {
+            command.add( 1, "-Xloggc:" + path );
+        }
+        return command;
+    }
+
+    @Override
+    public void started( Process process )
+    {
+        start = System.currentTimeMillis();
+        super.started( process );
+    }
+
+    @Override
+    public void terminated( Process process )
+    {
+        end = System.currentTimeMillis();
+        super.terminated( process );
+        try
+        {
+            status = process.exitValue();
+        }
+        catch ( IllegalThreadStateException e )
+        {
+            // killed on time-out
+        }
+        if ( gcLog != null )
+        {
+            readGcLog( gcLog );
+            if ( !sharedGcLog )
+            {
+                gcLog.delete();
+            }
+        }
+    }
+
+    @Override
+    protected void sample( List<Long> tree )
+    {
+        super.sample( tree );
+        for ( long process : tree )
+        {
+            long[] ticks = readCpuTicks( process );
+            if ( ticks != null )
+            {
+                synchronized ( cpu )
+                {
+                    cpu.put( Long.valueOf( process ), ticks );
+                }
+            }
+        }
+    }
+
+    /**
+     * Sum the pauses reported in a GC log
+     */
+    protected void readGcLog( File log )
+    {
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new FileReader( log ) );
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                Matcher unified = UNIFIED_PAUSE.matcher( line );
+                if ( unified.find() )
+                {
+                    gcPauses++;
+                    gcPauseTime += Double.parseDouble( unified.group( 1 ).replace( ',', '.' ) );
+                    continue;
+                }
+                Matcher legacy = LEGACY_PAUSE.matcher( line );
+                if ( legacy.find() )
+                {
+                    gcPauses++;
+                    gcPauseTime += Double.parseDouble( legacy.group( 1 ).replace( ',', '.' ) ) * 1000;
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            // no GC log
+        }
+        finally
+        {
+            IOUtils.closeQuietly( reader );
+        }
+    }
+
+    public String getCommand()
+    {
+        return command;
+    }
+
+    public String getModule()
+    {
+        return module;
+    }
+
+    /**
+     * @return process exit status, -1 if unknown
+     */
+    public int getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return wall-clock time in milliseconds
+     */
+    public long getWallTime()
+    {
+        return end - start;
+    }
+
+    /**
+     * @return user CPU time of the process tree in milliseconds, 0 if unknown
+     */
+    public long getUserCpuTime()
+    {
+        return getCpuTime( 0 );
+    }
+
+    /**
+     * @return system CPU time of the process tree in milliseconds, 0 if unknown
+     */
+    public long getSystemCpuTime()
+    {
+        return getCpuTime( 1 );
+    }
+
+    private long getCpuTime( int index )
+    {
+        long ticks = 0;
+        synchronized ( cpu )
+        {
+            for ( long[] times : cpu.values() )
+            {
+                ticks += times[index];
+            }
+        }
+        return ticks * MILLIS_PER_TICK;
+    }
+
+    /**
+     * @return number of GC pauses, 0 if GC log was not enabled
+     */
+    public int getGcPauses()
+    {
+        return gcPauses;
+    }
+
+    /**
+     * @return total GC pause time in milliseconds
+     */
+    public long getGcPauseTime()
+    {
+        return Math.round( gcPauseTime );
+    }
+
+    public void write( JsonWriter json )
+        throws IOException
+    {
+        json.beginObject()
+            .name( "command" ).value( command )
+            .name( "module" ).value( module )
+            .name( "status" ).value( status )
+            .name( "wallTime" ).value( getWallTime() )
+            .name( "userCpuTime" ).value( getUserCpuTime() )
+            .name( "systemCpuTime" ).value( getSystemCpuTime() )
+            .name( "peakMemory" ).value( getPeakMemory() );
+        if ( gcLog != null )
+        {
+            json.name( "gcPauses" ).value( gcPauses ).name( "gcPauseTime" ).value( getGcPauseTime() );
+        }
+        json.endObject();
+    }
+}
@@ -0,0 +1,225 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.gwt.utils.JsonWriter;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+
+/**
+ * Telemetry of the JVMs forked by a goal, written as a JSON report with totals per module, and summarized in the
+ * build log.
+ *
+ * @since 2.5.0
+ */
+public class ForkTelemetryReport
+{
+    private final String goal;
+
+    private final List<ForkTelemetry> forks = new ArrayList<ForkTelemetry>();
+
+    public ForkTelemetryReport( String goal )
+    {
+        this.goal = goal;
+    }
+
+    /**
+     * Record a terminated fork. Forks may terminate concurrently.
+     */
+    public synchronized void add( ForkTelemetry fork )
+    {
+        forks.add( fork );
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return forks.isEmpty();
+    }
+
+    /**
+     * @return totals by module, in order of first fork. Forks not related to a module are reported with a
+     * <code>null</code> module.
+     */
+    public synchronized Map<String, Total> getTotals()
+    {
+        Map<String, Total> totals = new LinkedHashMap<String, Total>();
+        for ( ForkTelemetry fork : forks )
+        {
+            Total total = totals.get( fork.getModule() );
+            if ( total == null )
+            {
+                total = new Total();
+                totals.put( fork.getModule(), total );
+            }
+            total.add( fork );
+        }
+        return totals;
+    }
+
+    public synchronized void write( File file )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        Writer writer = WriterFactory.newWriter( file, "UTF-8" );
+        try
+        {
+            JsonWriter json = new JsonWriter( writer );
+            json.beginObject().name( "goal" ).value( goal ).name( "timestamp" ).value( System.currentTimeMillis() );
+            json.name( "modules" ).beginArray();
+            for ( Map.Entry<String, Total> total : getTotals().entrySet() )
+            {
+                json.beginObject().name( "module" ).value( total.getKey() );
+                total.getValue().write( json );
+                json.endObject();
+            }
+            json.endArray().name( "forks" ).beginArray();
+            for ( ForkTelemetry fork : forks )
+            {
+                fork.write( json );
+            }
+            json.endArray().endObject();
+            json.flush();
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    /**
+     * Log a line per module
+     */
+    public void summarize( Log log )
+    {
+        for ( Map.Entry<String, Total> entry : getTotals().entrySet() )
+        {
+            Total total = entry.getValue();
+            StringBuilder line = new StringBuilder();
+            if ( entry.getKey() != null )
+            {
+                line.append( entry.getKey() ).append( ": " );
+            }
+            line.append( total.forks ).append( total.forks > 1 ? " forked JVMs, " : " forked JVM, " );
+            line.append( "wall " ).append( seconds( total.wallTime ) );
+            line.append( ", CPU " ).append( seconds( total.userCpuTime ) ).append( " user + " );
+            line.append( seconds( total.systemCpuTime ) ).append( " system" );
+            line.append( ", peak RSS " ).append( total.peakMemory ).append( "MB" );
+            if ( total.gcPauses > 0 )
+            {
+                line.append( ", GC " ).append( seconds( total.gcPauseTime ) ).append( " in " );
+                line.append( total.gcPauses ).append( " pauses" );
+            }
+            log.info( line.toString() );
+        }
+    }
+
+    private static String seconds( long millis )
+    {
+        return String.format( Locale.ENGLISH, "%.1fs", Double.valueOf( millis / 1000.0 ) );
+    }
+
+    /**
+     * Resources used by the forks of a module. Peak memory is the largest fork peak, as forks may run in sequence.
+     */
+    public static class Total
+    {
+        private int forks;
+
+        private long wallTime;
+
+        private long userCpuTime;
+
+        private long systemCpuTime;
+
+        private long peakMemory;
+
+        private int gcPauses;
+
+        private long gcPauseTime;
+
+        void add( ForkTelemetry fork )
+        {
+            forks++;
+            wallTime += fork.getWallTime();
+            userCpuTime += fork.getUserCpuTime();
+            systemCpuTime += fork.getSystemCpuTime();
+            peakMemory = Math.max( peakMemory, fork.getPeakMemory() );
+            gcPauses += fork.getGcPauses();
+            gcPauseTime += fork.getGcPauseTime();
+        }
+
+        public int getForks()
+        {
+            return forks;
+        }
+
+        public long getWallTime()
+        {
+            return wallTime;
+        }
+
+        public long getUserCpuTime()
+        {
+            return userCpuTime;
+        }
+
+        public long getSystemCpuTime()
+        {
+            return systemCpuTime;
+        }
+
+        public long getPeakMemory()
+        {
+            return peakMemory;
+        }
+
+        public int getGcPauses()
+        {
+            return gcPauses;
+        }
+
+        public long getGcPauseTime()
+        {
+            return gcPauseTime;
+        }
+
+        void write( JsonWriter json )
+            throws IOException
+        {
+            json.name( "forks" ).value( forks )
+                .name( "wallTime" ).value( wallTime )
+                .name( "userCpuTime" ).value( userCpuTime )
+                .name( "systemCpuTime" ).value( systemCpuTime )
+                .name( "peakMemory" ).value( peakMemory )
+                .name( "gcPauses" ).value( gcPauses )
+                .name( "gcPauseTime" ).value( gcPauseTime );
+        }
+    }
+}
@@ -0,0 +1,595 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.gwt.utils.HprofHistogram;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.Os;
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Watch a forked JVM for lack of progress: no output while the process tree uses almost no CPU, or a JVM spending
+ * most of its time in garbage collection. Before the fork is killed, either by the watchdog or on time-out, a thread
+ * dump and a heap histogram or dump are written to the diagnostics directory using <code>jcmd</code>. The JVM can
+ * also be asked to dump its heap on <code>OutOfMemoryError</code>, and the largest classes of that dump are logged
+ * unless the dump is too large to be read quickly. Heap dumps are named after the forked tool and module, so that
+ * each new dump replaces the previous one of the same module.
+ * <p>
+ * CPU usage is read from the Linux <code>/proc</code> filesystem, on other platforms only the output is watched.
+ * </p>
+ *
+ * @since 2.5.0
+ */
+public class ForkWatchdog
+    implements ForkedProcessListener
+{
+    /** CPU usage of the process tree below which the fork is considered idle, in percent of one core */
+    private static final int IDLE_CPU = 10;
+
+    private static final int JCMD_TIMEOUT = 120;
+
+    private static final int TOP_CLASSES = 10;
+
+    private final File directory;
+
+    private final String name;
+
+    private final File jcmd;
+
+    private final Log log;
+
+    private final String prefix;
+
+    private int hangTimeout;
+
+    private int gcOverheadLimit = 90;
+
+    private String heapDiagnostics = "histogram";
+
+    private long histogramMaxSize = 512;
+
+    private String module;
+
+    private File heapDump;
+
+    private long pid = -1;
+
+    private volatile long lastOutput;
+
+    private volatile boolean outOfMemory;
+
+    private long lastActivity;
+
+    private long lastCheck;
+
+    private long cpuTicks = -1;
+
+    private double gcTime = -1;
+
+    private long gcOverheadSince;
+
+    private String reason;
+
+    /**
+     * @param directory where to write the diagnostics
+     * @param name prefix of the diagnostics files, usually the forked main class simple name
+     * @param java the java executable of the fork, used to find the matching <code>jcmd</code>
+     * @param log where to report
+     */
+    public ForkWatchdog( File directory, String name, String java, Log log )
+    {
+        this.directory = directory;
+        this.name = name;
+        this.jcmd = findJcmd( java );
+        this.log = log;
+        this.prefix = name + "-" + new SimpleDateFormat( "yyyyMMdd-HHmmss-SSS" ).format( new Date() );
+    }
+
+    /**
+     * @param seconds time without output and CPU activity, or with excessive GC overhead, after which the fork is
+     * diagnosed and killed. 0 disables the watchdog, diagnostics are then only captured on time-out.
+     */
+    public ForkWatchdog setHangTimeout( int seconds )
+    {
+        this.hangTimeout = seconds;
+        return this;
+    }
+
+    /**
+     * @param percent share of the wall-clock time spent in GC above which the fork is considered thrashing, 0 to
+     * disable
+     */
+    public ForkWatchdog setGcOverheadLimit( int percent )
+    {
+        this.gcOverheadLimit = percent;
+        return this;
+    }
+
+    /**
+     * @param heapDiagnostics <code>none</code>, <code>histogram</code> or <code>dump</code>
+     */
+    public ForkWatchdog setHeapDiagnostics( String heapDiagnostics )
+    {
+        this.heapDiagnostics = heapDiagnostics;
+        return this;
+    }
+
+    /**
+     * @param megabytes size above which heap dumps are not read to log their largest classes
+     */
+    public ForkWatchdog setHistogramMaxSize( long megabytes )
+    {
+        this.histogramMaxSize = megabytes;
+        return this;
+    }
+
+    /**
+     * @param module the GWT module(s) the fork works on, <code>null</code> if none
+     */
+    public ForkWatchdog forModule( String module )
+    {
+        this.module = module;
+        return this;
+    }
+
+    /**
+     * Make the JVM dump its heap to the diagnostics directory on <code>OutOfMemoryError</code>, replacing the
+     * previous dump of the module.
+     *
+     * @param jvmCommand a command line, starting with the java executable
+     * @return the command with heap dump enabled
+     */
+    public List<String> addJvmArgs( List<String> jvmCommand )
+    {
+        heapDump = getHeapDumpFile( "-oom" );
+        List<String> command = new ArrayList<String>( jvmCommand );
+        command.add( 1, "-XX:+HeapDumpOnOutOfMemoryError" );
+        command.add( 2, "-XX:HeapDumpPath=" + heapDump.getAbsolutePath() );
+        return command;
+    }
+
+    /**
+     * @return a consumer recording the time of the last line the fork has written, and whether it ran out of memory
+     */
+    public StreamConsumer monitor( final StreamConsumer consumer )
+    {
+        return new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                lastOutput = System.currentTimeMillis();
+                // the JVM error, or the GWT TreeLogger message when the compiler caught it
+                if ( line.contains( "java.lang.OutOfMemoryError" ) || line.contains( "Out of memory; to increase" ) )
+                {
+                    outOfMemory = true;
+                }
+                consumer.consumeLine( line );
+            }
+        };
+    }
+
+    public void started( Process process )
+    {
+        pid = ForkedProcessRunner.getPid( process );
+        long now = System.currentTimeMillis();
+        lastOutput = now;
+        lastActivity = now;
+        lastCheck = now;
+    }
+
+    public void terminated( Process process )
+    {
+        if ( heapDump != null && heapDump.isFile() )
+        {
+            log.warn( "Forked JVM ran out of memory, heap dumped to " + heapDump );
+            logTopClasses( heapDump );
+        }
+    }
+
+    /**
+     * Called periodically while the fork runs.
+     *
+     * @return the reason to kill the fork, <code>null</code> while it makes progress
+     */
+    public String check( Process process )
+    {
+        if ( hangTimeout <= 0 || pid < 0 )
+        {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if ( now - lastCheck < Math.max( 250, Math.min( hangTimeout * 250L, 10000 ) ) )
+        {
+            return null;
+        }
+        long elapsed = now - lastCheck;
+        lastCheck = now;
+
+        long ticks = readCpuTicks();
+        boolean busy = false;
+        if ( ticks >= 0 )
+        {
+            busy = cpuTicks >= 0 && ( ticks - cpuTicks ) * ProcessSampler.MILLIS_PER_TICK * 100 > IDLE_CPU * elapsed;
+            cpuTicks = ticks;
+        }
+        if ( busy )
+        {
+            lastActivity = now;
+        }
+        long silence = now - Math.max( lastOutput, lastActivity );
+        if ( silence >= hangTimeout * 1000L )
+        {
+            reason = "no output" + ( ticks >= 0 ? " and no CPU activity" : "" ) + " for " + silence / 1000 + " seconds";
+            return reason;
+        }
+
+        if ( busy && gcOverheadLimit > 0 && now - lastOutput >= elapsed && jcmd != null )
+        {
+            double time = readGcTime( getJvmPid() );
+            if ( time >= 0 && gcTime >= 0 && ( time - gcTime ) * 100000 > gcOverheadLimit * elapsed )
+            {
+                if ( gcOverheadSince == 0 )
+                {
+                    gcOverheadSince = now - elapsed;
+                }
+                if ( now - gcOverheadSince >= hangTimeout * 1000L )
+                {
+                    reason = "more than " + gcOverheadLimit + "% of time spent in GC for "
+                        + ( now - gcOverheadSince ) / 1000 + " seconds";
+                    return reason;
+                }
+            }
+            else
+            {
+                gcOverheadSince = 0;
+            }
+            gcTime = time;
+        }
+        else
+        {
+            gcOverheadSince = 0;
+            gcTime = -1;
+        }
+        return null;
+    }
+
+    /**
+     * Capture the fork threads and heap, before it is killed.
+     *
+     * @param reason why the fork is killed
+     */
+    public void diagnose( Process process, String reason )
+    {
+        log.warn( "Forked JVM " + name + " will be killed: " + reason + ", writing diagnostics to " + directory );
+        directory.mkdirs();
+        long jvm = getJvmPid();
+        if ( jvm < 0 )
+        {
+            return;
+        }
+        if ( jcmd == null )
+        {
+            if ( !Os.isFamily( Os.FAMILY_WINDOWS ) )
+            {
+                // the thread dump goes to the fork output, and so to its log file
+                Commandline cmd = new Commandline();
+                cmd.setExecutable( "kill" );
+                cmd.createArg().setValue( "-3" );
+                cmd.createArg().setValue( String.valueOf( jvm ) );
+                execute( cmd, null );
+            }
+            return;
+        }
+
+        execute( jcmd( jvm, "Thread.print" ), new File( directory, prefix + "-threads.txt" ) );
+        if ( "histogram".equals( heapDiagnostics ) )
+        {
+            File histogram = new File( directory, prefix + "-histogram.txt" );
+            if ( execute( jcmd( jvm, "GC.class_histogram" ), histogram ) )
+            {
+                logHistogram( histogram );
+            }
+        }
+        else if ( "dump".equals( heapDiagnostics ) )
+        {
+            File dump = getHeapDumpFile( "" );
+            Commandline cmd = jcmd( jvm, "GC.heap_dump" );
+            cmd.createArg().setValue( dump.getAbsolutePath() );
+            if ( execute( cmd, null ) && dump.isFile() )
+            {
+                log.warn( "Heap dumped to " + dump );
+                logTopClasses( dump );
+            }
+        }
+    }
+
+    /**
+     * @return why the watchdog killed the fork, <code>null</code> if it didn't
+     */
+    public String getReason()
+    {
+        return reason;
+    }
+
+    /**
+     * @return <code>true</code> if the fork reported an <code>OutOfMemoryError</code> or dumped its heap on one
+     */
+    public boolean isOutOfMemory()
+    {
+        return outOfMemory || ( heapDump != null && heapDump.isFile() );
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    private long readCpuTicks()
+    {
+        long total = -1;
+        for ( long process : ProcessSampler.getProcessTree( pid ) )
+        {
+            long[] ticks = ProcessSampler.readCpuTicks( process );
+            if ( ticks != null )
+            {
+                total = Math.max( total, 0 ) + ticks[0] + ticks[1];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return the JVM process, which may be a child of the forked shell
+     */
+    private long getJvmPid()
+    {
+        for ( long process : ProcessSampler.getProcessTree( pid ) )
+        {
+            String cmdline = readCommand( process );
+            if ( cmdline != null && new File( cmdline ).getName().startsWith( "java" ) )
+            {
+                return process;
+            }
+        }
+        return pid;
+    }
+
+    private static String readCommand( long process )
+    {
+        try
+        {
+            String cmdline = FileUtils.fileRead( new File( "/proc/" + process + "/cmdline" ) );
+            int end = cmdline.indexOf( '\0' );
+            return end >= 0 ? cmdline.substring( 0, end ) : cmdline;
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return accumulated GC time of the JVM in seconds, read from its performance counters, -1 if unknown
+     */
+    private double readGcTime( long jvm )
+    {
+        final long[] ticks = new long[1];
+        final long[] frequency = new long[1];
+        StreamConsumer counters = new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                int eq = line.indexOf( '=' );
+                if ( eq < 0 )
+                {
+                    return;
+                }
+                String key = line.substring( 0, eq );
+                try
+                {
+                    if ( key.startsWith( "sun.gc.collector." ) && key.endsWith( ".time" ) )
+                    {
+                        ticks[0] += Long.parseLong( line.substring( eq + 1 ).trim() );
+                    }
+                    else if ( key.equals( "sun.os.hrt.frequency" ) )
+                    {
+                        frequency[0] = Long.parseLong( line.substring( eq + 1 ).trim() );
+                    }
+                }
+                catch ( NumberFormatException e )
+                {
+                    // not a counter
+                }
+            }
+        };
+        try
+        {
+            int status = CommandLineUtils.executeCommandLine( jcmd( jvm, "PerfCounter.print" ), counters,
+                                                              new CommandLineUtils.StringStreamConsumer(),
+                                                              JCMD_TIMEOUT );
+            return status == 0 && frequency[0] > 0 ? (double) ticks[0] / frequency[0] : -1;
+        }
+        catch ( CommandLineException e )
+        {
+            return -1;
+        }
+    }
+
+    private Commandline jcmd( long jvm, String command )
+    {
+        Commandline cmd = new Commandline();
+        cmd.setExecutable( jcmd.getAbsolutePath() );
+        cmd.createArg().setValue( String.valueOf( jvm ) );
+        cmd.createArg().setValue( command );
+        return cmd;
+    }
+
+    /**
+     * @param output file to write the command output to, <code>null</code> to discard it
+     * @return <code>true</code> if the command succeeded
+     */
+    private boolean execute( Commandline cmd, File output )
+    {
+        Writer writer = null;
+        try
+        {
+            final Writer out = output != null ? WriterFactory.newWriter( output, "UTF-8" ) : null;
+            writer = out;
+            StreamConsumer consumer = new StreamConsumer()
+            {
+                public void consumeLine( String line )
+                {
+                    if ( out != null )
+                    {
+                        try
+                        {
+                            out.write( line );
+                            out.write( '\n' );
+                        }
+                        catch ( IOException e )
+                        {
+                            // reported as a missing diagnostic
+                        }
+                    }
+                }
+            };
+            CommandLineUtils.StringStreamConsumer err = new CommandLineUtils.StringStreamConsumer();
+            int status = CommandLineUtils.executeCommandLine( cmd, consumer, err, JCMD_TIMEOUT );
+            if ( status != 0 )
+            {
+                log.warn( "Failed to capture diagnostics with " + cmd + ": " + err.getOutput() );
+                return false;
+            }
+            if ( output != null )
+            {
+                log.warn( "Diagnostics written to " + output );
+            }
+            return true;
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Failed to write diagnostics to " + output + ": " + e.getMessage() );
+            return false;
+        }
+        catch ( CommandLineException e )
+        {
+            log.warn( "Failed to capture diagnostics with " + cmd + ": " + e.getMessage() );
+            return false;
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    /**
+     * Log the first lines of a <code>GC.class_histogram</code> output, after its header
+     */
+    private void logHistogram( File histogram )
+    {
+        try
+        {
+            int count = 0;
+            for ( String line : FileUtils.fileRead( histogram ).split( "\n" ) )
+            {
+                if ( line.trim().matches( "\\d+:.*" ) && count++ < TOP_CLASSES )
+                {
+                    log.warn( line );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            // already reported as written
+        }
+    }
+
+    /**
+     * @return the heap dump file of the forked tool and module, the previous one being removed as the JVM doesn't
+     * overwrite files
+     */
+    private File getHeapDumpFile( String suffix )
+    {
+        directory.mkdirs();
+        File dump = new File( directory, name + ( module != null ? "-" + module : "" ) + suffix + ".hprof" );
+        dump.delete();
+        return dump;
+    }
+
+    private void logTopClasses( File hprof )
+    {
+        if ( hprof.length() > histogramMaxSize << 20 )
+        {
+            log.warn( "Heap dump is larger than " + histogramMaxSize + "MB, open it with a heap analyzer" );
+            return;
+        }
+        try
+        {
+            List<HprofHistogram.Entry> entries = HprofHistogram.read( hprof );
+            log.warn( "Largest classes by shallow size:" );
+            for ( HprofHistogram.Entry entry : entries.subList( 0, Math.min( TOP_CLASSES, entries.size() ) ) )
+            {
+                log.warn( "  " + entry );
+            }
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Failed to read heap dump " + hprof + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * @return the jcmd tool of the JDK the java executable belongs to, <code>null</code> if not a JDK
+     */
+    private static File findJcmd( String java )
+    {
+        if ( java == null )
+        {
+            return null;
+        }
+        String executable = Os.isFamily( Os.FAMILY_WINDOWS ) ? "jcmd.exe" : "jcmd";
+        File home = ForkClasspath.getJavaHome( java );
+        if ( home == null )
+        {
+            return null;
+        }
+        File jcmd = new File( home, "bin/" + executable );
+        if ( !jcmd.isFile() && home.getParentFile() != null )
+        {
+            // JDK 8 java executable in the jre subdirectory
+            jcmd = new File( home.getParentFile(), "bin/" + executable );
+        }
+        return jcmd.isFile() ? jcmd : null;
+    }
+}
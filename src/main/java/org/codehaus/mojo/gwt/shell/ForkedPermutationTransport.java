@@ -0,0 +1,57 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.List;
+
+import org.codehaus.plexus.util.Os;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Default {@link PermutationTransport}, that runs permutations in local forked JVMs. The compile goal forks its
+ * workers as its other JVMs when this transport is configured, this implementation only runs the plain command line.
+ *
+ * @since 2.5.0
+ */
+public class ForkedPermutationTransport
+    implements PermutationTransport
+{
+    public int compilePermutations( List<String> command, StreamConsumer output )
+        throws IOException
+    {
+        // On windows, the default Shell will fall into command line length limitation issue
+        Commandline cmd = Os.isFamily( Os.FAMILY_WINDOWS ) ? new Commandline( new JavaShell() ) : new Commandline();
+        cmd.setExecutable( command.get( 0 ) );
+        cmd.addArguments( command.subList( 1, command.size() ).toArray( new String[command.size() - 1] ) );
+        try
+        {
+            return new ForkedProcessRunner( cmd, output, output ).run( 0 );
+        }
+        catch ( CommandLineException e )
+        {
+            IOException ioe = new IOException( "Failed to fork permutations worker : " + e.getMessage() );
+            ioe.initCause( e );
+            throw ioe;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Write forked processes output to the Maven log from a dedicated thread, so that a slow console never blocks the
+ * forked process output pipe.
+ * <p>
+ * Lines are queued in a bounded buffer: when it is full, the oldest informational lines are dropped. Informational
+ * lines are also rate limited, and the number of dropped or suppressed lines is reported. Warnings and errors are
+ * never dropped. The full output is expected to be kept elsewhere, typically in a log file written by
+ * {@link ForkedProcessRunner}.
+ *
+ * @since 2.5.0
+ */
+public class ForkedProcessConsole
+{
+    private static final long IDLE_TIMEOUT = 1000;
+
+    private final Log log;
+
+    private final int maxLinesPerSecond;
+
+    private final BlockingQueue<Line> queue;
+
+    private Thread writer;
+
+    /** lines dropped or suppressed since last report */
+    private int skipped;
+
+    private long window;
+
+    private int windowLines;
+
+    /** lines queued or being written */
+    private int pending;
+
+    private String hint = "";
+
+    /**
+     * @param maxLinesPerSecond max informational lines written per second, 0 for no limit
+     * @param capacity max lines waiting to be written
+     */
+    public ForkedProcessConsole( Log log, int maxLinesPerSecond, int capacity )
+    {
+        this.log = log;
+        this.maxLinesPerSecond = maxLinesPerSecond;
+        this.queue = new ArrayBlockingQueue<Line>( Math.max( 1, capacity ) );
+    }
+
+    /**
+     * @param hint where to find the full output, reported with the skipped lines count
+     */
+    public synchronized void setHint( String hint )
+    {
+        this.hint = hint != null ? ", full output in " + hint : "";
+    }
+
+    /**
+     * @return a consumer for standard output, logged as info unless GWT marks the line as a warning or an error
+     */
+    public StreamConsumer getOut()
+    {
+        return new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                add( line, false );
+            }
+        };
+    }
+
+    /**
+     * @return a consumer for error output, logged as errors
+     */
+    public StreamConsumer getErr()
+    {
+        return new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                add( line, true );
+            }
+        };
+    }
+
+    private void add( String line, boolean error )
+    {
+        Line l = new Line( line, error ? Line.ERROR : getLevel( line ) );
+        synchronized ( this )
+        {
+            if ( l.level == Line.INFO )
+            {
+                while ( !queue.offer( l ) )
+                {
+                    // drop the oldest informational line, or wait for the writer if only important lines are queued
+                    Line oldest = queue.peek();
+                    if ( oldest != null && oldest.level == Line.INFO && queue.remove( oldest ) )
+                    {
+                        pending--;
+                        skipped++;
+                    }
+                    else
+                    {
+                        waitForWriter();
+                    }
+                }
+            }
+            else
+            {
+                while ( !queue.offer( l ) )
+                {
+                    waitForWriter();
+                }
+            }
+            pending++;
+            startWriter();
+            notifyAll();
+        }
+    }
+
+    private void waitForWriter()
+    {
+        startWriter();
+        try
+        {
+            wait( 10 );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * GWT TreeLogger prints the log type first, indented by the branch depth, for example
+     * <code>   [WARN] Warnings in 'Foo.java'</code>. Messages merely quoting a log type are informational.
+     */
+    static int getLevel( String line )
+    {
+        int start = 0;
+        while ( start < line.length() && Character.isWhitespace( line.charAt( start ) ) )
+        {
+            start++;
+        }
+        if ( line.startsWith( "[ERROR]", start ) )
+        {
+            return Line.ERROR;
+        }
+        if ( line.startsWith( "[WARN]", start ) )
+        {
+            return Line.WARN;
+        }
+        return Line.INFO;
+    }
+
+    private void startWriter()
+    {
+        if ( writer == null )
+        {
+            writer = new Thread( "GWT forked process console" )
+            {
+                public void run()
+                {
+                    write();
+                }
+            };
+            writer.setDaemon( true );
+            writer.start();
+        }
+    }
+
+    private void write()
+    {
+        while ( true )
+        {
+            Line line;
+            try
+            {
+                line = queue.poll( IDLE_TIMEOUT, TimeUnit.MILLISECONDS );
+            }
+            catch ( InterruptedException e )
+            {
+                line = null;
+            }
+            synchronized ( this )
+            {
+                if ( line == null )
+                {
+                    if ( queue.isEmpty() )
+                    {
+                        reportSkipped();
+                        writer = null;
+                        notifyAll();
+                        return;
+                    }
+                    continue;
+                }
+            }
+            writeLine( line );
+            synchronized ( this )
+            {
+                pending--;
+                notifyAll();
+            }
+        }
+    }
+
+    private void writeLine( Line line )
+    {
+        switch ( line.level )
+        {
+            case Line.ERROR:
+                log.error( line.text );
+                return;
+            case Line.WARN:
+                log.warn( line.text );
+                return;
+            default:
+                if ( isAllowed() )
+                {
+                    log.info( line.text );
+                }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if an informational line can be written in current rate limit window
+     */
+    private synchronized boolean isAllowed()
+    {
+        if ( maxLinesPerSecond <= 0 )
+        {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if ( now - window >= 1000 )
+        {
+            reportSkipped();
+            window = now;
+            windowLines = 0;
+        }
+        if ( windowLines < maxLinesPerSecond )
+        {
+            windowLines++;
+            return true;
+        }
+        skipped++;
+        return false;
+    }
+
+    private synchronized void reportSkipped()
+    {
+        if ( skipped > 0 )
+        {
+            log.info( "[" + skipped + " lines not displayed" + hint + "]" );
+            skipped = 0;
+        }
+    }
+
+    /**
+     * Wait for all queued lines to be written, so that following logs don't get mixed with the forked process output
+     */
+    public synchronized void flush()
+    {
+        while ( !queue.isEmpty() || pending > 0 )
+        {
+            waitForWriter();
+        }
+        reportSkipped();
+    }
+
+    private static class Line
+    {
+        static final int INFO = 0;
+
+        static final int WARN = 1;
+
+        static final int ERROR = 2;
+
+        final String text;
+
+        final int level;
+
+        Line( String text, int level )
+        {
+            this.text = text;
+            this.level = level;
+        }
+    }
+}
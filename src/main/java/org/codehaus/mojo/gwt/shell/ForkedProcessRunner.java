@@ -0,0 +1,286 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineTimeOutException;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.codehaus.plexus.util.cli.StreamPumper;
+
+/**
+ * Run a command line and pump its output, as plexus-utils <code>CommandLineUtils</code> does, but let listeners
+ * monitor the running process.
+ *
+ * @since 2.5.0
+ */
+public class ForkedProcessRunner
+{
+    private final Commandline cmd;
+
+    private final StreamConsumer out;
+
+    private final StreamConsumer err;
+
+    private final List<ForkedProcessListener> listeners = new ArrayList<ForkedProcessListener>();
+
+    private File logFile;
+
+    private ForkWatchdog watchdog;
+
+    /**
+     * @param cmd the command line to run
+     * @param out consumer for standard output
+     * @param err consumer for error output
+     */
+    public ForkedProcessRunner( Commandline cmd, StreamConsumer out, StreamConsumer err )
+    {
+        this.cmd = cmd;
+        this.out = out;
+        this.err = err;
+    }
+
+    public ForkedProcessRunner addListener( ForkedProcessListener listener )
+    {
+        listeners.add( listener );
+        return this;
+    }
+
+    /**
+     * @param logFile file to write the full process output to, before it is passed to the consumers
+     */
+    public ForkedProcessRunner setLogFile( File logFile )
+    {
+        this.logFile = logFile;
+        return this;
+    }
+
+    /**
+     * @param watchdog checks the process makes progress, and captures diagnostics before it is killed
+     */
+    public ForkedProcessRunner setWatchdog( ForkWatchdog watchdog )
+    {
+        this.watchdog = watchdog;
+        return addListener( watchdog );
+    }
+
+    /**
+     * @param timeOut max execution time in seconds, 0 for no limit
+     * @return the process exit status
+     * @throws CommandLineTimeOutException the process has been killed on time-out, or by the watchdog
+     * @throws CommandLineException failed to run the process
+     */
+    public int run( int timeOut )
+        throws CommandLineException
+    {
+        final Process process = cmd.execute();
+        Thread killer = new Thread( "destroy forked process" )
+        {
+            public void run()
+            {
+                process.destroy();
+            }
+        };
+        Runtime.getRuntime().addShutdownHook( killer );
+
+        LogFileWriter log = logFile != null ? new LogFileWriter( logFile ) : null;
+        StreamConsumer outConsumer = log != null ? log.tee( out ) : out;
+        StreamConsumer errConsumer = log != null ? log.tee( err ) : err;
+        if ( watchdog != null )
+        {
+            outConsumer = watchdog.monitor( outConsumer );
+            errConsumer = watchdog.monitor( errConsumer );
+        }
+        StreamPumper outPumper = new StreamPumper( process.getInputStream(), outConsumer );
+        StreamPumper errPumper = new StreamPumper( process.getErrorStream(), errConsumer );
+        outPumper.start();
+        errPumper.start();
+        for ( ForkedProcessListener listener : listeners )
+        {
+            listener.started( process );
+        }
+        try
+        {
+            int status = waitFor( process, timeOut );
+            outPumper.join();
+            errPumper.join();
+            return status;
+        }
+        catch ( InterruptedException e )
+        {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new CommandLineException( "Interrupted while waiting for forked process" );
+        }
+        finally
+        {
+            for ( ForkedProcessListener listener : listeners )
+            {
+                listener.terminated( process );
+            }
+            outPumper.close();
+            errPumper.close();
+            if ( log != null )
+            {
+                log.close();
+            }
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook( killer );
+            }
+            catch ( IllegalStateException e )
+            {
+                // JVM is shutting down
+            }
+        }
+    }
+
+    private int waitFor( Process process, int timeOut )
+        throws InterruptedException, CommandLineTimeOutException
+    {
+        if ( timeOut <= 0 && watchdog == null )
+        {
+            return process.waitFor();
+        }
+        long deadline = timeOut > 0 ? System.currentTimeMillis() + timeOut * 1000L : Long.MAX_VALUE;
+        while ( true )
+        {
+            try
+            {
+                return process.exitValue();
+            }
+            catch ( IllegalThreadStateException e )
+            {
+                // still running
+            }
+            if ( System.currentTimeMillis() > deadline )
+            {
+                if ( watchdog != null )
+                {
+                    watchdog.diagnose( process, "time-out after " + timeOut + " seconds" );
+                }
+                process.destroy();
+                throw new CommandLineTimeOutException( "Process timed out after " + timeOut + " seconds" );
+            }
+            String reason = watchdog != null ? watchdog.check( process ) : null;
+            if ( reason != null )
+            {
+                watchdog.diagnose( process, reason );
+                process.destroy();
+                throw new CommandLineTimeOutException( "Process killed by watchdog: " + reason );
+            }
+            Thread.sleep( 100 );
+        }
+    }
+
+    /**
+     * @return the operating system identifier of the process, or -1 if the JVM doesn't expose it
+     */
+    public static long getPid( Process process )
+    {
+        try
+        {
+            // Java 9+
+            Method pid = Process.class.getMethod( "pid" );
+            return ( (Number) pid.invoke( process ) ).longValue();
+        }
+        catch ( Exception e )
+        {
+            // older JVM
+        }
+        try
+        {
+            Field pid = process.getClass().getDeclaredField( "pid" );
+            pid.setAccessible( true );
+            return ( (Number) pid.get( process ) ).longValue();
+        }
+        catch ( Exception e )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Buffered writer shared by both output streams. Failing to write the log file must not fail the process.
+     */
+    private static class LogFileWriter
+    {
+        private Writer writer;
+
+        LogFileWriter( File file )
+        {
+            try
+            {
+                file.getParentFile().mkdirs();
+                writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ), 65536 );
+            }
+            catch ( IOException e )
+            {
+                writer = null;
+            }
+        }
+
+        StreamConsumer tee( final StreamConsumer consumer )
+        {
+            return new StreamConsumer()
+            {
+                public void consumeLine( String line )
+                {
+                    write( line );
+                    consumer.consumeLine( line );
+                }
+            };
+        }
+
+        synchronized void write( String line )
+        {
+            if ( writer != null )
+            {
+                try
+                {
+                    writer.write( line );
+                    writer.write( '\n' );
+                }
+                catch ( IOException e )
+                {
+                    close();
+                }
+            }
+        }
+
+        synchronized void close()
+        {
+            IOUtil.close( writer );
+            writer = null;
+        }
+    }
+}
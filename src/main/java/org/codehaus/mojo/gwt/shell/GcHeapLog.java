@@ -0,0 +1,175 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Heap used by a forked JVM after its garbage collections, read from a GC log the JVM writes to a temporary file. The
+ * resident memory of a JVM grows up to its max heap whatever the application needs, whereas the heap left after a
+ * collection of the old generation measures the memory the application actually retains.
+ *
+ * @since 2.5.0
+ */
+public class GcHeapLog
+    implements ForkedProcessListener
+{
+    /**
+     * JDK 9+ unified logging, with the default uptime decoration, for example
+     * <code>[1.234s][info][gc] GC(3) Pause Young (Mixed) (G1 Evacuation Pause) 240M->130M(512M) 3.456ms</code>
+     */
+    private static final Pattern UNIFIED =
+        Pattern.compile( "^\\[(\\d+[.,]\\d+)s\\].* GC\\(\\d+\\) (Pause .*) \\d+M->(\\d+)M\\(\\d+M\\)" );
+
+    /** JDK 8 GC log, for example <code>1.234: [Full GC (Ergonomics)  32768K->1234K(125952K), 0.0045678 secs]</code> */
+    private static final Pattern LEGACY =
+        Pattern.compile( "^(\\d+[.,]\\d+): \\[((?:Full )?GC)\\b.* \\d+K->(\\d+)K\\(" );
+
+    private File file;
+
+    /** time since JVM start (ms), heap after collection (MB), 1 if the old generation was collected */
+    private final List<long[]> collections = new ArrayList<long[]>();
+
+    /**
+     * Create the temporary GC log file.
+     *
+     * @param java the forked java executable
+     * @param directory where to write the GC log
+     * @return the JVM argument to write the GC log
+     */
+    public String getJvmArg( String java, File directory )
+        throws IOException
+    {
+        directory.mkdirs();
+        file = File.createTempFile( "heap-", ".log", directory );
+        String path = file.getAbsolutePath();
+        if ( ForkClasspath.getJavaVersion( java ) >= 9 )
+        {
+            // unified logging uses ':' as separator, file names containing one must be quoted
+            return "-Xlog:gc:file=" + ( path.indexOf( ':' ) >= 0 ? "\"" + path + "\"" : path );
+        }
+        return "-Xloggc:" + path;
+    }
+
+    public void started( Process process )
+    {
+        // nothing to do
+    }
+
+    public void terminated( Process process )
+    {
+        if ( file != null )
+        {
+            read( file );
+            file.delete();
+        }
+    }
+
+    /**
+     * Read the heap used after each collection
+     */
+    protected void read( File log )
+    {
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new FileReader( log ) );
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                Matcher unified = UNIFIED.matcher( line );
+                if ( unified.find() )
+                {
+                    String pause = unified.group( 2 );
+                    add( unified.group( 1 ), Long.parseLong( unified.group( 3 ) ),
+                         pause.startsWith( "Pause Full" ) || pause.contains( "(Mixed)" ) );
+                    continue;
+                }
+                Matcher legacy = LEGACY.matcher( line );
+                if ( legacy.find() )
+                {
+                    add( legacy.group( 1 ), Long.parseLong( legacy.group( 3 ) ) / 1024,
+                         legacy.group( 2 ).startsWith( "Full" ) );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            // no GC log
+        }
+        catch ( NumberFormatException e )
+        {
+            // unexpected format
+        }
+        finally
+        {
+            IOUtils.closeQuietly( reader );
+        }
+    }
+
+    private void add( String seconds, long heap, boolean old )
+    {
+        long time = Math.round( Double.parseDouble( seconds.replace( ',', '.' ) ) * 1000 );
+        collections.add( new long[] { time, heap, old ? 1 : 0 } );
+    }
+
+    /**
+     * @return <code>true</code> if the JVM reported no collection
+     */
+    public boolean isEmpty()
+    {
+        return collections.isEmpty();
+    }
+
+    /**
+     * Heap retained during a time range. Collections of the young generation only leave the old generation garbage
+     * in the heap, so they are only used when the old generation has not been collected in that range.
+     *
+     * @param from start of the range, in milliseconds since the JVM start
+     * @param to end of the range, in milliseconds since the JVM start
+     * @return the max heap (MB) after collections, 0 if none happened in the range
+     */
+    public long getLiveHeap( long from, long to )
+    {
+        long all = 0;
+        long old = 0;
+        for ( long[] collection : collections )
+        {
+            if ( collection[0] >= from && collection[0] < to )
+            {
+                all = Math.max( all, collection[1] );
+                if ( collection[2] > 0 )
+                {
+                    old = Math.max( old, collection[1] );
+                }
+            }
+        }
+        return old > 0 ? old : all;
+    }
+}
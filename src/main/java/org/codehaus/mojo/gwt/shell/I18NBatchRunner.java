@@ -0,0 +1,174 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.gwt.i18n.tools.I18NSync;
+
+/**
+ * Generate a set of I18N interfaces with {@link I18NSync} in a single JVM, on a thread pool.
+ * <p>
+ * Usage: <code>I18NBatchRunner -out dir [-threads n] kind:bundle...</code> where kind is one of {@link #CONSTANTS},
+ * {@link #CONSTANTS_WITH_LOOKUP} or {@link #MESSAGES}. One result line is printed per bundle, and the process exits
+ * with a non-zero status if any bundle failed.
+ *
+ * @since 2.5.0
+ */
+public class I18NBatchRunner
+{
+    public static final String CONSTANTS = "constants";
+
+    public static final String CONSTANTS_WITH_LOOKUP = "constantsWithLookup";
+
+    public static final String MESSAGES = "messages";
+
+    private final File out;
+
+    private final int threads;
+
+    public I18NBatchRunner( File out, int threads )
+    {
+        this.out = out;
+        this.threads = Math.max( 1, threads );
+    }
+
+    public static void main( String[] args )
+    {
+        File out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> bundles = new ArrayList<String>();
+        for ( int i = 0; i < args.length; i++ )
+        {
+            if ( "-out".equals( args[i] ) && i + 1 < args.length )
+            {
+                out = new File( args[++i] );
+            }
+            else if ( "-threads".equals( args[i] ) && i + 1 < args.length )
+            {
+                threads = Integer.parseInt( args[++i] );
+            }
+            else
+            {
+                bundles.add( args[i] );
+            }
+        }
+        if ( out == null )
+        {
+            System.err.println( "Usage: I18NBatchRunner -out dir [-threads n] kind:bundle..." );
+            System.exit( 1 );
+        }
+        if ( new I18NBatchRunner( out, threads ).run( bundles ) > 0 )
+        {
+            System.exit( 1 );
+        }
+    }
+
+    /**
+     * @param bundles the bundles to generate, as <code>kind:bundle</code>
+     * @return the number of failed bundles
+     */
+    public int run( List<String> bundles )
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( threads, Math.max( 1, bundles.size() ) ) );
+        try
+        {
+            Map<String, Future<Long>> results = new LinkedHashMap<String, Future<Long>>();
+            for ( final String bundle : bundles )
+            {
+                results.put( bundle, executor.submit( new Callable<Long>()
+                {
+                    public Long call()
+                        throws Exception
+                    {
+                        long start = System.currentTimeMillis();
+                        generate( bundle );
+                        return Long.valueOf( System.currentTimeMillis() - start );
+                    }
+                } ) );
+            }
+            int failures = 0;
+            for ( Map.Entry<String, Future<Long>> result : results.entrySet() )
+            {
+                try
+                {
+                    long time = result.getValue().get().longValue();
+                    System.out.println( "Generated " + result.getKey() + " in " + time + "ms" );
+                }
+                catch ( ExecutionException e )
+                {
+                    failures++;
+                    System.out.println( "Failed to generate " + result.getKey() + ": " + e.getCause() );
+                }
+            }
+            System.out.println( ( bundles.size() - failures ) + " I18N interfaces generated, " + failures
+                + " failed" );
+            return failures;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return bundles.size();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void generate( String bundle )
+        throws Exception
+    {
+        int colon = bundle.indexOf( ':' );
+        String kind = colon > 0 ? bundle.substring( 0, colon ) : CONSTANTS;
+        String className = bundle.substring( colon + 1 );
+        // I18NSync expects the target package to exist
+        int dot = className.lastIndexOf( '.' );
+        if ( dot > 0 )
+        {
+            new File( out, className.substring( 0, dot ).replace( '.', File.separatorChar ) ).mkdirs();
+        }
+        if ( MESSAGES.equals( kind ) )
+        {
+            I18NSync.createMessagesInterfaceFromClassName( className, out );
+        }
+        else if ( CONSTANTS_WITH_LOOKUP.equals( kind ) )
+        {
+            I18NSync.createConstantsWithLookupInterfaceFromClassName( className, out );
+        }
+        else if ( CONSTANTS.equals( kind ) )
+        {
+            I18NSync.createConstantsInterfaceFromClassName( className, out );
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Unknown I18N interface kind " + kind );
+        }
+    }
+}
@@ -22,10 +22,15 @@ package org.codehaus.mojo.gwt.shell;
  */
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.FileUtils;
 
 /**
  * Creates I18N interfaces for constants and messages files.
@@ -89,56 +94,133 @@ public class I18NMojo
         throws MojoExecutionException, MojoFailureException
     {
         setup();
-        boolean generated = false;
 
-        // constants with lookup
-        if ( i18nConstantsWithLookupBundles != null )
+        List<String> bundles = new ArrayList<String>();
+        int upToDate = 0;
+        upToDate += addStaleBundles( bundles, I18NBatchRunner.CONSTANTS_WITH_LOOKUP, i18nConstantsWithLookupBundles );
+        upToDate += addStaleBundles( bundles, I18NBatchRunner.CONSTANTS, i18nConstantsBundles );
+        upToDate += addStaleBundles( bundles, I18NBatchRunner.MESSAGES, i18nMessagesBundles );
+        if ( upToDate > 0 )
         {
-            for ( String target : i18nConstantsWithLookupBundles )
-            {
-                ensureTargetPackageExists( getGenerateDirectory(), target );
-                new JavaCommand( "com.google.gwt.i18n.tools.I18NSync" ).withinScope( Artifact.SCOPE_COMPILE )
-                    .withinClasspath( getGwtUserJar() ).withinClasspath( getGwtDevJar() )
-                    .arg( "-out", getGenerateDirectory().getAbsolutePath() ).arg( "-createConstantsWithLookup" )
-                    .arg( target ).execute();
-                generated = true;
-            }
+            getLog().info( upToDate + " I18N interfaces are up to date" );
+        }
+
+        if ( !bundles.isEmpty() )
+        {
+            // all bundles in a single JVM
+            new JavaCommand( I18NBatchRunner.class.getName() ).withInProcessExecution().withManifestClasspath()
+                .withinScope( Artifact.SCOPE_COMPILE ).withinClasspath( getGwtUserJar() )
+                .withinClasspath( getGwtDevJar() ).withinClasspath( getClassPathElementFor( I18NBatchRunner.class ) )
+                .arg( "-out", getGenerateDirectory().getAbsolutePath() )
+                .arg( "-threads", String.valueOf( Runtime.getRuntime().availableProcessors() ) )
+                .args( bundles ).execute();
+            writeKinds( bundles );
         }
 
-        // constants
-        if ( i18nConstantsBundles != null )
+        getLog().debug( "add compile source root " + getGenerateDirectory() );
+        addCompileSourceRoot( getGenerateDirectory() );
+    }
+
+    /**
+     * @param kind the I18N interface kind, as expected by {@link I18NBatchRunner}
+     * @return number of up to date bundles
+     */
+    private int addStaleBundles( List<String> bundles, String kind, String[] targets )
+    {
+        int upToDate = 0;
+        if ( targets != null )
         {
-            for ( String target : i18nConstantsBundles )
+            for ( String target : targets )
             {
-                ensureTargetPackageExists( getGenerateDirectory(), target );
-                new JavaCommand( "com.google.gwt.i18n.tools.I18NSync" ).withinScope( Artifact.SCOPE_COMPILE )
-                    .withinClasspath( getGwtUserJar() ).withinClasspath( getGwtDevJar() )
-                    .arg( "-out", getGenerateDirectory().getAbsolutePath() ).arg( target ).execute();
-                generated = true;
+                if ( isUpToDate( target, kind ) )
+                {
+                    getLog().debug( target + " I18N interface is up to date" );
+                    upToDate++;
+                    continue;
+                }
+                bundles.add( kind + ':' + target );
             }
         }
+        return upToDate;
+    }
 
-        // messages
-        if ( i18nMessagesBundles != null )
+    /**
+     * @return <code>true</code> if the generated interface has the expected kind and is more recent than the bundle
+     * properties file found in project sources or resources
+     */
+    @SuppressWarnings( "unchecked" )
+    private boolean isUpToDate( String target, String kind )
+    {
+        String path = target.replace( '.', '/' );
+        File generated = new File( getGenerateDirectory(), path + ".java" );
+        if ( !generated.exists() || !kind.equals( readKind( target ) ) )
+        {
+            return false;
+        }
+        List<String> roots = new ArrayList<String>( (List<String>) getProject().getCompileSourceRoots() );
+        for ( Resource resource : (List<Resource>) getProject().getResources() )
+        {
+            roots.add( resource.getDirectory() );
+        }
+        for ( String root : roots )
         {
-            for ( String target : i18nMessagesBundles )
+            File properties = new File( root, path + ".properties" );
+            if ( properties.exists() )
             {
-                ensureTargetPackageExists( getGenerateDirectory(), target );
-                new JavaCommand( "com.google.gwt.i18n.tools.I18NSync" ).withinScope( Artifact.SCOPE_COMPILE )
-                    .withinClasspath( getGwtUserJar() ).withinClasspath( getGwtDevJar() )
-                    .arg( "-out", getGenerateDirectory().getAbsolutePath() ).arg( "-createMessages" ).arg( target )
-                    .execute();
-                generated = true;
+                return properties.lastModified() <= generated.lastModified();
             }
         }
+        // bundle from a dependency
+        return false;
+    }
+
+    /**
+     * @return file recording the kind of the interface generated for a bundle, as the bundle can be moved from a kind
+     * to another without being modified
+     */
+    private File getKindFile( String target )
+    {
+        return new File( getProject().getBuild().getDirectory(), "gwt-i18n/" + target + ".kind" );
+    }
 
-        if ( generated )
+    private String readKind( String target )
+    {
+        File file = getKindFile( target );
+        if ( !file.exists() )
+        {
+            return null;
+        }
+        try
+        {
+            return FileUtils.fileRead( file ).trim();
+        }
+        catch ( IOException e )
         {
-            getLog().debug( "add compile source root " + getGenerateDirectory() );
-            addCompileSourceRoot( getGenerateDirectory() );
+            return null;
         }
     }
 
+    /**
+     * @param bundles the generated bundles, as <code>kind:bundle</code>
+     */
+    private void writeKinds( List<String> bundles )
+        throws MojoExecutionException
+    {
+        for ( String bundle : bundles )
+        {
+            int colon = bundle.indexOf( ':' );
+            File file = getKindFile( bundle.substring( colon + 1 ) );
+            try
+            {
+                file.getParentFile().mkdirs();
+                FileUtils.fileWrite( file.getAbsolutePath(), bundle.substring( 0, colon ) );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Failed to write " + file, e );
+            }
+        }
+    }
 
     private void setup()
         throws MojoExecutionException
@@ -166,17 +248,4 @@ public class I18NMojo
         }
     }
 
-
-    private void ensureTargetPackageExists( File generateDirectory, String targetName )
-    {
-        targetName = targetName.substring( 0, targetName.lastIndexOf( '.' ) );
-        String targetPackage = targetName.replace( '.', File.separatorChar );
-        getLog().debug( "ensureTargetPackageExists, targetName : " + targetName + ", targetPackage : " + targetPackage );
-        File targetPackageDirectory = new File( generateDirectory, targetPackage );
-        if ( !targetPackageDirectory.exists() )
-        {
-            targetPackageDirectory.mkdirs();
-        }
-    }
-
 }
@@ -0,0 +1,384 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Run the <code>main</code> method of a command line tool in the Maven JVM rather than in a forked one, to save the
+ * JVM startup of tools that run for a few milliseconds, like <code>I18NSync</code> or the CSS
+ * <code>InterfaceGenerator</code>.
+ * <p>
+ * The tool runs in a child-first classloader over its classpath, cached so that classes are only loaded once. Only
+ * the last {@link #MAX_LOADERS} classpaths are cached, and a classloader is dropped as soon as an archive of its
+ * classpath changes, so that long-lived Maven JVMs don't accumulate classloaders.
+ * <p>
+ * The tool standard and error output are captured, and <code>System.exit</code> is trapped to get the tool status.
+ * As the standard output is global to the JVM, tools run one at a time, and the captured lines are passed to the
+ * consumers once the output is restored, as consumers may log to the standard output. For the same reason, this
+ * must not be used while other threads of the build may write to the standard output, as in a parallel Maven build.
+ * <p>
+ * When the tool can't run in-process (exit can't be trapped by this JVM, main class not found...),
+ * {@link InProcessUnsupportedException} is thrown so that the caller can fork it. Java 18 and later don't allow to
+ * set a security manager at runtime, so exit is not even tried to be trapped there.
+ *
+ * @since 2.5.0
+ */
+public class InProcessRunner
+{
+    /** number of classpaths which classloaders are kept */
+    static final int MAX_LOADERS = 4;
+
+    /** classloaders by classpath, least recently used first, shared by all mojos of the build */
+    private static final Map<List<String>, CachedLoader> loaders =
+        new LinkedHashMap<List<String>, CachedLoader>( MAX_LOADERS, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<List<String>, CachedLoader> eldest )
+            {
+                return size() > MAX_LOADERS;
+            }
+        };
+
+    private static final Object LOCK = new Object();
+
+    /**
+     * @param classpath the tool classpath
+     * @param className the tool main class
+     * @param args the tool arguments
+     * @param out consumer for the tool standard output
+     * @param err consumer for the tool error output
+     * @return the tool status, as it would be returned by a forked JVM
+     * @throws InProcessUnsupportedException the tool can't run in-process
+     */
+    public int run( List<File> classpath, String className, List<String> args, StreamConsumer out,
+                    StreamConsumer err )
+        throws InProcessUnsupportedException
+    {
+        String javaVersion = System.getProperty( "java.specification.version" );
+        if ( !isExitTrapSupported( javaVersion ) )
+        {
+            throw new InProcessUnsupportedException( "System.exit can't be trapped on Java " + javaVersion );
+        }
+        Method main = getMain( getClassLoader( classpath ), className );
+        synchronized ( LOCK )
+        {
+            Thread thread = Thread.currentThread();
+            ExitTrap trap = new ExitTrap( thread );
+            SecurityManager securityManager = System.getSecurityManager();
+            try
+            {
+                System.setSecurityManager( trap );
+            }
+            catch ( RuntimeException e )
+            {
+                // recent JVMs don't allow a security manager to be set at runtime
+                throw new InProcessUnsupportedException( "System.exit can't be trapped in this JVM: " + e );
+            }
+
+            PrintStream stdout = System.out;
+            PrintStream stderr = System.err;
+            ClassLoader context = thread.getContextClassLoader();
+            LineOutputStream outStream = new LineOutputStream();
+            LineOutputStream errStream = new LineOutputStream();
+            try
+            {
+                System.setOut( new PrintStream( outStream, true ) );
+                System.setErr( new PrintStream( errStream, true ) );
+                thread.setContextClassLoader( main.getDeclaringClass().getClassLoader() );
+                main.invoke( null, new Object[] { args.toArray( new String[args.size()] ) } );
+                return 0;
+            }
+            catch ( InvocationTargetException e )
+            {
+                Throwable cause = e.getCause();
+                if ( cause instanceof ExitException )
+                {
+                    return ( (ExitException) cause ).status;
+                }
+                cause.printStackTrace( System.err );
+                return 1;
+            }
+            catch ( IllegalAccessException e )
+            {
+                throw new InProcessUnsupportedException( "Cannot invoke " + className + " main method" );
+            }
+            finally
+            {
+                System.out.flush();
+                System.err.flush();
+                System.setOut( stdout );
+                System.setErr( stderr );
+                thread.setContextClassLoader( context );
+                trap.release();
+                System.setSecurityManager( securityManager );
+                outStream.consume( out );
+                errStream.consume( err );
+            }
+        }
+    }
+
+    /**
+     * @param javaVersion the java specification version of the running JVM
+     * @return <code>false</code> if the JVM doesn't allow to set a security manager at runtime
+     */
+    static boolean isExitTrapSupported( String javaVersion )
+    {
+        return ForkClasspath.parseVersion( javaVersion ) < 18;
+    }
+
+    private static Method getMain( ClassLoader loader, String className )
+        throws InProcessUnsupportedException
+    {
+        try
+        {
+            Method main = Class.forName( className, false, loader ).getMethod( "main", String[].class );
+            if ( !Modifier.isStatic( main.getModifiers() ) )
+            {
+                throw new InProcessUnsupportedException( className + " has no static main method" );
+            }
+            return main;
+        }
+        catch ( ClassNotFoundException e )
+        {
+            throw new InProcessUnsupportedException( className + " not found in classpath" );
+        }
+        catch ( NoSuchMethodException e )
+        {
+            throw new InProcessUnsupportedException( className + " has no main method" );
+        }
+        catch ( LinkageError e )
+        {
+            throw new InProcessUnsupportedException( "Failed to load " + className + ": " + e );
+        }
+    }
+
+    /**
+     * @return the cached classloader for a classpath, unless some archive changed since it was created
+     */
+    static ClassLoader getClassLoader( List<File> classpath )
+        throws InProcessUnsupportedException
+    {
+        List<String> key = new ArrayList<String>();
+        List<String> stamps = new ArrayList<String>();
+        for ( File file : classpath )
+        {
+            key.add( file.getAbsolutePath() );
+            stamps.add( file.length() + ";" + file.lastModified() );
+        }
+        synchronized ( loaders )
+        {
+            CachedLoader cached = loaders.get( key );
+            // changed archives must not be served from a stale classloader
+            if ( cached == null || !cached.stamps.equals( stamps ) )
+            {
+                URL[] urls = new URL[classpath.size()];
+                int i = 0;
+                for ( File file : classpath )
+                {
+                    try
+                    {
+                        urls[i++] = file.toURI().toURL();
+                    }
+                    catch ( MalformedURLException e )
+                    {
+                        throw new InProcessUnsupportedException( "Invalid classpath entry " + file );
+                    }
+                }
+                ClassLoader loader = new ChildFirstClassLoader( urls, InProcessRunner.class.getClassLoader() );
+                cached = new CachedLoader( stamps, loader );
+                loaders.put( key, cached );
+            }
+            return cached.loader;
+        }
+    }
+
+    private static class CachedLoader
+    {
+        final List<String> stamps;
+
+        final ClassLoader loader;
+
+        CachedLoader( List<String> stamps, ClassLoader loader )
+        {
+            this.stamps = stamps;
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * Load classes from the tool classpath before the plugin ones, so that the project GWT SDK is used rather than
+     * the plugin one.
+     */
+    private static class ChildFirstClassLoader
+        extends URLClassLoader
+    {
+        ChildFirstClassLoader( URL[] urls, ClassLoader parent )
+        {
+            super( urls, parent );
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass( String name, boolean resolve )
+            throws ClassNotFoundException
+        {
+            Class<?> c = findLoadedClass( name );
+            if ( c == null && !name.startsWith( "java." ) )
+            {
+                try
+                {
+                    c = findClass( name );
+                }
+                catch ( ClassNotFoundException e )
+                {
+                    // not in the tool classpath
+                }
+            }
+            if ( c == null )
+            {
+                c = getParent().loadClass( name );
+            }
+            if ( resolve )
+            {
+                resolveClass( c );
+            }
+            return c;
+        }
+
+        @Override
+        public URL getResource( String name )
+        {
+            URL url = findResource( name );
+            return url != null ? url : super.getResource( name );
+        }
+    }
+
+    /**
+     * Turn <code>System.exit</code> calls from the tool thread into {@link ExitException}, without restricting
+     * anything else.
+     */
+    private static class ExitTrap
+        extends SecurityManager
+    {
+        private volatile Thread thread;
+
+        ExitTrap( Thread thread )
+        {
+            this.thread = thread;
+        }
+
+        void release()
+        {
+            thread = null;
+        }
+
+        @Override
+        public void checkExit( int status )
+        {
+            if ( Thread.currentThread() == thread )
+            {
+                throw new ExitException( status );
+            }
+        }
+
+        @Override
+        public void checkPermission( Permission perm )
+        {
+            // allowed
+        }
+
+        @Override
+        public void checkPermission( Permission perm, Object context )
+        {
+            // allowed
+        }
+    }
+
+    private static class ExitException
+        extends SecurityException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ExitException( int status )
+        {
+            super( "System.exit(" + status + ")" );
+            this.status = status;
+        }
+    }
+
+    /**
+     * Split the tool output in lines
+     */
+    private static class LineOutputStream
+        extends OutputStream
+    {
+        private final List<String> lines = new ArrayList<String>();
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write( int b )
+        {
+            if ( b == '\n' )
+            {
+                lines.add( line.toString() );
+                line.reset();
+            }
+            else if ( b != '\r' )
+            {
+                line.write( b );
+            }
+        }
+
+        synchronized void consume( StreamConsumer consumer )
+        {
+            if ( line.size() > 0 )
+            {
+                lines.add( line.toString() );
+                line.reset();
+            }
+            for ( String l : lines )
+            {
+                consumer.consumeLine( l );
+            }
+            lines.clear();
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.codehaus.mojo.gwt.shell;
  */
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
@@ -33,7 +34,6 @@ import org.codehaus.plexus.util.Os;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineTimeOutException;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
@@ -64,6 +64,10 @@ public class JavaCommand
     private int timeOut;
     
     private List<ClassPathProcessor> classPathProcessors;
+
+    private ForkClasspath forkClasspath;
+
+    private ClassDataSharing classDataSharing;
     
     /**
      * A plexus-util StreamConsumer to redirect messages to plugin log
@@ -100,6 +104,8 @@ public class JavaCommand
         this.log = javaCommandRequest.getLog();
         this.timeOut = javaCommandRequest.getTimeOut();
         this.classPathProcessors = javaCommandRequest.getClassPathProcessors();
+        this.forkClasspath = javaCommandRequest.getForkClasspath();
+        this.classDataSharing = javaCommandRequest.getClassDataSharing();
     }
 
     public JavaCommand withinScope( String scope )
@@ -187,8 +193,26 @@ public class JavaCommand
         command.add( className );
         command.addAll( args );
 
+        List<String> jvmCommand = null;
+        int status = -1;
         try
         {
+            String executable = this.getJavaCommand();
+            if ( forkClasspath != null || classDataSharing != null )
+            {
+                command.add( 0, executable );
+                if ( classDataSharing != null )
+                {
+                    command = classDataSharing.apply( command, true );
+                    jvmCommand = command;
+                }
+                if ( forkClasspath != null )
+                {
+                    command = forkClasspath.compact( command, true );
+                }
+                command = new ArrayList<String>( command );
+                command.remove( 0 );
+            }
             String[] arguments = (String[]) command.toArray( new String[command.size()] );
 
             // On windows, the default Shell will fall into command line length limitation issue
@@ -197,7 +221,7 @@ public class JavaCommand
             Commandline cmd =
                 Os.isFamily( Os.FAMILY_WINDOWS ) ? new Commandline( new JavaShell() ) : new Commandline();
 
-            cmd.setExecutable( this.getJavaCommand() );
+            cmd.setExecutable( executable );
             cmd.addArguments( arguments );
             if ( env != null )
             {
@@ -208,15 +232,7 @@ public class JavaCommand
                 }
             }
             log.debug( "Execute command :\n" + cmd.toString() );
-            int status;
-            if ( timeOut > 0 )
-            {
-                status = CommandLineUtils.executeCommandLine( cmd, out, err, timeOut );
-            }
-            else
-            {
-                status = CommandLineUtils.executeCommandLine( cmd, out, err );
-            }
+            status = new ForkedProcessRunner( cmd, out, err ).run( timeOut );
 
             if ( status != 0 )
             {
@@ -237,6 +253,17 @@ public class JavaCommand
         {
             throw new JavaCommandException( "Failed to execute command line :\n" + command, e );
         }
+        catch ( IOException e )
+        {
+            throw new JavaCommandException( "Failed to write the forked JVM classpath", e );
+        }
+        finally
+        {
+            if ( jvmCommand != null )
+            {
+                classDataSharing.processExited( jvmCommand, status );
+            }
+        }
     }
 
     private String getJavaCommand()
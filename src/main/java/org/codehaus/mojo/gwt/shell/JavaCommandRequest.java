@@ -58,6 +58,10 @@ public class JavaCommandRequest
     private int timeOut;
     
     private List<ClassPathProcessor> classPathProcessors;
+
+    private ForkClasspath forkClasspath;
+
+    private ClassDataSharing classDataSharing;
     
     public JavaCommandRequest()
     {
@@ -192,4 +196,40 @@ public class JavaCommandRequest
         this.classPathProcessors = classPathProcessors;
         return this;
     }
+
+    /**
+     * @since 2.5.0
+     */
+    public ForkClasspath getForkClasspath()
+    {
+        return forkClasspath;
+    }
+
+    /**
+     * @param forkClasspath how to pass the classpath to the forked JVM, <code>null</code> for command line
+     * @since 2.5.0
+     */
+    public JavaCommandRequest setForkClasspath( ForkClasspath forkClasspath )
+    {
+        this.forkClasspath = forkClasspath;
+        return this;
+    }
+
+    /**
+     * @since 2.5.0
+     */
+    public ClassDataSharing getClassDataSharing()
+    {
+        return classDataSharing;
+    }
+
+    /**
+     * @param classDataSharing how to share classes between forked JVMs, <code>null</code> for no sharing
+     * @since 2.5.0
+     */
+    public JavaCommandRequest setClassDataSharing( ClassDataSharing classDataSharing )
+    {
+        this.classDataSharing = classDataSharing;
+        return this;
+    }
 }
@@ -0,0 +1,139 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Settings of a forked GWT compiler retried after running out of memory. Each worker holds the AST of the permutation
+ * it compiles, so the workers are halved first, and once a single worker is left the heap is raised up to a ceiling.
+ *
+ * @since 2.5.0
+ */
+public class OutOfMemoryRecovery
+{
+    /** heap growth on each retry with a single worker */
+    private static final double HEAP_GROWTH = 1.5;
+
+    private final int initialWorkers;
+
+    private final long initialHeap;
+
+    private final long heapCeiling;
+
+    private int localWorkers;
+
+    private long maxHeap;
+
+    private int retries;
+
+    /**
+     * @param localWorkers the configured number of workers
+     * @param maxHeap the configured heap in MB, 0 for the JVM default
+     * @param heapCeiling the largest heap in MB a retry may use, 0 to never raise the heap
+     * @param retries the number of retries allowed
+     */
+    public OutOfMemoryRecovery( int localWorkers, long maxHeap, long heapCeiling, int retries )
+    {
+        this.initialWorkers = localWorkers;
+        this.initialHeap = maxHeap;
+        this.heapCeiling = heapCeiling;
+        this.localWorkers = localWorkers;
+        this.maxHeap = maxHeap;
+        this.retries = retries;
+    }
+
+    /**
+     * Start from the settings that worked for a previous build.
+     *
+     * @param workers workers that compiled without running out of memory, 0 if unknown
+     * @param heap heap in MB that compiled without running out of memory, 0 if unknown
+     */
+    public void restore( int workers, long heap )
+    {
+        if ( workers > 0 && workers < localWorkers )
+        {
+            localWorkers = workers;
+        }
+        if ( heap > maxHeap && ( heapCeiling <= 0 || heap <= heapCeiling ) )
+        {
+            maxHeap = heap;
+        }
+    }
+
+    /**
+     * Adjust the settings for a retry.
+     *
+     * @return <code>false</code> if there is no retry left, or the settings cannot be adjusted anymore
+     */
+    public boolean next()
+    {
+        if ( retries <= 0 )
+        {
+            return false;
+        }
+        if ( localWorkers > 1 )
+        {
+            localWorkers /= 2;
+        }
+        else if ( heapCeiling > maxHeap )
+        {
+            maxHeap = maxHeap > 0 ? Math.min( heapCeiling, (long) ( maxHeap * HEAP_GROWTH ) ) : heapCeiling;
+        }
+        else
+        {
+            return false;
+        }
+        retries--;
+        return true;
+    }
+
+    public int getLocalWorkers()
+    {
+        return localWorkers;
+    }
+
+    /**
+     * @return the heap in MB, 0 for the JVM default
+     */
+    public long getMaxHeap()
+    {
+        return maxHeap;
+    }
+
+    /**
+     * @return <code>true</code> if the compiler needs a larger heap than configured
+     */
+    public boolean isHeapRaised()
+    {
+        return maxHeap > initialHeap;
+    }
+
+    /**
+     * @return <code>true</code> if the settings differ from the configured ones
+     */
+    public boolean isAdjusted()
+    {
+        return localWorkers < initialWorkers || isHeapRaised();
+    }
+
+    public String toString()
+    {
+        return "-localWorkers " + localWorkers + ( maxHeap > 0 ? " -Xmx" + maxHeap + "m" : "" );
+    }
+}
@@ -0,0 +1,127 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Locale;
+
+import org.codehaus.mojo.gwt.PermutationEstimate;
+
+/**
+ * Cost of the next compilation of a module, forecast from its {@link PermutationEstimate} and the
+ * {@link CompilationHistory} of previous compilations.
+ * <p>
+ * The estimate is calibrated against the permutation count the compiler actually reported last time, as some rules
+ * (property providers, derived properties) are only known to the compiler. Compile time is assumed proportional to the
+ * permutation count, and peak memory, which depends on the compiler workers rather than on permutations, is the
+ * previous peak.
+ *
+ * @since 2.5.0
+ */
+public class PermutationForecast
+{
+    private final String module;
+
+    private final PermutationEstimate estimate;
+
+    private final int permutations;
+
+    private final long time;
+
+    private final long memory;
+
+    /**
+     * @param module the module as recorded in history
+     * @param estimate the permutations estimated from the module descriptors
+     * @param history previous compilations
+     */
+    public PermutationForecast( String module, PermutationEstimate estimate, CompilationHistory history )
+    {
+        this.module = module;
+        this.estimate = estimate;
+        int estimated = estimate.getPermutations();
+        int actual = history.getPermutations( module );
+        int previous = history.getEstimatedPermutations( module );
+        if ( actual > 0 && previous > 0 )
+        {
+            permutations = (int) Math.max( 1, Math.round( (double) actual * estimated / previous ) );
+        }
+        else
+        {
+            permutations = estimated;
+        }
+        long compileTime = history.getCompileTime( module );
+        time = compileTime > 0 && actual > 0 ? Math.round( (double) compileTime * permutations / actual ) : 0;
+        memory = history.getPeakMemory( module );
+    }
+
+    public String getModule()
+    {
+        return module;
+    }
+
+    public PermutationEstimate getEstimate()
+    {
+        return estimate;
+    }
+
+    /**
+     * @return the permutations the compiler is expected to compile
+     */
+    public int getPermutations()
+    {
+        return permutations;
+    }
+
+    /**
+     * @return expected wall-clock compile time (ms), 0 if the module was never compiled
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @return expected peak memory (MB) of the compiler, 0 if unknown
+     */
+    public long getMemory()
+    {
+        return memory;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder forecast = new StringBuilder( module ).append( ": " ).append( estimate );
+        if ( permutations != estimate.getPermutations() )
+        {
+            forecast.append( ", " ).append( permutations ).append( " expected from previous compilation" );
+        }
+        if ( time > 0 )
+        {
+            forecast.append( ", forecast " )
+                .append( String.format( Locale.ENGLISH, "%.1fs", Double.valueOf( time / 1000.0 ) ) );
+            if ( memory > 0 )
+            {
+                forecast.append( " and " ).append( memory ).append( "MB peak memory" );
+            }
+        }
+        return forecast.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.List;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Pluggable execution of GWT <code>CompilePerms</code> tasks, used by the compilation pipeline to fan out the
+ * permutations of a module over worker processes. The compiler work directory, where <code>Precompile</code> wrote
+ * its output and where permutations are expected, must be shared with the workers.
+ * <p>
+ * Implementations need a public no-arg constructor, and must be thread-safe as tasks run concurrently.
+ *
+ * @since 2.5.0
+ */
+public interface PermutationTransport
+{
+    /**
+     * Run a <code>CompilePerms</code> task, and wait for its completion.
+     *
+     * @param command the command to run a local fork : java executable, JVM arguments, classpath, main class and
+     *            arguments, including <code>-workDir</code> and <code>-perms</code>
+     * @param output consumer for the task output
+     * @return the task exit status
+     * @throws IOException failed to run the task
+     */
+    int compilePermutations( List<String> command, StreamConsumer output )
+        throws IOException;
+}
@@ -0,0 +1,95 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.mojo.gwt.AbstractGwtModuleMojo;
+import org.codehaus.mojo.gwt.PermutationEstimate;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+
+/**
+ * Estimate the permutations the GWT compiler will compile for the project modules, from their resolved module
+ * descriptors, and forecast the compile time and memory from previous compilations. Modules are estimated as
+ * declared, without the user agent or locale restrictions the <code>compile</code> goal may apply.
+ *
+ * @goal permutations
+ * @requiresDependencyResolution compile
+ * @since 2.5.0
+ */
+public class PermutationsMojo
+    extends AbstractGwtModuleMojo
+{
+    /**
+     * Fail the build when a module is estimated to compile more permutations than this limit. Disabled by default.
+     *
+     * @parameter default-value="0" expression="${gwt.compiler.maxPermutations}"
+     * @since 2.5.0
+     */
+    private int maxPermutations;
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    public void execute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        File file = new File( getProject().getBuild().getDirectory(), CompilationHistory.FILE_NAME );
+        CompilationHistory history;
+        try
+        {
+            history = new CompilationHistory( file );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to read GWT compilation history " + file, e );
+        }
+
+        List<String> exceeded = new ArrayList<String>();
+        for ( String module : getModules() )
+        {
+            PermutationEstimate estimate;
+            try
+            {
+                estimate = new PermutationEstimate( getModuleGraph( module ) );
+            }
+            catch ( GwtModuleReaderException e )
+            {
+                throw new MojoExecutionException( e.getMessage(), e );
+            }
+            getLog().info( new PermutationForecast( module, estimate, history ).toString() );
+            if ( maxPermutations > 0 && estimate.getPermutations() > maxPermutations )
+            {
+                exceeded.add( module + " (" + estimate.getPermutations() + ")" );
+            }
+        }
+        if ( !exceeded.isEmpty() )
+        {
+            throw new MojoFailureException( "GWT modules exceed " + maxPermutations + " permutations : " + exceeded );
+        }
+    }
+}
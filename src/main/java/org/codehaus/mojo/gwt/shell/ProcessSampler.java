@@ -0,0 +1,281 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Periodically sample the memory of a forked process and all its descendants (the JVM may be forked through a shell)
+ * from the Linux <code>/proc</code> filesystem. Does nothing on other platforms.
+ *
+ * @since 2.5.0
+ */
+public class ProcessSampler
+    implements ForkedProcessListener, Runnable
+{
+    private static final File PROC = new File( "/proc" );
+
+    /** Linux reports CPU times in clock ticks, USER_HZ is 100 on all supported architectures */
+    public static final long MILLIS_PER_TICK = 10;
+
+    private final long interval;
+
+    private volatile long pid = -1;
+
+    private volatile long peakMemory;
+
+    private Thread thread;
+
+    /**
+     * @param interval sampling interval in milliseconds
+     */
+    public ProcessSampler( long interval )
+    {
+        this.interval = interval;
+    }
+
+    public void started( Process process )
+    {
+        pid = ForkedProcessRunner.getPid( process );
+        if ( pid < 0 || !PROC.isDirectory() )
+        {
+            return;
+        }
+        thread = new Thread( this, "sample process " + pid );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    public void terminated( Process process )
+    {
+        if ( thread != null )
+        {
+            thread.interrupt();
+        }
+    }
+
+    public void run()
+    {
+        while ( !Thread.currentThread().isInterrupted() )
+        {
+            sample();
+            try
+            {
+                Thread.sleep( interval );
+            }
+            catch ( InterruptedException e )
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Read the peak resident memory of the process tree. As the kernel records each process high water mark, the
+     * peak is not missed even if it happens between two samples.
+     */
+    protected void sample()
+    {
+        sample( getProcessTree( pid ) );
+    }
+
+    /**
+     * @param tree the sampled process and all its descendants
+     */
+    protected void sample( List<Long> tree )
+    {
+        long memory = 0;
+        for ( long process : tree )
+        {
+            memory += readStatus( process, "VmHWM:" );
+        }
+        if ( memory > peakMemory )
+        {
+            peakMemory = memory;
+        }
+    }
+
+    /**
+     * @return the sampled process, -1 if not started or unknown
+     */
+    protected long getPid()
+    {
+        return pid;
+    }
+
+    /**
+     * @return peak resident memory of the process tree in MB, 0 if unknown
+     */
+    public long getPeakMemory()
+    {
+        return peakMemory / 1024;
+    }
+
+    /**
+     * @return the process and all its descendants
+     */
+    public static List<Long> getProcessTree( long root )
+    {
+        Map<Long, List<Long>> children = new HashMap<Long, List<Long>>();
+        String[] entries = PROC.list();
+        if ( entries != null )
+        {
+            for ( String entry : entries )
+            {
+                if ( !Character.isDigit( entry.charAt( 0 ) ) )
+                {
+                    continue;
+                }
+                long ppid = readParent( entry );
+                if ( ppid < 0 )
+                {
+                    continue;
+                }
+                List<Long> list = children.get( ppid );
+                if ( list == null )
+                {
+                    list = new ArrayList<Long>();
+                    children.put( ppid, list );
+                }
+                list.add( Long.valueOf( entry ) );
+            }
+        }
+
+        List<Long> tree = new ArrayList<Long>();
+        LinkedList<Long> queue = new LinkedList<Long>();
+        queue.add( root );
+        while ( !queue.isEmpty() )
+        {
+            Long process = queue.removeFirst();
+            tree.add( process );
+            List<Long> list = children.get( process );
+            if ( list != null )
+            {
+                queue.addAll( list );
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * @return parent pid from /proc/&lt;pid&gt;/stat, where it follows the (possibly space-containing) command name
+     */
+    private static long readParent( String pid )
+    {
+        String stat = readFirstLine( new File( PROC, pid + "/stat" ) );
+        if ( stat == null )
+        {
+            return -1;
+        }
+        String[] fields = stat.substring( stat.lastIndexOf( ')' ) + 2 ).split( " " );
+        try
+        {
+            return Long.parseLong( fields[1] );
+        }
+        catch ( RuntimeException e )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * @return user and system CPU time of a process in clock ticks from /proc/&lt;pid&gt;/stat, <code>null</code> if
+     * unknown
+     */
+    public static long[] readCpuTicks( long pid )
+    {
+        String stat = readFirstLine( new File( PROC, pid + "/stat" ) );
+        if ( stat == null )
+        {
+            return null;
+        }
+        // fields following the (possibly space-containing) command name, utime and stime are fields 14 and 15
+        String[] fields = stat.substring( stat.lastIndexOf( ')' ) + 2 ).split( " " );
+        try
+        {
+            return new long[] { Long.parseLong( fields[11] ), Long.parseLong( fields[12] ) };
+        }
+        catch ( RuntimeException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return value in kB of a memory field from /proc/&lt;pid&gt;/status, 0 if unknown
+     */
+    public static long readStatus( long pid, String field )
+    {
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new FileReader( new File( PROC, pid + "/status" ) ) );
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                if ( line.startsWith( field ) )
+                {
+                    return Long.parseLong( line.substring( field.length() ).trim().split( "\\s+" )[0] );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            // process has terminated
+        }
+        catch ( NumberFormatException e )
+        {
+            // unexpected format
+        }
+        finally
+        {
+            IOUtils.closeQuietly( reader );
+        }
+        return 0;
+    }
+
+    private static String readFirstLine( File file )
+    {
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new FileReader( file ) );
+            return reader.readLine();
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeQuietly( reader );
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Processors and memory available to the build, taking into account the Linux control groups (v1 or v2) limits a
+ * container may enforce, that the JVM of a forked compiler may not detect by itself. The limits are read from the
+ * cgroup of the process, as found in <code>/proc/self/cgroup</code>, and all its parents, as systemd slices or CI
+ * runners may nest the build in a cgroup below the one that enforces the limit.
+ *
+ * @since 2.5.0
+ */
+public class ResourceLimits
+{
+    private final int processors;
+
+    private final long memory;
+
+    private final String description;
+
+    /**
+     * @param root filesystem root where to look for <code>/sys/fs/cgroup</code>, <code>/proc/self/cgroup</code> and
+     * <code>/proc/meminfo</code>
+     * @param availableProcessors processors reported by the JVM
+     */
+    public ResourceLimits( File root, int availableProcessors )
+    {
+        StringBuilder sb = new StringBuilder();
+        File cgroup = new File( root, "sys/fs/cgroup" );
+        Map<String, String> paths = readCgroupPaths( new File( root, "proc/self/cgroup" ) );
+        List<File> unified = getHierarchy( cgroup, paths.get( "" ) );
+
+        int cpus = availableProcessors;
+        long limit = getCpuLimit( unified );
+        if ( limit < 0 )
+        {
+            for ( File directory : getHierarchy( new File( cgroup, "cpu" ), paths.get( "cpu" ) ) )
+            {
+                long quota = parseLong( readLine( new File( directory, "cpu.cfs_quota_us" ) ) );
+                long period = parseLong( readLine( new File( directory, "cpu.cfs_period_us" ) ) );
+                limit = min( limit, getCpuLimit( quota, period ) );
+            }
+        }
+        if ( limit > 0 )
+        {
+            sb.append( "cgroup CPU quota " ).append( limit ).append( ", " );
+            cpus = (int) Math.min( cpus, limit );
+        }
+        sb.append( availableProcessors ).append( " processors" );
+        this.processors = cpus;
+
+        long mem = readMeminfo( new File( root, "proc/meminfo" ), "MemAvailable:" ) / 1024;
+        if ( mem > 0 )
+        {
+            sb.append( ", " ).append( mem ).append( "MB available memory" );
+        }
+        limit = getLimit( unified, "memory.max" );
+        if ( limit < 0 )
+        {
+            limit = getLimit( getHierarchy( new File( cgroup, "memory" ), paths.get( "memory" ) ),
+                              "memory.limit_in_bytes" );
+        }
+        if ( limit > 0 )
+        {
+            limit = limit / ( 1024 * 1024 );
+            // cgroup v1 reports a huge value when unlimited
+            if ( mem <= 0 || limit < mem )
+            {
+                sb.append( ", cgroup memory limit " ).append( limit ).append( "MB" );
+                mem = limit;
+            }
+        }
+        this.memory = Math.max( 0, mem );
+        this.description = sb.toString();
+    }
+
+    public static ResourceLimits detect()
+    {
+        return new ResourceLimits( new File( "/" ), Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @return processors available to the build
+     */
+    public int getProcessors()
+    {
+        return processors;
+    }
+
+    /**
+     * @return memory in MB available to the build, 0 if unknown
+     */
+    public long getMemory()
+    {
+        return memory;
+    }
+
+    /**
+     * @return human readable description of the detected limits, for logging
+     */
+    public String toString()
+    {
+        return description;
+    }
+
+    /**
+     * Read the cgroup of the process in each hierarchy, from lines as <code>4:memory:/user.slice/build</code> for
+     * cgroup v1 or <code>0::/user.slice/build</code> for cgroup v2.
+     *
+     * @return cgroup path by controller, the cgroup v2 path with an empty controller
+     */
+    private static Map<String, String> readCgroupPaths( File file )
+    {
+        Map<String, String> paths = new HashMap<String, String>();
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new FileReader( file ) );
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                String[] parts = line.split( ":", 3 );
+                if ( parts.length < 3 )
+                {
+                    continue;
+                }
+                for ( String controller : parts[1].split( "," ) )
+                {
+                    paths.put( controller, parts[2] );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            // not on Linux
+        }
+        finally
+        {
+            IOUtils.closeQuietly( reader );
+        }
+        return paths;
+    }
+
+    /**
+     * Limits of parent cgroups also apply, and a container may mount its own cgroup as the hierarchy root.
+     *
+     * @param mount the directory where the hierarchy is mounted
+     * @param path the cgroup of the process in the hierarchy, <code>null</code> if unknown
+     * @return the cgroup directories from the process cgroup up to the hierarchy root
+     */
+    private static List<File> getHierarchy( File mount, String path )
+    {
+        List<File> directories = new ArrayList<File>();
+        if ( path != null )
+        {
+            for ( File directory = new File( mount, path ); directory != null && !directory.equals( mount ); )
+            {
+                directories.add( directory );
+                directory = directory.getParentFile();
+            }
+        }
+        directories.add( mount );
+        return directories;
+    }
+
+    /**
+     * @return the lowest cgroup v2 CPU limit of the directories, -1 if none
+     */
+    private static long getCpuLimit( List<File> directories )
+    {
+        long limit = -1;
+        for ( File directory : directories )
+        {
+            String cpuMax = readLine( new File( directory, "cpu.max" ) );
+            if ( cpuMax != null )
+            {
+                // "$MAX $PERIOD" with "max" for no limit
+                String[] parts = cpuMax.split( " " );
+                long period = parts.length > 1 ? parseLong( parts[1] ) : -1;
+                limit = min( limit, getCpuLimit( parseLong( parts[0] ), period ) );
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * @return processors allowed by a quota, -1 if unlimited
+     */
+    private static long getCpuLimit( long quota, long period )
+    {
+        if ( quota > 0 && period > 0 )
+        {
+            return Math.max( 1, ( quota + period - 1 ) / period );
+        }
+        return -1;
+    }
+
+    /**
+     * @return the lowest value of a limit file in the directories, -1 if none
+     */
+    private static long getLimit( List<File> directories, String name )
+    {
+        long limit = -1;
+        for ( File directory : directories )
+        {
+            limit = min( limit, parseLong( readLine( new File( directory, name ) ) ) );
+        }
+        return limit;
+    }
+
+    /**
+     * @return the lowest limit, -1 meaning unlimited
+     */
+    private static long min( long limit, long other )
+    {
+        if ( limit < 0 )
+        {
+            return other;
+        }
+        return other < 0 ? limit : Math.min( limit, other );
+    }
+
+    private static long readMeminfo( File meminfo, String field )
+    {
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new FileReader( meminfo ) );
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                if ( line.startsWith( field ) )
+                {
+                    return parseLong( line.substring( field.length() ).trim().split( "\\s+" )[0] );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            // not on Linux
+        }
+        finally
+        {
+            IOUtils.closeQuietly( reader );
+        }
+        return -1;
+    }
+
+    private static String readLine( File file )
+    {
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new FileReader( file ) );
+            String line = reader.readLine();
+            return line != null ? line.trim() : null;
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeQuietly( reader );
+        }
+    }
+
+    /**
+     * @return the value, or -1 for "max", unset or invalid
+     */
+    private static long parseLong( String value )
+    {
+        if ( value == null )
+        {
+            return -1;
+        }
+        try
+        {
+            return Long.parseLong( value );
+        }
+        catch ( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
+}
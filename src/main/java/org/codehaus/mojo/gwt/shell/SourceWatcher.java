@@ -0,0 +1,161 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+
+/**
+ * Detect changes in a set of files and directories by polling their size and modification date. Changes are
+ * reported against the snapshot taken by {@link #watch(Collection)}, so a snapshot taken before a compilation lets
+ * the next poll report the files saved while compiling.
+ *
+ * @since 2.5.0
+ */
+public class SourceWatcher
+{
+    private Collection<File> locations;
+
+    private Map<File, String> snapshot;
+
+    private long changeTime;
+
+    /**
+     * Take the reference snapshot to detect changes against.
+     *
+     * @param locations the files and directories to watch, directories are scanned recursively
+     */
+    public void watch( Collection<File> locations )
+    {
+        this.locations = locations;
+        snapshot = snapshot();
+    }
+
+    /**
+     * @return number of watched files and directories
+     */
+    public int getLocationCount()
+    {
+        return locations.size();
+    }
+
+    /**
+     * Poll the watched locations until some files changed since the reference snapshot, then wait until no file has
+     * changed for <code>debounce</code> milliseconds, so that changes saved together are reported together.
+     *
+     * @param interval time in milliseconds between two polls
+     * @param debounce time in milliseconds without change for changes to be considered complete
+     * @return the changed, added and removed files
+     */
+    public Collection<File> awaitChanges( long interval, long debounce )
+        throws InterruptedException
+    {
+        Map<File, String> current = snapshot;
+        while ( current.equals( snapshot ) )
+        {
+            Thread.sleep( interval );
+            current = snapshot();
+        }
+        changeTime = System.currentTimeMillis();
+        Collection<File> changed = getChanges( snapshot, current );
+        for ( File file : changed )
+        {
+            // modification date is when the file was saved, before we noticed
+            if ( file.exists() && file.lastModified() < changeTime && file.lastModified() > changeTime - interval )
+            {
+                changeTime = file.lastModified();
+            }
+        }
+
+        // wait for changes to settle
+        Map<File, String> next = current;
+        do
+        {
+            current = next;
+            Thread.sleep( debounce );
+            next = snapshot();
+            changed.addAll( getChanges( current, next ) );
+        }
+        while ( !next.equals( current ) );
+        snapshot = next;
+        return changed;
+    }
+
+    /**
+     * @return the estimated time the changes reported by last {@link #awaitChanges(long, long)} were saved
+     */
+    public long getChangeTime()
+    {
+        return changeTime;
+    }
+
+    static Collection<File> getChanges( Map<File, String> previous, Map<File, String> current )
+    {
+        Collection<File> changed = new LinkedHashSet<File>();
+        for ( Map.Entry<File, String> file : current.entrySet() )
+        {
+            if ( !file.getValue().equals( previous.get( file.getKey() ) ) )
+            {
+                changed.add( file.getKey() );
+            }
+        }
+        for ( File file : previous.keySet() )
+        {
+            if ( !current.containsKey( file ) )
+            {
+                changed.add( file );
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return size and modification date of all the watched files
+     */
+    private Map<File, String> snapshot()
+    {
+        Map<File, String> files = new HashMap<File, String>();
+        for ( File location : locations )
+        {
+            if ( location.isFile() )
+            {
+                files.put( location, location.length() + ";" + location.lastModified() );
+            }
+            else if ( location.isDirectory() )
+            {
+                DirectoryScanner scanner = new DirectoryScanner();
+                scanner.setBasedir( location );
+                scanner.addDefaultExcludes();
+                scanner.scan();
+                for ( String path : scanner.getIncludedFiles() )
+                {
+                    File file = new File( location, path );
+                    files.put( file, file.length() + ";" + file.lastModified() );
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -22,8 +22,10 @@ package org.codehaus.mojo.gwt.shell;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * EXPERIMENTAL: Runs GWT modules with Super Dev Mode.
@@ -104,10 +106,38 @@ public class SuperDevModeMojo extends AbstractGwtShellMojo
 
         for ( String module : getModules() )
         {
-            cmd.arg( module );
+            cmd.arg( getCodeServerModule( module ) );
         }
+        cmd.withinClasspathFirst( getDerivedModulesDirectory() );
 
         cmd.execute();
     }
+
+    /**
+     * @return the module to run, or the derived module restricting user agents and locales if configured
+     */
+    private String getCodeServerModule( String module )
+        throws MojoExecutionException
+    {
+        try
+        {
+            DerivedModule derived = getDevProfileModule( readModule( module ) );
+            if ( derived == null )
+            {
+                return module;
+            }
+            derived.write( getDerivedModulesDirectory() );
+            getLog().info( "Running " + module + " as " + derived.getName() + " (" + derived.getDescription() + ")" );
+            return derived.getName();
+        }
+        catch ( GwtModuleReaderException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to generate derived module for " + module, e );
+        }
+    }
 }
 
@@ -258,7 +258,12 @@ public class TestMojo
             }
             try
             {
-                new JavaCommand( MavenTestRunner.class.getName() ).withinScope( Artifact.SCOPE_TEST ).arg( test )
+                JavaCommand cmd = new JavaCommand( MavenTestRunner.class.getName() );
+                if ( gwtSdkFirstInClasspath )
+                {
+                    cmd.withinClasspath( getGwtUserJar() ).withinClasspath( getGwtDevJar() );
+                }
+                cmd.withinScope( Artifact.SCOPE_TEST ).arg( test )
                     .systemProperty( "surefire.reports", reportsDirectory.getAbsolutePath() )
                     .systemProperty( "gwt.args", getGwtArgs() ).execute();
             }
@@ -325,42 +330,12 @@ public class TestMojo
     {
         classpath.add( getClassPathElementFor( TestMojo.class ) );
         classpath.add( getClassPathElementFor( ReporterManager.class ) );
-        classpath.add( getGwtDevJar() );
-    }
-
-    /**
-     * @param clazz class to check for classpath resolution
-     * @return The classpath element this class was loaded from
-     */
-    private File getClassPathElementFor( Class<?> clazz )
-    {
-        String classFile = clazz.getName().replace( '.', '/' ) + ".class";
-        ClassLoader cl = Thread.currentThread().getContextClassLoader();
-        if ( cl == null )
-        {
-            cl = getClass().getClassLoader();
-        }
-        URL url = cl.getResource( classFile );
-        getLog().debug( "getClassPathElementFor " + clazz.getName() + " file " + url.toString() );
-        String path = url.toString();
-    
-        if ( path.startsWith( "jar:" ) )
-        {
-            path = path.substring( 4, path.indexOf( "!" ) );
-        }
-        else
-        {
-            path = path.substring( 0, path.length() - classFile.length() );
-        }
-        if ( path.startsWith( "file:" ) )
+        File gwtDev = getGwtDevJar();
+        // already first in classpath with gwtSdkFirstInClasspath
+        if ( !classpath.contains( gwtDev ) )
         {
-            path = path.substring( 5 );
-            // windauze hack with maven 3 we get those !
-            path = path.replace( "%20", " " );
+            classpath.add( gwtDev );
         }
-        File file = new File( path );
-        getLog().debug( "getClassPathElementFor " + clazz.getName() + " file " + file.getPath() );
-        return file;
     }
 
     /**
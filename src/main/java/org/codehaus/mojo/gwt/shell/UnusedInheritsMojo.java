@@ -0,0 +1,138 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.mojo.gwt.AbstractGwtModuleMojo;
+import org.codehaus.mojo.gwt.GwtModuleGraph;
+import org.codehaus.mojo.gwt.InheritsAnalyzer;
+import org.codehaus.mojo.gwt.InheritsAnalyzer.UnusedInherits;
+import org.codehaus.mojo.gwt.PermutationEstimate;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.mojo.gwt.utils.TypeDependencies;
+
+/**
+ * Report the <code>&lt;inherits&gt;</code> of the project modules that contribute no type referenced from the entry
+ * points, with the permutations and compile time that removing them would save. Referenced types are computed from
+ * the compiled classes, so types only used from JSNI or generated code are not seen: check the reported modules
+ * before removing them.
+ *
+ * @goal unused-inherits
+ * @execute phase=compile
+ * @requiresDependencyResolution compile
+ * @since 2.5.0
+ */
+public class UnusedInheritsMojo
+    extends AbstractGwtModuleMojo
+{
+    /**
+     * {@inheritDoc}
+     *
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    public void execute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        File file = new File( getProject().getBuild().getDirectory(), CompilationHistory.FILE_NAME );
+        CompilationHistory history;
+        try
+        {
+            history = new CompilationHistory( file );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to read GWT compilation history " + file, e );
+        }
+
+        TypeDependencies types = new TypeDependencies( getClasspath( Artifact.SCOPE_COMPILE ) );
+        try
+        {
+            for ( String module : getModules() )
+            {
+                analyze( module, types, history );
+            }
+        }
+        catch ( GwtModuleReaderException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to read compiled classes", e );
+        }
+    }
+
+    private void analyze( String module, TypeDependencies types, CompilationHistory history )
+        throws GwtModuleReaderException, IOException
+    {
+        GwtModuleGraph graph = getModuleGraph( module );
+        InheritsAnalyzer analyzer = new InheritsAnalyzer( graph, this );
+        if ( analyzer.getEntryPoints().isEmpty() )
+        {
+            getLog().info( module + " has no entry point, inherits not analyzed" );
+            return;
+        }
+        List<UnusedInherits> unused = analyzer.analyze( types );
+        List<String> missing = new ArrayList<String>( analyzer.getEntryPoints() );
+        missing.retainAll( types.getMissingTypes() );
+        if ( !missing.isEmpty() )
+        {
+            getLog().warn( module + " entry points not found in compiled classes " + missing
+                + ", make sure the project is compiled" );
+        }
+        if ( unused.isEmpty() )
+        {
+            getLog().info( module + " has no unused inherits" );
+            return;
+        }
+
+        PermutationForecast forecast = new PermutationForecast( module, new PermutationEstimate( graph ), history );
+        for ( UnusedInherits inherits : unused )
+        {
+            StringBuilder report = new StringBuilder( module ).append( ": " ).append( inherits.getModule() );
+            report.append( " inherits " ).append( inherits.getInherited() ).append( " but uses none of its types" );
+            report.append( ", removing it drops " ).append( inherits.getRemovedModules().size() ).append( " modules" );
+            PermutationForecast without = new PermutationForecast( module, inherits.getEstimate(), history );
+            int permutations = forecast.getPermutations() - without.getPermutations();
+            if ( permutations > 0 )
+            {
+                report.append( " and " ).append( permutations ).append( " of " ).append( forecast.getPermutations() );
+                report.append( " permutations" );
+                long time = forecast.getTime() - without.getTime();
+                if ( time > 0 )
+                {
+                    report.append( ", about " );
+                    report.append( String.format( Locale.ENGLISH, "%.1fs", Double.valueOf( time / 1000.0 ) ) );
+                    report.append( " of compile time" );
+                }
+            }
+            getLog().warn( report.toString() );
+            getLog().debug( "Modules only inherited through " + inherits + " : " + inherits.getRemovedModules() );
+        }
+    }
+}
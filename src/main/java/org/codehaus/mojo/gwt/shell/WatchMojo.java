@@ -0,0 +1,189 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.mojo.gwt.GwtModule;
+import org.codehaus.mojo.gwt.GwtModuleGraph;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+
+/**
+ * Watch the sources of the GWT modules and recompile the modules affected by changes as soon as they are saved. By
+ * default modules are compiled in draft mode, as a single permutation, by a warm compiler daemon, to keep a
+ * production-style compilation up to date while editing.
+ * <p>
+ * Changes are detected by polling the modules source, super-source and public directories, and are batched until
+ * no file has changed for <code>watchDebounce</code> milliseconds.
+ *
+ * @goal watch
+ * @requiresDependencyResolution compile
+ * @since 2.5.0
+ */
+public class WatchMojo
+    extends CompileMojo
+{
+    /**
+     * Compile in draft mode (<code>-draftCompile</code>) while watching.
+     *
+     * @parameter default-value="true" expression="${gwt.watch.draftCompile}"
+     * @since 2.5.0
+     */
+    private boolean watchDraftCompile;
+
+    /**
+     * Compile all permutations of a module as a single one while watching.
+     *
+     * @parameter default-value="true" expression="${gwt.watch.collapseProperties}"
+     * @since 2.5.0
+     */
+    private boolean watchCollapseProperties;
+
+    /**
+     * Run the compiler in a warm compiler daemon while watching.
+     *
+     * @parameter default-value="true" expression="${gwt.watch.daemon}"
+     * @since 2.5.0
+     */
+    private boolean watchDaemon;
+
+    /**
+     * Time in milliseconds between two checks for changed files.
+     *
+     * @parameter default-value="500" expression="${gwt.watch.interval}"
+     * @since 2.5.0
+     */
+    private int watchInterval;
+
+    /**
+     * Time in milliseconds without further change to wait before recompiling, so that changes saved together are
+     * compiled together.
+     *
+     * @parameter default-value="300" expression="${gwt.watch.debounce}"
+     * @since 2.5.0
+     */
+    private int watchDebounce;
+
+    @Override
+    public void doExecute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        String[] modules = getModules();
+        SourceWatcher watcher = new SourceWatcher();
+        // snapshot before compiling, so that changes saved during the compilation trigger the next one
+        watcher.watch( getWatchedLocations() );
+        rebuild( modules, System.currentTimeMillis() );
+
+        getLog().info( "Watching " + watcher.getLocationCount() + " source locations of " + modules.length
+            + " GWT modules for changes. Press Ctrl-C to stop." );
+        try
+        {
+            while ( true )
+            {
+                Collection<File> changed = watcher.awaitChanges( watchInterval, watchDebounce );
+                getLog().info( changed.size() + " changed files : " + changed );
+                // module descriptors may have changed, unchanged ones are not parsed again
+                clearModuleCache();
+                // inherited modules may have changed
+                watcher.watch( getWatchedLocations() );
+                rebuild( modules, watcher.getChangeTime() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            getLog().info( "Stopped watching GWT modules" );
+        }
+    }
+
+    private void rebuild( String[] modules, long change )
+    {
+        try
+        {
+            compileModules( modules );
+            long end = System.currentTimeMillis();
+            getLog().info( "GWT modules up to date, change-to-output latency " + ( end - change ) + "ms" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            getLog().error( "GWT compilation failed : " + e.getMessage() );
+        }
+        catch ( MojoFailureException e )
+        {
+            getLog().error( "GWT compilation failed : " + e.getMessage() );
+        }
+    }
+
+    /**
+     * @return the descriptors and source directories of the modules and their inherited modules read from files
+     */
+    private Collection<File> getWatchedLocations()
+        throws MojoExecutionException
+    {
+        Collection<String> roots = getProjectRoots();
+        Collection<File> locations = new LinkedHashSet<File>();
+        try
+        {
+            for ( String name : getModules() )
+            {
+                for ( GwtModuleGraph.Node gwtModule : getModuleGraph( name ).getNodes() )
+                {
+                    if ( gwtModule.getSourceFile() != null )
+                    {
+                        locations.add( gwtModule.getSourceFile() );
+                        locations.addAll( getModuleDirectories( gwtModule, roots ) );
+                    }
+                }
+            }
+        }
+        catch ( GwtModuleReaderException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        return locations;
+    }
+
+    @Override
+    protected boolean isDraftCompile()
+    {
+        return watchDraftCompile || super.isDraftCompile();
+    }
+
+    @Override
+    protected boolean isDaemon()
+    {
+        return watchDaemon || super.isDaemon();
+    }
+
+    @Override
+    protected DerivedModule deriveModule( GwtModule module )
+    {
+        DerivedModule derived = super.deriveModule( module );
+        if ( watchCollapseProperties && derived == null )
+        {
+            derived = new DerivedModule( module.getName(), module.getPath(), "Watch" ).collapseAllProperties();
+        }
+        return derived;
+    }
+}
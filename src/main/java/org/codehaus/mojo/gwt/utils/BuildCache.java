@@ -0,0 +1,411 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Content-addressed cache of build outputs. An entry is a zip archive of some output directories, stored under a key
+ * that identifies all the inputs that produced them. Entries are published atomically, and least recently used
+ * entries are evicted when the cache exceeds its max size.
+ * <p>
+ * An optional HTTP backend can be used to share entries between build machines : entries are downloaded with
+ * <code>GET</code> on local miss, and uploaded with <code>PUT</code> once built. Downloaded entries are checked to
+ * be complete archives before being published in the local cache.
+ *
+ * @since 2.5.0
+ */
+public class BuildCache
+{
+    private static final String SUFFIX = ".zip";
+
+    /** remote cache connection time-out, in milliseconds */
+    private static final int CONNECT_TIMEOUT = 10000;
+
+    /** remote cache read time-out, in milliseconds */
+    private static final int READ_TIMEOUT = 60000;
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final String url;
+
+    private final Log log;
+
+    /**
+     * @param directory the local cache directory
+     * @param maxSize max size of the local cache, in MB
+     * @param url base URL of the remote cache, <code>null</code> for none
+     */
+    public BuildCache( File directory, long maxSize, String url, Log log )
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.url = url != null && !url.endsWith( "/" ) ? url + "/" : url;
+        this.log = log;
+    }
+
+    /**
+     * Restore output directories from the cache.
+     *
+     * @param key the cache key
+     * @param outputs output directories by name, existing content is replaced once the entry has been fully
+     * extracted
+     * @return <code>true</code> on cache hit
+     * @throws IOException the entry is corrupt, it is then removed and the outputs are left untouched
+     */
+    public boolean restore( String key, Map<String, File> outputs )
+        throws IOException
+    {
+        File entry = getEntry( key );
+        if ( !entry.exists() && !download( key, entry ) )
+        {
+            return false;
+        }
+        // mark as recently used
+        entry.setLastModified( System.currentTimeMillis() );
+
+        Map<String, File> staging = new HashMap<String, File>();
+        for ( Map.Entry<String, File> output : outputs.entrySet() )
+        {
+            File file = output.getValue().getAbsoluteFile();
+            File stage = new File( file.getParentFile(), "." + file.getName() + ".restore" );
+            FileUtils.deleteDirectory( stage );
+            staging.put( output.getKey(), stage );
+        }
+        try
+        {
+            extract( entry, staging );
+        }
+        catch ( IOException e )
+        {
+            for ( File stage : staging.values() )
+            {
+                FileUtils.deleteDirectory( stage );
+            }
+            // a corrupt entry must not be restored again
+            entry.delete();
+            throw e;
+        }
+
+        for ( Map.Entry<String, File> output : outputs.entrySet() )
+        {
+            FileUtils.deleteDirectory( output.getValue() );
+            File stage = staging.get( output.getKey() );
+            if ( stage.exists() && !stage.renameTo( output.getValue() ) )
+            {
+                throw new IOException( "Failed to restore " + output.getValue() );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extract an entry, checking the checksum of each file
+     *
+     * @throws IOException the entry is corrupt
+     */
+    private void extract( File entry, Map<String, File> outputs )
+        throws IOException
+    {
+        ZipInputStream zip = new ZipInputStream( new FileInputStream( entry ) );
+        try
+        {
+            ZipEntry zipEntry;
+            while ( ( zipEntry = zip.getNextEntry() ) != null )
+            {
+                String name = zipEntry.getName();
+                int i = name.indexOf( '/' );
+                File output = i > 0 ? outputs.get( name.substring( 0, i ) ) : null;
+                if ( output == null || zipEntry.isDirectory() || name.contains( ".." ) )
+                {
+                    continue;
+                }
+                File file = new File( output, name.substring( i + 1 ) );
+                file.getParentFile().mkdirs();
+                OutputStream out = new FileOutputStream( file );
+                try
+                {
+                    IOUtils.copy( zip, out );
+                }
+                finally
+                {
+                    IOUtils.closeQuietly( out );
+                }
+            }
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // unreadable entry name
+            throw new ZipException( "Corrupt build cache entry " + entry + " : " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( zip );
+        }
+    }
+
+    /**
+     * Store output directories in the cache, and in the remote cache if configured.
+     *
+     * @param key the cache key
+     * @param outputs output directories by name, non existing ones are ignored
+     */
+    public void store( String key, Map<String, File> outputs )
+        throws IOException
+    {
+        File entry = getEntry( key );
+        entry.getParentFile().mkdirs();
+        File tmp = File.createTempFile( key, ".tmp", entry.getParentFile() );
+        try
+        {
+            ZipOutputStream zip = new ZipOutputStream( new FileOutputStream( tmp ) );
+            try
+            {
+                for ( Map.Entry<String, File> output : outputs.entrySet() )
+                {
+                    if ( output.getValue().isDirectory() )
+                    {
+                        addDirectory( zip, output.getKey(), output.getValue() );
+                    }
+                }
+                // writes the central directory, failures must not publish a corrupt entry
+                zip.close();
+            }
+            finally
+            {
+                IOUtils.closeQuietly( zip );
+            }
+            // atomic publish : concurrent builds either see the full entry or none
+            entry.delete();
+            if ( !tmp.renameTo( entry ) )
+            {
+                throw new IOException( "Failed to publish cache entry " + entry );
+            }
+        }
+        finally
+        {
+            tmp.delete();
+        }
+        upload( key, entry );
+        evict();
+    }
+
+    private void addDirectory( ZipOutputStream zip, String name, File dir )
+        throws IOException
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir( dir );
+        scanner.scan();
+        for ( String path : scanner.getIncludedFiles() )
+        {
+            zip.putNextEntry( new ZipEntry( name + "/" + path.replace( File.separatorChar, '/' ) ) );
+            InputStream in = new FileInputStream( new File( dir, path ) );
+            try
+            {
+                IOUtils.copy( in, zip );
+            }
+            finally
+            {
+                IOUtils.closeQuietly( in );
+            }
+            zip.closeEntry();
+        }
+    }
+
+    /**
+     * Remove least recently used entries until the cache fits in its max size.
+     */
+    private void evict()
+    {
+        List<File> entries = new ArrayList<File>();
+        long size = 0;
+        File[] dirs = directory.listFiles();
+        if ( dirs == null )
+        {
+            return;
+        }
+        for ( File dir : dirs )
+        {
+            File[] files = dir.listFiles();
+            if ( files == null )
+            {
+                continue;
+            }
+            for ( File file : files )
+            {
+                if ( file.getName().endsWith( SUFFIX ) )
+                {
+                    entries.add( file );
+                    size += file.length();
+                }
+            }
+        }
+        File[] sorted = entries.toArray( new File[entries.size()] );
+        Arrays.sort( sorted, new Comparator<File>()
+        {
+            public int compare( File f1, File f2 )
+            {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : ( m1 == m2 ? 0 : 1 );
+            }
+        } );
+        long max = maxSize * 1024 * 1024;
+        for ( int i = 0; i < sorted.length && size > max; i++ )
+        {
+            log.debug( "Evict build cache entry " + sorted[i].getName() );
+            size -= sorted[i].length();
+            sorted[i].delete();
+        }
+    }
+
+    private boolean download( String key, File entry )
+    {
+        if ( url == null )
+        {
+            return false;
+        }
+        File tmp = null;
+        try
+        {
+            HttpURLConnection connection = openConnection( key );
+            if ( connection.getResponseCode() != HttpURLConnection.HTTP_OK )
+            {
+                log.debug( "Remote build cache miss for " + key + " : " + connection.getResponseCode() );
+                connection.disconnect();
+                return false;
+            }
+            entry.getParentFile().mkdirs();
+            tmp = File.createTempFile( key, ".tmp", entry.getParentFile() );
+            InputStream in = connection.getInputStream();
+            OutputStream out = new FileOutputStream( tmp );
+            try
+            {
+                IOUtils.copy( in, out );
+            }
+            finally
+            {
+                IOUtils.closeQuietly( in );
+                IOUtils.closeQuietly( out );
+            }
+            int length = connection.getContentLength();
+            if ( length >= 0 && tmp.length() != length )
+            {
+                throw new IOException( "truncated response, " + tmp.length() + " of " + length + " bytes" );
+            }
+            // a truncated archive has no central directory
+            new ZipFile( tmp ).close();
+            if ( !tmp.renameTo( entry ) )
+            {
+                return entry.exists();
+            }
+            log.info( "Downloaded " + key + " from remote build cache" );
+            return true;
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Failed to download from remote build cache " + url + " : " + e.getMessage() );
+            return false;
+        }
+        finally
+        {
+            if ( tmp != null )
+            {
+                tmp.delete();
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection( String key )
+        throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL( url + key + SUFFIX ).openConnection();
+        connection.setConnectTimeout( CONNECT_TIMEOUT );
+        connection.setReadTimeout( READ_TIMEOUT );
+        return connection;
+    }
+
+    private void upload( String key, File entry )
+    {
+        if ( url == null )
+        {
+            return;
+        }
+        try
+        {
+            HttpURLConnection connection = openConnection( key );
+            connection.setRequestMethod( "PUT" );
+            connection.setDoOutput( true );
+            connection.setFixedLengthStreamingMode( (int) entry.length() );
+            connection.setRequestProperty( "Content-Type", "application/zip" );
+            OutputStream out = connection.getOutputStream();
+            InputStream in = new FileInputStream( entry );
+            try
+            {
+                IOUtils.copy( in, out );
+            }
+            finally
+            {
+                IOUtils.closeQuietly( in );
+                IOUtils.closeQuietly( out );
+            }
+            int status = connection.getResponseCode();
+            if ( status / 100 != 2 )
+            {
+                log.warn( "Remote build cache rejected " + key + " with status " + status );
+            }
+            connection.disconnect();
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Failed to upload to remote build cache " + url + " : " + e.getMessage() );
+        }
+    }
+
+    private File getEntry( String key )
+    {
+        return new File( directory, key.substring( 0, 2 ) + File.separator + key + SUFFIX );
+    }
+}
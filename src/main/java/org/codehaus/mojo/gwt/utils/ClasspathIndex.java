@@ -0,0 +1,229 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Index of the resources (module descriptors, sources, super-sources, public resources...) found in the archives of
+ * a classpath, to look them up without creating a classloader that would scan all archives again.
+ * <p>
+ * Each archive is indexed once, by path, size and last modification date: the entries are kept in memory for the
+ * following lookups in the same build, and persisted in the index directory for the following builds. Classpath
+ * directories are not indexed, as they are usually the project output that changes during the build.
+ *
+ * @since 2.5.0
+ */
+public class ClasspathIndex
+{
+    /** archive entries by archive stamp, shared by all mojos of the build */
+    private static final Map<String, Set<String>> archives =
+        Collections.synchronizedMap( new HashMap<String, Set<String>>() );
+
+    private final List<File> classpath;
+
+    private final File directory;
+
+    /**
+     * @param classpath the classpath elements, in lookup order
+     * @param directory where to persist the archives indexes, <code>null</code> to only keep them in memory
+     */
+    public ClasspathIndex( Collection<File> classpath, File directory )
+    {
+        this.classpath = new ArrayList<File>( classpath );
+        this.directory = directory;
+    }
+
+    /**
+     * @param path a resource path, for example <code>com/google/gwt/user/User.gwt.xml</code>
+     * @return the first classpath element containing the resource, <code>null</code> if none
+     * @throws IOException failed to index some archive
+     */
+    public File getClasspathElement( String path )
+        throws IOException
+    {
+        for ( File element : classpath )
+        {
+            if ( element.isDirectory() )
+            {
+                if ( new File( element, path ).isFile() )
+                {
+                    return element;
+                }
+            }
+            else if ( element.isFile() && getEntries( element ).contains( path ) )
+            {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param path a resource path
+     * @return URL of the resource, as a classloader would return it, <code>null</code> if not found
+     * @throws IOException failed to index some archive
+     */
+    public URL getResource( String path )
+        throws IOException
+    {
+        File element = getClasspathElement( path );
+        if ( element == null )
+        {
+            return null;
+        }
+        if ( element.isDirectory() )
+        {
+            return new File( element, path ).toURI().toURL();
+        }
+        return new URL( "jar:" + element.toURI().toURL().toExternalForm() + "!/" + path );
+    }
+
+    /**
+     * @return the resources of the archive, classes excluded
+     */
+    public Set<String> getEntries( File archive )
+        throws IOException
+    {
+        archive = archive.getAbsoluteFile();
+        String stamp = archive.getPath() + ';' + archive.length() + ';' + archive.lastModified();
+        Set<String> entries = archives.get( stamp );
+        if ( entries == null )
+        {
+            File index = null;
+            if ( directory != null )
+            {
+                index = new File( directory, FingerprintManifest.hash( Arrays.asList( stamp ).iterator() ) + ".idx" );
+            }
+            if ( index != null && index.isFile() )
+            {
+                entries = readIndex( index );
+            }
+            else
+            {
+                entries = scan( archive );
+                if ( index != null )
+                {
+                    writeIndex( index, entries );
+                }
+            }
+            archives.put( stamp, entries );
+        }
+        return entries;
+    }
+
+    private static Set<String> scan( File archive )
+        throws IOException
+    {
+        Set<String> entries = new HashSet<String>();
+        ZipFile zip = new ZipFile( archive );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); )
+            {
+                ZipEntry entry = e.nextElement();
+                // GWT only looks for classes through the JVM classloader
+                if ( !entry.isDirectory() && !entry.getName().endsWith( ".class" ) )
+                {
+                    entries.add( entry.getName() );
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        return entries;
+    }
+
+    private static Set<String> readIndex( File index )
+        throws IOException
+    {
+        Set<String> entries = new HashSet<String>();
+        BufferedReader reader =
+            new BufferedReader( new InputStreamReader( new FileInputStream( index ), "UTF-8" ), 65536 );
+        try
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                if ( line.length() > 0 )
+                {
+                    entries.add( line );
+                }
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly( reader );
+        }
+        return entries;
+    }
+
+    /**
+     * Write to a temporary file first, so that a concurrent build never reads a partial index
+     */
+    private void writeIndex( File index, Set<String> entries )
+        throws IOException
+    {
+        directory.mkdirs();
+        File tmp = File.createTempFile( index.getName(), ".tmp", directory );
+        Writer writer = new OutputStreamWriter( new FileOutputStream( tmp ), "UTF-8" );
+        try
+        {
+            for ( String entry : entries )
+            {
+                writer.write( entry );
+                writer.write( '\n' );
+            }
+            writer.close();
+        }
+        finally
+        {
+            IOUtils.closeQuietly( writer );
+        }
+        if ( !tmp.renameTo( index ) )
+        {
+            tmp.delete();
+        }
+    }
+}
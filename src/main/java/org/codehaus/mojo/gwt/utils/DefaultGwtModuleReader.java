@@ -16,12 +16,8 @@ package org.codehaus.mojo.gwt.utils;
  */
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.io.IOException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,9 +35,6 @@ import org.codehaus.mojo.gwt.ClasspathBuilderException;
 import org.codehaus.mojo.gwt.GwtModule;
 import org.codehaus.mojo.gwt.GwtModuleReader;
 import org.codehaus.plexus.util.DirectoryScanner;
-import org.codehaus.plexus.util.ReaderFactory;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
 
 /**
  * @author <a href="mailto:olamy@apache.org">Olivier Lamy</a>
@@ -58,6 +51,10 @@ public class DefaultGwtModuleReader
 
     private Log log;
 
+    private ClasspathIndex classpathIndex;
+
+    private final GwtModuleCache moduleCache = new GwtModuleCache( this );
+
     public DefaultGwtModuleReader( MavenProject mavenProject, Log log, ClasspathBuilder classpathBuilder )
     {
         this.mavenProject = mavenProject;
@@ -123,6 +120,11 @@ public class DefaultGwtModuleReader
     public GwtModule readModule( String name )
         throws GwtModuleReaderException
     {
+        GwtModule read = moduleCache.getModule( name );
+        if ( read != null )
+        {
+            return read;
+        }
         String modulePath = name.replace( '.', '/' ) + GWT_MODULE_EXTENSION;
         Collection<String> sourceRoots = mavenProject.getCompileSourceRoots();
         for ( String sourceRoot : sourceRoots )
@@ -132,7 +134,7 @@ public class DefaultGwtModuleReader
             if ( xml.exists() )
             {
                 log.debug( "GWT module " + name + " found in " + root );
-                return readModule( name, xml );
+                return moduleCache.read( name, xml );
             }
         }
         Collection<Resource> resources = (Collection<Resource>) mavenProject.getResources();
@@ -143,28 +145,22 @@ public class DefaultGwtModuleReader
             if ( xml.exists() )
             {
                 log.debug( "GWT module " + name + " found in " + root );
-                return readModule( name, xml );
+                return moduleCache.read( name, xml );
             }
         }
 
         try
         {
-            Collection<File> classpath = getClasspath( Artifact.SCOPE_COMPILE );
-            URL[] urls = new URL[classpath.size()];
-            int i = 0;
-            for ( File file : classpath )
-            {
-                urls[i++] = file.toURI().toURL();
-            }
-            InputStream stream = new URLClassLoader( urls ).getResourceAsStream( modulePath );
-            if ( stream != null )
+            URL url = getClasspathIndex().getResource( modulePath );
+            if ( url != null )
             {
-                return readModule( name, stream );
+                log.debug( "GWT module " + name + " found in " + url );
+                return moduleCache.read( name, url );
             }
         }
-        catch ( MalformedURLException e )
+        catch ( IOException e )
         {
-            // ignored;
+            throw new GwtModuleReaderException( "Failed to index the compile classpath", e );
         }
         catch ( ClasspathBuilderException e )
         {
@@ -174,34 +170,15 @@ public class DefaultGwtModuleReader
         throw new GwtModuleReaderException( "GWT Module " + name + " not found in project sources or resources." );
     }
 
-    private GwtModule readModule( String name, File file )
-        throws GwtModuleReaderException
-
-    {
-        try
-        {
-            return readModule( name, new FileInputStream( file ) );
-        }
-        catch ( FileNotFoundException e )
-        {
-            throw new GwtModuleReaderException( "Failed to read module file " + file );
-        }
-    }
-
-    private GwtModule readModule( String name, InputStream xml )
-        throws GwtModuleReaderException
+    private ClasspathIndex getClasspathIndex()
+        throws ClasspathBuilderException
     {
-        try
-        {
-            Xpp3Dom dom = Xpp3DomBuilder.build( ReaderFactory.newXmlReader( xml ) );
-            return new GwtModule( name, dom, this );
-        }
-        catch ( Exception e )
+        if ( classpathIndex == null )
         {
-            String error = "Failed to read module XML file " + xml;
-            log.error( error );
-            throw new GwtModuleReaderException( error, e );
+            File directory = new File( mavenProject.getBuild().getDirectory(), "gwt-classpath-index" );
+            classpathIndex = new ClasspathIndex( getClasspath( Artifact.SCOPE_COMPILE ), directory );
         }
+        return classpathIndex;
     }
 
     public Collection<File> getClasspath( String scope )
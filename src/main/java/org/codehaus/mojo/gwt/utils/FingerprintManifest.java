@@ -0,0 +1,457 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Persisted content fingerprints of a set of input files, used to detect if some generated output is up-to-date
+ * regardless of file timestamps (that a SCM checkout or a CI cache restore will reset).
+ * <p>
+ * Each file is recorded with its size, last modification date and SHA-1 content hash. When a file has the same size
+ * and modification date as in the previous fingerprint, the previous hash is reused and the file is not read again.
+ * Archives (typically GWT libraries) can be recorded by their content, computed from the entries names, sizes and
+ * CRCs found in the zip central directory, so that a rebuilt jar with same content is considered unchanged.
+ * Arbitrary named values (classpath, options...) can also be recorded so that changing them invalidates the
+ * fingerprint.
+ *
+ * @since 2.5.0
+ */
+public class FingerprintManifest
+{
+    private static final String FILE_PREFIX = "file:";
+
+    private static final String ARCHIVE_PREFIX = "archive:";
+
+    private static final String VALUE_PREFIX = "value:";
+
+    private static final char SEPARATOR = ';';
+
+    private final File manifest;
+
+    private final Properties previous;
+
+    /** files and archives to fingerprint, by manifest key */
+    private final Map<String, File> inputs = new LinkedHashMap<String, File>();
+
+    private final SortedMap<String, String> values = new TreeMap<String, String>();
+
+    private final SortedMap<String, String> current = new TreeMap<String, String>();
+
+    private int hashed;
+
+    private FingerprintManifest( File manifest, Properties previous )
+    {
+        this.manifest = manifest;
+        this.previous = previous;
+    }
+
+    /**
+     * @param manifest the file where fingerprint is persisted. May not exist yet.
+     * @return a fingerprint initialized with the content of the previous one, if any
+     * @throws IOException failed to read existing manifest
+     */
+    public static FingerprintManifest load( File manifest )
+        throws IOException
+    {
+        Properties previous = new Properties();
+        if ( manifest.exists() )
+        {
+            InputStream in = new FileInputStream( manifest );
+            try
+            {
+                previous.load( in );
+            }
+            finally
+            {
+                IOUtils.closeQuietly( in );
+            }
+        }
+        return new FingerprintManifest( manifest, previous );
+    }
+
+    public void addFile( File file )
+    {
+        file = file.getAbsoluteFile();
+        inputs.put( FILE_PREFIX + file.getPath(), file );
+    }
+
+    /**
+     * Register a zip archive, to be fingerprinted by entries rather than raw file content
+     */
+    public void addArchive( File archive )
+    {
+        archive = archive.getAbsoluteFile();
+        inputs.put( ARCHIVE_PREFIX + archive.getPath(), archive );
+    }
+
+    public void addValue( String name, String value )
+    {
+        values.put( name, value );
+    }
+
+    /**
+     * Compute the fingerprint of all registered files, reading the ones that changed since the previous fingerprint
+     * in parallel.
+     *
+     * @param threads number of concurrent hashing threads
+     * @throws IOException failed to read some file
+     */
+    public void compute( int threads )
+        throws IOException
+    {
+        current.clear();
+        hashed = 0;
+        for ( Map.Entry<String, String> value : values.entrySet() )
+        {
+            current.put( VALUE_PREFIX + value.getKey(), value.getValue() );
+        }
+
+        List<String> toHash = new ArrayList<String>();
+        for ( Map.Entry<String, File> input : inputs.entrySet() )
+        {
+            File file = input.getValue();
+            if ( !file.isFile() )
+            {
+                continue;
+            }
+            String key = input.getKey();
+            String stamp = file.length() + String.valueOf( SEPARATOR ) + file.lastModified();
+            String old = previous.getProperty( key );
+            if ( old != null && old.startsWith( stamp + SEPARATOR ) )
+            {
+                current.put( key, old );
+            }
+            else
+            {
+                toHash.add( key );
+            }
+        }
+        if ( toHash.isEmpty() )
+        {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( threads, toHash.size() ) ) );
+        try
+        {
+            Map<String, Future<String>> futures = new TreeMap<String, Future<String>>();
+            for ( final String key : toHash )
+            {
+                final File file = inputs.get( key );
+                futures.put( key, executor.submit( new Callable<String>()
+                {
+                    public String call()
+                        throws IOException
+                    {
+                        // read the stamp first, so that a concurrent modification will be detected on next build
+                        String stamp = file.length() + String.valueOf( SEPARATOR ) + file.lastModified();
+                        String hash = key.startsWith( ARCHIVE_PREFIX ) ? hashArchive( file ) : hash( file );
+                        return stamp + SEPARATOR + hash;
+                    }
+                } ) );
+            }
+            for ( Map.Entry<String, Future<String>> future : futures.entrySet() )
+            {
+                current.put( future.getKey(), future.getValue().get() );
+                hashed++;
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while computing fingerprint" );
+        }
+        catch ( ExecutionException e )
+        {
+            IOException ioe = new IOException( "Failed to compute fingerprint : " + e.getCause().getMessage() );
+            ioe.initCause( e.getCause() );
+            throw ioe;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the computed fingerprint matches the previous one
+     */
+    public boolean isUpToDate()
+    {
+        if ( previous.size() != current.size() )
+        {
+            return false;
+        }
+        for ( Map.Entry<String, String> entry : current.entrySet() )
+        {
+            String old = previous.getProperty( entry.getKey() );
+            if ( old == null || !getHash( entry.getKey(), old ).equals( getHash( entry.getKey(), entry.getValue() ) ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param basedir the directory file paths are made relative to
+     * @return a single hash for the computed fingerprint, that only depends on file paths relative to
+     * <code>basedir</code>, file and archive content and registered values. Archives are identified by content only,
+     * as their location depends on the local repository, so that the digest is the same in another workspace.
+     */
+    public String getDigest( File basedir )
+    {
+        SortedSet<String> entries = new TreeSet<String>();
+        for ( Map.Entry<String, String> entry : current.entrySet() )
+        {
+            String key = entry.getKey();
+            String hash = getHash( key, entry.getValue() );
+            if ( key.startsWith( FILE_PREFIX ) )
+            {
+                entries.add( FILE_PREFIX + getRelativePath( basedir, key.substring( FILE_PREFIX.length() ) )
+                    + SEPARATOR + hash );
+            }
+            else if ( key.startsWith( ARCHIVE_PREFIX ) )
+            {
+                entries.add( ARCHIVE_PREFIX + hash );
+            }
+            else
+            {
+                entries.add( key + SEPARATOR + hash );
+            }
+        }
+        return hash( entries.iterator() );
+    }
+
+    /**
+     * @return the path of a file relative to a directory, using '/' as separator, with '..' segments for files
+     * outside the directory
+     */
+    private static String getRelativePath( File basedir, String path )
+    {
+        String separator = Pattern.quote( File.separator );
+        String[] base = basedir.getAbsolutePath().split( separator );
+        String[] file = path.split( separator );
+        int common = 0;
+        while ( common < base.length && common < file.length && base[common].equals( file[common] ) )
+        {
+            common++;
+        }
+        StringBuilder relative = new StringBuilder();
+        for ( int i = common; i < base.length; i++ )
+        {
+            relative.append( "../" );
+        }
+        for ( int i = common; i < file.length; i++ )
+        {
+            relative.append( file[i] );
+            if ( i < file.length - 1 )
+            {
+                relative.append( '/' );
+            }
+        }
+        return relative.toString();
+    }
+
+    /**
+     * @return number of files and archives actually read by last call to {@link #compute(int)}
+     */
+    public int getHashedCount()
+    {
+        return hashed;
+    }
+
+    public int size()
+    {
+        return current.size();
+    }
+
+    public void save()
+        throws IOException
+    {
+        manifest.getParentFile().mkdirs();
+        Properties properties = new Properties();
+        properties.putAll( current );
+        OutputStream out = new FileOutputStream( manifest );
+        try
+        {
+            properties.store( out, "GWT compiler input fingerprints" );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( out );
+        }
+    }
+
+    /**
+     * Remove the persisted fingerprint, so that next check will consider output as stale.
+     */
+    public void invalidate()
+    {
+        manifest.delete();
+    }
+
+    /**
+     * File and archive entries are stored as <code>size;lastModified;hash</code>, only the hash is relevant to
+     * compare them.
+     */
+    private static String getHash( String key, String entry )
+    {
+        if ( key.startsWith( FILE_PREFIX ) || key.startsWith( ARCHIVE_PREFIX ) )
+        {
+            return entry.substring( entry.lastIndexOf( SEPARATOR ) + 1 );
+        }
+        return entry;
+    }
+
+    public static String hash( File file )
+        throws IOException
+    {
+        MessageDigest digest = newDigest();
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            byte[] buffer = new byte[65536];
+            int read;
+            while ( ( read = in.read( buffer ) ) > 0 )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+        return toHex( digest.digest() );
+    }
+
+    /**
+     * Hash a zip archive from its central directory, without inflating entries. Entry timestamps are ignored, so
+     * that rebuilding a library with same content does not change the hash.
+     */
+    public static String hashArchive( File archive )
+        throws IOException
+    {
+        SortedMap<String, String> entries = new TreeMap<String, String>();
+        ZipFile zip = new ZipFile( archive );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); )
+            {
+                ZipEntry entry = e.nextElement();
+                if ( !entry.isDirectory() )
+                {
+                    entries.put( entry.getName(), entry.getSize() + String.valueOf( SEPARATOR ) + entry.getCrc() );
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        MessageDigest digest = newDigest();
+        for ( Map.Entry<String, String> entry : entries.entrySet() )
+        {
+            update( digest, entry.getKey() );
+            update( digest, entry.getValue() );
+        }
+        return toHex( digest.digest() );
+    }
+
+    /**
+     * @param values some strings
+     * @return the SHA-1 hash of the strings
+     */
+    public static String hash( Iterator<String> values )
+    {
+        MessageDigest digest = newDigest();
+        while ( values.hasNext() )
+        {
+            update( digest, values.next() );
+        }
+        return toHex( digest.digest() );
+    }
+
+    private static void update( MessageDigest digest, String value )
+    {
+        try
+        {
+            digest.update( value.getBytes( "UTF-8" ) );
+            digest.update( (byte) 0 );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( "UTF-8 not supported" );
+        }
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 not supported by the JVM" );
+        }
+    }
+
+    private static String toHex( byte[] bytes )
+    {
+        StringBuilder sb = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes )
+        {
+            sb.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) );
+            sb.append( Character.forDigit( b & 0xF, 16 ) );
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,234 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.mojo.gwt.GwtModule;
+import org.codehaus.mojo.gwt.GwtModuleReader;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+
+/**
+ * Modules read by a {@link GwtModuleReader}, so that each module is read once and its inherited modules closure is
+ * computed once.
+ * <p>
+ * The parsed module descriptors are also shared by all mojos and reactor projects of the build, including concurrent
+ * ones in parallel builds. A descriptor is identified by the module name and the file or archive entry it is read
+ * from, and kept with the size and last modification date of that file, so that a modified descriptor is parsed again
+ * and replaces the previous one. Modules themselves
+ * are not shared across readers, as inherited modules are resolved against the sources and classpath of each
+ * project.
+ *
+ * @since 2.5.0
+ */
+public class GwtModuleCache
+{
+    /** parsed descriptors by module name and source location, shared by all mojos of the build */
+    private static final Map<String, Descriptor> descriptors =
+        Collections.synchronizedMap( new HashMap<String, Descriptor>() );
+
+    private final GwtModuleReader reader;
+
+    private final Map<String, GwtModule> modules = new HashMap<String, GwtModule>();
+
+    /**
+     * @param reader the reader that resolves the modules inherited by the modules it reads
+     */
+    public GwtModuleCache( GwtModuleReader reader )
+    {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the module already read by name, <code>null</code> if not read yet
+     */
+    public synchronized GwtModule getModule( String name )
+    {
+        return modules.get( name );
+    }
+
+    /**
+     * Forget the modules read so far. Parsed descriptors are kept, as they are only used while unmodified.
+     */
+    public synchronized void clear()
+    {
+        modules.clear();
+    }
+
+    /**
+     * Read a module from a file.
+     */
+    public GwtModule read( String name, File file )
+        throws GwtModuleReaderException
+    {
+        String key = name + '|' + file.getAbsolutePath();
+        String stamp = getStamp( file );
+        Xpp3Dom xml = getDescriptor( key, stamp );
+        if ( xml == null )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( file );
+                xml = parse( in, file.getPath() );
+            }
+            catch ( IOException e )
+            {
+                throw new GwtModuleReaderException( "Failed to read module file " + file, e );
+            }
+            finally
+            {
+                IOUtils.closeQuietly( in );
+            }
+            descriptors.put( key, new Descriptor( stamp, xml ) );
+        }
+        GwtModule module = new GwtModule( name, xml, reader );
+        module.setSourceFile( file );
+        return add( module );
+    }
+
+    /**
+     * Read a module from the compile classpath, and keep track of the file or jar it has been read from.
+     */
+    public GwtModule read( String name, URL url )
+        throws GwtModuleReaderException
+    {
+        if ( "file".equals( url.getProtocol() ) )
+        {
+            return read( name, FileUtils.toFile( url ) );
+        }
+        InputStream in = null;
+        try
+        {
+            URLConnection connection = url.openConnection();
+            // don't keep the jar file open in the JVM cache
+            connection.setUseCaches( false );
+            File jar = null;
+            String key = null;
+            String stamp = null;
+            if ( connection instanceof JarURLConnection )
+            {
+                JarURLConnection jarConnection = (JarURLConnection) connection;
+                jar = FileUtils.toFile( jarConnection.getJarFileURL() );
+                key = name + '|' + jar.getAbsolutePath() + '!' + jarConnection.getEntryName();
+                stamp = getStamp( jar );
+            }
+            Xpp3Dom xml = key != null ? getDescriptor( key, stamp ) : null;
+            if ( xml == null )
+            {
+                in = connection.getInputStream();
+                xml = parse( in, url.toExternalForm() );
+                if ( key != null )
+                {
+                    descriptors.put( key, new Descriptor( stamp, xml ) );
+                }
+            }
+            GwtModule module = new GwtModule( name, xml, reader );
+            module.setSourceJar( jar );
+            return add( module );
+        }
+        catch ( IOException e )
+        {
+            throw new GwtModuleReaderException( "Failed to read module " + url, e );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+    /**
+     * @return the module read first, when concurrent threads read the same module
+     */
+    private synchronized GwtModule add( GwtModule module )
+    {
+        GwtModule read = modules.get( module.getName() );
+        if ( read != null )
+        {
+            return read;
+        }
+        modules.put( module.getName(), module );
+        return module;
+    }
+
+    private static Xpp3Dom parse( InputStream in, String location )
+        throws GwtModuleReaderException
+    {
+        try
+        {
+            return Xpp3DomBuilder.build( ReaderFactory.newXmlReader( in ) );
+        }
+        catch ( Exception e )
+        {
+            throw new GwtModuleReaderException( "Failed to read module XML file " + location, e );
+        }
+    }
+
+    /**
+     * @return the parsed descriptor, <code>null</code> if not parsed yet or modified since
+     */
+    private static Xpp3Dom getDescriptor( String key, String stamp )
+    {
+        Descriptor descriptor = descriptors.get( key );
+        return descriptor != null && descriptor.stamp.equals( stamp ) ? descriptor.xml : null;
+    }
+
+    private static String getStamp( File file )
+    {
+        return file.length() + ";" + file.lastModified();
+    }
+
+    /**
+     * @return the number of parsed descriptors shared by the build
+     */
+    static int getDescriptorCount()
+    {
+        return descriptors.size();
+    }
+
+    /**
+     * A parsed descriptor, never modified, and the stamp of the file it has been read from
+     */
+    private static class Descriptor
+    {
+        private final String stamp;
+
+        private final Xpp3Dom xml;
+
+        Descriptor( String stamp, Xpp3Dom xml )
+        {
+            this.stamp = stamp;
+            this.xml = xml;
+        }
+    }
+}
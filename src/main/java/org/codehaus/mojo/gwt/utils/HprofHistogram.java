@@ -0,0 +1,401 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Class histogram of a HPROF heap dump, as written by the JVM on <code>OutOfMemoryError</code> or by
+ * <code>jcmd GC.heap_dump</code>: instance count and shallow size by class, read in a single streaming pass.
+ * Retained sizes would require the whole object graph in memory, which is not affordable inside the build.
+ *
+ * @since 2.5.0
+ */
+public class HprofHistogram
+{
+    private static final int UTF8 = 0x01;
+
+    private static final int LOAD_CLASS = 0x02;
+
+    private static final int HEAP_DUMP = 0x0C;
+
+    private static final int HEAP_DUMP_SEGMENT = 0x1C;
+
+    private static final int OBJECT = 2;
+
+    private static final String[] PRIMITIVE_NAMES =
+        { null, null, null, null, "boolean[]", "char[]", "float[]", "double[]", "byte[]", "short[]", "int[]",
+            "long[]" };
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private final Map<Long, String> strings = new HashMap<Long, String>();
+
+    /** class names by class object id */
+    private final Map<Long, String> classes = new HashMap<Long, String>();
+
+    /** histogram entries by class object id, resolved once class names are known */
+    private final Map<Long, Entry> byClassId = new HashMap<Long, Entry>();
+
+    private int idSize;
+
+    /**
+     * @param hprof a heap dump
+     * @return the classes of the dump, by decreasing shallow size
+     */
+    public static List<Entry> read( File hprof )
+        throws IOException
+    {
+        HprofHistogram histogram = new HprofHistogram();
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( hprof ), 65536 ) );
+        try
+        {
+            histogram.parse( in );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+        return histogram.getEntries();
+    }
+
+    private void parse( DataInputStream in )
+        throws IOException
+    {
+        // "JAVA PROFILE 1.0.x" null-terminated header
+        int c;
+        while ( ( c = in.read() ) > 0 )
+        {
+            // skip
+        }
+        if ( c < 0 )
+        {
+            throw new IOException( "Not a HPROF file" );
+        }
+        idSize = in.readInt();
+        if ( idSize != 4 && idSize != 8 )
+        {
+            throw new IOException( "Unsupported HPROF identifier size " + idSize );
+        }
+        in.readLong();
+
+        while ( true )
+        {
+            int tag = in.read();
+            if ( tag < 0 )
+            {
+                break;
+            }
+            in.readInt();
+            long length = in.readInt() & 0xFFFFFFFFL;
+            switch ( tag )
+            {
+                case UTF8:
+                    long id = readId( in );
+                    byte[] bytes = new byte[(int) ( length - idSize )];
+                    in.readFully( bytes );
+                    strings.put( Long.valueOf( id ), new String( bytes, "UTF-8" ) );
+                    break;
+                case LOAD_CLASS:
+                    in.readInt();
+                    long classId = readId( in );
+                    in.readInt();
+                    long nameId = readId( in );
+                    String name = strings.get( Long.valueOf( nameId ) );
+                    classes.put( Long.valueOf( classId ), name != null ? name.replace( '/', '.' ) : "?" );
+                    break;
+                case HEAP_DUMP:
+                case HEAP_DUMP_SEGMENT:
+                    parseHeapDump( in, length );
+                    break;
+                default:
+                    skip( in, length );
+            }
+        }
+    }
+
+    private void parseHeapDump( DataInputStream in, long length )
+        throws IOException
+    {
+        long end = length;
+        CountingInput counter = new CountingInput();
+        while ( counter.read < end )
+        {
+            int type = in.readUnsignedByte();
+            counter.read++;
+            switch ( type )
+            {
+                case 0xFF: // root unknown
+                case 0x05: // root sticky class
+                case 0x07: // root monitor used
+                    counter.skip( in, idSize );
+                    break;
+                case 0x01: // root JNI global
+                    counter.skip( in, idSize * 2 );
+                    break;
+                case 0x02: // root JNI local
+                case 0x03: // root java frame
+                case 0x08: // root thread object
+                    counter.skip( in, idSize + 8 );
+                    break;
+                case 0x04: // root native stack
+                case 0x06: // root thread block
+                    counter.skip( in, idSize + 4 );
+                    break;
+                case 0x20:
+                    parseClassDump( in, counter );
+                    break;
+                case 0x21: // instance dump
+                {
+                    counter.skip( in, idSize + 4 );
+                    long classId = readId( in );
+                    int size = in.readInt();
+                    counter.read += idSize + 4;
+                    counter.skip( in, size );
+                    getEntry( classId ).add( size + 2 * idSize );
+                    break;
+                }
+                case 0x22: // object array dump
+                {
+                    counter.skip( in, idSize + 4 );
+                    int count = in.readInt();
+                    long classId = readId( in );
+                    counter.read += 4 + idSize;
+                    counter.skip( in, (long) count * idSize );
+                    getEntry( classId ).add( (long) count * idSize + 2 * idSize + 4 );
+                    break;
+                }
+                case 0x23: // primitive array dump
+                {
+                    counter.skip( in, idSize + 4 );
+                    int count = in.readInt();
+                    int elementType = in.readUnsignedByte();
+                    counter.read += 5;
+                    long size = (long) count * getSize( elementType );
+                    counter.skip( in, size );
+                    getEntry( PRIMITIVE_NAMES[elementType] ).add( size + 2 * idSize + 4 );
+                    break;
+                }
+                default:
+                    throw new IOException( "Unsupported HPROF heap dump record " + type );
+            }
+        }
+    }
+
+    private void parseClassDump( DataInputStream in, CountingInput counter )
+        throws IOException
+    {
+        // class id, stack serial, super, loader, signers, protection domain, 2 reserved, instance size
+        counter.skip( in, idSize * 7 + 8 );
+        int constants = in.readUnsignedShort();
+        counter.read += 2;
+        for ( int i = 0; i < constants; i++ )
+        {
+            counter.skip( in, 2 );
+            int type = in.readUnsignedByte();
+            counter.read++;
+            counter.skip( in, getSize( type ) );
+        }
+        int statics = in.readUnsignedShort();
+        counter.read += 2;
+        for ( int i = 0; i < statics; i++ )
+        {
+            counter.skip( in, idSize );
+            int type = in.readUnsignedByte();
+            counter.read++;
+            counter.skip( in, getSize( type ) );
+        }
+        int fields = in.readUnsignedShort();
+        counter.read += 2;
+        counter.skip( in, (long) fields * ( idSize + 1 ) );
+    }
+
+    private int getSize( int type )
+        throws IOException
+    {
+        switch ( type )
+        {
+            case OBJECT:
+                return idSize;
+            case 4: // boolean
+            case 8: // byte
+                return 1;
+            case 5: // char
+            case 9: // short
+                return 2;
+            case 6: // float
+            case 10: // int
+                return 4;
+            case 7: // double
+            case 11: // long
+                return 8;
+            default:
+                throw new IOException( "Unsupported HPROF basic type " + type );
+        }
+    }
+
+    private long readId( DataInputStream in )
+        throws IOException
+    {
+        return idSize == 4 ? in.readInt() & 0xFFFFFFFFL : in.readLong();
+    }
+
+    private Entry getEntry( long classId )
+    {
+        Long key = Long.valueOf( classId );
+        Entry entry = byClassId.get( key );
+        if ( entry == null )
+        {
+            entry = new Entry( null );
+            byClassId.put( key, entry );
+        }
+        return entry;
+    }
+
+    private Entry getEntry( String name )
+    {
+        Entry entry = entries.get( name );
+        if ( entry == null )
+        {
+            entry = new Entry( name );
+            entries.put( name, entry );
+        }
+        return entry;
+    }
+
+    private List<Entry> getEntries()
+    {
+        for ( Map.Entry<Long, Entry> entry : byClassId.entrySet() )
+        {
+            String name = classes.get( entry.getKey() );
+            getEntry( name != null ? name : "0x" + Long.toHexString( entry.getKey().longValue() ) )
+                .merge( entry.getValue() );
+        }
+        List<Entry> list = new ArrayList<Entry>( entries.values() );
+        Collections.sort( list, new Comparator<Entry>()
+        {
+            public int compare( Entry e1, Entry e2 )
+            {
+                return e1.size == e2.size ? e1.name.compareTo( e2.name ) : ( e1.size > e2.size ? -1 : 1 );
+            }
+        } );
+        return list;
+    }
+
+    private static void skip( DataInputStream in, long length )
+        throws IOException
+    {
+        long remaining = length;
+        while ( remaining > 0 )
+        {
+            long skipped = in.skip( remaining );
+            if ( skipped <= 0 )
+            {
+                if ( in.read() < 0 )
+                {
+                    throw new EOFException( "Truncated HPROF file" );
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Count the bytes read in a heap dump segment
+     */
+    private static class CountingInput
+    {
+        long read;
+
+        void skip( DataInputStream in, long length )
+            throws IOException
+        {
+            HprofHistogram.skip( in, length );
+            read += length;
+        }
+    }
+
+    /**
+     * Instances of a class
+     */
+    public static class Entry
+    {
+        private final String name;
+
+        private long count;
+
+        private long size;
+
+        Entry( String name )
+        {
+            this.name = name;
+        }
+
+        void add( long instanceSize )
+        {
+            count++;
+            size += instanceSize;
+        }
+
+        void merge( Entry other )
+        {
+            count += other.count;
+            size += other.size;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        /**
+         * @return approximate shallow size in bytes, including object headers
+         */
+        public long getSize()
+        {
+            return size;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + ": " + count + " instances, " + ( size / 1024 ) + " kB";
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedList;
+
+/**
+ * Minimal streaming JSON writer, to produce machine-readable reports without additional dependency.
+ *
+ * @since 2.5.0
+ */
+public class JsonWriter
+{
+    private final Writer out;
+
+    /** for each open object or array, <code>true</code> until a first member has been written */
+    private final LinkedList<Boolean> first = new LinkedList<Boolean>();
+
+    /** a member name has just been written, next value must not be preceded by a separator */
+    private boolean named;
+
+    public JsonWriter( Writer out )
+    {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject()
+        throws IOException
+    {
+        separate();
+        out.write( '{' );
+        first.addFirst( Boolean.TRUE );
+        return this;
+    }
+
+    public JsonWriter endObject()
+        throws IOException
+    {
+        first.removeFirst();
+        out.write( '}' );
+        return this;
+    }
+
+    public JsonWriter beginArray()
+        throws IOException
+    {
+        separate();
+        out.write( '[' );
+        first.addFirst( Boolean.TRUE );
+        return this;
+    }
+
+    public JsonWriter endArray()
+        throws IOException
+    {
+        first.removeFirst();
+        out.write( ']' );
+        return this;
+    }
+
+    public JsonWriter name( String name )
+        throws IOException
+    {
+        separate();
+        string( name );
+        out.write( ':' );
+        named = true;
+        return this;
+    }
+
+    public JsonWriter value( String value )
+        throws IOException
+    {
+        separate();
+        if ( value == null )
+        {
+            out.write( "null" );
+        }
+        else
+        {
+            string( value );
+        }
+        return this;
+    }
+
+    public JsonWriter value( long value )
+        throws IOException
+    {
+        separate();
+        out.write( String.valueOf( value ) );
+        return this;
+    }
+
+    public JsonWriter value( double value )
+        throws IOException
+    {
+        separate();
+        out.write( Double.isNaN( value ) || Double.isInfinite( value ) ? "null" : String.valueOf( value ) );
+        return this;
+    }
+
+    public JsonWriter value( boolean value )
+        throws IOException
+    {
+        separate();
+        out.write( String.valueOf( value ) );
+        return this;
+    }
+
+    public void flush()
+        throws IOException
+    {
+        out.flush();
+    }
+
+    private void separate()
+        throws IOException
+    {
+        if ( named )
+        {
+            named = false;
+            return;
+        }
+        if ( !first.isEmpty() )
+        {
+            if ( first.getFirst().booleanValue() )
+            {
+                first.set( 0, Boolean.FALSE );
+            }
+            else
+            {
+                out.write( ',' );
+            }
+        }
+    }
+
+    private void string( String value )
+        throws IOException
+    {
+        out.write( '"' );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            switch ( c )
+            {
+                case '"':
+                    out.write( "\\\"" );
+                    break;
+                case '\\':
+                    out.write( "\\\\" );
+                    break;
+                case '\n':
+                    out.write( "\\n" );
+                    break;
+                case '\r':
+                    out.write( "\\r" );
+                    break;
+                case '\t':
+                    out.write( "\\t" );
+                    break;
+                default:
+                    if ( c < 0x20 )
+                    {
+                        out.write( String.format( "\\u%04x", Integer.valueOf( c ) ) );
+                    }
+                    else
+                    {
+                        out.write( c );
+                    }
+            }
+        }
+        out.write( '"' );
+    }
+}
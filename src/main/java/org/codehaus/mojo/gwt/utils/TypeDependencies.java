@@ -0,0 +1,228 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantNameAndType;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.FieldOrMethod;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.util.ClassPath;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Class-level dependencies of compiled classes, read with BCEL from their constant pool and member descriptors: super
+ * types, instantiated and called types, field, parameter and return types. Types only referenced from JSNI methods,
+ * annotations or generic signatures are not seen.
+ * <p>
+ * Only the BCEL API also available in the older BCEL bundled in <code>gwt-dev</code> is used, as either may be loaded
+ * first.
+ *
+ * @since 2.5.0
+ */
+public class TypeDependencies
+{
+    /** class types in a field or method descriptor, for example <code>(Lcom/acme/Foo;I)[Lcom/acme/Bar;</code> */
+    private static final Pattern DESCRIPTOR_TYPE = Pattern.compile( "L([^;<]+)[;<]" );
+
+    private final ClassPath classpath;
+
+    private final Set<String> missing = new LinkedHashSet<String>();
+
+    /**
+     * @param classpath directories and archives to read classes and resources from
+     */
+    public TypeDependencies( Collection<File> classpath )
+    {
+        StringBuilder path = new StringBuilder();
+        for ( File element : classpath )
+        {
+            if ( path.length() > 0 )
+            {
+                path.append( File.pathSeparatorChar );
+            }
+            path.append( element.getAbsolutePath() );
+        }
+        this.classpath = new ClassPath( path.toString() );
+    }
+
+    /**
+     * Compute the types transitively referenced from some root types. Types that are not found in the classpath, as
+     * the JRE types, are part of the result but their own dependencies are unknown.
+     *
+     * @param roots fully qualified class names
+     * @return the root types and all the types they reference, as fully qualified names with <code>$</code> for
+     * nested types
+     */
+    public Set<String> getReferencedTypes( Collection<String> roots )
+        throws IOException
+    {
+        Set<String> types = new LinkedHashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        for ( String root : roots )
+        {
+            if ( types.add( root ) )
+            {
+                queue.add( root );
+            }
+        }
+        while ( !queue.isEmpty() )
+        {
+            String type = queue.removeFirst();
+            if ( type.startsWith( "java." ) )
+            {
+                continue;
+            }
+            JavaClass javaClass = parse( type );
+            if ( javaClass == null )
+            {
+                missing.add( type );
+                continue;
+            }
+            for ( String dependency : getDependencies( javaClass ) )
+            {
+                if ( types.add( dependency ) )
+                {
+                    queue.add( dependency );
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * @return types referenced but not found in the classpath, JRE types excluded
+     */
+    public Set<String> getMissingTypes()
+    {
+        return missing;
+    }
+
+    /**
+     * @param name a qualified name, for example a super-source type <code>com.acme.jre.java.util.Foo</code>
+     * @param suffix the file extension, for example <code>.java</code>
+     * @return <code>true</code> if the file exists in the classpath
+     */
+    public boolean hasFile( String name, String suffix )
+    {
+        try
+        {
+            return classpath.getClassFile( name, suffix ) != null;
+        }
+        catch ( IOException e )
+        {
+            // not found
+            return false;
+        }
+    }
+
+    private JavaClass parse( String type )
+        throws IOException
+    {
+        InputStream in;
+        try
+        {
+            // not getInputStream, that also reads from the plugin class loader in some BCEL versions
+            in = classpath.getClassFile( type, ".class" ).getInputStream();
+        }
+        catch ( IOException e )
+        {
+            // not found
+            return null;
+        }
+        try
+        {
+            return new ClassParser( in, type.replace( '.', '/' ) + ".class" ).parse();
+        }
+        catch ( ClassFormatError e )
+        {
+            // class file version unsupported by the older BCEL
+            return null;
+        }
+        catch ( RuntimeException e )
+        {
+            // ClassFormatException of the newer BCEL
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+    /**
+     * @return the types a class references
+     */
+    static Set<String> getDependencies( JavaClass javaClass )
+    {
+        Set<String> dependencies = new LinkedHashSet<String>();
+        ConstantPool pool = javaClass.getConstantPool();
+        for ( Constant constant : pool.getConstantPool() )
+        {
+            if ( constant instanceof ConstantClass )
+            {
+                String name = ( (ConstantClass) constant ).getBytes( pool );
+                if ( name.startsWith( "[" ) )
+                {
+                    addDescriptorTypes( name, dependencies );
+                }
+                else
+                {
+                    dependencies.add( name.replace( '/', '.' ) );
+                }
+            }
+            else if ( constant instanceof ConstantNameAndType )
+            {
+                addDescriptorTypes( ( (ConstantNameAndType) constant ).getSignature( pool ), dependencies );
+            }
+        }
+        for ( FieldOrMethod member : javaClass.getFields() )
+        {
+            addDescriptorTypes( member.getSignature(), dependencies );
+        }
+        for ( FieldOrMethod member : javaClass.getMethods() )
+        {
+            addDescriptorTypes( member.getSignature(), dependencies );
+        }
+        dependencies.remove( javaClass.getClassName() );
+        return dependencies;
+    }
+
+    private static void addDescriptorTypes( String descriptor, Set<String> types )
+    {
+        Matcher matcher = DESCRIPTOR_TYPE.matcher( descriptor );
+        while ( matcher.find() )
+        {
+            types.add( matcher.group( 1 ).replace( '/', '.' ) );
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.mojo.gwt.GwtModuleGraph.Node;
+import org.codehaus.mojo.gwt.GwtModuleGraph.PathFilter;
+import org.codehaus.mojo.gwt.GwtModuleGraph.Rule;
+import org.codehaus.mojo.gwt.utils.GwtModuleCache;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.FileUtils;
+
+public class GwtModuleGraphTest
+    extends TestCase
+{
+    private File directory;
+
+    private GwtModuleCache cache;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-module-graph/" + getName() ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+        cache = new GwtModuleCache( new Reader() );
+    }
+
+    public void testClosure()
+        throws Exception
+    {
+        write( "com.acme.App", "<module rename-to='app'>"
+            + "<inherits name='com.google.gwt.user.User'/><inherits name='com.acme.Core'/>"
+            + "<entry-point class='com.acme.client.App'/><servlet path='/rpc' class='com.acme.server.Rpc'/>"
+            + "</module>" );
+        write( "com.acme.Core", "<module><inherits name='com.google.gwt.user.User'/><inherits name='com.acme.Missing'/>"
+            + "<source path='shared' includes='**/*.java' excludes='**/Server*.java'><skip name='**/Jvm*'/></source>"
+            + "<super-source path='jre'/><public path='resources' defaultexcludes='no'/></module>" );
+        write( "com.google.gwt.user.User", "<module><inherits name='com.acme.App'/></module>" );
+
+        GwtModuleGraph graph = GwtModuleGraph.build( "com.acme.App", new Reader() );
+        assertEquals( Arrays.asList( "com.acme.App", "com.google.gwt.user.User", "com.acme.Core", "com.acme.Missing" ),
+                      names( graph ) );
+        assertEquals( Collections.singletonList( "com.acme.Missing" ), graph.getUnresolved() );
+        assertEquals( Arrays.asList( "com.google.gwt.user.User", "com.acme.Core", "com.acme.Missing" ),
+                      Arrays.asList( graph.getInherits( "com.acme.App" ).toArray() ) );
+
+        Node app = graph.getRoot();
+        assertEquals( "app", app.getRenameTo() );
+        assertEquals( new File( directory, "com.acme.App.gwt.xml" ).getAbsolutePath(), app.getOrigin() );
+        assertEquals( "client", app.getSources().get( 0 ).getPath() );
+        assertEquals( "public", app.getPublicPaths().get( 0 ).getPath() );
+        assertEquals( Collections.singletonList( "com.acme.client.App" ), app.getEntryPoints() );
+        assertEquals( "com.acme.server.Rpc", app.getServlets().get( "/rpc" ) );
+
+        Node core = graph.getNode( "com.acme.Core" );
+        PathFilter source = core.getSources().get( 0 );
+        assertEquals( "shared", source.getPath() );
+        assertEquals( Collections.singletonList( "**/*.java" ), source.getIncludes() );
+        assertEquals( Collections.singletonList( "**/Server*.java" ), source.getExcludes() );
+        assertEquals( Collections.singletonList( "**/Jvm*" ), source.getSkips() );
+        assertEquals( "jre", core.getSuperSources().get( 0 ).getPath() );
+        assertFalse( core.getPublicPaths().get( 0 ).isDefaultExcludes() );
+        assertFalse( graph.getNode( "com.acme.Missing" ).isResolved() );
+    }
+
+    public void testProperties()
+        throws Exception
+    {
+        write( "com.acme.App", "<module>"
+            + "<inherits name='com.acme.UserAgent'/>"
+            + "<extend-property name='user.agent' values='opera'/>"
+            + "<set-property name='locale' value='en'><when-property-is name='user.agent' value='ie8'/></set-property>"
+            + "<set-property name='user.agent' value='gecko1_8, safari'/>"
+            + "<set-configuration-property name='compiler.stackMode' value='strip'/>"
+            + "<replace-with class='com.acme.client.ImplIE'><when-type-is class='com.acme.client.Impl'/>"
+            + "<any><when-property-is name='user.agent' value='ie8'/><when-property-is name='user.agent' value='ie9'/>"
+            + "</any></replace-with>"
+            + "</module>" );
+        write( "com.acme.UserAgent", "<module>"
+            + "<define-property name='user.agent' values='ie8,gecko1_8,safari'/>"
+            + "<define-property name='locale' values='default'/>"
+            + "<define-configuration-property name='compiler.stackMode' is-multi-valued='false'/>"
+            + "<generate-with class='com.acme.rebind.Generator'><when-type-assignable class='com.acme.client.Gen'/>"
+            + "</generate-with></module>" );
+
+        GwtModuleGraph graph = GwtModuleGraph.build( "com.acme.App", new Reader() );
+        assertEquals( "define-property", graph.getDeclarations().get( 0 ).getKind() );
+        assertEquals( "com.acme.UserAgent", graph.getDeclarations().get( 0 ).getModule() );
+        assertEquals( Arrays.asList( "gecko1_8", "safari" ), graph.getPropertyValues().get( "user.agent" ) );
+        assertEquals( Collections.singletonList( "default" ), graph.getPropertyValues().get( "locale" ) );
+        assertEquals( Collections.singletonList( "strip" ),
+                      graph.getConfigurationProperties().get( "compiler.stackMode" ) );
+
+        Rule replace = graph.getRoot().getRules().get( 0 );
+        assertEquals( "com.acme.client.ImplIE", replace.getClassName() );
+        assertEquals( Arrays.asList( "when-type-is com.acme.client.Impl",
+                                     "any(when-property-is user.agent=ie8, when-property-is user.agent=ie9)" ),
+                      replace.getConditions() );
+        assertEquals( "generate-with", graph.getNode( "com.acme.UserAgent" ).getRules().get( 0 ).getKind() );
+    }
+
+    public void testJson()
+        throws Exception
+    {
+        write( "com.acme.App", "<module><inherits name='com.acme.Missing'/>"
+            + "<define-property name='user.agent' values='safari'/></module>" );
+        File file = new File( directory, "graph/com.acme.App.json" );
+        GwtModuleGraph.build( "com.acme.App", new Reader() ).write( file );
+        String json = FileUtils.fileRead( file, "UTF-8" );
+        assertTrue( json, json.startsWith( "{\"module\":\"com.acme.App\",\"nodes\":[{\"name\":\"com.acme.App\"" ) );
+        assertTrue( json, json.contains( "{\"name\":\"com.acme.Missing\",\"resolved\":false}" ) );
+        assertTrue( json, json.contains( "\"sources\":[{\"path\":\"client\"}]" ) );
+        assertTrue( json, json.contains( "\"propertyValues\":{\"user.agent\":[\"safari\"]}" ) );
+    }
+
+    private static List<String> names( GwtModuleGraph graph )
+    {
+        List<String> names = new ArrayList<String>();
+        for ( Node node : graph.getNodes() )
+        {
+            names.add( node.getName() );
+        }
+        return names;
+    }
+
+    private void write( String name, String content )
+        throws Exception
+    {
+        FileUtils.fileWrite( new File( directory, name + ".gwt.xml" ).getPath(), "UTF-8", content );
+    }
+
+    /**
+     * Read modules from the test directory, by their full name
+     */
+    private class Reader
+        implements GwtModuleReader
+    {
+        public GwtModule readModule( String name )
+            throws GwtModuleReaderException
+        {
+            GwtModule module = cache.getModule( name );
+            if ( module != null )
+            {
+                return module;
+            }
+            File file = new File( directory, name + ".gwt.xml" );
+            if ( !file.exists() )
+            {
+                throw new GwtModuleReaderException( "GWT Module " + name + " not found" );
+            }
+            return cache.read( name, file );
+        }
+
+        public List<String> getGwtModules()
+        {
+            return Collections.emptyList();
+        }
+    }
+}
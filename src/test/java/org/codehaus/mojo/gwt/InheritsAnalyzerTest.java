@@ -0,0 +1,168 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.codehaus.mojo.gwt.InheritsAnalyzer.UnusedInherits;
+import org.codehaus.mojo.gwt.utils.GwtModuleCache;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.mojo.gwt.utils.TypeDependencies;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+public class InheritsAnalyzerTest
+    extends TestCase
+{
+    private File directory;
+
+    private GwtModuleCache cache;
+
+    private TypeDependencies types;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-inherits/" + getName() ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+        cache = new GwtModuleCache( new Reader() );
+        types =
+            new TypeDependencies( Arrays.asList( new File( "target/test-classes" ), new File( "target/classes" ) ) );
+    }
+
+    public void testReferencedTypes()
+        throws Exception
+    {
+        Set<String> referenced =
+            types.getReferencedTypes( Collections.singleton( GwtModuleCache.class.getName() ) );
+        assertTrue( referenced.contains( GwtModuleCache.class.getName() ) );
+        // through GwtModule
+        assertTrue( referenced.contains( GwtModuleReader.class.getName() ) );
+        assertTrue( referenced.contains( "java.util.Map" ) );
+        assertFalse( referenced.contains( InheritsAnalyzer.class.getName() ) );
+        // only project classes in the classpath
+        assertTrue( types.getMissingTypes().contains( Xpp3Dom.class.getName() ) );
+        assertFalse( types.getMissingTypes().contains( GwtModule.class.getName() ) );
+        assertTrue( types.hasFile( GwtModule.class.getName(), ".class" ) );
+        assertFalse( types.hasFile( GwtModule.class.getName(), ".java" ) );
+    }
+
+    public void testUnusedInherits()
+        throws Exception
+    {
+        write( "org.codehaus.mojo.gwt.App", "<module><inherits name='org.codehaus.mojo.gwt.Used'/>"
+            + "<inherits name='org.codehaus.mojo.gwt.Unused'/><inherits name='org.codehaus.mojo.gwt.Theme'/>"
+            + "<entry-point class='" + GwtModuleCache.class.getName() + "'/></module>" );
+        write( "org.codehaus.mojo.gwt.Used", "<module><source path='utils'/>"
+            + "<define-property name='user.agent' values='ie8,safari'/></module>" );
+        write( "org.codehaus.mojo.gwt.Unused", "<module><source path='eclipse'/>"
+            + "<inherits name='org.codehaus.mojo.gwt.Used'/><inherits name='org.codehaus.mojo.gwt.Transitive'/>"
+            + "<define-property name='mobile' values='true,false'/></module>" );
+        write( "org.codehaus.mojo.gwt.Transitive", "<module><source path='servlets'/></module>" );
+        write( "org.codehaus.mojo.gwt.Theme", "<module><public path='theme'/></module>" );
+
+        Reader reader = new Reader();
+        GwtModuleGraph graph = GwtModuleGraph.build( "org.codehaus.mojo.gwt.App", reader );
+        InheritsAnalyzer analyzer = new InheritsAnalyzer( graph, reader );
+        assertEquals( Collections.singletonList( GwtModuleCache.class.getName() ), analyzer.getEntryPoints() );
+        assertEquals( 4, new PermutationEstimate( graph ).getPermutations() );
+
+        List<UnusedInherits> unused = analyzer.analyze( types );
+        assertEquals( unused.toString(), 2, unused.size() );
+        UnusedInherits inherits = unused.get( 0 );
+        assertEquals( "org.codehaus.mojo.gwt.App", inherits.getModule() );
+        assertEquals( "org.codehaus.mojo.gwt.Unused", inherits.getInherited() );
+        assertEquals( Arrays.asList( "org.codehaus.mojo.gwt.Unused", "org.codehaus.mojo.gwt.Transitive" ),
+                      inherits.getRemovedModules() );
+        assertEquals( 2, inherits.getEstimate().getPermutations() );
+
+        // also unused by itself, but keeps the properties of the unused module
+        inherits = unused.get( 1 );
+        assertEquals( "org.codehaus.mojo.gwt.Unused", inherits.getModule() );
+        assertEquals( "org.codehaus.mojo.gwt.Transitive", inherits.getInherited() );
+        assertEquals( Collections.singletonList( "org.codehaus.mojo.gwt.Transitive" ), inherits.getRemovedModules() );
+        assertEquals( 4, inherits.getEstimate().getPermutations() );
+    }
+
+    public void testConfigurationModulesAreUsed()
+        throws Exception
+    {
+        write( "org.codehaus.mojo.gwt.App", "<module><inherits name='org.codehaus.mojo.gwt.Rules'/>"
+            + "<inherits name='org.codehaus.mojo.gwt.Linker'/><inherits name='org.codehaus.mojo.gwt.Script'/>"
+            + "<inherits name='org.codehaus.mojo.gwt.Style'/>"
+            + "<entry-point class='" + GwtModuleCache.class.getName() + "'/></module>" );
+        write( "org.codehaus.mojo.gwt.Rules", "<module><source path='eclipse'/>"
+            + "<generate-with class='com.acme.rebind.Generator'><when-type-assignable class='com.acme.Foo'/>"
+            + "</generate-with></module>" );
+        write( "org.codehaus.mojo.gwt.Linker", "<module><source path='eclipse'/>"
+            + "<define-linker name='acme' class='com.acme.linker.AcmeLinker'/><add-linker name='acme'/></module>" );
+        write( "org.codehaus.mojo.gwt.Script", "<module><source path='eclipse'/><script src='acme.js'/></module>" );
+        write( "org.codehaus.mojo.gwt.Style", "<module><source path='eclipse'/><stylesheet src='acme.css'/></module>" );
+
+        Reader reader = new Reader();
+        GwtModuleGraph graph = GwtModuleGraph.build( "org.codehaus.mojo.gwt.App", reader );
+        assertEquals( Arrays.asList( "acme", "acme" ), graph.getNode( "org.codehaus.mojo.gwt.Linker" ).getLinkers() );
+        assertEquals( Collections.singletonList( "acme.js" ), graph.getNode( "org.codehaus.mojo.gwt.Script" )
+            .getScripts() );
+        assertTrue( new InheritsAnalyzer( graph, reader ).analyze( types ).isEmpty() );
+    }
+
+    private void write( String name, String content )
+        throws Exception
+    {
+        FileUtils.fileWrite( new File( directory, name + ".gwt.xml" ).getPath(), "UTF-8", content );
+    }
+
+    /**
+     * Read modules from the test directory, by their full name
+     */
+    private class Reader
+        implements GwtModuleReader
+    {
+        public GwtModule readModule( String name )
+            throws GwtModuleReaderException
+        {
+            GwtModule module = cache.getModule( name );
+            if ( module != null )
+            {
+                return module;
+            }
+            File file = new File( directory, name + ".gwt.xml" );
+            if ( !file.exists() )
+            {
+                throw new GwtModuleReaderException( "GWT Module " + name + " not found" );
+            }
+            return cache.read( name, file );
+        }
+
+        public List<String> getGwtModules()
+        {
+            return Collections.emptyList();
+        }
+    }
+}
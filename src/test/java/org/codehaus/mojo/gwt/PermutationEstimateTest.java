@@ -0,0 +1,161 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.mojo.gwt.utils.GwtModuleCache;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.FileUtils;
+
+public class PermutationEstimateTest
+    extends TestCase
+{
+    private static final String USER_AGENT = "<module>"
+        + "<define-property name='user.agent' values='ie8,ie9,gecko1_8,safari,opera'/>"
+        + "<define-property name='locale' values='default'/>"
+        + "<define-property name='mobile' values='true,false'/>"
+        + "<set-property name='mobile' value='true'><when-property-is name='user.agent' value='safari'/></set-property>"
+        + "</module>";
+
+    private File directory;
+
+    private GwtModuleCache cache;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-permutations/" + getName() ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+        cache = new GwtModuleCache( new Reader() );
+        write( "com.google.gwt.user.UserAgent", USER_AGENT );
+    }
+
+    public void testPropertySpace()
+        throws Exception
+    {
+        write( "com.acme.App", "<module><inherits name='com.google.gwt.user.UserAgent'/>"
+            + "<extend-property name='locale' values='en,fr'/>"
+            + "<set-property name='user.agent' value='ie9,gecko1_8,safari'/></module>" );
+        PermutationEstimate estimate = estimate( "com.acme.App" );
+        // mobile is only pinned for safari: ie9 and gecko1_8 compile twice
+        assertEquals( 15, estimate.getPermutations() );
+        assertEquals( 15, estimate.getSoftPermutations() );
+        assertEquals( Integer.valueOf( 5 ), estimate.getProperties().get( "user.agent, mobile" ) );
+        assertFalse( estimate.getProperties().containsKey( "mobile" ) );
+        assertTrue( estimate.isComplete() );
+        assertEquals( "15 permutations (user.agent, mobile: 5, locale: 3)", estimate.toString() );
+    }
+
+    public void testDerivedProperty()
+        throws Exception
+    {
+        write( "com.acme.App", "<module><inherits name='com.google.gwt.user.UserAgent'/>"
+            + "<set-property name='user.agent' value='ie9,gecko1_8,safari'/>"
+            + "<set-property name='mobile' value='false'/>"
+            + "<set-property name='mobile' value='true'><any><when-property-is name='user.agent' value='safari'/>"
+            + "<when-property-is name='user.agent' value='opera'/></any></set-property></module>" );
+        PermutationEstimate estimate = estimate( "com.acme.App" );
+        assertEquals( 3, estimate.getPermutations() );
+        assertEquals( "3 permutations (user.agent, mobile: 3)", estimate.toString() );
+
+        write( "com.acme.Other", "<module><inherits name='com.google.gwt.user.UserAgent'/>"
+            + "<set-property name='user.agent' value='ie9,safari'/>"
+            + "<set-property name='mobile' value='true'><when-property-is name='locale' value='default'/>"
+            + "<when-property-is name='user.agent' value='safari'/></set-property></module>" );
+        assertEquals( "complex conditions count all values", 4, estimate( "com.acme.Other" ).getPermutations() );
+    }
+
+    public void testCollapse()
+        throws Exception
+    {
+        write( "com.acme.App", "<module><inherits name='com.google.gwt.user.UserAgent'/>"
+            + "<extend-property name='locale' values='en,en_US,en_GB,fr'/>"
+            + "<collapse-property name='locale' values='en*'/>"
+            + "<collapse-property name='user.agent' values='ie*'/>"
+            + "<collapse-property name='user.agent' values='gecko1_8,safari'/>"
+            + "<inherits name='com.acme.Missing'/></module>" );
+        PermutationEstimate estimate = estimate( "com.acme.App" );
+        // user.agent groups (ie8, ie9), (gecko1_8, safari) and opera, each compiled for both mobile values
+        assertEquals( 18, estimate.getPermutations() );
+        assertEquals( 45, estimate.getSoftPermutations() );
+        assertFalse( estimate.isComplete() );
+        assertTrue( estimate.toString(),
+                    estimate.toString().startsWith( "18 permutations (user.agent, mobile: 6 of 9" ) );
+
+        write( "com.acme.Single", "<module><inherits name='com.acme.App'/><collapse-all-properties/></module>" );
+        assertEquals( 1, estimate( "com.acme.Single" ).getPermutations() );
+    }
+
+    public void testMatches()
+    {
+        assertTrue( PermutationEstimate.matches( "*", "ie8" ) );
+        assertTrue( PermutationEstimate.matches( "en_*", "en_US" ) );
+        assertFalse( PermutationEstimate.matches( "en_*", "en" ) );
+        assertTrue( PermutationEstimate.matches( "a.b", "a.b" ) );
+        assertFalse( PermutationEstimate.matches( "a.b", "axb" ) );
+    }
+
+    private PermutationEstimate estimate( String module )
+        throws Exception
+    {
+        return new PermutationEstimate( GwtModuleGraph.build( module, new Reader() ) );
+    }
+
+    private void write( String name, String content )
+        throws Exception
+    {
+        FileUtils.fileWrite( new File( directory, name + ".gwt.xml" ).getPath(), "UTF-8", content );
+    }
+
+    /**
+     * Read modules from the test directory, by their full name
+     */
+    private class Reader
+        implements GwtModuleReader
+    {
+        public GwtModule readModule( String name )
+            throws GwtModuleReaderException
+        {
+            GwtModule module = cache.getModule( name );
+            if ( module != null )
+            {
+                return module;
+            }
+            File file = new File( directory, name + ".gwt.xml" );
+            if ( !file.exists() )
+            {
+                throw new GwtModuleReaderException( "GWT Module " + name + " not found" );
+            }
+            return cache.read( name, file );
+        }
+
+        public List<String> getGwtModules()
+        {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class CSSBatchRunnerTest
+    extends TestCase
+{
+    public void testBatch()
+        throws Exception
+    {
+        File basedir = new File( "target/test-css-batch" );
+        FileUtils.deleteDirectory( basedir );
+        basedir.mkdirs();
+        File css = new File( basedir, "Theme.css" );
+        FileUtils.fileWrite( css.getPath(), ".main-panel { color: red; } .title { font-weight: bold; }" );
+        File out = new File( basedir, "generated" );
+
+        int failures = new CSSBatchRunner( out ).run(
+            Arrays.asList( "com.acme.Theme=" + css.getAbsolutePath(),
+                           "com.acme.Missing=" + new File( basedir, "Missing.css" ).getAbsolutePath() ) );
+        assertEquals( 1, failures );
+
+        String java = FileUtils.fileRead( new File( out, "com/acme/Theme.java" ) );
+        assertTrue( java.contains( "interface Theme" ) );
+        assertTrue( java.contains( "String mainPanel();" ) );
+        assertFalse( new File( out, "com/acme/Missing.java" ).exists() );
+    }
+
+    public void testSupportedVersions()
+    {
+        assertNull( CSSBatchRunner.getUnsupportedReason( "2.5.0-rc1" ) );
+        assertNotNull( CSSBatchRunner.getUnsupportedReason( "3.0.0" ) );
+        assertNotNull( CSSBatchRunner.getUnsupportedReason( null ) );
+    }
+}
@@ -0,0 +1,143 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+
+public class ClassDataSharingTest
+    extends TestCase
+{
+    private File directory;
+
+    private File jar;
+
+    private String java;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-cds/" + getName() ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+        jar = new File( directory, "hello.jar" );
+        writeJar( jar );
+        java = System.getProperty( "java.home" ) + File.separator + "bin" + File.separator + "java";
+    }
+
+    private List<String> command( String classpath )
+    {
+        return Arrays.asList( java, "-classpath", classpath, Hello.class.getName() );
+    }
+
+    public void testArchivedJars()
+    {
+        File classes = new File( directory, "classes" );
+        classes.mkdirs();
+        String classpath = jar.getPath() + File.pathSeparator + classes.getPath() + File.pathSeparator + jar.getPath();
+        assertEquals( Arrays.asList( jar.getAbsoluteFile() ),
+                      ClassDataSharing.getArchivedJars( command( classpath ) ) );
+
+        ClassDataSharing cds = new ClassDataSharing( directory, new SystemStreamLog() );
+        List<String> command = command( classes.getPath() + File.pathSeparator + jar.getPath() );
+        assertEquals( "the JVM cannot archive classes after a directory", command, cds.apply( command, true ) );
+    }
+
+    public void testKeyChangesWithJars()
+    {
+        String key = ClassDataSharing.getKey( java, Arrays.asList( jar ) );
+        assertEquals( key, ClassDataSharing.getKey( java, Arrays.asList( jar ) ) );
+        jar.setLastModified( jar.lastModified() + 60000 );
+        assertFalse( key.equals( ClassDataSharing.getKey( java, Arrays.asList( jar ) ) ) );
+    }
+
+    public void testCreateAndUseArchive()
+        throws Exception
+    {
+        if ( ForkClasspath.getJavaVersion( java ) < 11 )
+        {
+            return;
+        }
+        ClassDataSharing cds = new ClassDataSharing( directory, new SystemStreamLog() );
+        List<String> command = command( jar.getPath() );
+
+        List<String> record = cds.apply( command, true );
+        assertTrue( record.toString(), record.get( 1 ).startsWith( "-XX:DumpLoadedClassList=" ) );
+        assertEquals( "a single fork records the classes", command, cds.apply( command, true ) );
+        cds.processExited( record, run( record ) );
+        assertFalse( "class list is removed", new File( record.get( 1 ).substring( 25 ) ).exists() );
+
+        List<String> shared = cds.apply( command, true );
+        assertTrue( shared.toString(), shared.get( 1 ).startsWith( "-XX:SharedArchiveFile=" ) );
+        assertTrue( new File( shared.get( 1 ).substring( 22 ) ).isFile() );
+        assertEquals( 0, run( shared ) );
+    }
+
+    private int run( List<String> command )
+        throws Exception
+    {
+        Process process = new ProcessBuilder( command ).redirectErrorStream( true ).start();
+        IOUtils.toString( process.getInputStream() );
+        return process.waitFor();
+    }
+
+    /**
+     * Jar with the {@link Hello} class
+     */
+    private void writeJar( File file )
+        throws Exception
+    {
+        String name = Hello.class.getName().replace( '.', '/' ) + ".class";
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        InputStream in = new FileInputStream( new File( "target/test-classes", name ) );
+        try
+        {
+            out.putNextEntry( new ZipEntry( name ) );
+            IOUtils.copy( in, out );
+            out.closeEntry();
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+            out.close();
+        }
+    }
+
+    public static class Hello
+    {
+        public static void main( String[] args )
+        {
+            System.out.println( "hello" );
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+public class CompilationPipelineTest
+    extends TestCase
+{
+    /**
+     * Stand-in for a remote worker pool : records the permutations it is asked to compile
+     */
+    private static class RecordingTransport
+        implements PermutationTransport
+    {
+        private final List<Integer> compiled = Collections.synchronizedList( new ArrayList<Integer>() );
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        private int maxRunning;
+
+        private String failOn;
+
+        public int compilePermutations( List<String> command, StreamConsumer output )
+            throws IOException
+        {
+            int concurrent = running.incrementAndGet();
+            synchronized ( this )
+            {
+                maxRunning = Math.max( maxRunning, concurrent );
+            }
+            try
+            {
+                assertEquals( "com.acme.App", command.get( command.size() - 1 ) );
+                String perms = command.get( command.indexOf( "-perms" ) + 1 );
+                output.consumeLine( "Compiling permutations " + perms );
+                Thread.sleep( 50 );
+                for ( String perm : perms.split( "," ) )
+                {
+                    compiled.add( Integer.valueOf( perm ) );
+                }
+                return perms.equals( failOn ) ? 1 : 0;
+            }
+            catch ( InterruptedException e )
+            {
+                throw new IOException( "interrupted" );
+            }
+            finally
+            {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Stand-in for <code>CompilePerms</code>, run as a real worker process
+     */
+    public static class Worker
+    {
+        public static void main( String[] args )
+        {
+            String perms = args[Arrays.asList( args ).indexOf( "-perms" ) + 1];
+            System.out.println( "Compiling permutations " + perms + " of " + args[args.length - 1] );
+            System.exit( perms.startsWith( "0," ) ? 0 : 3 );
+        }
+    }
+
+    public void testSplit()
+    {
+        assertEquals( Arrays.asList( Arrays.asList( 0, 1, 2 ), Arrays.asList( 3, 4 ) ),
+                      CompilationPipeline.split( 5, 2 ) );
+        assertEquals( "no more workers than permutations", 2, CompilationPipeline.split( 2, 8 ).size() );
+        assertEquals( Arrays.asList( Arrays.asList( 0 ) ), CompilationPipeline.split( 1, 4 ) );
+    }
+
+    public void testAllPermutationsDispatched()
+        throws Exception
+    {
+        RecordingTransport transport = new RecordingTransport();
+        CompilationPipeline pipeline =
+            new CompilationPipeline( transport, 6, new CompilerPhases(), new SystemStreamLog() );
+        pipeline.compilePermutations( "com.acme.App", 48, Arrays.asList( "java", "com.google.gwt.dev.CompilePerms" ) );
+
+        List<Integer> compiled = new ArrayList<Integer>( transport.compiled );
+        Collections.sort( compiled );
+        assertEquals( 48, compiled.size() );
+        for ( int i = 0; i < 48; i++ )
+        {
+            assertEquals( i, compiled.get( i ).intValue() );
+        }
+        assertTrue( "workers must run concurrently", transport.maxRunning > 1 );
+        assertTrue( transport.maxRunning <= 6 );
+    }
+
+    public void testWorkerFailure()
+        throws Exception
+    {
+        RecordingTransport transport = new RecordingTransport();
+        transport.failOn = "2,3";
+        CompilationPipeline pipeline =
+            new CompilationPipeline( transport, 2, new CompilerPhases(), new SystemStreamLog() );
+        try
+        {
+            pipeline.compilePermutations( "com.acme.App", 4, Arrays.asList( "java" ) );
+            fail( "worker failure must fail the compilation" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertTrue( e.getMessage().contains( "[2,3]" ) );
+        }
+        assertEquals( "other workers complete", 4, transport.compiled.size() );
+    }
+
+    public void testForkedWorkers()
+        throws Exception
+    {
+        final List<String> lines = Collections.synchronizedList( new ArrayList<String>() );
+        CompilationPipeline pipeline =
+            new CompilationPipeline( new ForkedPermutationTransport(), 2, new CompilerPhases(), new SystemStreamLog() );
+        pipeline.setConsole( new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                lines.add( line );
+            }
+        } );
+        File classes = new File( Worker.class.getProtectionDomain().getCodeSource().getLocation().toURI() );
+        List<String> command =
+            Arrays.asList( new File( System.getProperty( "java.home" ), "bin/java" ).getAbsolutePath(), "-classpath",
+                           classes.getAbsolutePath(), Worker.class.getName() );
+        try
+        {
+            pipeline.compilePermutations( "com.acme.App", 4, command );
+            fail( "worker exit status must fail the compilation" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "[2,3]" ) );
+            assertFalse( e.getMessage(), e.getMessage().contains( "0,1" ) );
+        }
+        assertTrue( lines.toString(),
+                    lines.contains( "[com.acme.App 0-1] Compiling permutations 0,1 of com.acme.App" ) );
+        assertTrue( lines.toString(),
+                    lines.contains( "[com.acme.App 2-3] Compiling permutations 2,3 of com.acme.App" ) );
+    }
+}
@@ -0,0 +1,67 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class CompilationSchedulerTest
+    extends TestCase
+{
+    public void testCpuBudget()
+    {
+        CompilationScheduler scheduler = new CompilationScheduler( 32, 0, 1024 );
+        assertEquals( 6, scheduler.getMaxForks( 6 ) );
+
+        Map<String, Integer> permutations = new LinkedHashMap<String, Integer>();
+        permutations.put( "com.acme.Small", 2 );
+        permutations.put( "com.acme.Big", 12 );
+        permutations.put( "com.acme.New", CompilationScheduler.UNKNOWN );
+        List<CompilationScheduler.Fork> plan = scheduler.plan( permutations );
+
+        assertEquals( "com.acme.New", plan.get( 0 ).getModule() );
+        assertEquals( 10, plan.get( 0 ).getLocalWorkers() );
+        assertEquals( "com.acme.Big", plan.get( 1 ).getModule() );
+        assertEquals( 10, plan.get( 1 ).getLocalWorkers() );
+        assertEquals( "com.acme.Small", plan.get( 2 ).getModule() );
+        assertEquals( 2, plan.get( 2 ).getLocalWorkers() );
+    }
+
+    public void testHeapBudget()
+    {
+        CompilationScheduler scheduler = new CompilationScheduler( 32, 4096, 1536 );
+        assertEquals( 2, scheduler.getMaxForks( 6 ) );
+
+        scheduler = new CompilationScheduler( 32, 1024, 1536 );
+        assertEquals( "at least one fork", 1, scheduler.getMaxForks( 6 ) );
+    }
+
+    public void testParseMemory()
+    {
+        assertEquals( 512, CompilationScheduler.parseMemory( "512m" ) );
+        assertEquals( 8192, CompilationScheduler.parseMemory( "8G" ) );
+        assertEquals( 0, CompilationScheduler.parseMemory( "lots" ) );
+        assertEquals( 1024, CompilationScheduler.getMaxHeap( "-Xmx512m -Xss1024k -Xmx1g" ) );
+        assertEquals( 0, CompilationScheduler.getMaxHeap( "-Xss1024k" ) );
+    }
+}
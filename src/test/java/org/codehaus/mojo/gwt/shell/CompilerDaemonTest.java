@@ -0,0 +1,198 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+public class CompilerDaemonTest
+    extends TestCase
+{
+    private File directory;
+
+    private CompilerDaemonClient client;
+
+    private final List<String> output = new ArrayList<String>();
+
+    private final StreamConsumer consumer = new StreamConsumer()
+    {
+        public void consumeLine( String line )
+        {
+            output.add( line );
+        }
+    };
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-compiler-daemon/" + getName() ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+        // daemons recycle after 2 builds
+        client = new CompilerDaemonClient( new SystemStreamLog(), directory, 30, 2 );
+    }
+
+    private static List<String> command( String classpath )
+    {
+        return Arrays.asList( new File( System.getProperty( "java.home" ), "bin/java" ).getPath(), "-classpath",
+                              classpath );
+    }
+
+    public void testRoundTrip()
+        throws Exception
+    {
+        List<String> command = command( System.getProperty( "java.class.path" ) );
+        final File stateFile = client.getStateFile( command );
+        final CompilerDaemon daemon = new CompilerDaemon( stateFile, 30, 2, new CompilerDaemon.CompilerTask()
+        {
+            public int compile( String[] args, PrintStream out )
+            {
+                out.println( "Compiling " + StringUtils.join( args, " " ) );
+                return args.length;
+            }
+        } );
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    daemon.serve();
+                }
+                catch ( IOException e )
+                {
+                    e.printStackTrace();
+                }
+            }
+        };
+        thread.start();
+        Properties state = null;
+        for ( int i = 0; i < 100 && state == null; i++ )
+        {
+            Thread.sleep( 100 );
+            state = CompilerDaemonClient.readState( stateFile );
+        }
+        assertNotNull( "daemon started", state );
+
+        assertNull( "request with a bad token is rejected", request( state, "bad-token", CompilerDaemon.PING ) );
+        assertEquals( CompilerDaemon.PONG, request( state, state.getProperty( "token" ), CompilerDaemon.PING ) );
+
+        assertEquals( 1, client.compile( command, Arrays.asList( "com.acme.Stub" ), consumer ) );
+        assertEquals( Arrays.asList( "Compiling com.acme.Stub" ), output );
+        assertTrue( thread.isAlive() );
+
+        assertEquals( 2, client.compile( command, Arrays.asList( "-draftCompile", "com.acme.Stub" ), consumer ) );
+        thread.join( 10000 );
+        assertFalse( "daemon recycled after max builds", thread.isAlive() );
+        assertFalse( stateFile.exists() );
+    }
+
+    public void testForkedDaemon()
+        throws Exception
+    {
+        List<String> command = command( System.getProperty( "java.class.path" ) );
+        File stateFile = client.getStateFile( command );
+
+        // runs the actual GWT compiler, that fails to find the module
+        assertEquals( 1, client.compile( command, Arrays.asList( "com.acme.Missing" ), consumer ) );
+        assertTrue( output.toString(), output.toString().contains( "com/acme/Missing.gwt.xml" ) );
+        assertNotNull( "daemon running", CompilerDaemonClient.readState( stateFile ) );
+
+        // reuses the running daemon, that then recycles
+        assertEquals( 1, client.compile( command, Arrays.asList( "com.acme.Missing" ), consumer ) );
+        assertNull( "recycled daemon", CompilerDaemonClient.readState( stateFile ) );
+    }
+
+    public void testClassesDirectoryChange()
+        throws Exception
+    {
+        File classes = new File( directory, "classes" );
+        File generator = new File( classes, "com/acme/rebind/Generator.class" );
+        generator.getParentFile().mkdirs();
+        FileUtils.fileWrite( generator.getPath(), "v1" );
+        File source = new File( classes, "com/acme/client/App.java" );
+        source.getParentFile().mkdirs();
+        FileUtils.fileWrite( source.getPath(), "class App {}" );
+        List<String> command = command( classes.getPath() );
+        File stateFile = client.getStateFile( command );
+
+        // sources are read again by each compilation
+        FileUtils.fileWrite( source.getPath(), "class App { int foo; }" );
+        assertEquals( stateFile, client.getStateFile( command ) );
+
+        FileUtils.fileWrite( generator.getPath(), "v2.0" );
+        assertFalse( "stale generator", stateFile.equals( client.getStateFile( command ) ) );
+    }
+
+    public void testUnsupportedSdk()
+        throws Exception
+    {
+        // GWT compiler is missing
+        List<String> command = command( new File( "target/classes" ).getAbsolutePath() );
+        try
+        {
+            client.compile( command, Arrays.asList( "com.acme.Stub" ), consumer );
+            fail( "daemon can't start" );
+        }
+        catch ( CompilerDaemonUnavailableException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "status " + CompilerDaemon.UNSUPPORTED ) );
+            assertTrue( e.getMessage(), e.getMessage().contains( "doesn't support the compiler daemon" ) );
+        }
+    }
+
+    /**
+     * @return the first line of the daemon answer
+     */
+    private static String request( Properties state, String token, String command )
+        throws IOException
+    {
+        Socket socket = new Socket( "127.0.0.1", Integer.parseInt( state.getProperty( "port" ) ) );
+        try
+        {
+            socket.setSoTimeout( 5000 );
+            PrintWriter writer = new PrintWriter( socket.getOutputStream() );
+            writer.println( token );
+            writer.println( command );
+            writer.flush();
+            return new BufferedReader( new InputStreamReader( socket.getInputStream() ) ).readLine();
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.codehaus.mojo.gwt.GwtModule;
+import org.codehaus.mojo.gwt.GwtModuleGraph;
+import org.codehaus.mojo.gwt.GwtModuleReader;
+import org.codehaus.mojo.gwt.utils.FingerprintManifest;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+
+public class CompilerInputsTest
+    extends TestCase
+{
+    private File basedir;
+
+    private File sources;
+
+    private File sdk;
+
+    private File generators;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        basedir = new File( "target/test-compiler-inputs/" + getName() ).getAbsoluteFile();
+        FileUtils.deleteDirectory( basedir );
+        sources = new File( basedir, "src/main/java" );
+        write( sources, "com/acme/App.gwt.xml", "<module><inherits name='com.google.gwt.core.Core'/></module>" );
+        write( sources, "com/acme/client/App.java", "class App {}" );
+        // GWT SDK read from a directory, as when working on GWT itself
+        sdk = new File( basedir, "gwt/user/src" );
+        write( sdk, "com/google/gwt/core/Core.gwt.xml", "<module/>" );
+        write( sdk, "com/google/gwt/core/client/GWT.java", "class GWT {}" );
+        generators = new File( basedir, "lib/generators.jar" );
+        writeJar( generators, "com/acme/rebind/Generator.class", "v1" );
+    }
+
+    private FingerprintManifest fingerprint()
+        throws Exception
+    {
+        FingerprintManifest fingerprint = FingerprintManifest.load( new File( basedir, "App.properties" ) );
+        new CompilerInputs( Collections.singleton( sources.getPath() ),
+                            Arrays.asList( new File( basedir, "target/classes" ), generators ) )
+            .register( fingerprint, GwtModuleGraph.build( "com.acme.App", new Reader() ) );
+        fingerprint.compute( 1 );
+        return fingerprint;
+    }
+
+    public void testSourceChange()
+        throws Exception
+    {
+        fingerprint().save();
+        assertTrue( fingerprint().isUpToDate() );
+
+        File source = new File( sources, "com/acme/client/App.java" );
+        FileUtils.fileWrite( source.getPath(), "class App { int foo; }" );
+        source.setLastModified( source.lastModified() + 60000 );
+        assertFalse( fingerprint().isUpToDate() );
+    }
+
+    public void testGeneratorJarChange()
+        throws Exception
+    {
+        fingerprint().save();
+
+        // not a module source jar, only provides a generator
+        writeJar( generators, "com/acme/rebind/Generator.class", "v2" );
+        generators.setLastModified( generators.lastModified() + 60000 );
+        assertFalse( fingerprint().isUpToDate() );
+    }
+
+    public void testSdkModuleChange()
+        throws Exception
+    {
+        fingerprint().save();
+
+        File source = new File( sdk, "com/google/gwt/core/client/GWT.java" );
+        FileUtils.fileWrite( source.getPath(), "class GWT { int foo; }" );
+        source.setLastModified( source.lastModified() + 60000 );
+        assertFalse( fingerprint().isUpToDate() );
+    }
+
+    private static void write( File root, String path, String content )
+        throws Exception
+    {
+        File file = new File( root, path );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getPath(), content );
+    }
+
+    private static void writeJar( File jar, String name, String content )
+        throws Exception
+    {
+        jar.getParentFile().mkdirs();
+        ZipOutputStream zip = new ZipOutputStream( new FileOutputStream( jar ) );
+        try
+        {
+            zip.putNextEntry( new ZipEntry( name ) );
+            zip.write( content.getBytes( "UTF-8" ) );
+            zip.closeEntry();
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    private class Reader
+        implements GwtModuleReader
+    {
+        public GwtModule readModule( String name )
+            throws GwtModuleReaderException
+        {
+            String path = name.replace( '.', '/' ) + ".gwt.xml";
+            for ( File root : Arrays.asList( sources, sdk ) )
+            {
+                File descriptor = new File( root, path );
+                if ( descriptor.isFile() )
+                {
+                    try
+                    {
+                        GwtModule module = new GwtModule( name, Xpp3DomBuilder.build(
+                            new StringReader( FileUtils.fileRead( descriptor ) ) ), this );
+                        module.setSourceFile( descriptor );
+                        return module;
+                    }
+                    catch ( Exception e )
+                    {
+                        throw new GwtModuleReaderException( "Failed to read " + descriptor, e );
+                    }
+                }
+            }
+            throw new GwtModuleReaderException( "No module " + name );
+        }
+
+        public List<String> getGwtModules()
+        {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class CompilerMetricsTest
+    extends TestCase
+{
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<metrics version=\"1\" >\n"
+        + " <module elapsed=\"7779\" >\n"
+        + "  <sources count=\"2\">\n"
+        + "   <source name=\"com/acme/client/App.java\" />\n"
+        + "   <source name=\"java/lang/Object.java\" />\n"
+        + "  </sources>\n"
+        + "  <types kind=\"initial\" count=\"3306\">\n"
+        + "  </types>\n"
+        + " </module>\n"
+        + " <precompilations>\n"
+        + "  <precompilation base=\"0\" ids=\"0,1\" elapsed=\"9578\" >\n"
+        + "   <types kind=\"ast\" count=\"139\">\n"
+        + "   </types>\n"
+        + "   <types kind=\"generated\" count=\"3\">\n"
+        + "   </types>\n"
+        + " </precompilation>\n"
+        + " </precompilations>\n"
+        + " <compilations>\n"
+        + "  <compilation  id=\"0\" elapsed=\"736\" totalElapsed=\"10330\"  description=\"user.agent=safari\">\n"
+        + "   <javascript size=\"15613\" fragments=\"2\">\n"
+        + "    <fragment initial=\"true\" size=\"15000\" />\n"
+        + "    <fragment size=\"613\" />\n"
+        + "   </javascript>\n"
+        + "  </compilation>\n"
+        + "  <compilation  id=\"1\" elapsed=\"396\" totalElapsed=\"11101\"  description=\"user.agent=gecko1_8\">\n"
+        + "   <javascript size=\"13089\" fragments=\"1\">\n"
+        + "    <fragment initial=\"true\" size=\"13089\" />\n"
+        + "   </javascript>\n"
+        + "  </compilation>\n"
+        + " </compilations>\n"
+        + "</metrics>\n";
+
+    private File basedir;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        basedir = new File( "target/test-metrics/" + getName() );
+        FileUtils.deleteDirectory( basedir );
+        basedir.mkdirs();
+    }
+
+    private CompilerMetrics read( String xml )
+        throws Exception
+    {
+        File file = new File( basedir, "compilerMetrics.xml" );
+        FileUtils.fileWrite( file.getPath(), "UTF-8", xml );
+        return CompilerMetrics.read( "com.acme.App", file );
+    }
+
+    public void testRead()
+        throws Exception
+    {
+        CompilerMetrics metrics = read( XML );
+        assertEquals( 11101, metrics.getCompileTime() );
+        assertEquals( 15000, metrics.getInitialDownloadSize() );
+        assertEquals( 2, metrics.getPermutations().size() );
+        CompilerMetrics.Permutation permutation = metrics.getPermutations().get( 0 );
+        assertEquals( 736, permutation.getElapsed() );
+        assertEquals( 15613, permutation.getSize() );
+        assertEquals( "user.agent=safari", permutation.getDescription() );
+    }
+
+    public void testRegression()
+        throws Exception
+    {
+        File file = new File( basedir, "history.json" );
+        CompilerMetricsHistory history = new CompilerMetricsHistory( file );
+        CompilerMetrics metrics = read( XML );
+        assertTrue( "no baseline", history.getRegressions( metrics, 10 ).isEmpty() );
+        history.append( metrics, 1 );
+
+        CompilerMetrics bigger = read( XML.replace( "size=\"15000\"", "size=\"17000\"" ) );
+        history = new CompilerMetricsHistory( file );
+        assertTrue( "within 20% threshold", history.getRegressions( bigger, 20 ).isEmpty() );
+        List<String> regressions = history.getRegressions( bigger, 10 );
+        assertEquals( 1, regressions.size() );
+        assertTrue( regressions.get( 0 ), regressions.get( 0 ).contains( "initial download size increased by 13%" ) );
+    }
+
+    public void testMedianBaseline()
+        throws Exception
+    {
+        File file = new File( basedir, "history.json" );
+        CompilerMetricsHistory history = new CompilerMetricsHistory( file );
+        history.append( read( XML ), 1 );
+        history.append( read( XML.replace( "size=\"15000\"", "size=\"30000\"" ) ), 2 );
+        history.append( read( XML ), 3 );
+
+        // compared to the median, not to the unusually big previous build
+        history = new CompilerMetricsHistory( file );
+        CompilerMetrics bigger = read( XML.replace( "size=\"15000\"", "size=\"17000\"" ) );
+        assertEquals( 1, history.getRegressions( bigger, 10 ).size() );
+        assertTrue( history.getRegressions( read( XML ), 10 ).isEmpty() );
+
+        for ( int i = 0; i < CompilerMetricsHistory.BASELINE_RUNS; i++ )
+        {
+            history.append( bigger, 4 + i );
+        }
+        assertTrue( "baseline follows lasting changes", history.getRegressions( bigger, 10 ).isEmpty() );
+    }
+}
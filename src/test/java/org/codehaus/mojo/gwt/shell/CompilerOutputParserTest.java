@@ -0,0 +1,130 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+public class CompilerOutputParserTest
+    extends TestCase
+{
+    private final List<String> output = new ArrayList<String>();
+
+    private final StreamConsumer consumer = new StreamConsumer()
+    {
+        public void consumeLine( String line )
+        {
+            output.add( line );
+        }
+    };
+
+    public void testCompilerPhases()
+    {
+        CompilerPhases phases = new CompilerPhases();
+        CompilerOutputParser parser = new CompilerOutputParser( null, phases, consumer, new SystemStreamLog() );
+        parser.parse( "Compiling module com.acme.App", 0 );
+        parser.parse( "   Rebinding com.acme.client.App", 1000 );
+        parser.parse( "      Invoking generator com.google.gwt.useragent.rebind.UserAgentGenerator", 2000 );
+        parser.parse( "         Generator returned type 'UserAgentAsserter_UserAgentPropertyImplSafari'", 2500 );
+        parser.parse( "   Assimilating generated source", 3000 );
+        parser.parse( "   Compiling 2 permutations", 4000 );
+        // two concurrent workers
+        parser.parse( "      Compiling permutation 0...", 4000 );
+        parser.parse( "      Process output", 4100 );
+        parser.parse( "         Compiling", 4100 );
+        parser.parse( "            Compiling permutation 1...", 4200 );
+        parser.parse( "   Compile of permutations succeeded", 7000 );
+        parser.parse( "Linking into /tmp/war/app", 7000 );
+        parser.parse( "   Link succeeded", 8000 );
+        parser.parse( "   Compilation succeeded -- 8.000s", 8000 );
+
+        assertEquals( 4000, phases.getDuration( "com.acme.App", CompilerPhases.PRECOMPILE ) );
+        assertEquals( 1000, phases.getDuration( "com.acme.App", CompilerPhases.GENERATORS ) );
+        assertEquals( 3000, phases.getDuration( "com.acme.App", CompilerPhases.PERMUTATIONS ) );
+        assertEquals( 1000, phases.getDuration( "com.acme.App", CompilerPhases.LINK ) );
+        Map<Integer, Long> permutations = phases.getPermutations( "com.acme.App" );
+        assertEquals( 2, permutations.size() );
+        assertEquals( 3000, permutations.get( 0 ).longValue() );
+        assertEquals( 2800, permutations.get( 1 ).longValue() );
+        assertEquals( 5, phases.format().size() );
+    }
+
+    public void testCompletedModules()
+    {
+        CompilerOutputParser parser =
+            new CompilerOutputParser( null, new CompilerPhases(), consumer, new SystemStreamLog() );
+        parser.parse( "Compiling module com.acme.App", 0 );
+        parser.parse( "   Link succeeded", 1000 );
+        parser.parse( "   Compilation succeeded -- 1.000s", 1000 );
+        parser.parse( "Compiling module com.acme.Other", 1000 );
+        parser.parse( "   [ERROR] Out of memory; to increase the amount of memory, use the -Xmx flag", 2000 );
+        assertEquals( Arrays.asList( "com.acme.App" ), parser.getCompletedModules() );
+    }
+
+    public void testPermutationCounts()
+    {
+        CompilerOutputParser parser =
+            new CompilerOutputParser( null, new CompilerPhases(), consumer, new SystemStreamLog() )
+            {
+                @Override
+                protected long now()
+                {
+                    return 0;
+                }
+            };
+        parser.started( null );
+        parser.parse( "Compiling module com.acme.AppDerived", 0 );
+        parser.parse( "   Compiling 4 permutations", 1000 );
+        parser.parse( "Compiling module com.acme.Other", 2000 );
+        parser.parse( "   Compiling 1 permutation", 3000 );
+        assertEquals( Integer.valueOf( 4 ), parser.getPermutationCount( "com.acme.AppDerived" ) );
+        assertEquals( Integer.valueOf( 1 ), parser.getPermutationCount( "com.acme.Other" ) );
+        assertNull( parser.getPermutationCount( "com.acme.App" ) );
+        assertEquals( Arrays.asList( Long.valueOf( 0 ), Long.valueOf( 2000 ) ),
+                      new ArrayList<Long>( parser.getModuleStarts().values() ) );
+    }
+
+    public void testConcurrentWorkers()
+    {
+        CompilerPhases phases = new CompilerPhases();
+        CompilerOutputParser worker1 =
+            new CompilerOutputParser( "com.acme.App", phases, consumer, new SystemStreamLog() );
+        CompilerOutputParser worker2 =
+            new CompilerOutputParser( "com.acme.App", phases, consumer, new SystemStreamLog() );
+        worker1.parse( "Compiling permutation 0...", 1000 );
+        worker2.parse( "Compiling permutation 1...", 1500 );
+        worker1.parse( "Permutation took 2000 ms", 3000 );
+        worker2.parse( "Permutation took 3000 ms", 4500 );
+        worker1.parse( "Compiling permutation 2...", 3000 );
+        worker1.parse( "Permutation took 500 ms", 3500 );
+        worker1.finish();
+        worker2.finish();
+
+        assertEquals( 3, phases.getPermutations( "com.acme.App" ).size() );
+        assertEquals( 3000, phases.getPermutations( "com.acme.App" ).get( 1 ).longValue() );
+    }
+}
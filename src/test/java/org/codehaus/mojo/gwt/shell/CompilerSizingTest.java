@@ -0,0 +1,117 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class CompilerSizingTest
+    extends TestCase
+{
+    private File root;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        root = new File( "target/test-limits/" + getName() );
+        FileUtils.deleteDirectory( root );
+        new File( root, "sys/fs/cgroup/cpu" ).mkdirs();
+        new File( root, "sys/fs/cgroup/memory" ).mkdirs();
+        new File( root, "proc/self" ).mkdirs();
+        write( "proc/meminfo", "MemTotal:       65536000 kB\nMemAvailable:   32768000 kB\n" );
+    }
+
+    private void write( String path, String content )
+        throws Exception
+    {
+        FileUtils.fileWrite( new File( root, path ).getPath(), content );
+    }
+
+    public void testCgroupV2()
+        throws Exception
+    {
+        write( "sys/fs/cgroup/cpu.max", "250000 100000\n" );
+        write( "sys/fs/cgroup/memory.max", "4294967296\n" );
+        ResourceLimits limits = new ResourceLimits( root, 32 );
+        assertEquals( 3, limits.getProcessors() );
+        assertEquals( 4096, limits.getMemory() );
+    }
+
+    public void testCgroupV1Unlimited()
+        throws Exception
+    {
+        write( "sys/fs/cgroup/cpu/cpu.cfs_quota_us", "-1\n" );
+        write( "sys/fs/cgroup/cpu/cpu.cfs_period_us", "100000\n" );
+        write( "sys/fs/cgroup/memory/memory.limit_in_bytes", "9223372036854771712\n" );
+        ResourceLimits limits = new ResourceLimits( root, 8 );
+        assertEquals( 8, limits.getProcessors() );
+        assertEquals( 32000, limits.getMemory() );
+    }
+
+    public void testNestedCgroupV2()
+        throws Exception
+    {
+        write( "proc/self/cgroup", "0::/ci.slice/job-42/build\n" );
+        new File( root, "sys/fs/cgroup/ci.slice/job-42/build" ).mkdirs();
+        write( "sys/fs/cgroup/cpu.max", "max 100000\n" );
+        write( "sys/fs/cgroup/memory.max", "max\n" );
+        write( "sys/fs/cgroup/ci.slice/job-42/cpu.max", "200000 100000\n" );
+        write( "sys/fs/cgroup/ci.slice/job-42/memory.max", "2147483648\n" );
+        write( "sys/fs/cgroup/ci.slice/job-42/build/memory.max", "max\n" );
+        ResourceLimits limits = new ResourceLimits( root, 32 );
+        assertEquals( "limit of a parent cgroup applies", 2, limits.getProcessors() );
+        assertEquals( 2048, limits.getMemory() );
+    }
+
+    public void testNestedCgroupV1()
+        throws Exception
+    {
+        write( "proc/self/cgroup", "5:memory:/system.slice/runner.service\n4:cpu,cpuacct:/system.slice\n0::/\n" );
+        new File( root, "sys/fs/cgroup/memory/system.slice/runner.service" ).mkdirs();
+        write( "sys/fs/cgroup/memory/memory.limit_in_bytes", "9223372036854771712\n" );
+        write( "sys/fs/cgroup/memory/system.slice/runner.service/memory.limit_in_bytes", "1073741824\n" );
+        new File( root, "sys/fs/cgroup/cpu/system.slice" ).mkdirs();
+        write( "sys/fs/cgroup/cpu/system.slice/cpu.cfs_quota_us", "400000\n" );
+        write( "sys/fs/cgroup/cpu/system.slice/cpu.cfs_period_us", "100000\n" );
+        ResourceLimits limits = new ResourceLimits( root, 16 );
+        assertEquals( 4, limits.getProcessors() );
+        assertEquals( 1024, limits.getMemory() );
+    }
+
+    public void testSizing()
+    {
+        // memory bound : ( 2048 - 256 ) / 512 = 3 workers
+        CompilerSizing sizing = new CompilerSizing( 16, 2048, 12, 0 );
+        assertEquals( 3, sizing.getLocalWorkers() );
+        assertEquals( (long) ( ( 256 + 3 * 512 ) * 0.8 ), sizing.getMaxHeap() );
+
+        // permutations bound
+        sizing = new CompilerSizing( 16, 32000, 4, 300 );
+        assertEquals( 4, sizing.getLocalWorkers() );
+
+        // 1024MB retained heap, with 50% room : ( 1024 * 1.5 / 0.8 - 256 ) / 4
+        assertEquals( 416, CompilerSizing.learnWorkerMemory( 1024, 4 ) );
+        assertEquals( 1536, new CompilerSizing( 4, 0, 12, 416 ).getMaxHeap() );
+    }
+}
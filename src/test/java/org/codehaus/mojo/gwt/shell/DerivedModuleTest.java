@@ -0,0 +1,81 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+
+public class DerivedModuleTest
+    extends TestCase
+{
+    public void testCollapseAllProperties()
+        throws Exception
+    {
+        DerivedModule module = new DerivedModule( "com.acme.App", "app", "Watch" ).collapseAllProperties();
+        assertEquals( "com.acme.AppWatch", module.getName() );
+        String xml = module.toXml();
+        assertTrue( xml, xml.contains( "<module rename-to=\"app\">" ) );
+        assertTrue( xml, xml.contains( "<inherits name=\"com.acme.App\"/>" ) );
+        assertTrue( xml, xml.contains( "<collapse-all-properties/>" ) );
+    }
+
+    public void testSetProperties()
+        throws Exception
+    {
+        DerivedModule module = new DerivedModule( "com.acme.App", "app", "Dev" )
+            .setProperty( "user.agent", "gecko1_8,safari" ).setProperty( "locale", "en" ).collapseAllProperties();
+        String xml = module.toXml();
+        assertTrue( xml, xml.contains( "<set-property name=\"user.agent\" value=\"gecko1_8,safari\"/>" ) );
+        assertTrue( xml, xml.contains( "<set-property name=\"locale\" value=\"en\"/>" ) );
+        assertEquals( "Dev user.agent=gecko1_8,safari locale=en collapse-all-properties", module.getDescription() );
+    }
+
+    public void testEscaping()
+        throws Exception
+    {
+        DerivedModule module = new DerivedModule( "com.acme.App", "app", "Dev" ).setProperty( "user.agent", "a\"<&" );
+        Xpp3Dom xml = Xpp3DomBuilder.build( new StringReader( module.toXml() ) );
+        assertEquals( "a\"<&", xml.getChild( "set-property" ).getAttribute( "value" ) );
+    }
+
+    public void testWriteUnchanged()
+        throws Exception
+    {
+        File directory = new File( "target/test-derived-modules" );
+        FileUtils.deleteDirectory( directory );
+        DerivedModule module = new DerivedModule( "com.acme.App", "app", "Watch" );
+        File file = module.write( directory );
+        assertEquals( new File( directory, "com/acme/AppWatch.gwt.xml" ), file );
+        file.setLastModified( file.lastModified() - 60000 );
+        long lastModified = file.lastModified();
+
+        module.write( directory );
+        assertEquals( "unchanged module must not be rewritten", lastModified, file.lastModified() );
+
+        module.collapseAllProperties().write( directory );
+        assertTrue( FileUtils.fileRead( file ).contains( "collapse-all-properties" ) );
+    }
+}
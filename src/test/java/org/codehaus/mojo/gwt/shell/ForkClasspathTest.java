@@ -0,0 +1,107 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarFile;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+
+public class ForkClasspathTest
+    extends TestCase
+{
+    private File directory;
+
+    private String classpath;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-fork-classpath/" + getName() );
+        FileUtils.deleteDirectory( directory );
+        File lib = new File( directory, "lib.jar" );
+        lib.getParentFile().mkdirs();
+        FileUtils.fileWrite( lib.getPath(), "" );
+        classpath = lib.getAbsolutePath() + File.pathSeparator + new File( directory, "classes" ).getAbsolutePath();
+    }
+
+    private List<String> command()
+    {
+        return Arrays.asList( "java", "-Xmx512m", "-classpath", classpath, "com.acme.Main" );
+    }
+
+    public void testArgumentFile()
+        throws Exception
+    {
+        ForkClasspath fork = new ForkClasspath( directory, ForkClasspath.ARGFILE, new SystemStreamLog() );
+        List<String> command = fork.compact( command(), false );
+        assertEquals( 4, command.size() );
+        assertEquals( "com.acme.Main", command.get( 3 ) );
+        File file = new File( command.get( 2 ).substring( 1 ) );
+        String expected = "-classpath \"" + classpath.replace( "\\", "\\\\" ) + "\"\n";
+        assertEquals( expected, FileUtils.fileRead( file, "UTF-8" ) );
+
+        assertEquals( "same classpath must reuse the file", command, fork.compact( command(), false ) );
+    }
+
+    public void testManifestJar()
+        throws Exception
+    {
+        ForkClasspath fork = new ForkClasspath( directory, ForkClasspath.JAR, new SystemStreamLog() );
+        assertEquals( "manifest jar hides the classpath to the GWT compiler", command(),
+                      fork.compact( command(), false ) );
+
+        List<String> command = fork.compact( command(), true );
+        JarFile jar = new JarFile( command.get( 3 ) );
+        try
+        {
+            String path = jar.getManifest().getMainAttributes().getValue( "Class-Path" );
+            String[] entries = path.split( " " );
+            assertEquals( 2, entries.length );
+            assertTrue( entries[0].endsWith( "/lib.jar" ) );
+            assertTrue( "directories must end with a slash", entries[1].endsWith( "/classes/" ) );
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+
+    public void testInline()
+        throws Exception
+    {
+        ForkClasspath fork = new ForkClasspath( directory, ForkClasspath.INLINE, new SystemStreamLog() );
+        assertEquals( command(), fork.compact( command(), true ) );
+    }
+
+    public void testParseVersion()
+    {
+        assertEquals( 8, ForkClasspath.parseVersion( "1.8.0_392" ) );
+        assertEquals( 17, ForkClasspath.parseVersion( "17.0.1" ) );
+        assertEquals( 11, ForkClasspath.parseVersion( "11" ) );
+        assertEquals( 0, ForkClasspath.parseVersion( "unknown" ) );
+    }
+}
@@ -0,0 +1,127 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class ForkTelemetryTest
+    extends TestCase
+{
+    private File directory;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-telemetry/" + getName() );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+    }
+
+    public void testUnifiedGcLog()
+        throws Exception
+    {
+        File log = new File( directory, "gc.log" );
+        FileUtils.fileWrite( log.getPath(), "[0.011s][info][gc] Using G1\n"
+            + "[0.512s][info][gc] GC(0) Pause Young (Normal) (G1 Evacuation Pause) 24M->3M(256M) 3.500ms\n"
+            + "[0.900s][info][gc] GC(1) Concurrent Mark Cycle 12.000ms\n"
+            + "[1.234s][info][gc] GC(2) Pause Full (System.gc()) 10M->2M(20M) 10.250ms\n" );
+        ForkTelemetry telemetry = new ForkTelemetry( "com.google.gwt.dev.Compiler", "com.acme.App" );
+        telemetry.readGcLog( log );
+        assertEquals( 2, telemetry.getGcPauses() );
+        assertEquals( 14, telemetry.getGcPauseTime() );
+    }
+
+    public void testLegacyGcLog()
+        throws Exception
+    {
+        File log = new File( directory, "gc.log" );
+        FileUtils.fileWrite( log.getPath(), "0.512: [GC (Allocation Failure)  32768K->1234K(125952K), 0.0045000 secs]\n"
+            + "1.234: [Full GC (Ergonomics)  1234K->1000K(125952K), 0,1000000 secs]\n" );
+        ForkTelemetry telemetry = new ForkTelemetry( "com.google.gwt.dev.Compiler", null );
+        telemetry.readGcLog( log );
+        assertEquals( 2, telemetry.getGcPauses() );
+        assertEquals( 105, telemetry.getGcPauseTime() );
+    }
+
+    public void testGcLogOption()
+        throws Exception
+    {
+        String java = System.getProperty( "java.home" ) + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ForkTelemetry( "Main", null )
+            .enableGcLog( Arrays.asList( java, "-classpath", "lib.jar" ), directory );
+        assertEquals( 4, command.size() );
+        String option = command.get( 1 );
+        assertTrue( option, option.startsWith( "-Xlog:gc:file=" ) || option.startsWith( "-Xloggc:" ) );
+    }
+
+    public void testProcess()
+        throws Exception
+    {
+        if ( !new File( "/proc/self/stat" ).exists() )
+        {
+            return;
+        }
+        ForkTelemetry telemetry = new ForkTelemetry( "sh", null );
+        Process process =
+            new ProcessBuilder( "sh", "-c", "i=0; while [ $i -lt 500000 ]; do i=$((i+1)); done; exit 3" ).start();
+        telemetry.started( process );
+        process.waitFor();
+        telemetry.terminated( process );
+
+        assertEquals( 3, telemetry.getStatus() );
+        assertTrue( telemetry.getWallTime() > 0 );
+        if ( telemetry.getWallTime() > 1000 )
+        {
+            assertTrue( telemetry.getUserCpuTime() + telemetry.getSystemCpuTime() > 0 );
+            assertTrue( telemetry.getPeakMemory() >= 0 );
+        }
+    }
+
+    public void testReport()
+        throws Exception
+    {
+        ForkTelemetryReport report = new ForkTelemetryReport( "compile" );
+        assertTrue( report.isEmpty() );
+        ForkTelemetry first = new ForkTelemetry( "com.google.gwt.dev.Precompile", "com.acme.App" );
+        ForkTelemetry second = new ForkTelemetry( "com.google.gwt.dev.Link", "com.acme.App" );
+        ForkTelemetry other = new ForkTelemetry( "com.google.gwt.dev.Compiler", "com.acme.Other" );
+        report.add( first );
+        report.add( second );
+        report.add( other );
+
+        assertEquals( Arrays.asList( "com.acme.App", "com.acme.Other" ),
+                      Arrays.asList( report.getTotals().keySet().toArray() ) );
+        assertEquals( 2, report.getTotals().get( "com.acme.App" ).getForks() );
+
+        File file = new File( directory, "compile.json" );
+        report.write( file );
+        String json = FileUtils.fileRead( file, "UTF-8" );
+        assertTrue( json, json.startsWith( "{\"goal\":\"compile\"" ) );
+        assertTrue( json, json.contains( "{\"module\":\"com.acme.App\",\"forks\":2," ) );
+        assertTrue( json, json.contains( "\"command\":\"com.google.gwt.dev.Link\"" ) );
+    }
+}
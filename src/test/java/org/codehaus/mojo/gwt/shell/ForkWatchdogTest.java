@@ -0,0 +1,195 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.CommandLineTimeOutException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+public class ForkWatchdogTest
+    extends TestCase
+{
+    private File directory;
+
+    private String java;
+
+    private StreamConsumer out = new CommandLineUtils.StringStreamConsumer();
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-diagnostics/" + getName() ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+        java = System.getProperty( "java.home" ) + File.separator + "bin" + File.separator + "java";
+    }
+
+    public void testHang()
+        throws Exception
+    {
+        if ( !new File( "/bin/sleep" ).exists() )
+        {
+            return;
+        }
+        Commandline cmd = new Commandline();
+        cmd.setExecutable( "sleep" );
+        cmd.createArg().setValue( "30" );
+        ForkWatchdog watchdog =
+            new ForkWatchdog( directory, "sleep", null, new SystemStreamLog() ).setHangTimeout( 1 );
+        long start = System.currentTimeMillis();
+        try
+        {
+            new ForkedProcessRunner( cmd, out, out ).setWatchdog( watchdog ).run( 0 );
+            fail( "hung process must be killed" );
+        }
+        catch ( CommandLineTimeOutException e )
+        {
+            assertTrue( System.currentTimeMillis() - start < 10000 );
+            assertTrue( watchdog.getReason(), watchdog.getReason().startsWith( "no output" ) );
+        }
+    }
+
+    public void testOutputIsProgress()
+        throws Exception
+    {
+        if ( !new File( "/bin/sh" ).exists() )
+        {
+            return;
+        }
+        Commandline cmd = new Commandline();
+        cmd.setExecutable( "sh" );
+        cmd.createArg().setValue( "-c" );
+        cmd.createArg().setValue( "for i in 1 2 3 4 5 6; do echo $i; sleep 0.3; done" );
+        ForkWatchdog watchdog =
+            new ForkWatchdog( directory, "sh", null, new SystemStreamLog() ).setHangTimeout( 1 );
+        assertEquals( 0, new ForkedProcessRunner( cmd, out, out ).setWatchdog( watchdog ).run( 0 ) );
+        assertNull( watchdog.getReason() );
+    }
+
+    public void testDiagnostics()
+        throws Exception
+    {
+        if ( !new File( new File( java ).getParentFile(), "jcmd" ).isFile() )
+        {
+            return;
+        }
+        Commandline cmd = new Commandline();
+        cmd.setExecutable( java );
+        cmd.createArg().setValue( "-classpath" );
+        cmd.createArg().setValue( new File( "target/test-classes" ).getAbsolutePath() );
+        cmd.createArg().setValue( Sleeper.class.getName() );
+        ForkWatchdog watchdog =
+            new ForkWatchdog( directory, "Sleeper", java, new SystemStreamLog() ).setHangTimeout( 2 );
+        try
+        {
+            new ForkedProcessRunner( cmd, out, out ).setWatchdog( watchdog ).run( 0 );
+            fail( "hung process must be killed" );
+        }
+        catch ( CommandLineTimeOutException e )
+        {
+            String[] files = directory.list();
+            assertEquals( 2, files.length );
+            for ( String file : files )
+            {
+                String content = FileUtils.fileRead( new File( directory, file ) );
+                if ( file.endsWith( "-threads.txt" ) )
+                {
+                    assertTrue( content, content.contains( Sleeper.class.getName() ) );
+                }
+                else
+                {
+                    assertTrue( file, file.endsWith( "-histogram.txt" ) );
+                    assertTrue( content, content.contains( "java.lang.String" ) );
+                }
+            }
+        }
+    }
+
+    public void testOutOfMemoryDumpPath()
+    {
+        ForkWatchdog watchdog = new ForkWatchdog( directory, "Compiler", java, new SystemStreamLog() );
+        List<String> command = watchdog.addJvmArgs( Arrays.asList( java, "-Xmx512m" ) );
+        assertEquals( "-XX:+HeapDumpOnOutOfMemoryError", command.get( 1 ) );
+        assertTrue( command.get( 2 ), command.get( 2 ).startsWith( "-XX:HeapDumpPath=" + directory ) );
+    }
+
+    public void testOneDumpPerModule()
+        throws Exception
+    {
+        File previous = new File( directory, "Compiler-com.acme.App-oom.hprof" );
+        directory.mkdirs();
+        FileUtils.fileWrite( previous.getPath(), "previous dump" );
+
+        ForkWatchdog watchdog =
+            new ForkWatchdog( directory, "Compiler", java, new SystemStreamLog() ).forModule( "com.acme.App" );
+        List<String> command = watchdog.addJvmArgs( Arrays.asList( java, "-Xmx512m" ) );
+        assertEquals( "-XX:HeapDumpPath=" + previous.getPath(), command.get( 2 ) );
+        // the JVM doesn't overwrite an existing dump
+        assertFalse( previous.exists() );
+    }
+
+    public void testLargeDumpNotRead()
+        throws Exception
+    {
+        final List<String> warnings = new ArrayList<String>();
+        ForkWatchdog watchdog = new ForkWatchdog( directory, "Compiler", java, new SystemStreamLog()
+        {
+            public void warn( CharSequence content )
+            {
+                warnings.add( content.toString() );
+            }
+        } ).setHistogramMaxSize( 1 );
+        List<String> command = watchdog.addJvmArgs( Arrays.asList( java ) );
+        File dump = new File( command.get( 2 ).substring( "-XX:HeapDumpPath=".length() ) );
+        RandomAccessFile file = new RandomAccessFile( dump, "rw" );
+        try
+        {
+            file.setLength( 2 << 20 );
+        }
+        finally
+        {
+            file.close();
+        }
+
+        watchdog.terminated( null );
+        assertEquals( warnings.toString(), 2, warnings.size() );
+        assertTrue( warnings.get( 1 ), warnings.get( 1 ).contains( "larger than 1MB" ) );
+    }
+
+    public static class Sleeper
+    {
+        public static void main( String[] args )
+            throws InterruptedException
+        {
+            Thread.sleep( 60000 );
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+public class ForkedProcessConsoleTest
+    extends TestCase
+{
+    private final List<String> infos = new ArrayList<String>();
+
+    private final List<String> errors = new ArrayList<String>();
+
+    private final SystemStreamLog log = new SystemStreamLog()
+    {
+        @Override
+        public void info( CharSequence content )
+        {
+            synchronized ( infos )
+            {
+                infos.add( content.toString() );
+            }
+        }
+
+        @Override
+        public void warn( CharSequence content )
+        {
+            error( content );
+        }
+
+        @Override
+        public void error( CharSequence content )
+        {
+            synchronized ( errors )
+            {
+                errors.add( content.toString() );
+            }
+        }
+    };
+
+    public void testAllLinesInOrder()
+    {
+        ForkedProcessConsole console = new ForkedProcessConsole( log, 0, 10 );
+        StreamConsumer out = console.getOut();
+        for ( int i = 0; i < 100; i++ )
+        {
+            out.consumeLine( "line " + i );
+        }
+        console.flush();
+        // bounded buffer may drop lines, but never reorders them
+        int last = -1;
+        for ( String line : infos )
+        {
+            if ( line.startsWith( "line " ) )
+            {
+                int i = Integer.parseInt( line.substring( 5 ) );
+                assertTrue( i > last );
+                last = i;
+            }
+        }
+        assertEquals( 99, last );
+    }
+
+    public void testRateLimit()
+    {
+        ForkedProcessConsole console = new ForkedProcessConsole( log, 10, 100000 );
+        console.setHint( "target/gwt-logs" );
+        StreamConsumer out = console.getOut();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            out.consumeLine( "line " + i );
+        }
+        out.consumeLine( "   [WARN] something to check" );
+        console.getErr().consumeLine( "Exception in thread main" );
+        console.flush();
+
+        assertTrue( "rate limit not applied: " + infos.size(), infos.size() < 100 );
+        assertTrue( infos.get( infos.size() - 1 ).contains( "lines not displayed, full output in target/gwt-logs" ) );
+        assertEquals( 2, errors.size() );
+    }
+
+    public void testLevelFromLogTypePrefix()
+    {
+        ForkedProcessConsole console = new ForkedProcessConsole( log, 0, 10 );
+        StreamConsumer out = console.getOut();
+        out.consumeLine( "Compiling module com.example.App" );
+        out.consumeLine( "   [WARN] Warnings in 'Foo.java'" );
+        out.consumeLine( "[ERROR] Hint: Check the inheritance chain" );
+        out.consumeLine( "      [INFO] message quoting [ERROR] and [WARN]" );
+        console.flush();
+
+        assertEquals( 2, errors.size() );
+        assertEquals( 2, infos.size() );
+    }
+}
@@ -0,0 +1,84 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class GcHeapLogTest
+    extends TestCase
+{
+    private File directory;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-heap/" + getName() );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+    }
+
+    public void testUnifiedGcLog()
+        throws Exception
+    {
+        File log = new File( directory, "gc.log" );
+        FileUtils.fileWrite( log.getPath(), "[0.011s][info][gc] Using G1\n"
+            + "[0.512s][info][gc] GC(0) Pause Young (Normal) (G1 Evacuation Pause) 240M->200M(1024M) 3.500ms\n"
+            + "[1.000s][info][gc] GC(1) Pause Young (Mixed) (G1 Evacuation Pause) 700M->300M(1024M) 5.000ms\n"
+            + "[1.500s][info][gc] GC(2) Pause Young (Normal) (G1 Evacuation Pause) 900M->800M(1024M) 3.500ms\n"
+            + "[3.000s][info][gc] GC(3) Pause Young (Normal) (G1 Evacuation Pause) 900M->600M(1024M) 3.500ms\n" );
+        GcHeapLog heap = new GcHeapLog();
+        heap.read( log );
+        assertFalse( heap.isEmpty() );
+        assertEquals( "young collections leave old garbage", 300, heap.getLiveHeap( 0, Long.MAX_VALUE ) );
+        assertEquals( "no old collection in range", 600, heap.getLiveHeap( 2000, Long.MAX_VALUE ) );
+        assertEquals( 0, heap.getLiveHeap( 0, 500 ) );
+    }
+
+    public void testLegacyGcLog()
+        throws Exception
+    {
+        File log = new File( directory, "gc.log" );
+        FileUtils.fileWrite( log.getPath(), ""
+            + "0.512: [GC (Allocation Failure)  327680K->204800K(1048576K), 0.0045 secs]\n"
+            + "1.234: [Full GC (Ergonomics)  819200K->102400K(1048576K), 0,1000000 secs]\n" );
+        GcHeapLog heap = new GcHeapLog();
+        heap.read( log );
+        assertEquals( 100, heap.getLiveHeap( 0, Long.MAX_VALUE ) );
+        assertEquals( 200, heap.getLiveHeap( 0, 1000 ) );
+    }
+
+    public void testJvmArg()
+        throws Exception
+    {
+        String java = System.getProperty( "java.home" ) + File.separator + "bin" + File.separator + "java";
+        GcHeapLog heap = new GcHeapLog();
+        String option = heap.getJvmArg( java, directory );
+        assertTrue( option, option.startsWith( "-Xlog:gc:file=" ) || option.startsWith( "-Xloggc:" ) );
+        assertEquals( 1, directory.list().length );
+        heap.terminated( null );
+        assertEquals( "log file deleted", 0, directory.list().length );
+        assertTrue( heap.isEmpty() );
+    }
+}
@@ -0,0 +1,67 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class I18NBatchRunnerTest
+    extends TestCase
+{
+    public void testBatch()
+        throws Exception
+    {
+        File basedir = new File( "target/test-i18n-batch" );
+        FileUtils.deleteDirectory( basedir );
+        File resources = new File( basedir, "resources" );
+        new File( resources, "com/acme" ).mkdirs();
+        FileUtils.fileWrite( new File( resources, "com/acme/Labels.properties" ).getPath(), "title=Title" );
+        FileUtils.fileWrite( new File( resources, "com/acme/Messages.properties" ).getPath(), "hello=Hello {0}" );
+        File out = new File( basedir, "generated" );
+        out.mkdirs();
+
+        // I18NSync looks for bundles with the context classloader
+        Thread thread = Thread.currentThread();
+        ClassLoader context = thread.getContextClassLoader();
+        thread.setContextClassLoader( new URLClassLoader( new URL[] { resources.toURI().toURL() }, context ) );
+        try
+        {
+            int failures = new I18NBatchRunner( out, 2 ).run(
+                Arrays.asList( I18NBatchRunner.CONSTANTS + ":com.acme.Labels",
+                               I18NBatchRunner.MESSAGES + ":com.acme.Messages",
+                               I18NBatchRunner.MESSAGES + ":com.acme.Missing" ) );
+            assertEquals( 1, failures );
+        }
+        finally
+        {
+            thread.setContextClassLoader( context );
+        }
+        String labels = FileUtils.fileRead( new File( out, "com/acme/Labels.java" ) );
+        assertTrue( labels.contains( "extends com.google.gwt.i18n.client.Constants" ) );
+        String messages = FileUtils.fileRead( new File( out, "com/acme/Messages.java" ) );
+        assertTrue( messages.contains( "String hello(String arg0);" ) );
+    }
+}
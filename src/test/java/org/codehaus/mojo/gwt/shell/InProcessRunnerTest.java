@@ -0,0 +1,148 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+public class InProcessRunnerTest
+    extends TestCase
+{
+    private final List<String> out = new ArrayList<String>();
+
+    private final List<String> err = new ArrayList<String>();
+
+    private int run( String... args )
+        throws InProcessUnsupportedException
+    {
+        List<File> classpath = Arrays.asList( new File( "target/test-classes" ).getAbsoluteFile() );
+        return new InProcessRunner().run( classpath, Tool.class.getName(), Arrays.asList( args ), consumer( out ),
+                                          consumer( err ) );
+    }
+
+    private static StreamConsumer consumer( final List<String> lines )
+    {
+        return new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                lines.add( line );
+            }
+        };
+    }
+
+    public void testOutputCapture()
+    {
+        try
+        {
+            assertEquals( 0, run( "hello", "", "world" ) );
+        }
+        catch ( InProcessUnsupportedException e )
+        {
+            // JVM doesn't allow to trap System.exit, tools are forked
+            return;
+        }
+        assertEquals( Arrays.asList( "hello", "", "world" ), out );
+        assertTrue( err.isEmpty() );
+    }
+
+    public void testExitTrapped()
+    {
+        try
+        {
+            assertEquals( 3, run( "exit" ) );
+        }
+        catch ( InProcessUnsupportedException e )
+        {
+            return;
+        }
+        assertEquals( Arrays.asList( "exit" ), out );
+        assertEquals( "exit not trapped anymore", null, System.getSecurityManager() );
+    }
+
+    public void testMissingTool()
+    {
+        try
+        {
+            new InProcessRunner().run( new ArrayList<File>(), "com.acme.Missing", new ArrayList<String>(),
+                                       consumer( out ), consumer( err ) );
+            fail( "missing tool must be forked" );
+        }
+        catch ( InProcessUnsupportedException e )
+        {
+            // expected
+        }
+    }
+
+    public void testExitTrapSupport()
+    {
+        assertTrue( InProcessRunner.isExitTrapSupported( "1.6" ) );
+        assertTrue( InProcessRunner.isExitTrapSupported( "17" ) );
+        assertFalse( InProcessRunner.isExitTrapSupported( "18" ) );
+        assertFalse( InProcessRunner.isExitTrapSupported( "21" ) );
+    }
+
+    public void testClassLoaderCache()
+        throws Exception
+    {
+        File jar = new File( "target/test-in-process/tool.jar" ).getAbsoluteFile();
+        jar.getParentFile().mkdirs();
+        FileUtils.fileWrite( jar.getPath(), "v1" );
+        List<File> classpath = Arrays.asList( jar );
+        ClassLoader loader = InProcessRunner.getClassLoader( classpath );
+        assertSame( loader, InProcessRunner.getClassLoader( classpath ) );
+
+        FileUtils.fileWrite( jar.getPath(), "v2.0" );
+        ClassLoader reloaded = InProcessRunner.getClassLoader( classpath );
+        assertNotSame( "changed archive", loader, reloaded );
+
+        for ( int i = 0; i < InProcessRunner.MAX_LOADERS; i++ )
+        {
+            InProcessRunner.getClassLoader( Arrays.asList( new File( jar.getParentFile(), i + ".jar" ) ) );
+        }
+        assertNotSame( "least recently used classloader is dropped", reloaded,
+                       InProcessRunner.getClassLoader( classpath ) );
+    }
+
+    /**
+     * A command line tool that prints its arguments and exits on "exit"
+     */
+    public static class Tool
+    {
+        public static void main( String[] args )
+        {
+            for ( String arg : args )
+            {
+                System.out.println( arg );
+                if ( "exit".equals( arg ) )
+                {
+                    System.exit( 3 );
+                }
+            }
+        }
+    }
+}
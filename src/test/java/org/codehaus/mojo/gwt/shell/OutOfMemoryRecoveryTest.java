@@ -0,0 +1,63 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+public class OutOfMemoryRecoveryTest
+    extends TestCase
+{
+    public void testHalveWorkersThenRaiseHeap()
+    {
+        OutOfMemoryRecovery recovery = new OutOfMemoryRecovery( 4, 1024, 2048, 5 );
+        assertFalse( recovery.isAdjusted() );
+        assertTrue( recovery.next() );
+        assertEquals( 2, recovery.getLocalWorkers() );
+        assertTrue( recovery.next() );
+        assertEquals( 1, recovery.getLocalWorkers() );
+        assertFalse( recovery.isHeapRaised() );
+        assertTrue( recovery.next() );
+        assertEquals( 1536, recovery.getMaxHeap() );
+        assertTrue( recovery.next() );
+        assertEquals( "heap is capped", 2048, recovery.getMaxHeap() );
+        assertFalse( "nothing left to adjust", recovery.next() );
+        assertEquals( "-localWorkers 1 -Xmx2048m", recovery.toString() );
+    }
+
+    public void testRetries()
+    {
+        OutOfMemoryRecovery recovery = new OutOfMemoryRecovery( 8, 0, 0, 1 );
+        assertTrue( recovery.next() );
+        assertFalse( recovery.next() );
+        assertEquals( 4, recovery.getLocalWorkers() );
+        assertEquals( 0, recovery.getMaxHeap() );
+    }
+
+    public void testRestore()
+    {
+        OutOfMemoryRecovery recovery = new OutOfMemoryRecovery( 4, 1024, 2048, 2 );
+        recovery.restore( 2, 4096 );
+        assertEquals( 2, recovery.getLocalWorkers() );
+        assertEquals( "heap beyond ceiling is ignored", 1024, recovery.getMaxHeap() );
+        recovery.restore( 0, 1536 );
+        assertEquals( 1536, recovery.getMaxHeap() );
+        assertTrue( recovery.isAdjusted() );
+    }
+}
@@ -0,0 +1,113 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.mojo.gwt.GwtModule;
+import org.codehaus.mojo.gwt.GwtModuleGraph;
+import org.codehaus.mojo.gwt.GwtModuleReader;
+import org.codehaus.mojo.gwt.PermutationEstimate;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.FileUtils;
+
+public class PermutationForecastTest
+    extends TestCase
+{
+    private CompilationHistory history;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        File directory = new File( "target/test-forecast" );
+        FileUtils.deleteDirectory( directory );
+        history = new CompilationHistory( new File( directory, CompilationHistory.FILE_NAME ) );
+    }
+
+    public void testDerivedModuleEstimate()
+        throws Exception
+    {
+        PermutationEstimate estimate = estimate( "gecko1_8,safari", "en,fr" );
+        assertEquals( "com.acme.AppDev", estimate.getModule() );
+        assertEquals( 4, estimate.getPermutations() );
+        assertFalse( estimate.isComplete() );
+    }
+
+    public void testNoHistory()
+        throws Exception
+    {
+        PermutationForecast forecast =
+            new PermutationForecast( "com.acme.App", estimate( "safari", "en,fr" ), history );
+        assertEquals( 2, forecast.getPermutations() );
+        assertEquals( 0, forecast.getTime() );
+        assertEquals( 0, forecast.getMemory() );
+    }
+
+    public void testCalibratedOnHistory()
+        throws Exception
+    {
+        // last time, 4 permutations were estimated and the compiler compiled 6 in 30s
+        history.setEstimatedPermutations( "com.acme.App", 4 );
+        history.setPermutations( "com.acme.App", 6 );
+        history.setCompileTime( "com.acme.App", 30000 );
+        history.setPeakMemory( "com.acme.App", 1200 );
+        history.save();
+        history = new CompilationHistory( new File( "target/test-forecast", CompilationHistory.FILE_NAME ) );
+
+        PermutationForecast forecast =
+            new PermutationForecast( "com.acme.App", estimate( "gecko1_8,safari", "en,fr,de,it" ), history );
+        assertEquals( 12, forecast.getPermutations() );
+        assertEquals( 60000, forecast.getTime() );
+        assertEquals( 1200, forecast.getMemory() );
+        assertTrue( forecast.toString(), forecast.toString().endsWith( "forecast 60.0s and 1200MB peak memory" ) );
+    }
+
+    private PermutationEstimate estimate( String userAgents, String locales )
+        throws Exception
+    {
+        DerivedModule module =
+            new DerivedModule( "com.acme.App", "app", "Dev" ).setProperty( "user.agent", userAgents )
+                .setProperty( "locale", locales );
+        final GwtModule derived = module.toModule( null );
+        GwtModuleReader reader = new GwtModuleReader()
+        {
+            public GwtModule readModule( String name )
+                throws GwtModuleReaderException
+            {
+                if ( name.equals( derived.getName() ) )
+                {
+                    return derived;
+                }
+                throw new GwtModuleReaderException( "GWT Module " + name + " not found" );
+            }
+
+            public List<String> getGwtModules()
+            {
+                return Collections.emptyList();
+            }
+        };
+        return new PermutationEstimate( GwtModuleGraph.build( derived.getName(), reader ) );
+    }
+}
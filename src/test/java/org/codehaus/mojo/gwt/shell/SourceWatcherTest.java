@@ -0,0 +1,110 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class SourceWatcherTest
+    extends TestCase
+{
+    private File sources;
+
+    private SourceWatcher watcher;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        sources = new File( "target/test-source-watcher/" + getName() ).getAbsoluteFile();
+        FileUtils.deleteDirectory( sources );
+        sources.mkdirs();
+        write( "App.java", "class App {}" );
+        watcher = new SourceWatcher();
+        watcher.watch( Collections.singleton( sources ) );
+    }
+
+    private File write( String name, String content )
+        throws Exception
+    {
+        File file = new File( sources, name );
+        FileUtils.fileWrite( file.getPath(), content );
+        return file;
+    }
+
+    private List<File> changes( long interval, long debounce )
+        throws Exception
+    {
+        return new ArrayList<File>( watcher.awaitChanges( interval, debounce ) );
+    }
+
+    public void testChangeSavedDuringBuild()
+        throws Exception
+    {
+        // snapshot is taken before the build, a file saved while compiling is reported by the first poll
+        File app = write( "App.java", "class App { int foo; }" );
+        assertEquals( Collections.singletonList( app ), changes( 10, 50 ) );
+    }
+
+    public void testDebounce()
+        throws Exception
+    {
+        Thread editor = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    write( "App.java", "class App { Foo foo; }" );
+                    Thread.sleep( 100 );
+                    write( "Foo.java", "class Foo {}" );
+                }
+                catch ( Exception e )
+                {
+                    throw new RuntimeException( e );
+                }
+            }
+        };
+        editor.start();
+        List<File> changed = changes( 10, 500 );
+        editor.join();
+        assertEquals( "changes saved together are reported together",
+                      Arrays.asList( new File( sources, "App.java" ), new File( sources, "Foo.java" ) ), changed );
+    }
+
+    public void testRemovedFile()
+        throws Exception
+    {
+        File app = new File( sources, "App.java" );
+        app.delete();
+        assertEquals( Collections.singletonList( app ), changes( 10, 50 ) );
+
+        // reported changes become the reference
+        File foo = write( "Foo.java", "class Foo {}" );
+        assertEquals( Collections.singletonList( foo ), changes( 10, 50 ) );
+    }
+}
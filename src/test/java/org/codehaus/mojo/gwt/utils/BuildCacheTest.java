@@ -0,0 +1,239 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class BuildCacheTest
+    extends TestCase
+{
+    private static final String KEY = "0123456789abcdef0123456789abcdef01234567";
+
+    private static final String TRUNCATED = "01" + KEY.substring( 2, 39 ) + "e";
+
+    private File basedir;
+
+    private File war;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        basedir = new File( "target/test-cache/" + getName() );
+        FileUtils.deleteDirectory( basedir );
+        war = new File( basedir, "war/app" );
+        war.mkdirs();
+        FileUtils.fileWrite( new File( war, "app.nocache.js" ).getPath(), "nocache" );
+        new File( war, "deferred" ).mkdirs();
+        FileUtils.fileWrite( new File( war, "deferred/1.cache.js" ).getPath(), "fragment" );
+    }
+
+    private Map<String, File> outputs()
+    {
+        Map<String, File> outputs = new HashMap<String, File>();
+        outputs.put( "war", war );
+        outputs.put( "extra", new File( basedir, "extra/app" ) );
+        return outputs;
+    }
+
+    public void testStoreAndRestore()
+        throws Exception
+    {
+        BuildCache cache = new BuildCache( new File( basedir, "cache" ), 10, null, new SystemStreamLog() );
+        assertFalse( cache.restore( KEY, outputs() ) );
+        assertTrue( "miss must not remove existing output", new File( war, "app.nocache.js" ).exists() );
+
+        cache.store( KEY, outputs() );
+        FileUtils.deleteDirectory( war );
+        assertTrue( cache.restore( KEY, outputs() ) );
+        assertEquals( "fragment", FileUtils.fileRead( new File( war, "deferred/1.cache.js" ) ) );
+    }
+
+    public void testSharedBetweenWorkspaces()
+        throws Exception
+    {
+        File first = new File( basedir, "ws1" );
+        File second = new File( basedir, "ws2/nested" );
+        String key = digest( first );
+        assertEquals( "key doesn't depend on workspace location", key, digest( second ) );
+
+        BuildCache cache = new BuildCache( new File( basedir, "cache" ), 10, null, new SystemStreamLog() );
+        cache.store( key, outputs() );
+        Map<String, File> restored = new HashMap<String, File>();
+        restored.put( "war", new File( second, "project/target/war/app" ) );
+        restored.put( "extra", new File( second, "project/target/extra/app" ) );
+        assertTrue( cache.restore( digest( second ), restored ) );
+        assertEquals( "nocache", FileUtils.fileRead( new File( second, "project/target/war/app/app.nocache.js" ) ) );
+    }
+
+    /**
+     * @return the digest of a project checked out in a workspace, with a library from the workspace repository
+     */
+    private static String digest( File workspace )
+        throws Exception
+    {
+        File project = new File( workspace, "project" ).getAbsoluteFile();
+        File source = new File( project, "src/main/java/com/acme/client/App.java" );
+        source.getParentFile().mkdirs();
+        FileUtils.fileWrite( source.getPath(), "class App {}" );
+        File library = new File( workspace, "repository/com/acme/lib/1.0/lib-1.0.jar" );
+        library.getParentFile().mkdirs();
+        ZipOutputStream zip = new ZipOutputStream( new FileOutputStream( library ) );
+        zip.putNextEntry( new ZipEntry( "com/acme/Lib.gwt.xml" ) );
+        zip.write( "<module/>".getBytes( "UTF-8" ) );
+        zip.close();
+
+        FingerprintManifest fingerprint = FingerprintManifest.load( new File( project, "target/App.properties" ) );
+        fingerprint.addFile( source );
+        fingerprint.addArchive( library );
+        fingerprint.addValue( "style", "OBF" );
+        fingerprint.compute( 1 );
+        return fingerprint.getDigest( project );
+    }
+
+    public void testCorruptEntry()
+        throws Exception
+    {
+        File dir = new File( basedir, "cache" );
+        BuildCache cache = new BuildCache( dir, 10, null, new SystemStreamLog() );
+        cache.store( KEY, outputs() );
+        File entry = new File( dir, KEY.substring( 0, 2 ) + "/" + KEY + ".zip" );
+        byte[] content = FileUtils.fileRead( entry, "ISO-8859-1" ).getBytes( "ISO-8859-1" );
+        // corrupt the first file content
+        content[40] ^= 0xFF;
+        FileOutputStream out = new FileOutputStream( entry );
+        out.write( content );
+        out.close();
+
+        FileUtils.fileWrite( new File( war, "app.nocache.js" ).getPath(), "previous" );
+        try
+        {
+            cache.restore( KEY, outputs() );
+            fail( "corrupt entry must not be restored" );
+        }
+        catch ( IOException e )
+        {
+            assertFalse( entry.exists() );
+            assertEquals( "outputs are left untouched", "previous",
+                          FileUtils.fileRead( new File( war, "app.nocache.js" ) ) );
+        }
+        assertFalse( cache.restore( KEY, outputs() ) );
+    }
+
+    public void testEviction()
+        throws Exception
+    {
+        // not compressible
+        byte[] big = new byte[700 * 1024];
+        new Random( 0 ).nextBytes( big );
+        FileOutputStream out = new FileOutputStream( new File( war, "big.js" ) );
+        out.write( big );
+        out.close();
+        File dir = new File( basedir, "cache" );
+        BuildCache cache = new BuildCache( dir, 1, null, new SystemStreamLog() );
+        String other = "f" + KEY.substring( 1 );
+        cache.store( KEY, outputs() );
+        new File( dir, KEY.substring( 0, 2 ) + "/" + KEY + ".zip" ).setLastModified( 0 );
+        cache.store( other, outputs() );
+
+        assertFalse( "least recently used entry is evicted", cache.restore( KEY, outputs() ) );
+        assertTrue( cache.restore( other, outputs() ) );
+    }
+
+    public void testRemoteCache()
+        throws Exception
+    {
+        final Map<String, byte[]> remote = new HashMap<String, byte[]>();
+        HttpServer server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        server.createContext( "/cache/", new HttpHandler()
+        {
+            public void handle( HttpExchange exchange )
+                throws IOException
+            {
+                String path = exchange.getRequestURI().getPath();
+                if ( "PUT".equals( exchange.getRequestMethod() ) )
+                {
+                    ByteArrayOutputStream body = new ByteArrayOutputStream();
+                    IOUtils.copy( exchange.getRequestBody(), body );
+                    remote.put( path, body.toByteArray() );
+                    exchange.sendResponseHeaders( 201, -1 );
+                }
+                else if ( remote.containsKey( path ) )
+                {
+                    byte[] body = remote.get( path );
+                    exchange.sendResponseHeaders( 200, body.length );
+                    exchange.getResponseBody().write( body );
+                }
+                else if ( path.endsWith( TRUNCATED + ".zip" ) )
+                {
+                    // chunked, no length to check
+                    exchange.sendResponseHeaders( 200, 0 );
+                    exchange.getResponseBody().write( remote.values().iterator().next(), 0, 100 );
+                }
+                else
+                {
+                    exchange.sendResponseHeaders( 404, -1 );
+                }
+                exchange.close();
+            }
+        } );
+        server.start();
+        try
+        {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/cache";
+            new BuildCache( new File( basedir, "cache1" ), 10, url, new SystemStreamLog() ).store( KEY, outputs() );
+            assertEquals( 1, remote.size() );
+
+            // another workspace, with an empty local cache
+            FileUtils.deleteDirectory( war );
+            BuildCache cache = new BuildCache( new File( basedir, "cache2" ), 10, url, new SystemStreamLog() );
+            assertTrue( cache.restore( KEY, outputs() ) );
+            assertEquals( "nocache", FileUtils.fileRead( new File( war, "app.nocache.js" ) ) );
+            assertFalse( cache.restore( "f" + KEY.substring( 1 ), outputs() ) );
+
+            assertFalse( "truncated entry is a miss", cache.restore( TRUNCATED, outputs() ) );
+            assertEquals( 1, new File( basedir, "cache2/" + KEY.substring( 0, 2 ) ).list().length );
+            assertEquals( "nocache", FileUtils.fileRead( new File( war, "app.nocache.js" ) ) );
+        }
+        finally
+        {
+            server.stop( 0 );
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+public class ClasspathIndexTest
+    extends TestCase
+{
+    private File basedir;
+
+    private File jar;
+
+    private File classes;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        basedir = new File( "target/test-classpath-index/" + getName() );
+        FileUtils.deleteDirectory( basedir );
+        classes = new File( basedir, "classes" );
+        new File( classes, "com/acme" ).mkdirs();
+        FileUtils.fileWrite( new File( classes, "com/acme/App.gwt.xml" ).getPath(), "<module/>" );
+        jar = new File( basedir, "lib.jar" );
+        ZipOutputStream zip = new ZipOutputStream( new FileOutputStream( jar ) );
+        try
+        {
+            for ( String name : new String[] { "com/acme/App.gwt.xml", "com/acme/Lib.gwt.xml",
+                "com/acme/public/lib.css", "com/acme/client/Lib.class" } )
+            {
+                zip.putNextEntry( new ZipEntry( name ) );
+                zip.write( "<module/>".getBytes( "UTF-8" ) );
+                zip.closeEntry();
+            }
+        }
+        finally
+        {
+            IOUtil.close( zip );
+        }
+    }
+
+    public void testLookupOrder()
+        throws Exception
+    {
+        ClasspathIndex index = new ClasspathIndex( Arrays.asList( classes, jar ), null );
+        assertEquals( classes, index.getClasspathElement( "com/acme/App.gwt.xml" ) );
+        assertEquals( jar, index.getClasspathElement( "com/acme/Lib.gwt.xml" ) );
+        assertEquals( jar, index.getClasspathElement( "com/acme/public/lib.css" ) );
+        assertNull( index.getClasspathElement( "com/acme/Missing.gwt.xml" ) );
+        assertNull( "classes are not indexed", index.getClasspathElement( "com/acme/client/Lib.class" ) );
+    }
+
+    public void testResourceUrl()
+        throws Exception
+    {
+        ClasspathIndex index = new ClasspathIndex( Arrays.asList( classes, jar ), null );
+        URL url = index.getResource( "com/acme/Lib.gwt.xml" );
+        assertEquals( "jar", url.getProtocol() );
+        assertEquals( "<module/>", IOUtil.toString( url.openStream(), "UTF-8" ) );
+        assertEquals( "file", index.getResource( "com/acme/App.gwt.xml" ).getProtocol() );
+    }
+
+    public void testPersistedIndex()
+        throws Exception
+    {
+        File directory = new File( basedir, "index" );
+        new ClasspathIndex( Arrays.asList( jar ), directory ).getEntries( jar );
+        File[] files = directory.listFiles();
+        assertEquals( 1, files.length );
+        String content = FileUtils.fileRead( files[0], "UTF-8" );
+        assertTrue( content.contains( "com/acme/Lib.gwt.xml\n" ) );
+        assertFalse( content.contains( ".class" ) );
+    }
+}
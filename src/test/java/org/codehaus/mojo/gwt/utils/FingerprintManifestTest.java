@@ -0,0 +1,170 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class FingerprintManifestTest
+    extends TestCase
+{
+    private File basedir;
+
+    private File manifest;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        basedir = new File( "target/test-fingerprints/" + getName() );
+        FileUtils.deleteDirectory( basedir );
+        basedir.mkdirs();
+        manifest = new File( basedir, "manifest.properties" );
+    }
+
+    private FingerprintManifest fingerprint( File... files )
+        throws Exception
+    {
+        FingerprintManifest fingerprint = FingerprintManifest.load( manifest );
+        for ( File file : files )
+        {
+            fingerprint.addFile( file );
+        }
+        fingerprint.addValue( "option", "value" );
+        fingerprint.compute( 2 );
+        return fingerprint;
+    }
+
+    public void testNoPreviousFingerprint()
+        throws Exception
+    {
+        File source = new File( basedir, "Foo.java" );
+        FileUtils.fileWrite( source.getPath(), "class Foo {}" );
+
+        FingerprintManifest fingerprint = fingerprint( source );
+        assertFalse( fingerprint.isUpToDate() );
+        assertEquals( 1, fingerprint.getHashedCount() );
+    }
+
+    public void testTimestampChangeOnly()
+        throws Exception
+    {
+        File source = new File( basedir, "Foo.java" );
+        FileUtils.fileWrite( source.getPath(), "class Foo {}" );
+        fingerprint( source ).save();
+
+        FingerprintManifest fingerprint = fingerprint( source );
+        assertTrue( fingerprint.isUpToDate() );
+        assertEquals( "unchanged file must not be read again", 0, fingerprint.getHashedCount() );
+
+        source.setLastModified( source.lastModified() + 60000 );
+        fingerprint = fingerprint( source );
+        assertTrue( fingerprint.isUpToDate() );
+        assertEquals( 1, fingerprint.getHashedCount() );
+    }
+
+    public void testContentChange()
+        throws Exception
+    {
+        File source = new File( basedir, "Foo.java" );
+        FileUtils.fileWrite( source.getPath(), "class Foo {}" );
+        FingerprintManifest first = fingerprint( source );
+        first.save();
+
+        FileUtils.fileWrite( source.getPath(), "class Foo { int bar; }" );
+        source.setLastModified( source.lastModified() + 60000 );
+        FingerprintManifest second = fingerprint( source );
+        assertFalse( second.isUpToDate() );
+        assertFalse( first.getDigest( basedir ).equals( second.getDigest( basedir ) ) );
+    }
+
+    public void testFileSetChange()
+        throws Exception
+    {
+        File foo = new File( basedir, "Foo.java" );
+        FileUtils.fileWrite( foo.getPath(), "class Foo {}" );
+        File bar = new File( basedir, "Bar.java" );
+        FileUtils.fileWrite( bar.getPath(), "class Bar {}" );
+        fingerprint( foo, bar ).save();
+
+        assertFalse( fingerprint( foo ).isUpToDate() );
+    }
+
+    public void testValueChange()
+        throws Exception
+    {
+        fingerprint().save();
+
+        FingerprintManifest fingerprint = FingerprintManifest.load( manifest );
+        fingerprint.addValue( "option", "other" );
+        fingerprint.compute( 1 );
+        assertFalse( fingerprint.isUpToDate() );
+    }
+
+    public void testArchiveContentChange()
+        throws Exception
+    {
+        File jar = new File( basedir, "lib.jar" );
+        writeJar( jar, "class Foo {}" );
+        FingerprintManifest fingerprint = FingerprintManifest.load( manifest );
+        fingerprint.addArchive( jar );
+        fingerprint.compute( 1 );
+        fingerprint.save();
+
+        // rebuilt with same content
+        writeJar( jar, "class Foo {}" );
+        jar.setLastModified( jar.lastModified() + 60000 );
+        fingerprint = FingerprintManifest.load( manifest );
+        fingerprint.addArchive( jar );
+        fingerprint.compute( 1 );
+        assertTrue( fingerprint.isUpToDate() );
+
+        writeJar( jar, "class Foo { int bar; }" );
+        jar.setLastModified( jar.lastModified() + 120000 );
+        fingerprint = FingerprintManifest.load( manifest );
+        fingerprint.addArchive( jar );
+        fingerprint.compute( 1 );
+        assertFalse( fingerprint.isUpToDate() );
+    }
+
+    private void writeJar( File jar, String content )
+        throws Exception
+    {
+        ZipOutputStream zip = new ZipOutputStream( new FileOutputStream( jar ) );
+        try
+        {
+            ZipEntry entry = new ZipEntry( "com/acme/client/Foo.java" );
+            entry.setTime( System.currentTimeMillis() );
+            zip.putNextEntry( entry );
+            zip.write( content.getBytes( "UTF-8" ) );
+            zip.closeEntry();
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+}
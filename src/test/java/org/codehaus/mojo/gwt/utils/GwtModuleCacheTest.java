@@ -0,0 +1,145 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import org.codehaus.mojo.gwt.GwtModule;
+import org.codehaus.mojo.gwt.GwtModuleReader;
+import org.codehaus.plexus.util.FileUtils;
+
+public class GwtModuleCacheTest
+    extends TestCase
+{
+    private File directory;
+
+    private GwtModuleCache cache;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-modules/" + getName() ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+        cache = new GwtModuleCache( new Reader() );
+    }
+
+    public void testModuleReadOnce()
+        throws Exception
+    {
+        File file = write( "App.gwt.xml", "<module rename-to='app'><inherits name='com.acme.Core'/></module>" );
+        GwtModule module = cache.read( "com.acme.App", file );
+        assertSame( module, cache.getModule( "com.acme.App" ) );
+        assertEquals( file, module.getSourceFile() );
+        assertEquals( "app", module.getPath() );
+        assertEquals( 1, module.getInherits().size() );
+        assertSame( module.getInherits(), module.getInherits() );
+
+        cache.clear();
+        assertNull( cache.getModule( "com.acme.App" ) );
+    }
+
+    public void testDescriptorSharedWhileUnmodified()
+        throws Exception
+    {
+        File file = write( "App.gwt.xml", "<module rename-to='aaa'/>" );
+        long modified = file.lastModified();
+        assertEquals( "aaa", cache.read( "com.acme.App", file ).getPath() );
+        int descriptors = GwtModuleCache.getDescriptorCount();
+
+        // same size and date, so the descriptor parsed by another reader is used
+        write( "App.gwt.xml", "<module rename-to='bbb'/>" );
+        file.setLastModified( modified );
+        assertEquals( "aaa", new GwtModuleCache( new Reader() ).read( "com.acme.App", file ).getPath() );
+
+        file.setLastModified( modified + 2000 );
+        assertEquals( "bbb", new GwtModuleCache( new Reader() ).read( "com.acme.App", file ).getPath() );
+        assertEquals( "modified descriptor replaces the previous one", descriptors,
+                      GwtModuleCache.getDescriptorCount() );
+    }
+
+    public void testReadFromJar()
+        throws Exception
+    {
+        File jar = new File( directory, "core.jar" );
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( jar ) );
+        out.putNextEntry( new ZipEntry( "com/acme/Core.gwt.xml" ) );
+        out.write( "<module rename-to='core'/>".getBytes( "UTF-8" ) );
+        out.closeEntry();
+        out.close();
+
+        URL url = new URL( "jar:" + jar.toURI().toURL().toExternalForm() + "!/com/acme/Core.gwt.xml" );
+        GwtModule module = cache.read( "com.acme.Core", url );
+        assertEquals( "core", module.getPath() );
+        assertEquals( jar, module.getSourceJar() );
+        assertEquals( "core", new GwtModuleCache( new Reader() ).read( "com.acme.Core", url ).getPath() );
+    }
+
+    private File write( String name, String content )
+        throws Exception
+    {
+        File file = new File( directory, name );
+        FileUtils.fileWrite( file.getPath(), "UTF-8", content );
+        return file;
+    }
+
+    /**
+     * Resolve inherited modules as empty modules
+     */
+    private class Reader
+        implements GwtModuleReader
+    {
+        public GwtModule readModule( String name )
+            throws GwtModuleReaderException
+        {
+            GwtModule module = cache.getModule( name );
+            if ( module != null )
+            {
+                return module;
+            }
+            try
+            {
+                return cache.read( name, write( name + ".gwt.xml", "<module/>" ) );
+            }
+            catch ( GwtModuleReaderException e )
+            {
+                throw e;
+            }
+            catch ( Exception e )
+            {
+                throw new GwtModuleReaderException( e.getMessage(), e );
+            }
+        }
+
+        public List<String> getGwtModules()
+        {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+public class HprofHistogramTest
+    extends TestCase
+{
+    private static final String[] STRINGS = new String[] { "a", "b" };
+
+    public void testHeapDump()
+        throws Exception
+    {
+        File dump = new File( "target/test-hprof/heap.hprof" ).getAbsoluteFile();
+        dump.getParentFile().mkdirs();
+        dump.delete();
+        try
+        {
+            ObjectName diagnostic = new ObjectName( "com.sun.management:type=HotSpotDiagnostic" );
+            ManagementFactory.getPlatformMBeanServer().invoke( diagnostic, "dumpHeap",
+                                                               new Object[] { dump.getPath(), Boolean.TRUE },
+                                                               new String[] { String.class.getName(), "boolean" } );
+        }
+        catch ( Exception e )
+        {
+            // not a HotSpot JVM
+            return;
+        }
+
+        List<HprofHistogram.Entry> entries = HprofHistogram.read( dump );
+        assertFalse( entries.isEmpty() );
+        for ( int i = 1; i < entries.size(); i++ )
+        {
+            assertTrue( "sorted by size", entries.get( i - 1 ).getSize() >= entries.get( i ).getSize() );
+        }
+        HprofHistogram.Entry strings = null;
+        for ( HprofHistogram.Entry entry : entries )
+        {
+            if ( entry.getName().equals( "java.lang.String" ) )
+            {
+                strings = entry;
+            }
+        }
+        assertNotNull( strings );
+        assertTrue( strings.getCount() >= STRINGS.length );
+        dump.delete();
+    }
+}